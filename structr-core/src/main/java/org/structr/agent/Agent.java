@@ -141,6 +141,8 @@ public abstract class Agent extends Thread implements StatusInfo {
 
 				long endTime = System.nanoTime();
 
+				agentService.notifyTaskFinished(currentTask, ret, endTime - lastStartTime);
+
 				// calc. average execution time
 				averageExecutionTime += endTime;
 				averageExecutionTime /= 2;
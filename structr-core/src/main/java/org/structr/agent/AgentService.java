@@ -35,6 +35,7 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.structr.common.StructrConf;
@@ -57,6 +58,7 @@ public class AgentService extends Thread implements RunnableService {
 	private final Map<Class, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Map<Class, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Queue<Task> taskQueue                 = new ConcurrentLinkedQueue<>();
+	private final Set<TaskListener> taskListeners       = new CopyOnWriteArraySet<>();
 	private Set<Class> supportedCommands                = null;
 	private boolean run                                 = false;
 
@@ -133,6 +135,28 @@ public class AgentService extends Thread implements RunnableService {
 		}
 	}
 
+	public void addTaskListener(final TaskListener listener) {
+		taskListeners.add(listener);
+	}
+
+	public void removeTaskListener(final TaskListener listener) {
+		taskListeners.remove(listener);
+	}
+
+	public void notifyTaskFinished(final Task task, final ReturnValue returnValue, final long executionTime) {
+
+		for (final TaskListener listener : taskListeners) {
+
+			try {
+				listener.taskFinished(task, returnValue, executionTime);
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Error in task listener", t);
+			}
+		}
+	}
+
 	public Map<String, Class<? extends Agent>> getAgents() {
 
 		final ConfigurationProvider configuration = Services.getInstance().getConfigurationProvider();
@@ -208,7 +232,14 @@ public class AgentService extends Thread implements RunnableService {
 			// create a new one.
 			Agent agent = createAgent(nextTask);
 
-			if ((agent != null) && agent.assignTask(nextTask)) {
+			if (agent == null) {
+
+				// no agent supports this task, re-queueing would never end
+				logger.log(Level.WARNING, "No agent found for task {0}, discarding task", taskClass.getName());
+
+				notifyTaskFinished(nextTask, null, 0L);
+
+			} else if (agent.assignTask(nextTask)) {
 				agent.start();
 			} else {
 
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+/**
+ * Listener that is notified by the {@link AgentService} when an agent has
+ * finished processing a task.
+ */
+public interface TaskListener {
+
+	/**
+	 * Called by the agent thread after the given task was processed.
+	 *
+	 * @param task the task
+	 * @param returnValue the return value of the agent, or null if processing failed
+	 * @param executionTime the execution time in nanoseconds
+	 */
+	public void taskFinished(final Task task, final ReturnValue returnValue, final long executionTime);
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A content-addressed index of file chunks. Chunks are identified by the
+ * SHA-256 hash of their content, so identical content can be copied from
+ * a file that is already present instead of being transmitted again.
+ *
+ * Whole files are looked up by their CRC32 checksum and size first, the
+ * chunk hashes are only computed to confirm a match.
+ */
+public class ChunkIndex {
+
+	public static final String HASH_ALGORITHM  = "SHA-256";
+	public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+	private final Map<String, List<File>> filesByChecksum = new LinkedHashMap<>();
+	private final Map<File, String[]> chunkHashes         = new LinkedHashMap<>();
+	private final Map<String, Location> locations         = new LinkedHashMap<>();
+	private int chunkSize                                 = 0;
+
+	public ChunkIndex() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public ChunkIndex(final int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Adds the chunks of the given file to this index. Chunks that are
+	 * already in the index are located in the given file afterwards. The
+	 * file must not be modified while the index is in use.
+	 *
+	 * @param file the file to add
+	 * @return the chunk hashes of the file
+	 * @throws IOException
+	 */
+	public String[] add(final File file) throws IOException {
+
+		String[] hashes = chunkHashes.get(file);
+		if (hashes == null) {
+
+			hashes = getChunkHashes(file, chunkSize);
+			chunkHashes.put(file, hashes);
+
+			// the most recently added file wins
+			for (int i=0; i<hashes.length; i++) {
+				locations.put(hashes[i], new Location(file, i));
+			}
+		}
+
+		return hashes;
+	}
+
+	/**
+	 * Adds the given file to the whole-file index of this index, using the
+	 * given CRC32 checksum. The chunks of the file are not hashed until a
+	 * file with the same checksum and size is looked up.
+	 *
+	 * @param file the file to add
+	 * @param checksum the CRC32 checksum of the file
+	 */
+	public void add(final File file, final long checksum) {
+
+		final String key = getChecksumKey(checksum, file.length());
+		List<File> files = filesByChecksum.get(key);
+
+		if (files == null) {
+
+			files = new LinkedList<>();
+			filesByChecksum.put(key, files);
+		}
+
+		files.add(file);
+	}
+
+	/**
+	 * Returns a file from the whole-file index with the same content as
+	 * the given file, or null.
+	 *
+	 * @param file the file to look up
+	 * @param checksum the CRC32 checksum of the file
+	 * @return a file with the same content, or null
+	 * @throws IOException
+	 */
+	public File find(final File file, final long checksum) throws IOException {
+
+		final List<File> files = filesByChecksum.get(getChecksumKey(checksum, file.length()));
+		if (files != null) {
+
+			final String[] hashes = getChunkHashes(file, chunkSize);
+
+			for (final File candidate : files) {
+
+				if (Arrays.equals(hashes, add(candidate))) {
+					return candidate;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param hash the hash of a chunk
+	 * @return whether the chunk with the given hash is in this index
+	 */
+	public boolean contains(final String hash) {
+		return locations.containsKey(hash);
+	}
+
+	/**
+	 * Copies the chunk with the given hash into the given file.
+	 *
+	 * @param hash the hash of the chunk
+	 * @param target the file to write to
+	 * @param position the position in the target file
+	 * @return whether the chunk was found and copied
+	 * @throws IOException
+	 */
+	public boolean copy(final String hash, final RandomAccessFile target, final long position) throws IOException {
+
+		final Location location = locations.get(hash);
+		if (location != null) {
+
+			final byte[] buffer = new byte[chunkSize];
+			final long offset   = (long)location.index * chunkSize;
+
+			try (final RandomAccessFile source = new RandomAccessFile(location.file, "r")) {
+
+				source.seek(offset);
+
+				final int length = Long.valueOf(Math.min(chunkSize, source.length() - offset)).intValue();
+
+				source.readFully(buffer, 0, length);
+				target.seek(position);
+				target.write(buffer, 0, length);
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+
+	// ----- public static methods -----
+	/**
+	 * Returns the hashes of the chunks of the given file, or an empty array
+	 * if the file does not exist.
+	 *
+	 * @param file the file to read
+	 * @param chunkSize the chunk size
+	 * @return the chunk hashes
+	 * @throws IOException
+	 */
+	public static String[] getChunkHashes(final File file, final int chunkSize) throws IOException {
+
+		if (file == null || !file.exists()) {
+			return new String[0];
+		}
+
+		final String[] hashes      = new String[getChunkCount(file.length(), chunkSize)];
+		final MessageDigest digest = getDigest();
+		final byte[] buffer        = new byte[chunkSize];
+
+		try (final InputStream inputStream = new FileInputStream(file)) {
+
+			for (int i=0; i<hashes.length; i++) {
+
+				final int length = IOUtils.read(inputStream, buffer);
+
+				digest.update(buffer, 0, length);
+				hashes[i] = Hex.encodeHexString(digest.digest());
+			}
+		}
+
+		return hashes;
+	}
+
+	public static int getChunkCount(final long fileSize, final int chunkSize) {
+		return Long.valueOf((fileSize + chunkSize - 1) / chunkSize).intValue();
+	}
+
+	// ----- private methods -----
+	private static String getChecksumKey(final long checksum, final long size) {
+		return checksum + ":" + size;
+	}
+
+	private static MessageDigest getDigest() {
+
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+
+		} catch (NoSuchAlgorithmException nsaex) {
+			throw new IllegalStateException(nsaex);
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Location {
+
+		private File file = null;
+		private int index = 0;
+
+		public Location(final File file, final int index) {
+
+			this.file  = file;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+/**
+ * A type-safe enumeration of the ways the overall result count
+ * of a paged query can be determined.
+ *
+ * <ul>
+ * <li>Default: accurate up to {@link org.structr.core.graph.Factory#RESULT_COUNT_ACCURATE_LIMIT}, estimated above</li>
+ * <li>Exact: always accurate, visibility of every hit is checked</li>
+ * <li>Estimate: raw index hit count, no visibility check</li>
+ * <li>None: no counting, the count exceeds the current page by one if more results are available</li>
+ * </ul>
+ */
+public enum CountMode {
+
+	Default, Exact, Estimate, None;
+
+	/**
+	 * Returns the count mode for the given (case-insensitive) name,
+	 * or Default if the name is null or unknown.
+	 *
+	 * @param name
+	 * @return the count mode
+	 */
+	public static CountMode fromString(final String name) {
+
+		if (name != null) {
+
+			for (final CountMode mode : values()) {
+
+				if (mode.name().equalsIgnoreCase(name.trim())) {
+					return mode;
+				}
+			}
+		}
+
+		return Default;
+	}
+}
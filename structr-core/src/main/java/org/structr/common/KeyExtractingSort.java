@@ -0,0 +1,382 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.core.GraphObject;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Sorts lists of graph objects by a property key and returns a single page
+ * of the sorted list.
+ *
+ * The sort key of each object is read only once. Numeric, date and boolean
+ * keys are encoded into primitive long values and sorted together with the
+ * list positions in parallel primitive arrays, so no boxed key or wrapper
+ * object is kept per list entry. Other keys are sorted as comparable
+ * objects.
+ *
+ * The order is the same as that of {@link GraphObjectComparator}: null
+ * values rank higher than any other value, and objects with the same sort
+ * key value keep their order in the original list.
+ */
+public class KeyExtractingSort {
+
+	private static final Logger logger = Logger.getLogger(KeyExtractingSort.class.getName());
+
+	/**
+	 * Returns the given list sorted by the given key.
+	 *
+	 * @param <T>
+	 * @param list
+	 * @param sortKey
+	 * @param sortDescending
+	 * @return the sorted list
+	 */
+	public static <T extends GraphObject> List<T> sort(final List<T> list, final PropertyKey sortKey, final boolean sortDescending) {
+		return sort(list, sortKey, sortDescending, 0, list.size());
+	}
+
+	/**
+	 * Returns the given page of the given list sorted by the given key,
+	 * using the page bounds of {@link PagingHelper}.
+	 *
+	 * @param <T>
+	 * @param list
+	 * @param sortKey
+	 * @param sortDescending
+	 * @param pageSize
+	 * @param page
+	 * @return the page
+	 */
+	public static <T extends GraphObject> List<T> page(final List<T> list, final PropertyKey sortKey, final boolean sortDescending, final int pageSize, final int page) {
+
+		if (pageSize <= 0 || page == 0) {
+			return Collections.emptyList();
+		}
+
+		final long size      = list.size();
+		final long fromIndex = page > 0 ? (long)(page - 1) * pageSize : size + (long)page * pageSize;
+		final long toIndex   = fromIndex + pageSize;
+
+		final int finalToIndex   = (int)Math.min(size, Math.max(0, toIndex));
+		final int finalFromIndex = (int)Math.min(finalToIndex, Math.max(0, fromIndex));
+
+		return sort(list, sortKey, sortDescending, finalFromIndex, finalToIndex);
+	}
+
+	/**
+	 * Returns the objects between the given positions of the given list
+	 * sorted by the given key.
+	 *
+	 * @param <T>
+	 * @param list
+	 * @param sortKey
+	 * @param sortDescending
+	 * @param fromIndex the first position, inclusive
+	 * @param toIndex the last position, exclusive
+	 * @return the objects between the given positions
+	 */
+	public static <T extends GraphObject> List<T> sort(final List<T> list, final PropertyKey sortKey, final boolean sortDescending, final int fromIndex, final int toIndex) {
+
+		final List<T> result = new ArrayList<>(Math.max(0, toIndex - fromIndex));
+
+		if (fromIndex >= toIndex) {
+			return result;
+		}
+
+		if (sortKey == null) {
+
+			result.addAll(list.subList(fromIndex, toIndex));
+			return result;
+		}
+
+		// positional access is needed to collect the page
+		final List<T> objects = list instanceof RandomAccess ? list : new ArrayList<>(list);
+
+		int[] order = sortPrimitive(objects, sortKey, sortDescending, fromIndex, toIndex);
+		if (order == null) {
+
+			order = sortObjects(objects, sortKey, sortDescending, fromIndex, toIndex);
+		}
+
+		for (final int index : order) {
+			result.add(objects.get(index));
+		}
+
+		return result;
+	}
+
+	// ----- private methods -----
+	private static Comparable getKey(final GraphObject obj, final PropertyKey sortKey) {
+
+		try {
+			return obj.getComparableProperty(sortKey);
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Cannot read sort key {0} of {1}: {2}", new Object[] { sortKey, obj.getUuid(), t.getMessage() });
+		}
+
+		return null;
+	}
+
+	/**
+	 * Sorts the keys of the given objects as primitive long values if all
+	 * of them can be encoded in the same way.
+	 *
+	 * @return the indexes of the objects between the given positions, or null
+	 */
+	private static int[] sortPrimitive(final List<? extends GraphObject> objects, final PropertyKey sortKey, final boolean sortDescending, final int fromIndex, final int toIndex) {
+
+		final int size        = objects.size();
+		final long[] keys     = new long[size];
+		final int[] indexes   = new int[size];
+		final int[] nulls     = new int[size];
+		Encoding encoding     = null;
+		int valueCount        = 0;
+		int nullCount         = 0;
+
+		for (int i=0; i<size; i++) {
+
+			final Comparable key = getKey(objects.get(i), sortKey);
+			if (key == null) {
+
+				nulls[nullCount++] = i;
+				continue;
+			}
+
+			final Encoding keyEncoding = Encoding.forValue(key);
+			if (keyEncoding == null || (encoding != null && encoding != keyEncoding)) {
+				return null;
+			}
+
+			encoding            = keyEncoding;
+			keys[valueCount]    = encoding.encode(key);
+			indexes[valueCount] = i;
+			valueCount++;
+		}
+
+		// null values rank higher than any other value
+		final int valueOffset = sortDescending ? nullCount : 0;
+		final int nullOffset  = sortDescending ? 0 : valueCount;
+		final int[] order     = new int[toIndex - fromIndex];
+
+		for (int i=Math.max(fromIndex, nullOffset); i<Math.min(toIndex, nullOffset + nullCount); i++) {
+			order[i - fromIndex] = nulls[i - nullOffset];
+		}
+
+		final int valueFrom = Math.max(fromIndex, valueOffset);
+		final int valueTo   = Math.min(toIndex, valueOffset + valueCount);
+
+		if (valueFrom < valueTo) {
+
+			sort(keys, indexes, 0, valueCount - 1, sortDescending);
+
+			System.arraycopy(indexes, valueFrom - valueOffset, order, valueFrom - fromIndex, valueTo - valueFrom);
+		}
+
+		return order;
+	}
+
+	private static int[] sortObjects(final List<? extends GraphObject> objects, final PropertyKey sortKey, final boolean sortDescending, final int fromIndex, final int toIndex) {
+
+		final Comparable[] keys = new Comparable[objects.size()];
+		final Integer[] indexes = new Integer[keys.length];
+		final int[] order       = new int[toIndex - fromIndex];
+
+		for (int i=0; i<indexes.length; i++) {
+
+			keys[i]    = getKey(objects.get(i), sortKey);
+			indexes[i] = i;
+		}
+
+		Arrays.sort(indexes, new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer i1, final Integer i2) {
+
+				final Comparable c1 = keys[i1];
+				final Comparable c2 = keys[i2];
+				int result          = 0;
+
+				if (c1 == null || c2 == null) {
+
+					// null values rank higher than any other value
+					result = c1 == null ? (c2 == null ? 0 : 1) : -1;
+
+				} else {
+
+					try {
+						result = c1.compareTo(c2);
+
+					} catch (ClassCastException ccex) {
+
+						// keep the order consistent for keys of different types
+						result = c1.getClass().getName().compareTo(c2.getClass().getName());
+					}
+				}
+
+				if (sortDescending) {
+					result = -result;
+				}
+
+				return result != 0 ? result : Integer.compare(i1, i2);
+			}
+		});
+
+		for (int i=fromIndex; i<toIndex; i++) {
+			order[i - fromIndex] = indexes[i];
+		}
+
+		return order;
+	}
+
+	/**
+	 * Quicksort on the parallel key and index arrays.
+	 */
+	private static void sort(final long[] keys, final int[] indexes, int low, int high, final boolean sortDescending) {
+
+		while (high - low > 16) {
+
+			final int middle = (low + high) >>> 1;
+
+			// median of three
+			if (less(keys, indexes, middle, low, sortDescending))  { swap(keys, indexes, middle, low); }
+			if (less(keys, indexes, high, low, sortDescending))    { swap(keys, indexes, high, low); }
+			if (less(keys, indexes, high, middle, sortDescending)) { swap(keys, indexes, high, middle); }
+
+			final long pivotKey  = keys[middle];
+			final int pivotIndex = indexes[middle];
+			int i                = low;
+			int j                = high;
+
+			while (i <= j) {
+
+				while (compare(keys[i], indexes[i], pivotKey, pivotIndex, sortDescending) < 0) { i++; }
+				while (compare(keys[j], indexes[j], pivotKey, pivotIndex, sortDescending) > 0) { j--; }
+
+				if (i <= j) {
+
+					swap(keys, indexes, i++, j--);
+				}
+			}
+
+			// recurse into the smaller partition
+			if (j - low < high - i) {
+
+				sort(keys, indexes, low, j, sortDescending);
+				low = i;
+
+			} else {
+
+				sort(keys, indexes, i, high, sortDescending);
+				high = j;
+			}
+		}
+
+		// insertion sort for small ranges
+		for (int i=low+1; i<=high; i++) {
+
+			for (int j=i; j>low && less(keys, indexes, j, j-1, sortDescending); j--) {
+				swap(keys, indexes, j, j-1);
+			}
+		}
+	}
+
+	private static boolean less(final long[] keys, final int[] indexes, final int a, final int b, final boolean sortDescending) {
+		return compare(keys[a], indexes[a], keys[b], indexes[b], sortDescending) < 0;
+	}
+
+	private static void swap(final long[] keys, final int[] indexes, final int a, final int b) {
+
+		final long key  = keys[a];
+		final int index = indexes[a];
+
+		keys[a]    = keys[b];
+		indexes[a] = indexes[b];
+		keys[b]    = key;
+		indexes[b] = index;
+	}
+
+	private static int compare(final long k1, final int i1, final long k2, final int i2, final boolean sortDescending) {
+
+		final int result = sortDescending ? Long.compare(k2, k1) : Long.compare(k1, k2);
+
+		return result != 0 ? result : Integer.compare(i1, i2);
+	}
+
+	// ----- nested classes -----
+	private enum Encoding {
+
+		INTEGRAL, FLOATING, DATE, BOOLEAN;
+
+		public static Encoding forValue(final Comparable value) {
+
+			if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				return INTEGRAL;
+			}
+
+			if (value instanceof Double || value instanceof Float) {
+				return FLOATING;
+			}
+
+			if (value instanceof Date) {
+				return DATE;
+			}
+
+			if (value instanceof Boolean) {
+				return BOOLEAN;
+			}
+
+			return null;
+		}
+
+		public long encode(final Comparable value) {
+
+			switch (this) {
+
+				case INTEGRAL:
+					return ((Number)value).longValue();
+
+				case FLOATING:
+
+					// map the IEEE 754 bit pattern to a signed long of the same order
+					final long bits = Double.doubleToLongBits(((Number)value).doubleValue());
+					return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+
+				case DATE:
+					return ((Date)value).getTime();
+
+				case BOOLEAN:
+					return ((Boolean)value) ? 1L : 0L;
+			}
+
+			return 0L;
+		}
+	}
+}
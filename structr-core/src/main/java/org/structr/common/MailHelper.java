@@ -28,6 +28,7 @@ import org.apache.commons.mail.Email;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.HtmlEmail;
 import org.apache.commons.mail.SimpleEmail;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -36,7 +37,8 @@ import org.structr.core.Services;
 //~--- classes ----------------------------------------------------------------
 
 /**
- * Helper class for sending simple or HTML e-mails.
+ * Helper class for sending simple or HTML e-mails. Mails are delivered
+ * asynchronously by the {@link MailOutbox}.
  * 
  * @author Axel Morgner
  */
@@ -50,20 +52,49 @@ public abstract class MailHelper {
 
 	//~--- methods --------------------------------------------------------
 
+	/**
+	 * Queues an HTML e-mail in the {@link MailOutbox}. The mail is sent
+	 * after the current transaction has been committed.
+	 */
 	public static void sendHtmlMail(final String from, final String fromName, final String to, final String toName, final String cc, final String bcc, final String bounce, final String subject,
 					final String htmlContent, final String textContent)
 		throws EmailException {
 
+		// build the mail to report invalid input to the caller
+		createHtmlMail(from, fromName, to, toName, cc, bcc, bounce, subject, htmlContent, textContent);
+		enqueue(from, fromName, to, toName, cc, bcc, bounce, subject, htmlContent, textContent);
+
+	}
+
+	/**
+	 * Queues a plain text e-mail in the {@link MailOutbox}. The mail is sent
+	 * after the current transaction has been committed.
+	 */
+	public static void sendSimpleMail(final String from, final String fromName, final String to, final String toName, final String cc, final String bcc, final String bounce, final String subject,
+					  final String textContent)
+		throws EmailException {
+
+		// build the mail to report invalid input to the caller
+		createSimpleMail(from, fromName, to, toName, cc, bcc, bounce, subject, textContent);
+		enqueue(from, fromName, to, toName, cc, bcc, bounce, subject, null, textContent);
+
+	}
+
+	public static HtmlEmail createHtmlMail(final String from, final String fromName, final String to, final String toName, final String cc, final String bcc, final String bounce, final String subject,
+					final String htmlContent, final String textContent)
+		throws EmailException {
+
 		HtmlEmail mail = new HtmlEmail();
 
 		setup(mail, to, toName, from, fromName, cc, bcc, bounce, subject);
 		mail.setHtmlMsg(htmlContent);
 		mail.setTextMsg(textContent);
-		mail.send();
+
+		return mail;
 
 	}
 
-	public static void sendSimpleMail(final String from, final String fromName, final String to, final String toName, final String cc, final String bcc, final String bounce, final String subject,
+	public static SimpleEmail createSimpleMail(final String from, final String fromName, final String to, final String toName, final String cc, final String bcc, final String bounce, final String subject,
 					  final String textContent)
 		throws EmailException {
 
@@ -71,7 +102,22 @@ public abstract class MailHelper {
 
 		setup(mail, to, toName, from, fromName, cc, bcc, bounce, subject);
 		mail.setMsg(textContent);
-		mail.send();
+
+		return mail;
+
+	}
+
+	private static void enqueue(final String from, final String fromName, final String to, final String toName, final String cc, final String bcc, final String bounce, final String subject,
+					final String htmlContent, final String textContent)
+		throws EmailException {
+
+		try {
+			MailOutbox.enqueue(from, fromName, to, toName, cc, bcc, bounce, subject, htmlContent, textContent);
+
+		} catch (FrameworkException fex) {
+
+			throw new EmailException(fex);
+		}
 
 	}
 
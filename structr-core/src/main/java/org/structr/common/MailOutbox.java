@@ -0,0 +1,463 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.mail.Email;
+import org.apache.commons.mail.EmailException;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.QueuedMail;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Transactional outbox for e-mails.
+ *
+ * Mails are stored as {@link QueuedMail} nodes in the current transaction,
+ * so they are persisted with the commit and discarded on rollback. A
+ * background thread delivers them in batches, reusing one SMTP connection
+ * per batch, and retries failed deliveries with exponential backoff.
+ * Delivered mails are deleted from the outbox, mails that could not be
+ * delivered after the maximum number of attempts are marked as failed and
+ * kept for inspection, without a next attempt. The sender is started and
+ * stopped with the node service, so mails that were queued before a
+ * restart are delivered as well.
+ *
+ * The following configuration settings are supported:
+ *
+ * <pre>
+ * mail.outbox.batchsize   - maximum number of mails per batch (default 50)
+ * mail.outbox.maxattempts - number of delivery attempts per mail (default 10)
+ * mail.outbox.retrydelay  - initial retry delay in milliseconds, doubled on each attempt (default 30000)
+ * mail.outbox.interval    - polling interval in milliseconds (default 10000)
+ * </pre>
+ */
+public class MailOutbox {
+
+	private static final Logger logger                = Logger.getLogger(MailOutbox.class.getName());
+
+	public static final String BATCH_SIZE_KEY         = "mail.outbox.batchsize";
+	public static final String MAX_ATTEMPTS_KEY       = "mail.outbox.maxattempts";
+	public static final String RETRY_DELAY_KEY        = "mail.outbox.retrydelay";
+	public static final String INTERVAL_KEY           = "mail.outbox.interval";
+
+	private static final long MAX_RETRY_DELAY         = 24L * 60L * 60L * 1000L;
+	private static final Object lock                  = new Object();
+	private static final AtomicLong queuedCount       = new AtomicLong(0);
+	private static final AtomicLong sentCount         = new AtomicLong(0);
+	private static final AtomicLong retryCount        = new AtomicLong(0);
+	private static final AtomicLong failedCount       = new AtomicLong(0);
+	private static final AtomicLong batchCount        = new AtomicLong(0);
+	private static final AtomicLong connectionCount   = new AtomicLong(0);
+	private static final AtomicLong sendTime          = new AtomicLong(0);
+	private static final OutboxListener listener      = new OutboxListener();
+	private static Sender sender                      = null;
+	private static boolean wakeUp                     = false;
+
+	/**
+	 * Stores the given mail in the outbox. If a transaction is open, the
+	 * mail is delivered only after that transaction has been committed.
+	 *
+	 * @param from
+	 * @param fromName
+	 * @param to
+	 * @param toName
+	 * @param cc
+	 * @param bcc
+	 * @param bounce
+	 * @param subject
+	 * @param htmlContent the HTML content, or null for plain text mails
+	 * @param textContent
+	 * @throws FrameworkException
+	 */
+	public static void enqueue(final String from, final String fromName, final String to, final String toName, final String cc, final String bcc, final String bounce, final String subject, final String htmlContent, final String textContent) throws FrameworkException {
+
+		// outbox entries are not visible to the sending user
+		final App app                = StructrApp.getInstance();
+		final PropertyMap properties = new PropertyMap();
+
+		properties.put(QueuedMail.from, from);
+		properties.put(QueuedMail.fromName, fromName);
+		properties.put(QueuedMail.to, to);
+		properties.put(QueuedMail.toName, toName);
+		properties.put(QueuedMail.cc, cc);
+		properties.put(QueuedMail.bcc, bcc);
+		properties.put(QueuedMail.bounce, bounce);
+		properties.put(QueuedMail.subject, subject);
+		properties.put(QueuedMail.htmlContent, htmlContent);
+		properties.put(QueuedMail.textContent, textContent);
+		properties.put(QueuedMail.attempts, 0);
+		properties.put(QueuedMail.nextAttempt, System.currentTimeMillis());
+		properties.put(QueuedMail.failed, false);
+
+		// joins the current transaction if there is one
+		try (final Tx tx = app.tx()) {
+
+			app.create(QueuedMail.class, properties);
+			tx.success();
+		}
+
+		queuedCount.incrementAndGet();
+	}
+
+	/**
+	 * Starts the background sender if it is not already running.
+	 */
+	public static void start() {
+
+		synchronized (lock) {
+
+			if (sender == null) {
+
+				sender = new Sender();
+				sender.start();
+
+				// deliver new mails right after the commit
+				TransactionCommand.registerTransactionListener(listener);
+			}
+		}
+	}
+
+	/**
+	 * Stops the background sender and waits for the current batch to be
+	 * finished. Pending mails stay in the outbox.
+	 */
+	public static void stop() {
+
+		Sender current = null;
+
+		synchronized (lock) {
+
+			current = sender;
+			sender  = null;
+
+			TransactionCommand.removeTransactionListener(listener);
+		}
+
+		if (current != null) {
+
+			current.interrupt();
+
+			try {
+				current.join(getIntSetting(INTERVAL_KEY, 10000));
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Triggers the delivery of all pending mails.
+	 */
+	public static void wakeUp() {
+
+		synchronized (lock) {
+
+			wakeUp = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return delivery statistics of the outbox since startup
+	 */
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+		final long sent                      = sentCount.get();
+		final long time                      = sendTime.get();
+
+		statistics.put("queued", queuedCount.get());
+		statistics.put("sent", sent);
+		statistics.put("retried", retryCount.get());
+		statistics.put("failed", failedCount.get());
+		statistics.put("batches", batchCount.get());
+		statistics.put("connections", connectionCount.get());
+		statistics.put("mails_per_second", time > 0 ? (sent * 1000.0) / time : 0.0);
+
+		return statistics;
+	}
+
+	// ----- private methods -----
+	private static int deliverBatch() {
+
+		final Map<String, Transport> connections = new LinkedHashMap<>();
+		final List<OutgoingMail> batch           = new LinkedList<>();
+		final App app                            = StructrApp.getInstance();
+		final int batchSize                      = getIntSetting(BATCH_SIZE_KEY, 50);
+		final long now                           = System.currentTimeMillis();
+
+		// 1. read the mails that are due, outside of any SMTP communication
+		try (final Tx tx = app.tx()) {
+
+			// failed mails have no next attempt and are not part of the range
+			for (final QueuedMail mail : app.nodeQuery(QueuedMail.class).andRange(QueuedMail.nextAttempt, 0L, now).sortAscending(QueuedMail.nextAttempt).pageSize(batchSize).page(1).getAsList()) {
+
+				if (!Boolean.TRUE.equals(mail.getProperty(QueuedMail.failed))) {
+					batch.add(new OutgoingMail(mail));
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.WARNING, "Unable to read mail outbox", fex);
+			return 0;
+		}
+
+		if (batch.isEmpty()) {
+			return 0;
+		}
+
+		// 2. deliver, using one connection per envelope sender
+		final long t0 = System.currentTimeMillis();
+
+		try {
+
+			for (final OutgoingMail mail : batch) {
+
+				try {
+
+					final Email email = mail.build();
+					final String key  = StringUtils.defaultString(mail.bounce);
+
+					email.buildMimeMessage();
+
+					final MimeMessage message = email.getMimeMessage();
+					message.saveChanges();
+
+					Transport transport = connections.get(key);
+					if (transport == null || !transport.isConnected()) {
+
+						transport = email.getMailSession().getTransport("smtp");
+						transport.connect();
+
+						connections.put(key, transport);
+						connectionCount.incrementAndGet();
+					}
+
+					transport.sendMessage(message, message.getAllRecipients());
+					mail.sent = true;
+
+				} catch (EmailException eex) {
+
+					// invalid mail, retrying will not help
+					mail.error     = eex.getMessage();
+					mail.permanent = true;
+
+				} catch (MessagingException mex) {
+
+					mail.error = mex.getMessage();
+				}
+			}
+
+		} finally {
+
+			for (final Transport transport : connections.values()) {
+
+				try { transport.close(); } catch (MessagingException ignore) {}
+			}
+		}
+
+		sendTime.addAndGet(System.currentTimeMillis() - t0);
+		batchCount.incrementAndGet();
+
+		// 3. remove delivered mails, schedule retries
+		try (final Tx tx = app.tx()) {
+
+			final int maxAttempts = getIntSetting(MAX_ATTEMPTS_KEY, 10);
+			final long retryDelay = getIntSetting(RETRY_DELAY_KEY, 30000);
+
+			for (final OutgoingMail mail : batch) {
+
+				final QueuedMail node = app.get(QueuedMail.class, mail.uuid);
+				if (node == null) {
+					continue;
+				}
+
+				if (mail.sent) {
+
+					app.delete(node);
+					sentCount.incrementAndGet();
+
+				} else {
+
+					final int attempts = mail.attempts + 1;
+
+					node.setProperty(QueuedMail.attempts, attempts);
+					node.setProperty(QueuedMail.lastError, mail.error);
+
+					if (mail.permanent || attempts >= maxAttempts) {
+
+						logger.log(Level.WARNING, "Giving up delivery of mail {0} to {1} after {2} attempts: {3}", new Object[] { mail.uuid, mail.to, attempts, mail.error });
+
+						node.setProperty(QueuedMail.failed, true);
+						node.setProperty(QueuedMail.nextAttempt, null);
+						failedCount.incrementAndGet();
+
+					} else {
+
+						final long delay = Math.min(MAX_RETRY_DELAY, retryDelay << Math.min(attempts - 1, 20));
+
+						node.setProperty(QueuedMail.nextAttempt, System.currentTimeMillis() + delay);
+						retryCount.incrementAndGet();
+					}
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.WARNING, "Unable to update mail outbox", fex);
+		}
+
+		return batch.size();
+	}
+
+	private static int getIntSetting(final String key, final int defaultValue) {
+
+		try {
+			return Integer.parseInt(StructrApp.getConfigurationValue(key, Integer.toString(defaultValue)));
+
+		} catch (Throwable t) {}
+
+		return defaultValue;
+	}
+
+	// ----- nested classes -----
+	private static class OutgoingMail {
+
+		private String uuid        = null;
+		private String from        = null;
+		private String fromName    = null;
+		private String to          = null;
+		private String toName      = null;
+		private String cc          = null;
+		private String bcc         = null;
+		private String bounce      = null;
+		private String subject     = null;
+		private String htmlContent = null;
+		private String textContent = null;
+		private String error       = null;
+		private boolean permanent  = false;
+		private boolean sent       = false;
+		private int attempts       = 0;
+
+		public OutgoingMail(final QueuedMail mail) {
+
+			final Integer _attempts = mail.getProperty(QueuedMail.attempts);
+
+			this.uuid        = mail.getUuid();
+			this.from        = mail.getProperty(QueuedMail.from);
+			this.fromName    = mail.getProperty(QueuedMail.fromName);
+			this.to          = mail.getProperty(QueuedMail.to);
+			this.toName      = mail.getProperty(QueuedMail.toName);
+			this.cc          = mail.getProperty(QueuedMail.cc);
+			this.bcc         = mail.getProperty(QueuedMail.bcc);
+			this.bounce      = mail.getProperty(QueuedMail.bounce);
+			this.subject     = mail.getProperty(QueuedMail.subject);
+			this.htmlContent = mail.getProperty(QueuedMail.htmlContent);
+			this.textContent = mail.getProperty(QueuedMail.textContent);
+			this.attempts    = _attempts != null ? _attempts : 0;
+		}
+
+		public Email build() throws EmailException {
+
+			if (htmlContent != null) {
+				return MailHelper.createHtmlMail(from, fromName, to, toName, cc, bcc, bounce, subject, htmlContent, textContent);
+			}
+
+			return MailHelper.createSimpleMail(from, fromName, to, toName, cc, bcc, bounce, subject, textContent);
+		}
+	}
+
+	private static class Sender extends Thread {
+
+		public Sender() {
+
+			super("MailSender");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+
+			while (!isInterrupted()) {
+
+				try {
+
+					// deliver full batches without waiting
+					while (deliverBatch() >= getIntSetting(BATCH_SIZE_KEY, 50) && !isInterrupted());
+
+					synchronized (lock) {
+
+						if (!wakeUp) {
+							lock.wait(getIntSetting(INTERVAL_KEY, 10000));
+						}
+
+						wakeUp = false;
+					}
+
+				} catch (InterruptedException iex) {
+
+					return;
+
+				} catch (Throwable t) {
+
+					logger.log(Level.WARNING, "Error in mail sender", t);
+				}
+			}
+		}
+	}
+
+	private static class OutboxListener implements StructrTransactionListener {
+
+		@Override
+		public void transactionCommited(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+			for (final ModificationEvent event : modificationEvents) {
+
+				if (event.isCreated() && event.getGraphObject() instanceof QueuedMail) {
+
+					wakeUp();
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.nio.charset.Charset;
+import java.util.Comparator;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.index.impl.lucene.LuceneUtil;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * An opaque position in a sorted result set, used for keyset pagination.
+ *
+ * A cursor contains the database name of the sort key, the raw value of
+ * the sort key and the UUID of the last object of a page. The next page
+ * is obtained by a range query on the sort key that starts at that value,
+ * so deep pages cost the same as the first one. Objects with the same
+ * sort key value are ordered by UUID.
+ *
+ * Objects without a value for the sort key rank higher than any other
+ * value, as in {@link GraphObjectComparator}, i.e. they follow the other
+ * objects in ascending order and precede them in descending order. A
+ * cursor that points to such an object has a null value. Blank strings
+ * and the values that are indexed for empty fields count as missing
+ * values, as the index does not store them as values.
+ *
+ * An empty cursor string denotes the start of the result set.
+ */
+public class PagingCursor {
+
+	private static final Charset UTF8   = Charset.forName("utf-8");
+	private static final String SEP     = "\n";
+
+	private String keyName = null;
+	private Object value   = null;
+	private String uuid    = null;
+
+	private PagingCursor() {}
+
+	private PagingCursor(final String keyName, final Object value, final String uuid) {
+
+		this.keyName = keyName;
+		this.value   = value;
+		this.uuid    = uuid;
+	}
+
+	/**
+	 * Creates a cursor pointing to the position after the given object.
+	 *
+	 * @param sortKey
+	 * @param obj
+	 * @return a new cursor or null if the object has no database representation
+	 */
+	public static PagingCursor forObject(final PropertyKey sortKey, final GraphObject obj) {
+
+		final PropertyContainer container = obj.getPropertyContainer();
+		if (container != null) {
+
+			return new PagingCursor(sortKey.dbName(), getRawValue(container, sortKey.dbName()), obj.getUuid());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Parses the given cursor string.
+	 *
+	 * @param source
+	 * @return the cursor
+	 * @throws FrameworkException if the cursor is malformed
+	 */
+	public static PagingCursor fromString(final String source) throws FrameworkException {
+
+		if (StringUtils.isBlank(source)) {
+			return new PagingCursor();
+		}
+
+		try {
+
+			final String[] parts = new String(Base64.decodeBase64(source), UTF8).split(SEP, 4);
+			if (parts.length == 4) {
+
+				return new PagingCursor(parts[0], decodeValue(parts[1], parts[3]), parts[2]);
+			}
+
+		} catch (Throwable t) { }
+
+		throw new FrameworkException(400, "Invalid page cursor " + source);
+	}
+
+	/**
+	 * @return whether this cursor denotes the start of the result set
+	 */
+	public boolean isStart() {
+		return keyName == null;
+	}
+
+	/**
+	 * @return whether this cursor points to an object without a value for the sort key
+	 */
+	public boolean isNullValue() {
+		return !isStart() && value == null;
+	}
+
+	/**
+	 * @param sortKey
+	 * @return whether this cursor was created for the given sort key
+	 */
+	public boolean isValidFor(final PropertyKey sortKey) {
+		return sortKey != null && sortKey.dbName().equals(keyName);
+	}
+
+	/**
+	 * Returns a range query that selects all values from the cursor
+	 * position on, including objects that have the same sort key value
+	 * and must be skipped with {@link #isBeforeOrAt(org.neo4j.graphdb.PropertyContainer, boolean)}.
+	 *
+	 * @param sortKey
+	 * @param descending
+	 * @return the range query
+	 */
+	public Query getRangeQuery(final PropertyKey sortKey, final boolean descending) {
+
+		if (value instanceof Number) {
+
+			final Number number = (Number)value;
+
+			return withoutEmptyValue(sortKey, descending ? LuceneUtil.rangeQuery(keyName, null, number, true, true) : LuceneUtil.rangeQuery(keyName, number, null, true, true));
+		}
+
+		final String string = value.toString();
+
+		return withoutEmptyValue(sortKey, descending ? new TermRangeQuery(keyName, null, string, true, true) : new TermRangeQuery(keyName, string, null, true, true));
+	}
+
+	/**
+	 * Returns a range query that selects all UUIDs from the cursor position
+	 * on. Used to page through the objects without a sort key value.
+	 *
+	 * @param descending
+	 * @return the range query
+	 */
+	public Query getUuidRangeQuery(final boolean descending) {
+
+		final String idName = GraphObject.id.dbName();
+
+		return descending ? new TermRangeQuery(idName, null, uuid, true, true) : new TermRangeQuery(idName, uuid, null, true, true);
+	}
+
+	/**
+	 * Returns a query that selects all objects that have a value for the
+	 * given sort key.
+	 *
+	 * @param sortKey
+	 * @return the query
+	 */
+	public static Query getValueQuery(final PropertyKey sortKey) {
+		return withoutEmptyValue(sortKey, new TermRangeQuery(sortKey.dbName(), null, null, true, true));
+	}
+
+	/**
+	 * Indicates whether the given database object is located before or
+	 * at the position of this cursor, i.e. whether it was already part
+	 * of an earlier page.
+	 *
+	 * @param container
+	 * @param descending
+	 * @return whether the object must be skipped
+	 */
+	public boolean isBeforeOrAt(final PropertyContainer container, final boolean descending) {
+
+		if (isStart()) {
+			return false;
+		}
+
+		int comparison = compareNullable(getRawValue(container, keyName), value);
+		if (comparison == 0) {
+
+			final Object otherUuid = container.getProperty(GraphObject.id.dbName(), null);
+			comparison = otherUuid != null ? otherUuid.toString().compareTo(uuid) : -1;
+		}
+
+		return descending ? comparison >= 0 : comparison <= 0;
+	}
+
+	/**
+	 * Returns a comparator that sorts objects in the order that keyset
+	 * pagination expects: by raw sort key value first, then by uuid.
+	 *
+	 * @param sortKey
+	 * @param descending
+	 * @return the comparator
+	 */
+	public static Comparator<GraphObject> getComparator(final PropertyKey sortKey, final boolean descending) {
+
+		return new Comparator<GraphObject>() {
+
+			@Override
+			public int compare(final GraphObject o1, final GraphObject o2) {
+
+				final Object v1 = getRawValue(o1, sortKey.dbName());
+				final Object v2 = getRawValue(o2, sortKey.dbName());
+				int comparison  = compareNullable(v1, v2);
+
+				if (comparison == 0) {
+					comparison = o1.getUuid().compareTo(o2.getUuid());
+				}
+
+				return descending ? -comparison : comparison;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+
+		if (isStart()) {
+			return "";
+		}
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append(keyName).append(SEP);
+		buf.append(typeOf(value)).append(SEP);
+		buf.append(uuid).append(SEP);
+
+		// value must be the last part, it may contain the separator
+		if (value != null) {
+			buf.append(value.toString());
+		}
+
+		return Base64.encodeBase64URLSafeString(buf.toString().getBytes(UTF8));
+	}
+
+	// ----- private methods -----
+	private static Object getRawValue(final GraphObject obj, final String key) {
+
+		final PropertyContainer container = obj.getPropertyContainer();
+		if (container != null) {
+
+			return getRawValue(container, key);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the raw value of the given key, or null if the value is not
+	 * indexed as a value (see {@link org.structr.core.property.Property#index}).
+	 */
+	private static Object getRawValue(final PropertyContainer container, final String key) {
+
+		final Object value = container.getProperty(key, null);
+		if (value != null && StringUtils.isBlank(value.toString())) {
+
+			return null;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Excludes the value that is indexed for empty fields from the given
+	 * query, objects with that value belong to the objects without value.
+	 */
+	private static Query withoutEmptyValue(final PropertyKey sortKey, final Query valueQuery) {
+
+		final Object emptyValue = sortKey.isIndexedWhenEmpty() ? sortKey.getValueForEmptyFields() : null;
+		if (emptyValue != null) {
+
+			final BooleanQuery query = new BooleanQuery();
+
+			query.add(valueQuery, BooleanClause.Occur.MUST);
+			query.add(new TermQuery(new Term(sortKey.dbName(), emptyValue.toString())), BooleanClause.Occur.MUST_NOT);
+
+			return query;
+		}
+
+		return valueQuery;
+	}
+
+	/**
+	 * Compares two raw values, null values rank higher than any other value.
+	 */
+	private static int compareNullable(final Object a, final Object b) {
+
+		if (a == null || b == null) {
+			return (a == null ? 1 : 0) - (b == null ? 1 : 0);
+		}
+
+		return compare(a, b);
+	}
+
+	private static int compare(final Object a, final Object b) {
+
+		if (a instanceof Number && b instanceof Number) {
+
+			return Double.compare(((Number)a).doubleValue(), ((Number)b).doubleValue());
+		}
+
+		return a.toString().compareTo(b.toString());
+	}
+
+	private static String typeOf(final Object value) {
+
+		if (value == null) {
+			return "N";
+		}
+
+		if (value instanceof Integer) {
+			return "I";
+		}
+
+		if (value instanceof Long) {
+			return "L";
+		}
+
+		if (value instanceof Double) {
+			return "D";
+		}
+
+		if (value instanceof Float) {
+			return "F";
+		}
+
+		return "S";
+	}
+
+	private static Object decodeValue(final String type, final String source) {
+
+		switch (type) {
+
+			case "I": return Integer.valueOf(source);
+			case "L": return Long.valueOf(source);
+			case "D": return Double.valueOf(source);
+			case "F": return Float.valueOf(source);
+			case "N": return null;
+		}
+
+		return source;
+	}
+}
@@ -33,6 +33,7 @@ import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import org.apache.commons.lang3.StringUtils;
+import org.neo4j.graphdb.Node;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.auth.Authenticator;
@@ -40,6 +41,7 @@ import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.SuperUser;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.VisibilityCache;
 import org.structr.schema.SchemaHelper;
 
 //~--- classes ----------------------------------------------------------------
@@ -66,6 +68,7 @@ public class SecurityContext {
 	private Principal cachedUser           = null;
 	private HttpServletRequest request     = null;
 	private Set<String> customView         = null;
+	private CountMode countMode            = CountMode.Default;
 
 	//~--- constructors ---------------------------------------------------
 
@@ -448,6 +451,21 @@ public class SecurityContext {
 		return isAllowed(node, Permission.read);
 	}
 
+	/**
+	 * Indicates whether the given database node is readable in this
+	 * security context, without instantiating a structr entity. This
+	 * is the raw equivalent of {@link #isReadable(org.structr.core.graph.NodeInterface, boolean, boolean)}
+	 * and can be used to count results efficiently.
+	 *
+	 * @param node
+	 * @param includeDeletedAndHidden
+	 * @param publicOnly
+	 * @return isReadable
+	 */
+	public boolean isReadable(final Node node, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+		return VisibilityCache.isReadable(this, node, includeDeletedAndHidden, publicOnly);
+	}
+
 	// ----- private methods -----
 	private boolean isVisibleInBackend(AccessControllable node) {
 
@@ -614,6 +632,14 @@ public class SecurityContext {
 		return ranges.get(key);
 	}
 
+	public CountMode getCountMode() {
+		return countMode;
+	}
+
+	public void setCountMode(final CountMode countMode) {
+		this.countMode = countMode;
+	}
+
 	// ----- nested classes -----
 	private static class SuperUserSecurityContext extends SecurityContext {
 
@@ -653,6 +679,12 @@ public class SecurityContext {
 			return true;
 		}
 
+		@Override
+		public boolean isReadable(final Node node, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+
+			return true;
+		}
+
 		@Override
 		public boolean isAllowed(AccessControllable node, Permission permission) {
 
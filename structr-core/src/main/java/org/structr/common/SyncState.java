@@ -19,16 +19,33 @@
 package org.structr.common;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.neo4j.graphdb.PropertyContainer;
+import org.structr.core.GraphObject;
 
 /**
+ * The sync state of a set of {@link Syncable} objects, i.e. the manifest
+ * that two instances exchange before a transmission. Each entry contains
+ * the id and the content hash of an object, and the size and chunk hashes
+ * of files, so that only changed objects and file chunks are transmitted.
  *
  * @author Christian Morgner
  */
 public class SyncState {
 
-	private final Set<Flag> flags = EnumSet.noneOf(Flag.class);
+	// properties that are maintained by each instance and not part of the version of an object
+	private static final Set<String> unversionedKeys = new TreeSet<>(Arrays.asList(
+		GraphObject.createdDate.dbName(), GraphObject.lastModifiedDate.dbName(), "createdBy"
+	));
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	private final Set<Flag> flags            = EnumSet.noneOf(Flag.class);
 
 	public enum Flag {
 
@@ -53,6 +70,95 @@ public class SyncState {
 		return flags.containsAll(Arrays.asList(hasFlags));
 	}
 
+	/**
+	 * Adds an entry for the given syncable to this sync state.
+	 *
+	 * @param syncable
+	 * @return the new entry
+	 */
+	public Entry add(final Syncable syncable) {
+		return add(new Entry(syncable.getUuid(), getHash(syncable)));
+	}
+
+	public Entry add(final Entry entry) {
+
+		entries.put(entry.getId(), entry);
+		return entry;
+	}
+
+	/**
+	 * @param id
+	 * @return the entry for the given id, or null
+	 */
+	public Entry get(final String id) {
+		return entries.get(id);
+	}
+
+	public Collection<Entry> getEntries() {
+		return entries.values();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the content hash of the given syncable, which changes with
+	 * every modification of its properties.
+	 *
+	 * @param syncable
+	 * @return the hash
+	 */
+	public static String getHash(final Syncable syncable) {
+
+		if (syncable.isNode()) {
+			return getHash(syncable.getSyncNode().getNode());
+		}
+
+		return getHash(syncable.getSyncRelationship().getRelationship());
+	}
+
+	/**
+	 * Returns the content hash of the given database entity. The hash is
+	 * computed over the sorted property keys and values.
+	 *
+	 * @param propertyContainer
+	 * @return the hash
+	 */
+	public static String getHash(final PropertyContainer propertyContainer) {
+
+		final Set<String> keys     = new TreeSet<>();
+		final StringBuilder buffer = new StringBuilder();
+
+		for (final String key : propertyContainer.getPropertyKeys()) {
+
+			if (!unversionedKeys.contains(key)) {
+				keys.add(key);
+			}
+		}
+
+		for (final String key : keys) {
+
+			final Object value = propertyContainer.getProperty(key);
+
+			buffer.append(key).append('=');
+
+			if (value != null && value.getClass().isArray()) {
+
+				buffer.append(value.getClass().getComponentType().getName());
+				buffer.append(Arrays.deepToString(new Object[] { value }));
+
+			} else {
+
+				buffer.append(value);
+			}
+
+			buffer.append('\n');
+		}
+
+		return DigestUtils.md5Hex(buffer.toString());
+	}
+
 	/**
 	 * @return a SyncState instance with all possible flags
 	 */
@@ -115,4 +221,69 @@ public class SyncState {
 
 		return syncState;
 	}
+
+	// ----- nested classes -----
+	/**
+	 * The version of a single object. Files have a size, a checksum and the
+	 * hashes of their chunks in addition to the hash of their properties.
+	 */
+	public static class Entry {
+
+		private String[] chunkHashes = null;
+		private Long checksum        = null;
+		private String id            = null;
+		private String hash          = null;
+		private long size            = -1;
+
+		public Entry(final String id, final String hash) {
+
+			this.id   = id;
+			this.hash = hash;
+		}
+
+		public Entry(final String id, final String hash, final long size, final String[] chunkHashes) {
+
+			this(id, hash);
+
+			this.size        = size;
+			this.chunkHashes = chunkHashes;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public String[] getChunkHashes() {
+			return chunkHashes;
+		}
+
+		/**
+		 * @return the CRC32 checksum of the file content, or null
+		 */
+		public Long getChecksum() {
+			return checksum;
+		}
+
+		public void setChecksum(final Long checksum) {
+			this.checksum = checksum;
+		}
+
+		public boolean hasChunks() {
+			return chunkHashes != null;
+		}
+
+		public void setChunks(final long size, final String[] chunkHashes) {
+
+			this.size        = size;
+			this.chunkHashes = chunkHashes;
+		}
+	}
 }
@@ -36,6 +36,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 
@@ -507,10 +508,25 @@ public class ValidationHelper {
 		return false;
 	}
 	
+	/**
+	 * Checks whether the value for the given property key of the given
+	 * object is unique. Inside of a transaction, the check is deferred to
+	 * the commit, where all values of the transaction are checked at once.
+	 *
+	 * @param object the object
+	 * @param key the property key whose value should be checked
+	 * @param errorBuffer the error buffer
+	 *
+	 * @return true if there is an error checking the given object
+	 */
 	public static boolean checkPropertyUniquenessError(final GraphObject object, final PropertyKey key, final ErrorBuffer errorBuffer) {
 
 		if (key != null) {
 
+			if (TransactionCommand.deferUniquenessCheck(object, key)) {
+				return false;
+			}
+
 			final Object value         = object.getProperty(key);
 			Result<GraphObject> result = null;
 			boolean exists             = false;
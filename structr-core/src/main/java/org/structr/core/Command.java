@@ -18,6 +18,7 @@
  */
 package org.structr.core;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import org.structr.common.SecurityContext;
@@ -40,11 +41,10 @@ import org.structr.common.SecurityContext;
 public abstract class Command {
 
 	protected SecurityContext securityContext = null;
-	protected Map<String, Object> arguments = null;
+	protected Map<String, Object> arguments = Collections.emptyMap();
 	protected Command.Status status = null;
 	protected Command.ExitCode exitCode = null;
-	private final static String EXIT_CODE = "exitCode";
-	private Map<String, Object> exitStatus;
+	private boolean sharedArguments = true;
 
 	public enum Status {
 
@@ -56,17 +56,9 @@ public abstract class Command {
 		UNKNOWN, SUCCESS, FAILURE
 	}
 
-	public Command() {
-
-		this.arguments = new HashMap<>();
-		this.exitStatus = new HashMap<>();
-
-		// Set default
-		exitStatus.put(EXIT_CODE, exitCode.UNKNOWN);
-	}
-
 	/**
 	 * Returns the service class this command belongs to. Implement this method in an abstrac base class and derive all you service commands from this class.
+	 * The service class is determined once per command class, so all instances of a command class must return the same service class.
 	 *
 	 * @return the service this command belongs to
 	 */
@@ -80,10 +72,31 @@ public abstract class Command {
 	 */
 	public final void setArgument(String key, Object value) {
 		if (key != null && value != null) {
+
+			// copy shared arguments on first write
+			if (sharedArguments) {
+
+				this.arguments = new HashMap<>(arguments);
+				this.sharedArguments = false;
+			}
+
 			this.arguments.put(key, value);
 		}
 	}
 
+	/**
+	 * Sets the immutable arguments of the service this command belongs to.
+	 * The map is shared by all commands of that service and copied only
+	 * when an argument is set.
+	 *
+	 * @param arguments the shared arguments
+	 */
+	final void setSharedArguments(final Map<String, Object> arguments) {
+
+		this.arguments = arguments;
+		this.sharedArguments = true;
+	}
+
 	/**
 	 * Returns a previously set argument for this command.
 	 *
@@ -21,8 +21,10 @@ package org.structr.core;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -80,6 +82,7 @@ public class Services {
 	public static final String NEO4J_SHELL_PORT              = "neo4j.shell.port";
 	public static final String LOG_SERVICE_INTERVAL          = "structr.logging.interval";
 	public static final String LOG_SERVICE_THRESHOLD         = "structr.logging.threshold";
+	public static final String SEARCH_SCHEMA_INDEXES         = "search.schemaindexes";
 	public static final String SERVER_IP                     = "server.ip";
 	public static final String SMTP_HOST                     = "smtp.host";
 	public static final String SMTP_PORT                     = "smtp.port";
@@ -103,15 +106,17 @@ public class Services {
 	private static Services singletonInstance = null;
 
 	// non-static members
-	private final Map<String, Object> attributes       = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Map<Class, Service> serviceCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Set<Class> registeredServiceClasses  = new LinkedHashSet<>();
-	private final Set<String> configuredServiceClasses = new LinkedHashSet<>();
-	private StructrConf structrConf                    = new StructrConf();
-	private ConfigurationProvider configuration        = null;
-	private boolean initializationDone                 = false;
-	private String configuredServiceNames              = null;
-	private String configurationClass                  = null;
+	private final Map<String, Object> attributes                = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Class, Service> serviceCache              = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Class, CommandFactory> commandFactories   = new ConcurrentHashMap<>(100, 0.9f, 8);
+	private final Map<Class, ServiceArguments> serviceArguments = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Set<Class> registeredServiceClasses           = new LinkedHashSet<>();
+	private final Set<String> configuredServiceClasses          = new LinkedHashSet<>();
+	private StructrConf structrConf                             = new StructrConf();
+	private ConfigurationProvider configuration                 = null;
+	private boolean initializationDone                          = false;
+	private String configuredServiceNames                       = null;
+	private String configurationClass                           = null;
 
 	private Services() { }
 
@@ -148,17 +153,18 @@ public class Services {
 	 */
 	public <T extends Command> T command(SecurityContext securityContext, Class<T> commandType) {
 
-		Class serviceClass = null;
-		T command          = null;
+		T command = null;
 
 		try {
 
-			command = commandType.newInstance();
+			final CommandFactory<T> factory = getCommandFactory(commandType);
+
+			command = factory.newInstance();
 			command.setSecurityContext(securityContext);
 
-			serviceClass = command.getServiceClass();
+			if (factory.isConfigured()) {
 
-			if ((serviceClass != null) && configuredServiceClasses.contains(serviceClass.getSimpleName())) {
+				final Class serviceClass = factory.getServiceClass();
 
 				// search for already running service..
 				Service service = serviceCache.get(serviceClass);
@@ -185,7 +191,7 @@ public class Services {
 				}
 
 				logger.log(Level.FINEST, "Initializing command ", commandType.getName());
-				service.injectArguments(command);
+				command.setSharedArguments(getServiceArguments(service));
 			}
 
 		} catch (Throwable t) {
@@ -349,6 +355,8 @@ public class Services {
 		}
 
 		serviceCache.clear();
+		serviceArguments.clear();
+		commandFactories.clear();
 
 		// shut down configuration provider
 		configuration.shutdown();
@@ -458,6 +466,61 @@ public class Services {
 		attributes.remove(name);
 	}
 
+	/**
+	 * Returns the factory for commands of the given type, creating and
+	 * caching it on first use. The factory holds the accessible
+	 * constructor of the command class and the service class it belongs
+	 * to, so that these need not be looked up for every command.
+	 *
+	 * @param commandType
+	 * @return the command factory
+	 */
+	private <T extends Command> CommandFactory<T> getCommandFactory(final Class<T> commandType) throws ReflectiveOperationException {
+
+		CommandFactory<T> factory = commandFactories.get(commandType);
+		if (factory == null) {
+
+			final Constructor<T> constructor = commandType.getDeclaredConstructor();
+			constructor.setAccessible(true);
+
+			final Class serviceClass = constructor.newInstance().getServiceClass();
+			final boolean configured = serviceClass != null && configuredServiceClasses.contains(serviceClass.getSimpleName());
+
+			factory = new CommandFactory<>(constructor, serviceClass, configured);
+
+			commandFactories.put(commandType, factory);
+		}
+
+		return factory;
+	}
+
+	/**
+	 * Returns the arguments the given service injects into its commands.
+	 * The arguments are collected once per service instance and shared
+	 * by all commands as an immutable map.
+	 *
+	 * @param service
+	 * @return the immutable service arguments
+	 */
+	private Map<String, Object> getServiceArguments(final Service service) {
+
+		final Class serviceClass = service.getClass();
+
+		ServiceArguments arguments = serviceArguments.get(serviceClass);
+		if (arguments == null || arguments.service != service) {
+
+			final ArgumentCollector collector = new ArgumentCollector();
+
+			service.injectArguments(collector);
+
+			arguments = new ServiceArguments(service, Collections.unmodifiableMap(collector.arguments));
+
+			serviceArguments.put(serviceClass, arguments);
+		}
+
+		return arguments.arguments;
+	}
+
 	private Service createService(Class serviceClass) throws InstantiationException, IllegalAccessException {
 
 		logger.log(Level.FINE, "Creating service ", serviceClass.getName());
@@ -742,4 +805,54 @@ public class Services {
 	}
 
 
+
+	// ----- nested classes -----
+	private static class CommandFactory<T extends Command> {
+
+		private Constructor<T> constructor = null;
+		private Class serviceClass         = null;
+		private boolean configured         = false;
+
+		public CommandFactory(final Constructor<T> constructor, final Class serviceClass, final boolean configured) {
+
+			this.constructor  = constructor;
+			this.serviceClass = serviceClass;
+			this.configured   = configured;
+		}
+
+		public T newInstance() throws ReflectiveOperationException {
+			return constructor.newInstance();
+		}
+
+		public Class getServiceClass() {
+			return serviceClass;
+		}
+
+		public boolean isConfigured() {
+			return configured;
+		}
+	}
+
+	private static class ServiceArguments {
+
+		private Service service               = null;
+		private Map<String, Object> arguments = null;
+
+		public ServiceArguments(final Service service, final Map<String, Object> arguments) {
+
+			this.service   = service;
+			this.arguments = arguments;
+		}
+	}
+
+	/**
+	 * Records the arguments a service injects into a command.
+	 */
+	private static class ArgumentCollector extends Command {
+
+		@Override
+		public Class getServiceClass() {
+			return null;
+		}
+	}
 }
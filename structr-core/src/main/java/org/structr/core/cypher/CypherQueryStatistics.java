@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.cypher;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution statistics of a single normalized Cypher query.
+ */
+public class CypherQueryStatistics {
+
+	private static final ConcurrentHashMap<String, CypherQueryStatistics> statistics = new ConcurrentHashMap<>();
+	private static final int MAX_QUERIES                                             = 1000;
+
+	private final AtomicLong executionCount = new AtomicLong(0);
+	private final AtomicLong executionNanos = new AtomicLong(0);
+	private final AtomicLong mappingNanos   = new AtomicLong(0);
+	private final AtomicLong maxNanos       = new AtomicLong(0);
+	private final AtomicLong rowCount       = new AtomicLong(0);
+	private String query                    = null;
+
+	private CypherQueryStatistics(final String query) {
+		this.query = query;
+	}
+
+	/**
+	 * Returns the statistics for the given normalized query.
+	 *
+	 * @param query
+	 * @return the statistics, or null if the maximum number of tracked queries is reached
+	 */
+	public static CypherQueryStatistics forQuery(final String query) {
+
+		CypherQueryStatistics stats = statistics.get(query);
+		if (stats == null && statistics.size() < MAX_QUERIES) {
+
+			stats = new CypherQueryStatistics(query);
+
+			final CypherQueryStatistics existing = statistics.putIfAbsent(query, stats);
+			if (existing != null) {
+
+				stats = existing;
+			}
+		}
+
+		return stats;
+	}
+
+	/**
+	 * @return the statistics of all tracked queries, keyed by normalized query string
+	 */
+	public static Map<String, CypherQueryStatistics> getStatistics() {
+		return Collections.unmodifiableMap(statistics);
+	}
+
+	public static void clear() {
+		statistics.clear();
+	}
+
+	public void record(final long executionTime, final long mappingTime, final long rows) {
+
+		final long total = executionTime + mappingTime;
+
+		executionCount.incrementAndGet();
+		executionNanos.addAndGet(executionTime);
+		mappingNanos.addAndGet(mappingTime);
+		rowCount.addAndGet(rows);
+
+		long max = maxNanos.get();
+		while (total > max && !maxNanos.compareAndSet(max, total)) {
+			max = maxNanos.get();
+		}
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	public long getExecutionCount() {
+		return executionCount.get();
+	}
+
+	public long getRowCount() {
+		return rowCount.get();
+	}
+
+	/**
+	 * @return the total time spent in the Cypher engine, in milliseconds
+	 */
+	public double getExecutionTime() {
+		return executionNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * @return the total time spent mapping rows to graph objects, in milliseconds
+	 */
+	public double getMappingTime() {
+		return mappingNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * @return the maximum time of a single query, in milliseconds
+	 */
+	public double getMaxTime() {
+		return maxNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * @return the average time of a single query, in milliseconds
+	 */
+	public double getAverageTime() {
+
+		final long count = executionCount.get();
+		if (count > 0) {
+
+			return (executionNanos.get() + mappingNanos.get()) / (count * 1000000.0);
+		}
+
+		return 0.0;
+	}
+
+	@Override
+	public String toString() {
+		return query + ": " + getExecutionCount() + " executions, " + getRowCount() + " rows, avg " + getAverageTime() + " ms, max " + getMaxTime() + " ms";
+	}
+}
@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.cypher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Cypher query with all literal values replaced by parameters.
+ *
+ * Queries that only differ in their literal values (e.g. because a UUID
+ * was concatenated into the query string) share the same normalized
+ * query string, so the execution plan that the Cypher engine caches for
+ * that string can be reused.
+ *
+ * Literals in the RETURN clause are left untouched because they determine
+ * the column names of the result, as well as numbers in variable length
+ * relationship patterns, which cannot be parameterized.
+ */
+public class NormalizedCypherQuery {
+
+	private static final Map<String, NormalizedCypherQuery> cache = new LruMap(1000);
+	private static final String PARAMETER_PREFIX                  = "structrLiteral";
+
+	private final List<Object> values = new ArrayList<>();
+	private boolean disabled          = false;
+	private String query              = null;
+
+	private NormalizedCypherQuery() {}
+
+	/**
+	 * Returns the normalized form of the given query. Results are cached
+	 * by query string.
+	 *
+	 * @param query
+	 * @return the normalized query
+	 */
+	public static NormalizedCypherQuery normalize(final String query) {
+
+		NormalizedCypherQuery normalized = null;
+
+		synchronized (cache) {
+			normalized = cache.get(query);
+		}
+
+		if (normalized == null) {
+
+			normalized = new NormalizedCypherQuery();
+			normalized.parse(query);
+
+			synchronized (cache) {
+				cache.put(query, normalized);
+			}
+		}
+
+		return normalized;
+	}
+
+	/**
+	 * @return the normalized query string
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return whether literals were extracted from the original query
+	 */
+	public boolean isParameterized() {
+		return !disabled && !values.isEmpty();
+	}
+
+	/**
+	 * Marks this query as not parameterizable, e.g. because the Cypher
+	 * engine rejected the normalized query.
+	 */
+	public void disable() {
+		this.disabled = true;
+	}
+
+	/**
+	 * Returns the parameter map for this query, consisting of the given
+	 * parameters and the extracted literal values.
+	 *
+	 * @param parameters the parameters of the original query, may be null
+	 * @return the parameters or null if there are none
+	 */
+	public Map<String, Object> getParameters(final Map<String, Object> parameters) {
+
+		if (values.isEmpty()) {
+			return parameters;
+		}
+
+		final Map<String, Object> merged = new LinkedHashMap<>();
+		final int size                   = values.size();
+
+		if (parameters != null) {
+			merged.putAll(parameters);
+		}
+
+		for (int i=0; i<size; i++) {
+			merged.put(PARAMETER_PREFIX + i, values.get(i));
+		}
+
+		return merged;
+	}
+
+	// ----- private methods -----
+	private void parse(final String source) {
+
+		final StringBuilder buf = new StringBuilder(source.length());
+		final int length        = source.length();
+		boolean inReturnClause  = false;
+		int pos                 = 0;
+
+		while (pos < length) {
+
+			final char c = source.charAt(pos);
+
+			if (c == '\'' || c == '"') {
+
+				final int end = findStringEnd(source, pos);
+				if (end < 0 || inReturnClause) {
+
+					// unterminated string or column name, copy verbatim
+					final int copyEnd = end < 0 ? length : end + 1;
+
+					buf.append(source, pos, copyEnd);
+					pos = copyEnd;
+
+				} else {
+
+					appendParameter(buf, unescape(source.substring(pos + 1, end)));
+					pos = end + 1;
+				}
+
+			} else if (c == '`') {
+
+				// quoted identifier
+				final int end     = source.indexOf('`', pos + 1);
+				final int copyEnd = end < 0 ? length : end + 1;
+
+				buf.append(source, pos, copyEnd);
+				pos = copyEnd;
+
+			} else if (c == '{') {
+
+				// existing parameter reference, e.g. {id} or {0}
+				final int end = findParameterEnd(source, pos);
+				if (end > 0) {
+
+					buf.append(source, pos, end + 1);
+					pos = end + 1;
+
+				} else {
+
+					buf.append(c);
+					pos++;
+				}
+
+			} else if (c == '*') {
+
+				// variable length relationship, e.g. [:REL*1..3]
+				int end = pos + 1;
+				while (end < length && (Character.isDigit(source.charAt(end)) || source.charAt(end) == '.' || Character.isWhitespace(source.charAt(end)))) {
+					end++;
+				}
+
+				buf.append(source, pos, end);
+				pos = end;
+
+			} else if (Character.isDigit(c) && !isIdentifierPart(buf)) {
+
+				int end = pos;
+				while (end < length && (Character.isLetterOrDigit(source.charAt(end)) || isDecimalPoint(source, end) || isExponentSign(source, end))) {
+					end++;
+				}
+
+				final Object number = parseNumber(source.substring(pos, end));
+				if (number == null || inReturnClause) {
+
+					buf.append(source, pos, end);
+
+				} else {
+
+					appendParameter(buf, number);
+				}
+
+				pos = end;
+
+			} else if (Character.isLetter(c) && !isIdentifierPart(buf)) {
+
+				int end = pos;
+				while (end < length && (Character.isLetterOrDigit(source.charAt(end)) || source.charAt(end) == '_')) {
+					end++;
+				}
+
+				final String word = source.substring(pos, end);
+
+				if ("RETURN".equalsIgnoreCase(word)) {
+
+					inReturnClause = true;
+
+				} else if ("ORDER".equalsIgnoreCase(word) || "SKIP".equalsIgnoreCase(word) || "LIMIT".equalsIgnoreCase(word) || "UNION".equalsIgnoreCase(word)) {
+
+					inReturnClause = false;
+				}
+
+				buf.append(word);
+				pos = end;
+
+			} else {
+
+				buf.append(c);
+				pos++;
+			}
+		}
+
+		this.query = buf.toString();
+	}
+
+	private void appendParameter(final StringBuilder buf, final Object value) {
+
+		buf.append("{").append(PARAMETER_PREFIX).append(values.size()).append("}");
+		values.add(value);
+	}
+
+	private static int findStringEnd(final String source, final int start) {
+
+		final char quote = source.charAt(start);
+		final int length = source.length();
+
+		for (int i=start+1; i<length; i++) {
+
+			final char c = source.charAt(i);
+
+			if (c == '\\') {
+
+				i++;
+
+			} else if (c == quote) {
+
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int findParameterEnd(final String source, final int start) {
+
+		final int length = source.length();
+
+		for (int i=start+1; i<length; i++) {
+
+			final char c = source.charAt(i);
+
+			if (c == '}') {
+				return i > start + 1 ? i : -1;
+			}
+
+			if (!Character.isLetterOrDigit(c) && c != '_') {
+				return -1;
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean isIdentifierPart(final StringBuilder buf) {
+
+		if (buf.length() == 0) {
+			return false;
+		}
+
+		final char last = buf.charAt(buf.length() - 1);
+
+		return Character.isLetterOrDigit(last) || last == '_' || last == '.' || last == '}';
+	}
+
+	private static boolean isDecimalPoint(final String source, final int pos) {
+
+		// a single dot followed by a digit, not a range operator
+		return source.charAt(pos) == '.' && pos + 1 < source.length() && Character.isDigit(source.charAt(pos + 1));
+	}
+
+	private static boolean isExponentSign(final String source, final int pos) {
+
+		final char c = source.charAt(pos);
+
+		return (c == '-' || c == '+') && pos > 0 && (source.charAt(pos - 1) == 'e' || source.charAt(pos - 1) == 'E');
+	}
+
+	private static Object parseNumber(final String source) {
+
+		try {
+
+			if (source.contains(".") || source.contains("e") || source.contains("E")) {
+
+				return Double.valueOf(source);
+			}
+
+			return Long.valueOf(source);
+
+		} catch (NumberFormatException nex) {}
+
+		return null;
+	}
+
+	private static String unescape(final String source) {
+
+		if (source.indexOf('\\') < 0) {
+			return source;
+		}
+
+		final StringBuilder buf = new StringBuilder(source.length());
+		final int length        = source.length();
+
+		for (int i=0; i<length; i++) {
+
+			final char c = source.charAt(i);
+
+			if (c == '\\' && i + 1 < length) {
+
+				final char next = source.charAt(++i);
+
+				switch (next) {
+
+					case 'n': buf.append('\n'); break;
+					case 't': buf.append('\t'); break;
+					case 'r': buf.append('\r'); break;
+					case 'b': buf.append('\b'); break;
+					case 'f': buf.append('\f'); break;
+					default:  buf.append(next); break;
+				}
+
+			} else {
+
+				buf.append(c);
+			}
+		}
+
+		return buf.toString();
+	}
+
+	// ----- nested classes -----
+	private static class LruMap extends LinkedHashMap<String, NormalizedCypherQuery> {
+
+		private int maxSize = 0;
+
+		public LruMap(final int maxSize) {
+
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, NormalizedCypherQuery> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
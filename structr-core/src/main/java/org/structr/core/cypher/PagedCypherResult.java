@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.cypher;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterator;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipFactory;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.property.GenericProperty;
+
+/**
+ * A lazily mapped Cypher query result. Rows are converted into graph
+ * objects while iterating, so only the objects of the requested page are
+ * instantiated. Nodes before the requested page are checked for
+ * visibility on the raw database node.
+ *
+ * Every node and relationship column of a row yields a graph object, all
+ * scalar columns of a row are combined into a single {@link GraphObjectMap}.
+ *
+ * The result can only be iterated once, and must be iterated inside the
+ * transaction that executed the query.
+ */
+public class PagedCypherResult implements Iterable<GraphObject> {
+
+	private static final Logger logger = Logger.getLogger(PagedCypherResult.class.getName());
+
+	private ResourceIterator<Map<String, Object>> rows = null;
+	private SecurityContext securityContext            = null;
+	private CypherQueryStatistics statistics           = null;
+	private boolean includeHiddenAndDeleted            = false;
+	private boolean publicOnly                         = false;
+	private long executionTime                         = 0L;
+	private int pageSize                               = Integer.MAX_VALUE;
+	private int page                                   = 1;
+
+	public PagedCypherResult(final SecurityContext securityContext, final ResourceIterator<Map<String, Object>> rows, final boolean includeHiddenAndDeleted, final boolean publicOnly) {
+
+		this.securityContext         = securityContext;
+		this.rows                    = rows;
+		this.includeHiddenAndDeleted = includeHiddenAndDeleted;
+		this.publicOnly              = publicOnly;
+	}
+
+	/**
+	 * Restricts this result to the given page.
+	 *
+	 * @param pageSize
+	 * @param page the page, starting with 1
+	 * @return this result
+	 */
+	public PagedCypherResult page(final int pageSize, final int page) {
+
+		this.pageSize = pageSize > 0 ? pageSize : Integer.MAX_VALUE;
+		this.page     = page > 0 ? page : 1;
+
+		return this;
+	}
+
+	/**
+	 * Sets the statistics the execution and mapping time of this result
+	 * are recorded in, once the result has been consumed.
+	 *
+	 * @param statistics
+	 * @param executionTime the time spent executing the query, in nanoseconds
+	 * @return this result
+	 */
+	public PagedCypherResult statistics(final CypherQueryStatistics statistics, final long executionTime) {
+
+		this.statistics    = statistics;
+		this.executionTime = executionTime;
+
+		return this;
+	}
+
+	/**
+	 * Consumes this result.
+	 *
+	 * @return a list containing the objects of the requested page
+	 */
+	public List<GraphObject> toList() {
+
+		final List<GraphObject> list = new LinkedList<>();
+
+		for (final GraphObject obj : this) {
+			list.add(obj);
+		}
+
+		return list;
+	}
+
+	@Override
+	public Iterator<GraphObject> iterator() {
+		return new MappingIterator();
+	}
+
+	// ----- nested classes -----
+	private class MappingIterator implements Iterator<GraphObject> {
+
+		private final NodeFactory nodeFactory         = new NodeFactory(securityContext);
+		private final RelationshipFactory relFactory  = new RelationshipFactory(securityContext);
+		private final LinkedList<GraphObject> pending = new LinkedList<>();
+		private long skip                             = 0L;
+		private long remaining                        = 0L;
+		private long mappingTime                      = 0L;
+		private long rowCount                         = 0L;
+		private boolean finished                      = false;
+
+		public MappingIterator() {
+
+			this.skip      = (long)(page - 1) * (long)pageSize;
+			this.remaining = pageSize;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			if (remaining <= 0) {
+
+				finish();
+				return false;
+			}
+
+			final long t0 = System.nanoTime();
+
+			while (pending.isEmpty() && rows.hasNext()) {
+
+				mapRow(rows.next());
+			}
+
+			mappingTime += System.nanoTime() - t0;
+
+			if (pending.isEmpty()) {
+
+				finish();
+				return false;
+			}
+
+			return true;
+		}
+
+		@Override
+		public GraphObject next() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			remaining--;
+
+			return pending.removeFirst();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Removal not supported.");
+		}
+
+		// ----- private methods -----
+		private void mapRow(final Map<String, Object> row) {
+
+			GraphObjectMap dummyObject = null;
+
+			rowCount++;
+
+			for (Entry<String, Object> entry : row.entrySet()) {
+
+				final String key   = entry.getKey();
+				final Object value = entry.getValue();
+
+				try {
+
+					if (value instanceof Node) {
+
+						final Node node = (Node)value;
+
+						if (skip > 0) {
+
+							// objects before the requested page are not instantiated
+							if (securityContext.isReadable(node, includeHiddenAndDeleted, publicOnly)) {
+								skip--;
+							}
+
+						} else {
+
+							final NodeInterface obj = nodeFactory.instantiate(node, includeHiddenAndDeleted, publicOnly);
+							if (obj != null) {
+
+								pending.add(obj);
+							}
+						}
+
+					} else if (value instanceof Relationship) {
+
+						final RelationshipInterface rel = relFactory.instantiate((Relationship)value);
+						if (rel != null) {
+
+							if (skip > 0) {
+
+								skip--;
+
+							} else {
+
+								pending.add(rel);
+							}
+						}
+
+					} else {
+
+						if (dummyObject == null) {
+
+							dummyObject = new GraphObjectMap();
+
+							if (skip > 0) {
+
+								skip--;
+
+							} else {
+
+								pending.add(dummyObject);
+							}
+						}
+
+						dummyObject.setProperty(new GenericProperty(key), value);
+					}
+
+				} catch (FrameworkException fex) {
+
+					logger.log(Level.WARNING, "Unable to map Cypher result column {0}: {1}", new Object[] { key, fex.getMessage() });
+				}
+			}
+		}
+
+		private void finish() {
+
+			if (!finished) {
+
+				finished = true;
+
+				// release the remaining rows of the query
+				rows.close();
+
+				if (statistics != null) {
+					statistics.record(executionTime, mappingTime, rowCount);
+				}
+			}
+		}
+	}
+}
@@ -18,19 +18,32 @@
  */
 package org.structr.core.entity;
 
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.Function;
 import org.neo4j.helpers.Predicate;
 import org.neo4j.helpers.collection.Iterables;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
+import org.structr.common.error.DuplicateRelationshipToken;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Services;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipFactory;
+import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 
@@ -57,7 +70,156 @@ public abstract class AbstractEndpoint {
 		return Iterables.filter(new OtherNodeTypeFilter(securityContext, dbNode, otherNodeType, predicate), dbNode.getRelationships(direction, relationshipType));
 	}
 
+	/**
+	 * Returns the other nodes of the relationships of the given type and
+	 * direction that are of the given node type, readable in the given
+	 * security context and accepted by the predicate. Other nodes are
+	 * type-checked on the raw node and instantiated only once, in the
+	 * given security context.
+	 *
+	 * @param <T>
+	 * @param securityContext
+	 * @param dbNode
+	 * @param relationshipType
+	 * @param direction
+	 * @param otherNodeType
+	 * @param predicate
+	 * @return the other nodes
+	 */
+	public <T extends NodeInterface> Iterable<T> getMultipleNodes(final SecurityContext securityContext, final Node dbNode, final RelationshipType relationshipType, final Direction direction, final Class otherNodeType, final Predicate<GraphObject> predicate) {
+
+		final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
+
+		return Iterables.filter(new Predicate<T>() {
+
+			@Override
+			public boolean accept(final T item) {
+				return item != null;
+			}
+
+		}, Iterables.map(new Function<Relationship, T>() {
+
+			@Override
+			public T apply(final Relationship from) {
+
+				final Node otherNode = from.getOtherNode(dbNode);
+
+				if (AssignabilityMatrix.isAssignable(otherNodeType, otherNode)) {
+
+					try {
+						final T otherEntity = nodeFactory.instantiate(otherNode);
+
+						if (otherEntity != null && (predicate == null || predicate.accept(otherEntity))) {
+							return otherEntity;
+						}
+
+					} catch (FrameworkException fex) {
+						fex.printStackTrace();
+					}
+				}
+
+				return null;
+			}
+
+		}, dbNode.getRelationships(direction, relationshipType)));
+	}
+
 	// ----- protected methods -----
+	/**
+	 * Replaces the related nodes of the given node with the nodes in the
+	 * given collection. The existing relationships are indexed by the id
+	 * of their other node in a single pass, so that the relationships to
+	 * be deleted and created are found without comparing each new node to
+	 * each existing relationship. All obsolete relationships are deleted
+	 * before the new ones are created.
+	 *
+	 * @param securityContext
+	 * @param node
+	 * @param relation
+	 * @param direction the direction of the relationships, seen from the given node
+	 * @param otherNodeType
+	 * @param collection
+	 * @throws FrameworkException
+	 */
+	protected void setMultiple(final SecurityContext securityContext, final NodeInterface node, final Relation relation, final Direction direction, final Class otherNodeType, final Iterable<? extends NodeInterface> collection) throws FrameworkException {
+
+		final ExistingRelationships existing       = new ExistingRelationships(securityContext, node.getNode(), relation, direction, otherNodeType);
+		final Map<Long, NodeInterface> toBeCreated = new LinkedHashMap<>();
+		final List<Relationship> toBeDeleted       = new LinkedList<>();
+
+		if (collection != null) {
+
+			for (final NodeInterface otherNode : collection) {
+
+				if (otherNode != null) {
+					toBeCreated.put(otherNode.getId(), otherNode);
+				}
+			}
+		}
+
+		for (final Map.Entry<Long, List<Relationship>> entry : existing.getVisible().entrySet()) {
+
+			// relationships to nodes that are in the new collection need no change
+			if (toBeCreated.remove(entry.getKey()) == null) {
+				toBeDeleted.addAll(entry.getValue());
+			}
+		}
+
+		deleteRelationships(securityContext, toBeDeleted);
+
+		for (final NodeInterface otherNode : toBeCreated.values()) {
+			createRelationship(securityContext, node, otherNode, relation, direction, existing);
+		}
+	}
+
+	/**
+	 * Adds a single node to the related nodes of the given node, if it is
+	 * not already related.
+	 *
+	 * @param securityContext
+	 * @param node
+	 * @param relation
+	 * @param direction the direction of the relationships, seen from the given node
+	 * @param otherNodeType
+	 * @param otherNode
+	 * @throws FrameworkException
+	 */
+	protected void addSingle(final SecurityContext securityContext, final NodeInterface node, final Relation relation, final Direction direction, final Class otherNodeType, final NodeInterface otherNode) throws FrameworkException {
+
+		if (otherNode != null) {
+
+			final ExistingRelationships existing = new ExistingRelationships(securityContext, node.getNode(), relation, direction, otherNodeType);
+
+			if (!existing.getVisible().containsKey(otherNode.getId())) {
+				createRelationship(securityContext, node, otherNode, relation, direction, existing);
+			}
+		}
+	}
+
+	/**
+	 * Removes a single node from the related nodes of the given node.
+	 *
+	 * @param securityContext
+	 * @param node
+	 * @param relation
+	 * @param direction the direction of the relationships, seen from the given node
+	 * @param otherNodeType
+	 * @param otherNode
+	 * @throws FrameworkException
+	 */
+	protected void removeSingle(final SecurityContext securityContext, final NodeInterface node, final Relation relation, final Direction direction, final Class otherNodeType, final NodeInterface otherNode) throws FrameworkException {
+
+		if (otherNode != null) {
+
+			final ExistingRelationships existing = new ExistingRelationships(securityContext, node.getNode(), relation, direction, otherNodeType);
+			final List<Relationship> toBeDeleted = existing.getVisible().get(otherNode.getId());
+
+			if (toBeDeleted != null) {
+				deleteRelationships(securityContext, toBeDeleted);
+			}
+		}
+	}
+
 	/**
 	 * Loads a PropertyMap from the current security context that was previously stored
 	 * there by one of the Notions that was executed before this relationship creation.
@@ -91,4 +253,85 @@ public abstract class AbstractEndpoint {
 
 		return null;
 	}
+
+	// ----- private methods -----
+	private void createRelationship(final SecurityContext securityContext, final NodeInterface node, final NodeInterface otherNode, final Relation relation, final Direction direction, final ExistingRelationships existing) throws FrameworkException {
+
+		final NodeInterface sourceNode = Direction.OUTGOING.equals(direction) ? node : otherNode;
+		final NodeInterface targetNode = Direction.OUTGOING.equals(direction) ? otherNode : node;
+
+		if (relation instanceof ManyToMany) {
+
+			// the duplicate check of ManyToMany would iterate all relationships
+			// of the source node again, the existing relationships are known
+			if (existing.contains(otherNode.getId())) {
+				throw new FrameworkException(relation.getClass().getSimpleName(), new DuplicateRelationshipToken("This relationship already exists"));
+			}
+
+		} else {
+
+			relation.ensureCardinality(securityContext, sourceNode, targetNode);
+		}
+
+		StructrApp.getInstance(securityContext).create(sourceNode, targetNode, relation.getClass(), getNotionProperties(securityContext, relation.getClass(), otherNode.getUuid()));
+	}
+
+	private void deleteRelationships(final SecurityContext securityContext, final List<Relationship> relationships) throws FrameworkException {
+
+		final RelationshipFactory<RelationshipInterface> factory = new RelationshipFactory<>(securityContext);
+		final App app                                            = StructrApp.getInstance(securityContext);
+
+		for (final Relationship relationship : relationships) {
+
+			final RelationshipInterface rel = factory.instantiate(relationship);
+			if (rel != null) {
+
+				app.delete(rel);
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The relationships of a node with a given type and direction, indexed
+	 * by the id of the other node. Relationships to nodes of the desired
+	 * type that are readable in the given security context are visible.
+	 */
+	private static class ExistingRelationships {
+
+		private final Map<Long, List<Relationship>> visible = new LinkedHashMap<>();
+		private final Set<Long> all                         = new HashSet<>();
+
+		public ExistingRelationships(final SecurityContext securityContext, final Node dbNode, final RelationshipType relationshipType, final Direction direction, final Class otherNodeType) {
+
+			final OtherNodeTypeFilter filter = new OtherNodeTypeFilter(securityContext, dbNode, otherNodeType);
+
+			for (final Relationship rel : dbNode.getRelationships(direction, relationshipType)) {
+
+				final long otherNodeId = rel.getOtherNode(dbNode).getId();
+
+				all.add(otherNodeId);
+
+				if (filter.accept(rel)) {
+
+					List<Relationship> rels = visible.get(otherNodeId);
+					if (rels == null) {
+
+						rels = new LinkedList<>();
+						visible.put(otherNodeId, rels);
+					}
+
+					rels.add(rel);
+				}
+			}
+		}
+
+		public Map<Long, List<Relationship>> getVisible() {
+			return visible;
+		}
+
+		public boolean contains(final long otherNodeId) {
+			return all.contains(otherNodeId);
+		}
+	}
 }
@@ -60,6 +60,7 @@ import org.structr.core.graph.NodeService;
 import org.structr.core.graph.RelationshipFactory;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.PropertySnapshot;
 import org.structr.schema.SchemaHelper;
 import org.structr.schema.action.ActionContext;
 
@@ -237,6 +238,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 			}
 
 			dbNode.removeProperty(key.dbName());
+			PropertySnapshot.invalidate(dbNode);
 
 			// remove from index
 			removeFromIndex(key);
@@ -56,6 +56,7 @@ import org.structr.core.property.IntProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.PropertySnapshot;
 import org.structr.core.property.RelationshipTypeProperty;
 import org.structr.core.property.SourceId;
 import org.structr.core.property.TargetId;
@@ -175,6 +176,7 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 	public void removeProperty(final PropertyKey key) throws FrameworkException {
 
 		dbRelationship.removeProperty(key.dbName());
+		PropertySnapshot.invalidate(dbRelationship);
 
 		// remove from index
 		removeFromIndex(key);
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.entity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.neo4j.graphdb.Node;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.property.PropertySnapshot;
+
+/**
+ * Checks the type of database nodes against entity classes without
+ * instantiating the nodes. The type property of a node is read and the
+ * result of the class check is cached for each pair of desired class and
+ * type name. The matrix is cleared when entity types are (re-)registered,
+ * as dynamic types get a new class on every schema change.
+ */
+public class AssignabilityMatrix {
+
+	private static final Map<Class, Map<String, Boolean>> assignable = new ConcurrentHashMap<>();
+	private static final Map<Class, Map<String, Boolean>> related    = new ConcurrentHashMap<>();
+
+	/**
+	 * Indicates whether the entity class of the given node is the desired
+	 * type or one of its subtypes.
+	 *
+	 * @param desiredType
+	 * @param node
+	 * @return whether the node is of the desired type
+	 */
+	public static boolean isAssignable(final Class desiredType, final Node node) {
+
+		final String typeName = getTypeName(node);
+		if (typeName == null) {
+
+			return desiredType.isAssignableFrom(getNodeType(node));
+		}
+
+		final Map<String, Boolean> row = getRow(assignable, desiredType);
+		Boolean value                  = row.get(typeName);
+
+		if (value == null) {
+
+			value = desiredType.isAssignableFrom(getNodeType(node));
+			row.put(typeName, value);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Indicates whether the entity class of the given node and the desired
+	 * type are in the same type hierarchy, i.e. one of them is a subtype of
+	 * the other.
+	 *
+	 * @param desiredType
+	 * @param node
+	 * @return whether the types are related
+	 */
+	public static boolean isRelated(final Class desiredType, final Node node) {
+
+		final String typeName = getTypeName(node);
+		if (typeName == null) {
+
+			return isRelated(desiredType, getNodeType(node));
+		}
+
+		final Map<String, Boolean> row = getRow(related, desiredType);
+		Boolean value                  = row.get(typeName);
+
+		if (value == null) {
+
+			value = isRelated(desiredType, getNodeType(node));
+			row.put(typeName, value);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Clears the matrix.
+	 */
+	public static void clear() {
+
+		assignable.clear();
+		related.clear();
+	}
+
+	// ----- private methods -----
+	private static boolean isRelated(final Class desiredType, final Class nodeType) {
+		return desiredType.isAssignableFrom(nodeType) || nodeType.isAssignableFrom(desiredType);
+	}
+
+	private static Map<String, Boolean> getRow(final Map<Class, Map<String, Boolean>> matrix, final Class desiredType) {
+
+		Map<String, Boolean> row = matrix.get(desiredType);
+		if (row == null) {
+
+			row = new ConcurrentHashMap<>();
+			matrix.put(desiredType, row);
+		}
+
+		return row;
+	}
+
+	private static String getTypeName(final Node node) {
+
+		final Object value = PropertySnapshot.getProperty(node, GraphObject.type.dbName());
+		if (value != null) {
+
+			return value.toString();
+		}
+
+		return null;
+	}
+
+	private static Class getNodeType(final Node node) {
+		return StructrApp.getConfiguration().getFactoryDefinition().determineNodeType(node);
+	}
+}
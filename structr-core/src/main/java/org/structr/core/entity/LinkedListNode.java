@@ -22,6 +22,7 @@ import org.neo4j.graphdb.Node;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.relationship.AbstractChildren;
 import org.structr.core.entity.relationship.AbstractListSiblings;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.PropertyKey;
@@ -188,6 +189,12 @@ public abstract class LinkedListNode<R extends AbstractListSiblings<T, T>, T ext
 	}
 
 	public <R extends Relation<T, T, ?, ?>> void linkNodes(final Class<R> linkType, final T startNode, final T endNode, final PropertyMap properties) throws FrameworkException {
+
+		// new child relationships change the child order of the start node
+		if (AbstractChildren.class.isAssignableFrom(linkType)) {
+			TreeChildCache.invalidate(startNode.getId());
+		}
+
 		StructrApp.getInstance(securityContext).create(startNode, endNode, linkType, properties);
 	}
 
@@ -24,12 +24,17 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.helpers.collection.Iterables;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.relationship.AbstractChildren;
 import org.structr.core.entity.relationship.AbstractListSiblings;
+import org.structr.core.graph.RelationshipFactory;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.PropertyMap;
 
@@ -249,32 +254,31 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 	}
 
 	public int treeGetChildCount() {
-		return (int) Iterables.count(getOutgoingRelationships(getChildLinkType()));
+		return treeGetChildRelationships().size();
 	}
 
+	/**
+	 * Returns the child relationships of this node, ordered by position.
+	 * The order is cached in {@link TreeChildCache}, only the type and
+	 * visibility of the child nodes are checked on every call.
+	 *
+	 * @return a new list of the child relationships
+	 */
 	public List<R> treeGetChildRelationships() {
 
-		// fetch all relationships
-		List<R> childRels = Iterables.toList(getOutgoingRelationships(getChildLinkType()));
-
-		// sort relationships by position
-		Collections.sort(childRels, new Comparator<R>() {
-
-			@Override
-			public int compare(R o1, R o2) {
-
-				Integer pos1 = o1.getProperty(AbstractChildren.position);
-				Integer pos2 = o2.getProperty(AbstractChildren.position);
+		final Class<R> childLinkType         = getChildLinkType();
+		final R template                     = getRelationshipForType(childLinkType);
+		final OtherNodeTypeFilter filter     = new OtherNodeTypeFilter(securityContext, dbNode, template.getTargetType());
+		final RelationshipFactory<R> factory = new RelationshipFactory<>(securityContext);
+		final List<R> childRels              = new ArrayList<>();
 
-				if (pos1 != null && pos2 != null) {
+		for (final Relationship rel : getOrderedChildRelationships(template)) {
 
-					return pos1.compareTo(pos2);
-				}
+			if (filter.accept(rel)) {
 
-				return 0;
+				childRels.add(factory.adapt(rel));
 			}
-
-		});
+		}
 
 		return childRels;
 	}
@@ -298,10 +302,81 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 		}
 	}
 
+	private List<Relationship> getOrderedChildRelationships(final R template) {
+
+		final long nodeId      = dbNode.getId();
+		final long[] cachedIds = TreeChildCache.get(nodeId);
+
+		if (cachedIds != null) {
+
+			final GraphDatabaseService graphDb = dbNode.getGraphDatabase();
+			final List<Relationship> rels      = new ArrayList<>(cachedIds.length);
+
+			try {
+
+				for (final long id : cachedIds) {
+
+					final Relationship rel = graphDb.getRelationshipById(id);
+
+					// ids are reused after deletion, so the id may belong to another relationship by now
+					if (rel.getStartNode().getId() != nodeId || !rel.isType(template)) {
+						break;
+					}
+
+					rels.add(rel);
+				}
+
+				if (rels.size() == cachedIds.length) {
+					return rels;
+				}
+
+			} catch (NotFoundException nfex) {
+
+				// deleted by a transaction that has not yet invalidated the cache
+			}
+		}
+
+		final long generation         = TreeChildCache.getGeneration();
+		final List<Relationship> rels = Iterables.toList(dbNode.getRelationships(Direction.OUTGOING, template));
+		final String positionKey      = AbstractChildren.position.dbName();
+
+		// sort relationships by position
+		Collections.sort(rels, new Comparator<Relationship>() {
+
+			@Override
+			public int compare(Relationship o1, Relationship o2) {
+
+				Object pos1 = o1.getProperty(positionKey, null);
+				Object pos2 = o2.getProperty(positionKey, null);
+
+				if (pos1 instanceof Integer && pos2 instanceof Integer) {
+
+					return ((Integer)pos1).compareTo((Integer)pos2);
+				}
+
+				return 0;
+			}
+
+		});
+
+		final long[] ids = new long[rels.size()];
+		int i            = 0;
+
+		for (final Relationship rel : rels) {
+			ids[i++] = rel.getId();
+		}
+
+		TreeChildCache.put(nodeId, ids, generation);
+
+		return rels;
+	}
+
 	private void unlinkNodes(final Class<R> linkType, final T startNode, final T endNode) throws FrameworkException {
 
 		final App app = StructrApp.getInstance(securityContext);
 
+		TreeChildCache.invalidate(startNode.getId());
+
 		for (RelationshipInterface rel : startNode.getRelationships(linkType)) {
 
 			if (rel != null && rel.getTargetNode().equals(endNode)) {
@@ -322,15 +397,21 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 
 		Set<T> allChildNodes = new HashSet();
 
-		List<T> childNodes = treeGetChildren();
-
-		for (final T child : childNodes) {
-			
-			allChildNodes.add(child);
-			allChildNodes.addAll(child.getAllChildNodes());
-			
-		}
+		collectAllChildNodes(allChildNodes);
 
 		return allChildNodes;
 	}
+
+	private void collectAllChildNodes(final Set<T> allChildNodes) {
+
+		for (final R rel : treeGetChildRelationships()) {
+
+			final T child = rel.getTargetNode();
+
+			// add() returns false for nodes that were already visited
+			if (allChildNodes.add(child)) {
+				((LinkedTreeNode)child).collectAllChildNodes(allChildNodes);
+			}
+		}
+	}
 }
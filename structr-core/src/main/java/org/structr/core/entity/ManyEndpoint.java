@@ -18,20 +18,13 @@
  */
 package org.structr.core.entity;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
-import org.neo4j.helpers.Function;
 import org.neo4j.helpers.Predicate;
-import org.neo4j.helpers.collection.Iterables;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
-import org.structr.core.app.App;
-import org.structr.core.app.StructrApp;
-import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
 
 /**
@@ -48,68 +41,36 @@ public class ManyEndpoint<T extends NodeInterface> extends AbstractEndpoint impl
 
 	@Override
 	public Iterable<T> get(final SecurityContext securityContext, final NodeInterface node, final Predicate<GraphObject> predicate) {
-		
-		final NodeFactory<T> nodeFactory  = new NodeFactory<>(securityContext);
-		final Iterable<Relationship> rels = getRawSource(securityContext, node.getNode(), predicate);
-		
-		if (rels != null) {
-			
-			return Iterables.map(nodeFactory, Iterables.map(new Function<Relationship, Node>() {
-
-				@Override
-				public Node apply(Relationship from) {
-					return from.getEndNode();
-				}
-				
-			}, rels));
-		}
-		
-		return null;
+		return getMultipleNodes(securityContext, node.getNode(), relation, Direction.OUTGOING, relation.getTargetType(), predicate);
 	}
 
 	@Override
 	public void set(final SecurityContext securityContext, final NodeInterface sourceNode, final Iterable<T> collection) throws FrameworkException {
+		setMultiple(securityContext, sourceNode, relation, Direction.OUTGOING, relation.getTargetType(), collection);
+	}
 
-		final App app            = StructrApp.getInstance(securityContext);
-		final Set<T> toBeDeleted = new LinkedHashSet<>(Iterables.toList(get(securityContext, sourceNode, null)));
-		final Set<T> toBeCreated = new LinkedHashSet<>();
-
-		if (collection != null) {
-			Iterables.addAll(toBeCreated, collection);
-		}
-
-		// create intersection of both sets
-		final Set<T> intersection = new LinkedHashSet<>(toBeCreated);
-		intersection.retainAll(toBeDeleted);
-
-		// intersection needs no change
-		toBeCreated.removeAll(intersection);
-		toBeDeleted.removeAll(intersection);
-		
-		// remove existing relationships
-		for (T targetNode : toBeDeleted) {
-
-			for (AbstractRelationship rel : sourceNode.getOutgoingRelationships()) {
-
-				final String relTypeName    = rel.getRelType().name();
-				final String desiredRelType = relation.name();
-				
-				if (relTypeName.equals(desiredRelType) && rel.getTargetNode().equals(targetNode)) {
-
-					app.delete(rel);
-				}
-
-			}
-		}
-		
-		// test: obtain properties from notion
-		// create new relationships
-		for (T targetNode : toBeCreated) {
-
-			relation.ensureCardinality(securityContext, sourceNode, targetNode);
+	/**
+	 * Adds the given node to the related nodes of the given node.
+	 *
+	 * @param securityContext
+	 * @param sourceNode
+	 * @param element
+	 * @throws FrameworkException
+	 */
+	public void add(final SecurityContext securityContext, final NodeInterface sourceNode, final T element) throws FrameworkException {
+		addSingle(securityContext, sourceNode, relation, Direction.OUTGOING, relation.getTargetType(), element);
+	}
 
-			app.create(sourceNode, targetNode, relation.getClass(), getNotionProperties(securityContext, relation.getClass(), targetNode.getUuid()));
-		}
+	/**
+	 * Removes the given node from the related nodes of the given node.
+	 *
+	 * @param securityContext
+	 * @param sourceNode
+	 * @param element
+	 * @throws FrameworkException
+	 */
+	public void remove(final SecurityContext securityContext, final NodeInterface sourceNode, final T element) throws FrameworkException {
+		removeSingle(securityContext, sourceNode, relation, Direction.OUTGOING, relation.getTargetType(), element);
 	}
 
 	@Override
@@ -18,20 +18,13 @@
  */
 package org.structr.core.entity;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
-import org.neo4j.helpers.Function;
 import org.neo4j.helpers.Predicate;
-import org.neo4j.helpers.collection.Iterables;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
-import org.structr.core.app.App;
-import org.structr.core.app.StructrApp;
-import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
 
 /**
@@ -48,67 +41,36 @@ public class ManyStartpoint<S extends NodeInterface> extends AbstractEndpoint im
 	
 	@Override
 	public Iterable<S> get(final SecurityContext securityContext, final NodeInterface node, final Predicate<GraphObject> predicate) {
-		
-		final NodeFactory<S> nodeFactory  = new NodeFactory<>(securityContext);
-		final Iterable<Relationship> rels = getRawSource(securityContext, node.getNode(), predicate);
-		
-		if (rels != null) {
-			
-			return Iterables.map(nodeFactory, Iterables.map(new Function<Relationship, Node>() {
-
-				@Override
-				public Node apply(Relationship from) {
-					return from.getStartNode();
-				}
-				
-			}, rels));
-		}
-		
-		return null;
+		return getMultipleNodes(securityContext, node.getNode(), relation, Direction.INCOMING, relation.getSourceType(), predicate);
 	}
 
 	@Override
 	public void set(final SecurityContext securityContext, final NodeInterface targetNode, final Iterable<S> collection) throws FrameworkException {
+		setMultiple(securityContext, targetNode, relation, Direction.INCOMING, relation.getSourceType(), collection);
+	}
 
-		final App app            = StructrApp.getInstance(securityContext);
-		final Set<S> toBeDeleted = new LinkedHashSet<>(Iterables.toList(get(securityContext, targetNode, null)));
-		final Set<S> toBeCreated = new LinkedHashSet<>();
-
-		if (collection != null) {
-			Iterables.addAll(toBeCreated, collection);
-		}
-
-		// create intersection of both sets
-		final Set<S> intersection = new LinkedHashSet<>(toBeCreated);
-		intersection.retainAll(toBeDeleted);
-
-		// intersection needs no change
-		toBeCreated.removeAll(intersection);
-		toBeDeleted.removeAll(intersection);
-		
-		// remove existing relationships
-		for (S sourceNode : toBeDeleted) {
-
-			for (AbstractRelationship rel : targetNode.getIncomingRelationships()) {
-
-				final String relTypeName    = rel.getRelType().name();
-				final String desiredRelType = relation.name();
-				
-				if (relTypeName.equals(desiredRelType) && rel.getSourceNode().equals(sourceNode)) {
-
-					app.delete(rel);
-				}
-
-			}
-		}
-		
-		// create new relationships
-		for (S sourceNode : toBeCreated) {
+	/**
+	 * Adds the given node to the related nodes of the given node.
+	 *
+	 * @param securityContext
+	 * @param targetNode
+	 * @param element
+	 * @throws FrameworkException
+	 */
+	public void add(final SecurityContext securityContext, final NodeInterface targetNode, final S element) throws FrameworkException {
+		addSingle(securityContext, targetNode, relation, Direction.INCOMING, relation.getSourceType(), element);
+	}
 
-			relation.ensureCardinality(securityContext, sourceNode, targetNode);
-			
-			app.create(sourceNode, targetNode, relation.getClass(), getNotionProperties(securityContext, relation.getClass(), sourceNode.getUuid()));
-		}
+	/**
+	 * Removes the given node from the related nodes of the given node.
+	 *
+	 * @param securityContext
+	 * @param targetNode
+	 * @param element
+	 * @throws FrameworkException
+	 */
+	public void remove(final SecurityContext securityContext, final NodeInterface targetNode, final S element) throws FrameworkException {
+		removeSingle(securityContext, targetNode, relation, Direction.INCOMING, relation.getSourceType(), element);
 	}
 
 	@Override
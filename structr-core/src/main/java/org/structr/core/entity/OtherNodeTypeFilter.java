@@ -28,12 +28,17 @@ import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
 
 /**
+ * Accepts relationships whose other node is of the desired type, readable
+ * in the given security context and, if given, accepted by the node
+ * predicate. The type is checked on the raw node, so nodes are only
+ * instantiated if a predicate needs to be evaluated.
  *
  * @author Christian Morgner
  */
 public class OtherNodeTypeFilter implements Predicate<Relationship> {
 
 	private Predicate<GraphObject> nodePredicate = null;
+	private SecurityContext securityContext      = null;
 	private NodeFactory nodeFactory              = null;
 	private Node thisNode                        = null;
 	private Class desiredType                    = null;
@@ -44,25 +49,30 @@ public class OtherNodeTypeFilter implements Predicate<Relationship> {
 
 	public OtherNodeTypeFilter(final SecurityContext securityContext, final Node thisNode, final Class desiredType, final Predicate<GraphObject> nodePredicate) {
 
-		this.nodePredicate = nodePredicate;
-		this.nodeFactory   = new NodeFactory(securityContext);
-		this.desiredType   = desiredType;
-		this.thisNode      = thisNode;
+		this.securityContext = securityContext;
+		this.nodePredicate   = nodePredicate;
+		this.desiredType     = desiredType;
+		this.thisNode        = thisNode;
 	}
 
 	@Override
 	public boolean accept(final Relationship item) {
 
-		try {
-			final NodeInterface otherNode = nodeFactory.instantiate(item.getOtherNode(thisNode));
+		final Node otherNode = item.getOtherNode(thisNode);
 
-			// check predicate if exists
-			if (otherNode != null && (nodePredicate == null || nodePredicate.accept(otherNode))) {
+		if (!AssignabilityMatrix.isAssignable(desiredType, otherNode)) {
+			return false;
+		}
 
-				final Class otherNodeType = otherNode.getClass();
+		if (nodePredicate == null) {
+			return securityContext.isReadable(otherNode, false, false);
+		}
+
+		try {
+			final NodeInterface otherEntity = getNodeFactory().instantiate(otherNode);
 
-				return desiredType.isAssignableFrom(otherNodeType);
-			}
+			// check predicate
+			return otherEntity != null && nodePredicate.accept(otherEntity);
 
 		} catch (FrameworkException fex) {
 			fex.printStackTrace();
@@ -70,4 +80,14 @@ public class OtherNodeTypeFilter implements Predicate<Relationship> {
 
 		return false;
 	}
+
+	// ----- private methods -----
+	private NodeFactory getNodeFactory() {
+
+		if (nodeFactory == null) {
+			nodeFactory = new NodeFactory(securityContext);
+		}
+
+		return nodeFactory;
+	}
 }
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.entity;
+
+import org.structr.common.PropertyView;
+import org.structr.common.View;
+import org.structr.core.property.BooleanProperty;
+import org.structr.core.property.IntProperty;
+import org.structr.core.property.LongProperty;
+import org.structr.core.property.Property;
+import org.structr.core.property.StringProperty;
+
+/**
+ * An e-mail in the outbox, waiting to be delivered by the background sender
+ * of {@link org.structr.common.MailOutbox}. Mails are created in the
+ * transaction that sends them, so they are only delivered if that
+ * transaction is committed, and deleted after successful delivery.
+ */
+public class QueuedMail extends AbstractNode {
+
+	public static final Property<String>  from        = new StringProperty("from");
+	public static final Property<String>  fromName    = new StringProperty("fromName");
+	public static final Property<String>  to          = new StringProperty("to");
+	public static final Property<String>  toName      = new StringProperty("toName");
+	public static final Property<String>  cc          = new StringProperty("cc");
+	public static final Property<String>  bcc         = new StringProperty("bcc");
+	public static final Property<String>  bounce      = new StringProperty("bounce");
+	public static final Property<String>  subject     = new StringProperty("subject");
+	public static final Property<String>  htmlContent = new StringProperty("htmlContent");
+	public static final Property<String>  textContent = new StringProperty("textContent");
+	public static final Property<Integer> attempts    = new IntProperty("attempts");
+	public static final Property<Long>    nextAttempt = new LongProperty("nextAttempt").indexed();
+	public static final Property<String>  lastError   = new StringProperty("lastError");
+	public static final Property<Boolean> failed      = new BooleanProperty("failed");
+
+	public static final View uiView = new View(QueuedMail.class, PropertyView.Ui,
+		type, from, fromName, to, toName, cc, bcc, bounce, subject, attempts, nextAttempt, lastError, failed
+	);
+}
@@ -40,6 +40,7 @@ import org.structr.core.property.ArrayProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.PropertySnapshot;
 import org.structr.core.property.SourceId;
 import org.structr.core.property.TargetId;
 
@@ -157,6 +158,7 @@ public class Security extends ManyToMany<Principal, NodeInterface> {
 	public void setAllowed(final String[] allowed) {
 
 		dbRelationship.setProperty(Security.allowed.dbName(), allowed);
+		PropertySnapshot.invalidate(dbRelationship);
 
 	}
 
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.entity;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.neo4j.graphdb.Relationship;
+import org.structr.core.entity.relationship.AbstractChildren;
+import org.structr.core.graph.RelationshipInterface;
+
+/**
+ * Caches the position-ordered ids of the child relationships of
+ * {@link LinkedTreeNode}s, so that tree walks and rendering need not load
+ * and sort the child relationships of a node again and again.
+ *
+ * The entry of a node is removed when its children are linked, unlinked or
+ * repositioned. Nodes modified in a transaction are not cached until that
+ * transaction is finished, so uncommitted or rolled back changes never
+ * enter the cache.
+ */
+public class TreeChildCache {
+
+	private static final int MAX_ENTRIES                 = 10000;
+	private static final Map<Long, long[]> cache         = new LruMap(MAX_ENTRIES);
+	private static final ThreadLocal<Set<Long>> modified = new ThreadLocal<>();
+	private static long generation                       = 0L;
+
+	/**
+	 * Returns the ordered child relationship ids of the given node, or
+	 * null if the node is not cached.
+	 *
+	 * @param nodeId
+	 * @return the child relationship ids or null
+	 */
+	public static long[] get(final long nodeId) {
+
+		if (isModified(nodeId)) {
+			return null;
+		}
+
+		synchronized (cache) {
+			return cache.get(nodeId);
+		}
+	}
+
+	/**
+	 * Returns the current generation of the cache, to be passed to
+	 * {@link #put} after the child relationships have been loaded.
+	 *
+	 * @return the current generation
+	 */
+	public static long getGeneration() {
+
+		synchronized (cache) {
+			return generation;
+		}
+	}
+
+	/**
+	 * Caches the ordered child relationship ids of the given node, unless
+	 * the cache was invalidated since the given generation.
+	 *
+	 * @param nodeId
+	 * @param relationshipIds
+	 * @param loadedGeneration the generation before the ids were loaded
+	 */
+	public static void put(final long nodeId, final long[] relationshipIds, final long loadedGeneration) {
+
+		if (isModified(nodeId)) {
+			return;
+		}
+
+		synchronized (cache) {
+
+			if (generation == loadedGeneration) {
+				cache.put(nodeId, relationshipIds);
+			}
+		}
+	}
+
+	/**
+	 * Removes the entry of the given node and excludes the node from
+	 * caching until the current transaction is finished.
+	 *
+	 * @param nodeId
+	 */
+	public static void invalidate(final long nodeId) {
+
+		Set<Long> nodeIds = modified.get();
+		if (nodeIds == null) {
+
+			nodeIds = new LinkedHashSet<>();
+			modified.set(nodeIds);
+		}
+
+		nodeIds.add(nodeId);
+
+		synchronized (cache) {
+
+			cache.remove(nodeId);
+			generation++;
+		}
+	}
+
+	/**
+	 * Invalidates the parent node of the given relationship if it is a
+	 * child relationship.
+	 *
+	 * @param relationship
+	 */
+	public static void invalidate(final RelationshipInterface relationship) {
+
+		if (relationship instanceof AbstractChildren) {
+
+			final Relationship rel = relationship.getRelationship();
+			if (rel != null) {
+
+				invalidate(rel.getStartNode().getId());
+			}
+		}
+	}
+
+	/**
+	 * Removes the entries of all nodes modified by the current thread once
+	 * more, after its transaction has been committed or rolled back.
+	 */
+	public static void transactionFinished() {
+
+		final Set<Long> nodeIds = modified.get();
+		if (nodeIds != null) {
+
+			modified.remove();
+
+			synchronized (cache) {
+
+				for (final Long nodeId : nodeIds) {
+					cache.remove(nodeId);
+				}
+
+				generation++;
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries. Must be called when the database is shut down,
+	 * as node and relationship ids are only valid in a single database.
+	 */
+	public static void clear() {
+
+		synchronized (cache) {
+
+			cache.clear();
+			generation++;
+		}
+	}
+
+	// ----- private methods -----
+	private static boolean isModified(final long nodeId) {
+
+		final Set<Long> nodeIds = modified.get();
+		return nodeIds != null && nodeIds.contains(nodeId);
+	}
+
+	// ----- nested classes -----
+	private static class LruMap extends LinkedHashMap<Long, long[]> {
+
+		private int maxSize = 0;
+
+		public LruMap(final int maxSize) {
+
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, long[]> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
@@ -20,14 +20,15 @@ package org.structr.core.graph;
 
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.GraphObject;
 
 /**
- * Encapsulates a bulk graph operation.
- * 
+ * Encapsulates a bulk graph operation. The operation is usually executed
+ * on graph objects, but can be applied to any kind of input that results
+ * in database operations, see {@link NodeServiceCommand#bulkGraphOperation}.
+ *
  * @author Christian Morgner
  */
-public interface BulkGraphOperation<T extends GraphObject> {
+public interface BulkGraphOperation<T> {
 	
 	public void handleGraphObject(SecurityContext securityContext, T obj) throws FrameworkException;
 	public void handleThrowable(SecurityContext securityContext, Throwable t, T currentObject);
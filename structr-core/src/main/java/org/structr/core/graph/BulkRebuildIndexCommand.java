@@ -18,20 +18,38 @@
  */
 package org.structr.core.graph;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.core.NodeManager;
 import org.neo4j.tooling.GlobalGraphOperations;
 import org.structr.common.SecurityContext;
 import org.structr.common.StructrAndSpatialPredicate;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
@@ -43,11 +61,22 @@ import org.structr.schema.SchemaHelper;
  *
  * Use 'type' argument for node type, and 'relType' for relationship type.
  *
+ * The id space of the database is split into partitions that are indexed
+ * in parallel by a number of worker threads ('threads' argument, defaults
+ * to the number of processors), committing every 'batchSize' objects.
+ * Completed partitions are recorded in a checkpoint file in the database
+ * directory, so an interrupted rebuild continues where it stopped unless
+ * 'resume' is set to false.
+ *
  * @author Axel Morgner
  */
 public class BulkRebuildIndexCommand extends NodeServiceCommand implements MaintenanceCommand, TransactionPostProcess {
 
-	private static final Logger logger = Logger.getLogger(BulkRebuildIndexCommand.class.getName());
+	private static final Logger logger             = Logger.getLogger(BulkRebuildIndexCommand.class.getName());
+	private static final String CHECKPOINT_FILE    = "rebuildIndex.checkpoint";
+	private static final long PARTITION_SIZE       = 100000L;
+	private static final int DEFAULT_BATCH_SIZE    = 1000;
+	private static final long PROGRESS_INTERVAL    = 10000L;
 
 	//~--- methods --------------------------------------------------------
 	@Override
@@ -56,10 +85,11 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 		final String mode                      = (String) attributes.get("mode");
 		final String entityType                = (String) attributes.get("type");
 		final String relType                   = (String) attributes.get("relType");
+		final int threads                      = getInt(attributes.get("threads"), Runtime.getRuntime().availableProcessors());
+		final int batchSize                    = getInt(attributes.get("batchSize"), DEFAULT_BATCH_SIZE);
+		final boolean resume                   = !"false".equals(String.valueOf(attributes.get("resume")));
 		final GraphDatabaseService graphDb     = (GraphDatabaseService) arguments.get("graphDb");
-		final SecurityContext superUserContext = SecurityContext.getSuperUserInstance();
-		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
-		final RelationshipFactory relFactory   = new RelationshipFactory(superUserContext);
+		final Checkpoint checkpoint            = new Checkpoint(new File(Services.getInstance().getConfigurationValue(Services.DATABASE_PATH), CHECKPOINT_FILE));
 
 		Class type = null;
 		if (entityType != null) {
@@ -70,23 +100,8 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 		if (mode == null || "nodesOnly".equals(mode)) {
 
-			final List<AbstractNode> nodes = new LinkedList<>();
-
-			// instantiate all nodes in a single list
-			try (final Tx tx = StructrApp.getInstance().tx()) {
-
-				final Result<AbstractNode> result = nodeFactory.instantiateAll(Iterables.filter(new StructrAndSpatialPredicate(true, false, false), GlobalGraphOperations.at(graphDb).getAllNodes()));
-				for (AbstractNode node : result.getResults()) {
-
-					if (type == null || node.getClass().equals(type)) {
-
-						nodes.add(node);
-					}
-
-				}
-
-				tx.success();
-			}
+			final String typeName     = type != null ? type.getSimpleName() : null;
+			final String checkpointId = "nodes." + (typeName != null ? typeName : "all");
 
 			if (type == null) {
 
@@ -97,37 +112,40 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 				logger.log(Level.INFO, "Starting (re-)indexing all nodes of type {0}", new Object[]{type.getSimpleName()});
 			}
 
-			long count = bulkGraphOperation(securityContext, nodes, 100, "RebuildNodeIndex", new BulkGraphOperation<AbstractNode>() {
+			final long count = rebuildIndex(graphDb, "RebuildNodeIndex", getHighestId(graphDb, Node.class), threads, batchSize, checkpoint, checkpointId, resume, new IdHandler() {
+
+				private final StructrAndSpatialPredicate predicate = new StructrAndSpatialPredicate(true, false, false);
 
 				@Override
-				public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
+				public boolean handleId(final IdWorker worker, final long id) {
 
-					try {
-						// Set type to update labels
-						final String type = node.getProperty(NodeInterface.type);
-						node.setProperty(NodeInterface.type, null);
-						node.setProperty(NodeInterface.type, type);
-					} catch (FrameworkException ex) {
-						ex.printStackTrace();
-					}
-					node.updateInIndex();
+					final Node node = graphDb.getNodeById(id);
 
-				}
+					if (predicate.accept(node) && (typeName == null || typeName.equals(node.getProperty(NodeInterface.type.dbName(), null)))) {
 
-				@Override
-				public void handleThrowable(SecurityContext securityContext, Throwable t, AbstractNode node) {
+						try {
 
-					logger.log(Level.WARNING, "Unable to index node {0}: {1}", new Object[]{node, t.getMessage()});
+							final AbstractNode obj = worker.nodeFactory.instantiate(node);
+							if (obj != null) {
 
-				}
+								// Set type to update labels
+								final String type = obj.getProperty(NodeInterface.type);
+								obj.setProperty(NodeInterface.type, null);
+								obj.setProperty(NodeInterface.type, type);
 
-				@Override
-				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
+								obj.updateInIndex();
 
-					logger.log(Level.WARNING, "Unable to index node: {0}", t.getMessage());
+								return true;
+							}
 
-				}
+						} catch (Throwable t) {
 
+							logger.log(Level.WARNING, "Unable to index node {0}: {1}", new Object[]{id, t.getMessage()});
+						}
+					}
+
+					return false;
+				}
 			});
 
 			logger.log(Level.INFO, "Done with (re-)indexing {0} nodes", count);
@@ -135,23 +153,7 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 		if (mode == null || "relsOnly".equals(mode)) {
 
-			final List<AbstractRelationship> rels = new LinkedList<>();
-			long count                            = 0;
-
-			// instantiate all relationships in a single list
-			try (final Tx tx = StructrApp.getInstance().tx()) {
-
-					final List<AbstractRelationship> unfilteredRels = relFactory.instantiate(Iterables.filter(new StructrAndSpatialPredicate(true, false, false), GlobalGraphOperations.at(graphDb).getAllRelationships()));
-				for (AbstractRelationship rel : unfilteredRels) {
-
-					if (relType == null || rel.getType().equals(relType)) {
-
-						rels.add(rel);
-					}
-				}
-
-				tx.success();
-			}
+			final String checkpointId = "rels." + (relType != null ? relType : "all");
 
 			if (relType == null) {
 
@@ -163,29 +165,35 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 
 			}
 
-			count = bulkGraphOperation(securityContext, rels, 100, "RebuildRelIndex", new BulkGraphOperation<AbstractRelationship>() {
+			final long count = rebuildIndex(graphDb, "RebuildRelIndex", getHighestId(graphDb, Relationship.class), threads, batchSize, checkpoint, checkpointId, resume, new IdHandler() {
+
+				private final StructrAndSpatialPredicate predicate = new StructrAndSpatialPredicate(true, false, false);
 
 				@Override
-				public void handleGraphObject(SecurityContext securityContext, AbstractRelationship rel) {
+				public boolean handleId(final IdWorker worker, final long id) {
 
-					rel.updateInIndex();
+					final Relationship rel = graphDb.getRelationshipById(id);
 
-				}
+					if (predicate.accept(rel) && (relType == null || relType.equals(rel.getType().name()))) {
 
-				@Override
-				public void handleThrowable(SecurityContext securityContext, Throwable t, AbstractRelationship rel) {
+						try {
 
-					logger.log(Level.WARNING, "Unable to index relationship {0}: {1}", new Object[]{rel, t.getMessage()});
+							final AbstractRelationship obj = worker.relFactory.instantiate(rel);
+							if (obj != null) {
 
-				}
+								obj.updateInIndex();
 
-				@Override
-				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
+								return true;
+							}
 
-					logger.log(Level.WARNING, "Unable to index relationship: {0}", t.getMessage());
+						} catch (Throwable t) {
 
-				}
+							logger.log(Level.WARNING, "Unable to index relationship {0}: {1}", new Object[]{id, t.getMessage()});
+						}
+					}
 
+					return false;
+				}
 			});
 
 			logger.log(Level.INFO, "Done with (re-)indexing {0} relationships", count);
@@ -206,4 +214,325 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 	public boolean requiresEnclosingTransaction() {
 		return false;
 	}
+
+	// ----- private methods -----
+	private long rebuildIndex(final GraphDatabaseService graphDb, final String description, final long highestId, final int threads, final int batchSize, final Checkpoint checkpoint, final String checkpointId, final boolean resume, final IdHandler handler) throws FrameworkException {
+
+		final BlockingQueue<Integer> partitions = new LinkedBlockingQueue<>();
+		final int partitionCount                = (int)(highestId / PARTITION_SIZE) + 1;
+		final BitSet done                       = resume ? checkpoint.get(checkpointId) : new BitSet();
+
+		for (int i=0; i<partitionCount; i++) {
+
+			if (!done.get(i)) {
+				partitions.add(i);
+			}
+		}
+
+		if (partitions.size() < partitionCount) {
+			logger.log(Level.INFO, "{0}: resuming, {1} of {2} partitions already done", new Object[] { description, partitionCount - partitions.size(), partitionCount } );
+		}
+
+		final Progress progress         = new Progress(description, partitions.size() * PARTITION_SIZE);
+		final int workerCount           = Math.max(1, Math.min(threads, partitions.size()));
+		final ExecutorService executor  = Executors.newFixedThreadPool(workerCount);
+
+		for (int i=0; i<workerCount; i++) {
+
+			executor.submit(new IdWorker(partitions, highestId, batchSize, handler, progress, checkpoint, checkpointId));
+		}
+
+		executor.shutdown();
+
+		try {
+
+			while (!executor.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+				progress.log();
+			}
+
+		} catch (InterruptedException iex) {
+
+			executor.shutdownNow();
+
+			throw new FrameworkException(500, "Index rebuild was interrupted, restart to resume.");
+		}
+
+		progress.log();
+
+		// all partitions done, start from scratch next time
+		if (checkpoint.get(checkpointId).cardinality() >= partitionCount) {
+
+			checkpoint.clear(checkpointId);
+
+		} else {
+
+			logger.log(Level.WARNING, "{0}: not all partitions could be indexed, restart to resume.", description);
+		}
+
+		return progress.processed.get();
+	}
+
+	private long getHighestId(final GraphDatabaseService graphDb, final Class type) {
+
+		try {
+
+			final NodeManager nodeManager = ((GraphDatabaseAPI)graphDb).getDependencyResolver().resolveDependency(NodeManager.class);
+			return nodeManager.getHighestPossibleIdInUse(type);
+
+		} catch (Throwable t) {
+
+			logger.log(Level.FINE, "Unable to determine highest id in use, scanning database..", t);
+		}
+
+		// fallback: stream all ids
+		long highestId = 0L;
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			final GlobalGraphOperations ops                      = GlobalGraphOperations.at(graphDb);
+			final Iterable<? extends PropertyContainer> elements = Node.class.equals(type) ? ops.getAllNodes() : ops.getAllRelationships();
+
+			for (final PropertyContainer element : elements) {
+
+				final long id = element instanceof Node ? ((Node)element).getId() : ((Relationship)element).getId();
+				highestId = Math.max(highestId, id);
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.WARNING, "Unable to determine highest id", fex);
+		}
+
+		return highestId;
+	}
+
+	private static int getInt(final Object value, final int defaultValue) {
+
+		if (value instanceof Number) {
+			return ((Number)value).intValue();
+		}
+
+		if (value != null) {
+
+			try {
+				return Integer.parseInt(value.toString());
+
+			} catch (NumberFormatException nfex) {}
+		}
+
+		return defaultValue;
+	}
+
+	// ----- nested classes -----
+	private interface IdHandler {
+
+		/**
+		 * @return whether the object with the given id was indexed
+		 */
+		boolean handleId(final IdWorker worker, final long id);
+	}
+
+	private class IdWorker implements Runnable {
+
+		private final NodeFactory nodeFactory           = new NodeFactory(SecurityContext.getSuperUserInstance());
+		private final RelationshipFactory relFactory    = new RelationshipFactory(SecurityContext.getSuperUserInstance());
+		private BlockingQueue<Integer> partitions       = null;
+		private Checkpoint checkpoint                   = null;
+		private IdHandler handler                       = null;
+		private Progress progress                       = null;
+		private String checkpointId                     = null;
+		private long highestId                          = 0L;
+		private int batchSize                           = 0;
+
+		public IdWorker(final BlockingQueue<Integer> partitions, final long highestId, final int batchSize, final IdHandler handler, final Progress progress, final Checkpoint checkpoint, final String checkpointId) {
+
+			this.partitions   = partitions;
+			this.highestId    = highestId;
+			this.batchSize    = Math.max(1, batchSize);
+			this.handler      = handler;
+			this.progress     = progress;
+			this.checkpoint   = checkpoint;
+			this.checkpointId = checkpointId;
+		}
+
+		@Override
+		public void run() {
+
+			final App app     = StructrApp.getInstance(securityContext);
+			Integer partition = null;
+
+			while ((partition = partitions.poll()) != null) {
+
+				final long start = partition * PARTITION_SIZE;
+				final long end   = Math.min(start + PARTITION_SIZE, highestId + 1);
+				boolean success  = true;
+				long id          = start;
+
+				while (id < end) {
+
+					long processed = 0L;
+					long scanned   = 0L;
+
+					// index writes are committed in batches
+					try (final Tx tx = app.tx()) {
+
+						for (int i=0; i<batchSize && id < end; i++, id++) {
+
+							try {
+
+								if (handler.handleId(this, id)) {
+									processed++;
+								}
+
+							} catch (NotFoundException nfex) {
+
+								// id not in use
+							}
+
+							scanned++;
+						}
+
+						tx.success();
+
+					} catch (Throwable t) {
+
+						logger.log(Level.WARNING, "Unable to index objects {0} to {1}: {2}", new Object[] { id - scanned, id, t.getMessage() } );
+						success = false;
+					}
+
+					progress.add(scanned, processed);
+				}
+
+				if (success) {
+					checkpoint.done(checkpointId, partition);
+				}
+			}
+		}
+	}
+
+	private static class Progress {
+
+		private final AtomicLong processed = new AtomicLong(0L);
+		private final AtomicLong scanned   = new AtomicLong(0L);
+		private final long startTime       = System.currentTimeMillis();
+		private String description         = null;
+		private long total                 = 0L;
+
+		public Progress(final String description, final long total) {
+
+			this.description = description;
+			this.total       = Math.max(1L, total);
+		}
+
+		public void add(final long scannedIds, final long processedObjects) {
+
+			scanned.addAndGet(scannedIds);
+			processed.addAndGet(processedObjects);
+		}
+
+		public void log() {
+
+			final long elapsed     = Math.max(1L, System.currentTimeMillis() - startTime);
+			final long scannedIds  = scanned.get();
+			final long rate        = (processed.get() * 1000L) / elapsed;
+			final long remaining   = scannedIds > 0 ? ((total - Math.min(total, scannedIds)) * elapsed) / scannedIds : 0L;
+
+			logger.log(Level.INFO, "{0}: {1} objects processed, {2}% of id space scanned, {3} objects/s, ETA {4} s", new Object[] {
+				description,
+				processed.get(),
+				(scannedIds * 100L) / total,
+				rate,
+				remaining / 1000L
+			} );
+		}
+	}
+
+	/**
+	 * Persistent record of the partitions that have already been indexed.
+	 */
+	private static class Checkpoint {
+
+		private final Properties properties = new Properties();
+		private File file                   = null;
+
+		public Checkpoint(final File file) {
+
+			this.file = file;
+
+			if (file.exists()) {
+
+				try (final InputStream is = new FileInputStream(file)) {
+
+					properties.load(is);
+
+				} catch (IOException ioex) {
+
+					logger.log(Level.WARNING, "Unable to read index rebuild checkpoint {0}: {1}", new Object[] { file, ioex.getMessage() } );
+				}
+			}
+		}
+
+		public synchronized BitSet get(final String key) {
+
+			final BitSet bits  = new BitSet();
+			final String value = properties.getProperty(key);
+
+			if (value != null && !value.isEmpty()) {
+
+				for (final String part : value.split(",")) {
+
+					try {
+						bits.set(Integer.parseInt(part));
+
+					} catch (NumberFormatException nfex) {}
+				}
+			}
+
+			return bits;
+		}
+
+		public synchronized void done(final String key, final int partition) {
+
+			final String value = properties.getProperty(key);
+
+			properties.setProperty(key, value == null || value.isEmpty() ? Integer.toString(partition) : value + "," + partition);
+
+			store();
+		}
+
+		public synchronized void clear(final String key) {
+
+			properties.remove(key);
+
+			if (properties.isEmpty()) {
+
+				file.delete();
+
+			} else {
+
+				store();
+			}
+		}
+
+		private void store() {
+
+			final File tmp = new File(file.getPath() + ".tmp");
+
+			try (final OutputStream os = new FileOutputStream(tmp)) {
+
+				properties.store(os, "Structr index rebuild checkpoint");
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.WARNING, "Unable to write index rebuild checkpoint {0}: {1}", new Object[] { file, ioex.getMessage() } );
+				return;
+			}
+
+			if (!tmp.renameTo(file)) {
+
+				file.delete();
+				tmp.renameTo(file);
+			}
+		}
+	}
 }
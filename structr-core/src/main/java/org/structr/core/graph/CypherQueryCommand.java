@@ -18,23 +18,22 @@
  */
 package org.structr.core.graph;
 
+import org.neo4j.cypher.SyntaxException;
 import org.neo4j.cypher.javacompat.ExecutionEngine;
 import org.neo4j.cypher.javacompat.ExecutionResult;
-import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Relationship;
 
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.structr.core.GraphObjectMap;
-import org.structr.core.property.GenericProperty;
+import org.structr.core.cypher.CypherQueryStatistics;
+import org.structr.core.cypher.NormalizedCypherQuery;
+import org.structr.core.cypher.PagedCypherResult;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -42,6 +41,11 @@ import org.structr.core.property.GenericProperty;
  * Executes the given Cypher query and tries to convert the result in a List
  * of {@link GraphObject}s.
  *
+ * Literal values are extracted from the query and passed as parameters,
+ * so that the execution plan of the query can be reused for different
+ * values, see {@link NormalizedCypherQuery}. Execution times are collected
+ * per normalized query, see {@link #getStatistics()}.
+ *
  * @author Christian Morgner
  */
 public class CypherQueryCommand extends NodeServiceCommand {
@@ -65,66 +69,66 @@ public class CypherQueryCommand extends NodeServiceCommand {
 	}
 	
 	public List<GraphObject> execute(String query, Map<String, Object> parameters, boolean includeHiddenAndDeleted, boolean publicOnly) throws FrameworkException {
+		return executePaged(query, parameters, includeHiddenAndDeleted, publicOnly, Integer.MAX_VALUE, 1).toList();
+	}
 
-		ExecutionEngine     engine      = (ExecutionEngine) arguments.get("cypherExecutionEngine");
-		RelationshipFactory relFactory  = new RelationshipFactory(securityContext);
-		NodeFactory nodeFactory         = new NodeFactory(securityContext);
-
-		List<GraphObject> resultList = new LinkedList<>();
-		ExecutionResult result       = null;
-
-		if (parameters != null) {
+	/**
+	 * Executes the given query and returns a result that maps the rows of
+	 * the given page lazily.
+	 *
+	 * @param query
+	 * @param parameters
+	 * @param includeHiddenAndDeleted
+	 * @param publicOnly
+	 * @param pageSize
+	 * @param page
+	 * @return the lazily mapped result
+	 * @throws FrameworkException
+	 */
+	public PagedCypherResult executePaged(String query, Map<String, Object> parameters, boolean includeHiddenAndDeleted, boolean publicOnly, int pageSize, int page) throws FrameworkException {
 
-			result = engine.execute(query, parameters);
-			
-		} else {
-			
-			result = engine.execute(query);
-		}
+		final ExecutionEngine engine             = (ExecutionEngine) arguments.get("cypherExecutionEngine");
+		final NormalizedCypherQuery normalized   = NormalizedCypherQuery.normalize(query);
+		final CypherQueryStatistics statistics   = CypherQueryStatistics.forQuery(normalized.getQuery());
+		final long t0                            = System.nanoTime();
+		ExecutionResult result                   = null;
 
-		for (Map<String, Object> row : result) {
+		if (normalized.isParameterized()) {
 
-			GraphObjectMap dummyObject = null;
-			
-			for (Entry<String, Object> entry : row.entrySet()) {
-				
-				String key   = entry.getKey();
-				Object value = entry.getValue();
-			
-				if (value instanceof Node) {
+			try {
 
-					NodeInterface node = nodeFactory.instantiate((Node) value, includeHiddenAndDeleted, publicOnly);
+				result = engine.execute(normalized.getQuery(), normalized.getParameters(parameters));
 
-					if (node != null) {
+			} catch (SyntaxException sex) {
 
-						resultList.add(node);
-					}
+				// some literals cannot be replaced by parameters, use the original query from now on
+				logger.log(Level.FINE, "Unable to execute normalized query {0}, using original query: {1}", new Object[] { normalized.getQuery(), sex.getMessage() });
 
-				} else if (value instanceof Relationship) {
+				normalized.disable();
+			}
+		}
 
-					RelationshipInterface rel = relFactory.instantiate((Relationship) value);
+		if (result == null) {
 
-					if (rel != null) {
+			if (parameters != null) {
 
-						resultList.add(rel);
-					}
+				result = engine.execute(query, parameters);
 
-				} else {
-					
-					if (dummyObject == null) {
-						
-						dummyObject = new GraphObjectMap();
-						resultList.add(dummyObject);
-					}
-						
-					dummyObject.setProperty(new GenericProperty(key), value);
-				}
+			} else {
 
+				result = engine.execute(query);
 			}
-
 		}
 
-		return resultList;
+		return new PagedCypherResult(securityContext, result.iterator(), includeHiddenAndDeleted, publicOnly)
+			.statistics(statistics, System.nanoTime() - t0)
+			.page(pageSize, page);
 	}
 
+	/**
+	 * @return the execution statistics of all queries, keyed by normalized query string
+	 */
+	public static Map<String, CypherQueryStatistics> getStatistics() {
+		return CypherQueryStatistics.getStatistics();
+	}
 }
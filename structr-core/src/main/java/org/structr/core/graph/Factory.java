@@ -22,9 +22,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.helpers.Function;
+import org.structr.common.CountMode;
 import org.structr.common.FactoryDefinition;
+import org.structr.common.PagingCursor;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.IdNotFoundToken;
@@ -117,7 +120,11 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		if (input != null) {
 
-			if (factoryProfile.getOffsetId() != null) {
+			if (factoryProfile.getCursor() != null) {
+
+				return resultWithCursor(input);
+
+			} else if (factoryProfile.getOffsetId() != null) {
 
 				return resultWithOffsetId(input);
 
@@ -159,6 +166,19 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		return nodes;
 	}
 
+	/**
+	 * Enables keyset pagination for this factory. The given cursor must
+	 * match the sort order of the index hits that will be instantiated.
+	 *
+	 * @param cursor
+	 * @param descending
+	 */
+	public void setCursor(final PagingCursor cursor, final boolean descending) {
+
+		factoryProfile.setCursor(cursor);
+		factoryProfile.setCursorDescending(descending);
+	}
+
 	@Override
 	public T adapt(S s) {
 
@@ -304,6 +324,39 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 
+	protected Result resultWithCursor(final IndexHits<S> input) throws FrameworkException {
+
+		final PagingCursor cursor = factoryProfile.getCursor();
+		final boolean descending  = factoryProfile.isCursorDescending();
+		final int pageSize        = factoryProfile.getPageSize();
+		final List<T> nodes       = new LinkedList<>();
+		boolean skip              = true;
+
+		for (S obj : input) {
+
+			// The index hits start at the sort key value of the cursor, so we
+			// need to skip the objects that were already part of the last page.
+			if (skip && obj instanceof PropertyContainer && cursor.isBeforeOrAt((PropertyContainer)obj, descending)) {
+				continue;
+			}
+
+			skip = false;
+
+			if (nodes.size() >= pageSize) {
+				break;
+			}
+
+			T n = instantiate(obj);
+			if (n != null) {
+
+				nodes.add(n);
+			}
+		}
+
+		// The count is the number of hits from the cursor position on
+		return new Result(nodes, input.size(), true, false);
+	}
+
 	protected Result resultWithoutOffsetId(final IndexHits<S> input) throws FrameworkException {
 
 		final int pageSize = factoryProfile.getPageSize();
@@ -345,56 +398,62 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	protected Result page(final IndexHits<S> input, final int overallResultCount, final int offset, final int pageSize) throws FrameworkException {
 
-		final List<T> nodes = new LinkedList<>();
-		int position	    = 0;
-		int count	    = 0;
-		int overallCount    = 0;
-		boolean pageFull    = false;
-
-		SecurityContext securityContext = factoryProfile.getSecurityContext();
+		final SecurityContext securityContext = factoryProfile.getSecurityContext();
+		final CountMode countMode             = securityContext.getCountMode();
+		final List<T> nodes                   = new LinkedList<>();
+		int overallCount                      = 0;
 
 		// In case of superuser or in public context, don't check the overall result count
 		boolean dontCheckCount  = securityContext.isSuperUser() || securityContext.getUser(false) == null;
 
 		for (S node : input) {
 
-			T n = instantiate(node);
-
-			if (n != null) {
+			if (overallCount < offset) {
 
-				overallCount++;
+				// objects before the requested page are only
+				// counted, there is no need to instantiate them
+				if (isReadable(node)) {
+					overallCount++;
+				}
 
-				if (++position > offset) {
+			} else if (nodes.size() < pageSize) {
 
-					// stop if we got enough nodes
-					// and we are above the limit
-					if (++count > pageSize) {
+				T n = instantiate(node);
+				if (n != null) {
 
-						pageFull = true;
+					overallCount++;
+					nodes.add(n);
+				}
 
-						if (dontCheckCount) {
-							overallCount = overallResultCount;
-							break;
-						}
+			} else {
 
-					}
+				// page is full, we only need the overall count from here
+				switch (countMode) {
 
-					if (!pageFull) {
+					case None:
+						// signal that more results are available
+						return new Result(nodes, overallCount + 1, true, false);
 
-						nodes.add(n);
+					case Estimate:
+						return new Result(nodes, overallResultCount, true, false);
 
-					}
+					case Exact:
+						break;
 
-					if (pageFull && (overallCount >= RESULT_COUNT_ACCURATE_LIMIT)) {
+					default:
 
-						// The overall count may be inaccurate
-						return new Result(nodes, overallResultCount, true, false);
+						if (dontCheckCount || overallCount >= RESULT_COUNT_ACCURATE_LIMIT) {
 
-					}
+							// The overall count may be inaccurate
+							return new Result(nodes, overallResultCount, true, false);
+						}
+						break;
 				}
 
+				if (isReadable(node)) {
+					overallCount++;
+				}
 			}
-
 		}
 
 		// We've run completely through the iterator,
@@ -403,12 +462,27 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 
+	/**
+	 * Indicates whether the given database object would be readable when
+	 * instantiated with this factory. Subclasses should override this
+	 * method with a check that does not need to instantiate the object.
+	 *
+	 * @param obj
+	 * @return whether the object is readable
+	 * @throws FrameworkException
+	 */
+	protected boolean isReadable(final S obj) throws FrameworkException {
+		return instantiate(obj) != null;
+	}
+
 	//~--- inner classes --------------------------------------------------
 
 	protected class FactoryProfile {
 
 		private boolean includeDeletedAndHidden = true;
 		private String offsetId                 = null;
+		private PagingCursor cursor             = null;
+		private boolean cursorDescending        = false;
 		private boolean publicOnly              = false;
 		private int pageSize                    = DEFAULT_PAGE_SIZE;
 		private int page                        = DEFAULT_PAGE;
@@ -473,6 +547,24 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		}
 
+		/**
+		 * @return the cursor
+		 */
+		public PagingCursor getCursor() {
+
+			return cursor;
+
+		}
+
+		/**
+		 * @return whether the cursor refers to a descending sort order
+		 */
+		public boolean isCursorDescending() {
+
+			return cursorDescending;
+
+		}
+
 		/**
 		 * @return the pageSize
 		 */
@@ -520,6 +612,24 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		}
 
+		/**
+		 * @param cursor the cursor to set
+		 */
+		public void setCursor(PagingCursor cursor) {
+
+			this.cursor = cursor;
+
+		}
+
+		/**
+		 * @param cursorDescending the cursorDescending to set
+		 */
+		public void setCursorDescending(boolean cursorDescending) {
+
+			this.cursorDescending = cursorDescending;
+
+		}
+
 		/**
 		 * @param publicOnly the publicOnly to set
 		 */
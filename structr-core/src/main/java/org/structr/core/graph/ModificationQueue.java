@@ -27,6 +27,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.neo4j.graphdb.RelationshipType;
@@ -34,6 +35,8 @@ import org.structr.common.RelType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.property.MaterializedProperty;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -43,13 +46,15 @@ import org.structr.core.property.PropertyKey;
 
 public class ModificationQueue {
 
-	private static final Logger logger = Logger.getLogger(ModificationQueue.class.getName());
+	private static final Logger logger                                    = Logger.getLogger(ModificationQueue.class.getName());
+	private static final Set<MaterializedProperty> materializedProperties = new CopyOnWriteArraySet<>();
 
 	private final ConcurrentSkipListMap<String, GraphObjectModificationState> modifications = new ConcurrentSkipListMap<>();
 	private final List<ModificationEvent> modificationEvents                                = new LinkedList<>();
 	private final Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
 	private final Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
 	private final Set<String> synchronizationKeys                                           = new TreeSet<>();
+	private final UniquenessCheck uniquenessCheck                                           = new UniquenessCheck();
 
 	/**
 	 * Returns a set containing the different entity types of
@@ -111,6 +116,18 @@ public class ModificationQueue {
 		return valid;
 	}
 
+	/**
+	 * Checks the uniqueness of all property values collected with
+	 * {@link #checkUniqueness} in one pass.
+	 *
+	 * @param errorBuffer
+	 * @return whether all values are unique
+	 * @throws FrameworkException
+	 */
+	public boolean doUniquenessValidation(final ErrorBuffer errorBuffer) throws FrameworkException {
+		return uniquenessCheck.check(errorBuffer);
+	}
+
 	public boolean doPostProcessing(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 
 		boolean valid = true;
@@ -123,6 +140,58 @@ public class ModificationQueue {
 		return valid;
 	}
 
+	/**
+	 * Recomputes the stored values of all materialized properties whose
+	 * value may have been changed by the modifications in this queue.
+	 *
+	 * @throws FrameworkException
+	 */
+	public void updateMaterializedProperties() throws FrameworkException {
+
+		if (materializedProperties.isEmpty()) {
+			return;
+		}
+
+		final Map<MaterializedProperty, Map<String, NodeInterface>> owners = new LinkedHashMap<>();
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+
+			final GraphObject graphObject = state.getGraphObject();
+
+			if (state.isNode() && !state.isDeleted() && graphObject != null) {
+
+				final NodeInterface node = (NodeInterface)graphObject;
+
+				for (final MaterializedProperty property : materializedProperties) {
+
+					Map<String, NodeInterface> nodes = owners.get(property);
+					if (nodes == null) {
+
+						nodes = new LinkedHashMap<>();
+						owners.put(property, nodes);
+					}
+
+					if (property.isOwner(node)) {
+						nodes.put(node.getUuid(), node);
+					}
+
+					for (final NodeInterface owner : property.getOwners(node, state.getModifiedProperties())) {
+						nodes.put(owner.getUuid(), owner);
+					}
+				}
+			}
+		}
+
+		for (final Entry<MaterializedProperty, Map<String, NodeInterface>> entry : owners.entrySet()) {
+
+			final MaterializedProperty property = entry.getKey();
+
+			for (final NodeInterface owner : entry.getValue().values()) {
+				property.update(owner);
+			}
+		}
+	}
+
 	public void doOuterCallbacks(SecurityContext securityContext) {
 
 		long t0 = System.currentTimeMillis();
@@ -223,6 +292,14 @@ public class ModificationQueue {
 		modifyEndNodes(relationship.getSourceNode(), relationship.getTargetNode(), relationship.getRelType());
 	}
 
+	public void checkUniqueness(final GraphObject object, final PropertyKey key) {
+		uniquenessCheck.add(object, key);
+	}
+
+	public void releaseUniqueValues() {
+		uniquenessCheck.release();
+	}
+
 	public List<ModificationEvent> getModificationEvents() {
 		return modificationEvents;
 	}
@@ -235,6 +312,16 @@ public class ModificationQueue {
 		}
 	}
 
+	/**
+	 * Registers a property whose value is stored in the database and must
+	 * be recomputed when the objects it depends on are modified.
+	 *
+	 * @param property the property
+	 */
+	public static void registerMaterializedProperty(final MaterializedProperty property) {
+		materializedProperties.add(property);
+	}
+
 	// ----- private methods -----
 	private void modifyEndNodes(NodeInterface startNode, NodeInterface endNode, RelationshipType relType) {
 
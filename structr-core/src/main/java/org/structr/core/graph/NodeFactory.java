@@ -112,6 +112,11 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 		return super.instantiate(input);
 	}
 
+	@Override
+	protected boolean isReadable(final Node node) throws FrameworkException {
+		return factoryProfile.getSecurityContext().isReadable(node, factoryProfile.includeDeletedAndHidden(), factoryProfile.publicOnly());
+	}
+
 	@Override
 	public T instantiateDummy(final Node entity, final String entityType) throws FrameworkException {
 
@@ -35,6 +35,7 @@ import org.structr.core.Services;
 import org.structr.core.SingletonService;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Location;
+import org.structr.core.entity.TreeChildCache;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -48,6 +49,7 @@ import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseBuilder;
 import org.neo4j.shell.ShellSettings;
 import org.neo4j.tooling.GlobalGraphOperations;
+import org.structr.common.MailOutbox;
 import org.structr.common.SecurityContext;
 import org.structr.common.StructrConf;
 import org.structr.common.error.FrameworkException;
@@ -265,6 +267,9 @@ public class NodeService implements SingletonService {
 
 		// check for empty database and seed file
 		importSeedFile(StructrApp.getConfigurationValue(Services.BASE_PATH));
+
+		// deliver mails that were queued before the last shutdown
+		MailOutbox.start();
 	}
 
 	@Override
@@ -273,8 +278,15 @@ public class NodeService implements SingletonService {
 		if (isRunning()) {
 
 			logger.log(Level.INFO, "Shutting down graph database service");
+
+			// the mail sender needs the database
+			MailOutbox.stop();
+
 			graphDb.shutdown();
 
+			// cached ids are not valid in the next database
+			TreeChildCache.clear();
+
 			graphDb       = null;
 			isInitialized = false;
 
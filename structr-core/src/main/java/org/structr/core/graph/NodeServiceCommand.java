@@ -28,7 +28,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Command;
-import org.structr.core.GraphObject;
 import org.structr.core.Predicate;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
@@ -60,7 +59,7 @@ public abstract class NodeServiceCommand extends Command {
 	 * @return the number of nodes processed
 	 * @throws FrameworkException
 	 */
-	public static <T extends GraphObject> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation) throws FrameworkException {
+	public static <T> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation) throws FrameworkException {
 		return bulkGraphOperation(securityContext, nodes, commitCount, description, operation, true);
 	}
 	/**
@@ -76,7 +75,7 @@ public abstract class NodeServiceCommand extends Command {
 	 * @return the number of nodes processed
 	 * @throws FrameworkException
 	 */
-	public static <T extends GraphObject> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation, boolean validation) throws FrameworkException {
+	public static <T> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation, boolean validation) throws FrameworkException {
 
 		final App app              = StructrApp.getInstance(securityContext);
 		final Iterator<T> iterator = nodes.iterator();
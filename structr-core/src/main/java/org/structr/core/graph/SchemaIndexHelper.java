@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+import org.structr.common.PropertyView;
+import org.structr.core.Services;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.ConfigurationProvider;
+
+/**
+ * Creates Neo4j schema indexes for all indexed properties of the registered
+ * node types, and keeps track of the indexes that can be used by the label
+ * based search in {@link org.structr.core.graph.search.SearchCommand}.
+ *
+ * The index of a property is created on the label of the type that declares
+ * the property. Properties that are declared on {@link AbstractNode} or on
+ * interfaces are indexed on the label of the topmost type of each type
+ * hierarchy, as there are no labels for the base types. Nodes created before
+ * labels were introduced need to be migrated with the
+ * {@link BulkCreateLabelsCommand} before the label based search can be used.
+ */
+public class SchemaIndexHelper {
+
+	private static final Logger logger                               = Logger.getLogger(SchemaIndexHelper.class.getName());
+	private static final Map<String, IndexDefinition> pendingIndexes = new ConcurrentHashMap<>();
+	private static final Set<String> onlineIndexes                   = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private static volatile GraphDatabaseService indexedDb           = null;
+	private static volatile Thread lastCreator                       = null;
+
+	/**
+	 * Indicates whether the label based search is enabled in the
+	 * configuration. It is disabled by default, as nodes without labels
+	 * are not found until the {@link BulkCreateLabelsCommand} has run.
+	 *
+	 * @return whether label queries are enabled
+	 */
+	public static boolean isEnabled() {
+		return "true".equals(StructrApp.getConfigurationValue(Services.SEARCH_SCHEMA_INDEXES, "false"));
+	}
+
+	/**
+	 * Creates the missing schema indexes for the indexed properties of all
+	 * registered node types. Neo4j does not allow schema and data changes
+	 * in the same transaction, and schema changes must wait for running
+	 * transactions, so the indexes are created asynchronously in a separate
+	 * thread. The indexes are then populated in the background by the
+	 * database and used by the search as soon as they are online.
+	 *
+	 * @param graphDb
+	 */
+	public static void createSchemaIndexes(final GraphDatabaseService graphDb) {
+
+		if (graphDb == null || !isEnabled()) {
+			return;
+		}
+
+		final Map<String, Set<String>> wantedIndexes = collectIndexedProperties();
+		final Thread creator                         = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				createSchemaIndexes(graphDb, wantedIndexes);
+			}
+
+		}, "SchemaIndexCreator");
+
+		creator.setDaemon(true);
+		creator.start();
+
+		lastCreator = creator;
+	}
+
+	/**
+	 * Indicates whether there is an online schema index for the given
+	 * label and property. Must be called in a transaction.
+	 *
+	 * @param graphDb
+	 * @param label
+	 * @param key the database name of the property
+	 * @return whether the index can be used
+	 */
+	public static boolean hasIndex(final GraphDatabaseService graphDb, final String label, final String key) {
+
+		if (graphDb != indexedDb) {
+			return false;
+		}
+
+		final String name = indexName(label, key);
+
+		if (onlineIndexes.contains(name)) {
+			return true;
+		}
+
+		final IndexDefinition pending = pendingIndexes.get(name);
+		if (pending != null) {
+
+			try {
+
+				// check whether the population of the index is finished
+				if (Schema.IndexState.ONLINE.equals(graphDb.schema().getIndexState(pending))) {
+
+					onlineIndexes.add(name);
+					pendingIndexes.remove(name);
+
+					return true;
+				}
+
+			} catch (NotFoundException nfex) {
+
+				// index creation was rolled back
+				pendingIndexes.remove(name);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Waits for the creation and population of all schema indexes to
+	 * finish. Must not be called in a transaction.
+	 *
+	 * @param graphDb
+	 * @param timeout
+	 * @param unit
+	 * @throws InterruptedException
+	 */
+	public static void awaitIndexesOnline(final GraphDatabaseService graphDb, final long timeout, final TimeUnit unit) throws InterruptedException {
+
+		final Thread creator = lastCreator;
+		if (creator != null) {
+
+			creator.join(unit.toMillis(timeout));
+		}
+
+		try (final Transaction tx = graphDb.beginTx()) {
+
+			graphDb.schema().awaitIndexesOnline(timeout, unit);
+			tx.success();
+		}
+	}
+
+	// ----- private methods -----
+	private static synchronized void createSchemaIndexes(final GraphDatabaseService graphDb, final Map<String, Set<String>> wantedIndexes) {
+
+		if (graphDb != indexedDb) {
+
+			// database was restarted
+			pendingIndexes.clear();
+			onlineIndexes.clear();
+
+			indexedDb = graphDb;
+		}
+
+		int count = 0;
+
+		try (final Transaction tx = graphDb.beginTx()) {
+
+			final Schema schema = graphDb.schema();
+
+			for (final Map.Entry<String, Set<String>> entry : wantedIndexes.entrySet()) {
+
+				final Label label         = DynamicLabel.label(entry.getKey());
+				final Set<String> missing = new LinkedHashSet<>(entry.getValue());
+
+				for (final IndexDefinition existing : schema.getIndexes(label)) {
+
+					for (final String key : existing.getPropertyKeys()) {
+
+						track(existing, entry.getKey(), key);
+						missing.remove(key);
+					}
+				}
+
+				for (final String key : missing) {
+
+					track(schema.indexFor(label).on(key).create(), entry.getKey(), key);
+					count++;
+				}
+			}
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Unable to create schema indexes", t);
+		}
+
+		if (count > 0) {
+			logger.log(Level.INFO, "Created {0} schema indexes", count);
+		}
+	}
+
+	private static void track(final IndexDefinition indexDefinition, final String label, final String key) {
+
+		final String name = indexName(label, key);
+
+		if (!onlineIndexes.contains(name)) {
+			pendingIndexes.put(name, indexDefinition);
+		}
+	}
+
+	private static Map<String, Set<String>> collectIndexedProperties() {
+
+		final ConfigurationProvider configuration    = StructrApp.getConfiguration();
+		final Map<String, Set<String>> wantedIndexes = new LinkedHashMap<>();
+
+		for (final Class<? extends NodeInterface> type : configuration.getNodeEntities().values()) {
+
+			for (final PropertyKey key : configuration.getPropertySet(type, PropertyView.All)) {
+
+				if (key.isIndexed() || key.isPassivelyIndexed()) {
+
+					final Class indexType = getIndexType(type, key.getDeclaringClass());
+					if (indexType != null) {
+
+						Set<String> keys = wantedIndexes.get(indexType.getSimpleName());
+						if (keys == null) {
+
+							keys = new LinkedHashSet<>();
+							wantedIndexes.put(indexType.getSimpleName(), keys);
+						}
+
+						keys.add(key.dbName());
+					}
+				}
+			}
+		}
+
+		return wantedIndexes;
+	}
+
+	/**
+	 * Returns the topmost class in the hierarchy of the given type that
+	 * has the declaring class of a property as a supertype.
+	 */
+	private static Class getIndexType(final Class type, final Class declaringClass) {
+
+		Class indexType = null;
+		Class localType = type;
+
+		while (localType != null && !AbstractNode.class.equals(localType) && AbstractNode.class.isAssignableFrom(localType)) {
+
+			if (declaringClass == null || declaringClass.isAssignableFrom(localType)) {
+				indexType = localType;
+			}
+
+			localType = localType.getSuperclass();
+		}
+
+		return indexType;
+	}
+
+	private static String indexName(final String label, final String key) {
+		return label.concat(".").concat(key);
+	}
+}
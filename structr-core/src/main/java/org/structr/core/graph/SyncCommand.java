@@ -49,6 +49,7 @@ import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.DynamicRelationshipType;
@@ -57,6 +58,7 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.structr.common.ChunkIndex;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
@@ -72,6 +74,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 	private static final Logger logger                 = Logger.getLogger(SyncCommand.class.getName());
 	private static final String STRUCTR_ZIP_DB_NAME    = "db";
+	private static final String STRUCTR_ZIP_LINKS_NAME = "links";
 
 	private static final Map<Class, String> typeMap    = new LinkedHashMap<>();
 	private static final Map<Class, Method> methodMap  = new LinkedHashMap<>();
@@ -242,8 +245,12 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			zos.setLevel(6);
 
 			if (includeFiles) {
-				// export files first
-				exportDirectory(zos, new File("files"), "", filesToInclude.isEmpty() ? null : filesToInclude);
+
+				final Map<String, File> links = new LinkedHashMap<>();
+
+				// export files first, files with identical content only once
+				exportDirectory(zos, new File("files"), "", filesToInclude.isEmpty() ? null : filesToInclude, getStoredChecksums(nodes), new ChunkIndex(), links);
+				exportLinks(zos, writer, links);
 			}
 
 			// export database
@@ -279,8 +286,9 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	public static void importFromStream(final GraphDatabaseService graphDb, final SecurityContext securityContext, final InputStream inputStream, boolean doValidation) throws FrameworkException {
 
 		try {
-			ZipInputStream zis = new ZipInputStream(inputStream);
-			ZipEntry entry     = zis.getNextEntry();
+			final Set<String> importedFiles = new LinkedHashSet<>();
+			ZipInputStream zis              = new ZipInputStream(inputStream);
+			ZipEntry entry                  = zis.getNextEntry();
 
 			while (entry != null) {
 
@@ -288,10 +296,14 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 					importDatabase(graphDb, securityContext, zis, doValidation);
 
+				} else if (STRUCTR_ZIP_LINKS_NAME.equals(entry.getName())) {
+
+					importLinks(zis, importedFiles);
+
 				} else {
 
 					// store other files in "files" dir..
-					importDirectory(zis, entry);
+					importDirectory(zis, entry, importedFiles);
 				}
 
 				entry = zis.getNextEntry();
@@ -452,7 +464,43 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		throw new EOFException();
 	}
 
-	private static void exportDirectory(ZipOutputStream zos, File dir, String path, Set<String> filesToInclude) throws IOException {
+	/**
+	 * Returns the CRC32 checksums that are stored on the file nodes among
+	 * the given nodes, keyed by the path of the file in the export. Only
+	 * checksums of files whose stored size matches the size on disk are
+	 * returned. A stale checksum can only prevent a match, because the
+	 * chunk index confirms every match with the chunk hashes.
+	 */
+	private static Map<String, Long> getStoredChecksums(final Iterable<? extends NodeInterface> nodes) {
+
+		final Map<String, Long> checksums = new LinkedHashMap<>();
+
+		for (final NodeInterface nodeObject : nodes) {
+
+			final Node node = nodeObject.getNode();
+
+			// properties of file nodes, set when the file content is written
+			if (node.hasProperty("relativeFilePath") && node.hasProperty("checksum") && node.hasProperty("size")) {
+
+				final Object relativeFilePath = node.getProperty("relativeFilePath");
+				final Object checksum         = node.getProperty("checksum");
+				final Object size             = node.getProperty("size");
+
+				if (relativeFilePath instanceof String && checksum instanceof Long && size instanceof Long) {
+
+					final String path = "files/" + relativeFilePath;
+
+					if (new File(path).length() == (Long)size) {
+						checksums.put(path, (Long)checksum);
+					}
+				}
+			}
+		}
+
+		return checksums;
+	}
+
+	private static void exportDirectory(ZipOutputStream zos, File dir, String path, Set<String> filesToInclude, final Map<String, Long> checksums, final ChunkIndex index, final Map<String, File> links) throws IOException {
 
 		String nestedPath = path + dir.getName() + "/";
 		ZipEntry dirEntry = new ZipEntry(nestedPath);
@@ -465,7 +513,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 				if (file.isDirectory()) {
 
-					exportDirectory(zos, file, nestedPath, filesToInclude);
+					exportDirectory(zos, file, nestedPath, filesToInclude, checksums, index, links);
 
 				} else {
 
@@ -485,6 +533,20 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 					if (includeFile) {
 
+						// use the checksum of the file node if possible
+						final Long storedChecksum = checksums.get(relativePath);
+						final long checksum       = storedChecksum != null ? storedChecksum : FileUtils.checksumCRC32(file);
+						final File original       = index.find(file, checksum);
+
+						// identical content is already in the export
+						if (original != null) {
+
+							links.put(relativePath, original);
+							continue;
+						}
+
+						index.add(file, checksum);
+
 						// create ZIP entry
 						ZipEntry fileEntry  = new ZipEntry(relativePath);
 						fileEntry.setTime(file.lastModified());
@@ -507,6 +569,38 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 	}
 
+	/**
+	 * Exports the files with the same content as a file that is already
+	 * contained in the export. Each line contains the modification time,
+	 * the path of the exported file and the path of the linked file.
+	 */
+	private static void exportLinks(final ZipOutputStream zos, final PrintWriter writer, final Map<String, File> links) throws IOException {
+
+		if (!links.isEmpty()) {
+
+			zos.putNextEntry(new ZipEntry(STRUCTR_ZIP_LINKS_NAME));
+
+			for (final Entry<String, File> link : links.entrySet()) {
+
+				final File original = link.getValue();
+
+				writer.print(new File(link.getKey()).lastModified());
+				writer.print("\t");
+				writer.print(original.getPath().replace(File.separatorChar, '/'));
+				writer.print("\t");
+				writer.print(link.getKey());
+
+				// do not use platform-specific line ending here!
+				writer.print("\n");
+			}
+
+			writer.flush();
+			zos.closeEntry();
+
+			logger.log(Level.INFO, "Exported {0} files as links to identical files", links.size());
+		}
+	}
+
 	private static void exportDatabase(final ZipOutputStream zos, final PrintWriter writer,  final Iterable<? extends NodeInterface> nodes, final Iterable<? extends RelationshipInterface> relationships) throws IOException, FrameworkException {
 
 		// start database zip entry
@@ -585,7 +679,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		logger.log(Level.INFO, "Exported {0} nodes and {1} rels", new Object[] { nodeCount, relCount } );
 	}
 
-	private static void importDirectory(ZipInputStream zis, ZipEntry entry) throws IOException {
+	private static void importDirectory(ZipInputStream zis, ZipEntry entry, final Set<String> importedFiles) throws IOException {
 
 		if (entry.isDirectory()) {
 
@@ -620,7 +714,46 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 				fos.flush();
 				fos.close();
+
+				importedFiles.add(entry.getName());
+			}
+		}
+	}
+
+	/**
+	 * Imports the files with the same content as a file that was imported
+	 * before. Files are only copied from originals that were written by
+	 * this import, a local original that is newer than the exported one
+	 * has different content.
+	 */
+	private static void importLinks(final ZipInputStream zis, final Set<String> importedFiles) throws IOException {
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(zis));
+		String line                 = reader.readLine();
+
+		while (line != null) {
+
+			final String[] parts = line.split("\t");
+			if (parts.length == 3) {
+
+				final long time   = Long.valueOf(parts[0]);
+				final File source = new File(parts[1]);
+				final File target = new File(parts[2]);
+
+				if (!target.exists() || target.lastModified() < time) {
+
+					if (importedFiles.contains(parts[1])) {
+
+						FileUtils.copyFile(source, target, false);
+
+					} else {
+
+						logger.log(Level.WARNING, "Not importing file {0} because the existing file {1} is newer than its exported content.", new Object[] { parts[2], parts[1] });
+					}
+				}
 			}
+
+			line = reader.readLine();
 		}
 	}
 
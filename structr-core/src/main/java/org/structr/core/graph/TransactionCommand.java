@@ -29,8 +29,12 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import java.util.logging.Logger;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.StructrTransactionListener;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.TreeChildCache;
+import org.structr.core.notion.TypeAndPropertySetDeserializationStrategy;
+import org.structr.core.property.ComputedPropertyCache;
 import org.structr.core.property.PropertyKey;
 
 //~--- classes ----------------------------------------------------------------
@@ -103,6 +107,14 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				}
 			}
 			
+			// 1.2: check uniqueness of the values collected by the inner callbacks
+			if (doValidation && !modificationQueue.doUniquenessValidation(errorBuffer)) {
+
+				tx.failure();
+
+				throw new FrameworkException(422, errorBuffer);
+			}
+
 			// 1.5: execute validatable post-transaction action
 			if (doValidation && !modificationQueue.doPostProcessing(securityContext, errorBuffer)) {
 
@@ -111,6 +123,9 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				throw new FrameworkException(422, errorBuffer);
 			}
 
+			// 1.6: recompute materialized properties of the nodes affected by this tx
+			modificationQueue.updateMaterializedProperties();
+
 			// 2. fetch all types of entities modified in this tx
 			Set<String> synchronizationKeys = modificationQueue.getSynchronizationKeys();
 
@@ -162,11 +177,33 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 
 				try {
 					tx.close();
-					
+
 				} catch (Throwable t) {
 					t.printStackTrace();
+
+				} finally {
+
+					// release unique values reserved by this transaction only
+					// after its values are visible to other transactions
+					if (modificationQueue != null) {
+						modificationQueue.releaseUniqueValues();
+					}
 				}
-				
+
+				// cached permissions may be outdated now
+				if (modificationQueue != null && !modificationQueue.getModificationEvents().isEmpty()) {
+					VisibilityCache.invalidate();
+				}
+
+				// release child order of tree nodes modified in this transaction
+				TreeChildCache.transactionFinished();
+
+				// discard memoized values of computed properties
+				ComputedPropertyCache.invalidate();
+
+				// discard nodes looked up by property set
+				TypeAndPropertySetDeserializationStrategy.invalidate();
+
 			} else {
 				
 				tx.end();
@@ -212,6 +249,7 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 			if (modificationQueue != null) {
 				
 				modificationQueue.create(node);
+				ComputedPropertyCache.invalidate();
 				
 			} else {
 				
@@ -233,6 +271,7 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 			if (modificationQueue != null) {
 				
 				modificationQueue.modify(node, key, previousValue, newValue);
+				ComputedPropertyCache.invalidate();
 				
 			} else {
 				
@@ -254,6 +293,8 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 			if (modificationQueue != null) {
 				
 				modificationQueue.delete(node);
+				ComputedPropertyCache.invalidate();
+				TypeAndPropertySetDeserializationStrategy.invalidate();
 				
 			} else {
 				
@@ -275,6 +316,8 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 			if (modificationQueue != null) {
 				
 				modificationQueue.create(relationship);
+				ComputedPropertyCache.invalidate();
+				TreeChildCache.invalidate(relationship);
 				
 			} else {
 				
@@ -296,6 +339,8 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 			if (modificationQueue != null) {
 				
 				modificationQueue.modify(relationship, key, previousValue, newValue);
+				ComputedPropertyCache.invalidate();
+				TreeChildCache.invalidate(relationship);
 				
 			} else {
 				
@@ -317,6 +362,8 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 			if (modificationQueue != null) {
 				
 				modificationQueue.delete(relationship, passive);
+				ComputedPropertyCache.invalidate();
+				TreeChildCache.invalidate(relationship);
 				
 			} else {
 				
@@ -329,6 +376,31 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 		}
 	}
 	
+	/**
+	 * Defers the uniqueness check of the given property of the given object
+	 * to the commit of the current transaction, where all values of a
+	 * transaction are checked at once.
+	 *
+	 * @param object
+	 * @param key
+	 * @return whether the check was deferred
+	 */
+	public static boolean deferUniquenessCheck(final GraphObject object, final PropertyKey key) {
+
+		final TransactionCommand command = currentCommand.get();
+		if (command != null) {
+
+			final ModificationQueue modificationQueue = command.getModificationQueue();
+			if (modificationQueue != null) {
+
+				modificationQueue.checkUniqueness(object, key);
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	public static void registerTransactionListener(final StructrTransactionListener listener) {
 		listeners.add(listener);
 	}
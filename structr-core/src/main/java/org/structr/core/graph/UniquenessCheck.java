@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.structr.common.error.ErrorBuffer;
+import org.structr.common.error.FrameworkException;
+import org.structr.common.error.UniqueToken;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.Query;
+import org.structr.core.app.StructrApp;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Checks the uniqueness of property values for all objects of a transaction
+ * at once. The values are collected per type and key while the transaction
+ * runs, duplicates within the transaction are detected in memory, and the
+ * values are looked up in the database with one query per type and key.
+ * The type is the class that declares the key, so objects of all of its
+ * subtypes are checked against each other.
+ *
+ * The values are reserved until the transaction is finished, so that
+ * concurrent transactions cannot commit the same value without having to
+ * wait for each other.
+ */
+public class UniquenessCheck {
+
+	private static final ConcurrentMap<String, Reservation> reservations = new ConcurrentHashMap<>();
+	private static final int MAX_TERMS                                   = 512;
+
+	private final Map<Class, Map<PropertyKey, Map<Long, GraphObject>>> candidates = new LinkedHashMap<>();
+	private final Set<String> reserved                                            = new LinkedHashSet<>();
+
+	/**
+	 * Adds the value of the given property of the given object to this check.
+	 *
+	 * @param object
+	 * @param key
+	 */
+	public void add(final GraphObject object, final PropertyKey key) {
+
+		final Class type                              = getType(object, key);
+		Map<PropertyKey, Map<Long, GraphObject>> keys = candidates.get(type);
+
+		if (keys == null) {
+
+			keys = new LinkedHashMap<>();
+			candidates.put(type, keys);
+		}
+
+		Map<Long, GraphObject> objects = keys.get(key);
+		if (objects == null) {
+
+			objects = new LinkedHashMap<>();
+			keys.put(key, objects);
+		}
+
+		objects.put(object.getId(), object);
+	}
+
+	/**
+	 * Checks all values collected so far and adds an error to the given
+	 * error buffer for each value that is not unique.
+	 *
+	 * @param errorBuffer
+	 * @return whether all values are unique
+	 * @throws FrameworkException
+	 */
+	public boolean check(final ErrorBuffer errorBuffer) throws FrameworkException {
+
+		boolean valid = true;
+
+		for (final Entry<Class, Map<PropertyKey, Map<Long, GraphObject>>> typeEntry : candidates.entrySet()) {
+
+			for (final Entry<PropertyKey, Map<Long, GraphObject>> keyEntry : typeEntry.getValue().entrySet()) {
+
+				valid &= check(typeEntry.getKey(), keyEntry.getKey(), keyEntry.getValue().values(), errorBuffer);
+			}
+		}
+
+		candidates.clear();
+
+		return valid;
+	}
+
+	/**
+	 * Releases the values reserved by this check.
+	 */
+	public void release() {
+
+		for (final String reservationKey : reserved) {
+
+			final Reservation reservation = reservations.get(reservationKey);
+			if (reservation != null && reservation.owner == this) {
+
+				reservations.remove(reservationKey, reservation);
+			}
+		}
+
+		reserved.clear();
+	}
+
+	// ----- private methods -----
+	/**
+	 * Returns the class that declares the given key if objects of that
+	 * class can be queried like the given object, or the type of the
+	 * object otherwise.
+	 */
+	private Class getType(final GraphObject object, final PropertyKey key) {
+
+		final Class type          = object.getClass();
+		final Class declaringType = key.getDeclaringClass();
+
+		if (declaringType != null && declaringType.isAssignableFrom(type) && NodeInterface.class.isAssignableFrom(declaringType) == NodeInterface.class.isAssignableFrom(type)) {
+			return declaringType;
+		}
+
+		return type;
+	}
+
+	private boolean check(final Class type, final PropertyKey key, final Iterable<GraphObject> objects, final ErrorBuffer errorBuffer) throws FrameworkException {
+
+		final Map<Object, List<GraphObject>> valueMap = new LinkedHashMap<>();
+		final Set<Long> failed                        = new LinkedHashSet<>();
+
+		// 1. step: group objects by value, detect duplicates in this transaction
+		for (final GraphObject object : objects) {
+
+			final Object value = object.getProperty(key);
+			if (value == null) {
+				continue;
+			}
+
+			List<GraphObject> list = valueMap.get(value);
+			if (list == null) {
+
+				list = new LinkedList<>();
+				valueMap.put(value, list);
+
+			} else {
+
+				fail(object, key, value, list.get(0).getUuid(), failed, errorBuffer);
+			}
+
+			list.add(object);
+		}
+
+		// 2. step: reserve values, detect values committed concurrently
+		for (final Entry<Object, List<GraphObject>> entry : valueMap.entrySet()) {
+
+			final GraphObject first       = entry.getValue().get(0);
+			final String reservationKey   = type.getName().concat(".").concat(key.dbName()).concat("=").concat(entry.getKey().toString());
+			final Reservation reservation = new Reservation(this, first.getUuid());
+			final Reservation existing    = reservations.putIfAbsent(reservationKey, reservation);
+
+			if (existing == null || existing.owner == this) {
+
+				reserved.add(reservationKey);
+
+			} else {
+
+				for (final GraphObject object : entry.getValue()) {
+					fail(object, key, entry.getKey(), existing.uuid, failed, errorBuffer);
+				}
+			}
+		}
+
+		// 3. step: look up values in the database
+		final List<Object> values = new LinkedList<>(valueMap.keySet());
+
+		for (int i=0; i<values.size(); i+=MAX_TERMS) {
+
+			for (final GraphObject existing : query(type, key, values.subList(i, Math.min(i + MAX_TERMS, values.size())))) {
+
+				// the index may contain outdated values
+				final Object value           = existing.getProperty(key);
+				final List<GraphObject> list = value != null ? valueMap.get(value) : null;
+
+				if (list != null) {
+
+					for (final GraphObject object : list) {
+
+						if (object.getId() != existing.getId()) {
+							fail(object, key, value, existing.getUuid(), failed, errorBuffer);
+						}
+					}
+				}
+			}
+		}
+
+		return failed.isEmpty();
+	}
+
+	private List<GraphObject> query(final Class type, final PropertyKey key, final List<Object> values) throws FrameworkException {
+
+		final App app     = StructrApp.getInstance();
+		final Query query = NodeInterface.class.isAssignableFrom(type) ? app.nodeQuery(type) : app.relationshipQuery(type);
+
+		query.and();
+
+		for (final Object value : values) {
+			query.or(key, value);
+		}
+
+		return query.getAsList();
+	}
+
+	private void fail(final GraphObject object, final PropertyKey key, final Object value, final String uuid, final Set<Long> failed, final ErrorBuffer errorBuffer) {
+
+		// report each object only once
+		if (failed.add(object.getId())) {
+
+			errorBuffer.add(object.getType(), new UniqueToken(uuid, key, value));
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Reservation {
+
+		private UniquenessCheck owner = null;
+		private String uuid           = null;
+
+		public Reservation(final UniquenessCheck owner, final String uuid) {
+
+			this.owner = owner;
+			this.uuid  = uuid;
+		}
+	}
+}
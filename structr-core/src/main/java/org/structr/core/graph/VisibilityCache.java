@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.structr.common.Permission;
+import org.structr.common.RelType;
+import org.structr.common.SecurityContext;
+import org.structr.core.GraphObject;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.Security;
+
+/**
+ * Visibility check on raw database nodes, used to count query results
+ * without instantiating and initializing structr entities.
+ *
+ * The check mirrors {@link SecurityContext#isReadable}. The expensive part
+ * (ownership and security relationships) is cached per principal. All
+ * cached entries are discarded when a transaction that modified the
+ * database has been committed.
+ */
+public class VisibilityCache {
+
+	private static final Map<Long, PrincipalCache> caches = new ConcurrentHashMap<>();
+	private static final AtomicLong generation            = new AtomicLong(0);
+	private static final int MAX_ENTRIES_PER_PRINCIPAL    = 10000;
+
+	/**
+	 * Indicates whether the given raw node would be readable in the given
+	 * security context, i.e. whether {@link NodeFactory} would return a
+	 * non-null value when instantiating it.
+	 *
+	 * @param securityContext
+	 * @param node
+	 * @param includeDeletedAndHidden
+	 * @param publicOnly
+	 * @return whether the node is readable
+	 */
+	public static boolean isReadable(final SecurityContext securityContext, final Node node, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+
+		// deleted and hidden nodes will only be returned if we are told to do so
+		if (!includeDeletedAndHidden && (getBoolean(node, NodeInterface.deleted.dbName()) || getBoolean(node, NodeInterface.hidden.dbName()))) {
+
+			return false;
+		}
+
+		// visibleToPublic overrides anything else
+		if (getBoolean(node, GraphObject.visibleToPublicUsers.dbName())) {
+
+			return true;
+		}
+
+		if (publicOnly) {
+
+			return false;
+		}
+
+		final Principal user = securityContext.getUser(false);
+		if (user == null) {
+
+			return false;
+		}
+
+		if (getBoolean(node, GraphObject.visibleToAuthenticatedUsers.dbName())) {
+
+			return true;
+		}
+
+		if (securityContext.isSuperUser()) {
+
+			return true;
+		}
+
+		return getCache(user).hasReadPermission(node);
+	}
+
+	/**
+	 * Discards all cached permissions. Called after a transaction that
+	 * modified the database has been committed.
+	 */
+	public static void invalidate() {
+		generation.incrementAndGet();
+	}
+
+	// ----- private methods -----
+	private static PrincipalCache getCache(final Principal user) {
+
+		final long currentGeneration = generation.get();
+		final Long userId            = user.getId();
+		PrincipalCache cache         = caches.get(userId);
+
+		if (cache == null || cache.generation != currentGeneration) {
+
+			cache = new PrincipalCache(user, currentGeneration);
+			caches.put(userId, cache);
+		}
+
+		return cache;
+	}
+
+	private static boolean getBoolean(final PropertyContainer container, final String key) {
+
+		final Object value = container.getProperty(key, null);
+		if (value != null && value instanceof Boolean) {
+
+			return (Boolean)value;
+		}
+
+		return false;
+	}
+
+	// ----- nested classes -----
+	private static class PrincipalCache {
+
+		private final Map<Long, Boolean> permissions = new LruMap(MAX_ENTRIES_PER_PRINCIPAL);
+		private final Set<Long> ownerIds             = new LinkedHashSet<>();
+		private final Set<Long> principalIds         = new LinkedHashSet<>();
+		private long generation                      = 0L;
+		private long userId                          = 0L;
+
+		public PrincipalCache(final Principal user, final long generation) {
+
+			this.generation = generation;
+			this.userId     = user.getId();
+
+			// owner is always allowed to do anything with its nodes,
+			// see SecurityContext#isAllowed
+			ownerIds.add(userId);
+			for (final Principal parent : user.getParents()) {
+				ownerIds.add(parent.getId());
+			}
+
+			// security relationships are checked for all parent principals,
+			// see AbstractNode#isGranted
+			collectPrincipalIds(user);
+		}
+
+		public boolean hasReadPermission(final Node node) {
+
+			final Long nodeId = node.getId();
+			Boolean cached    = null;
+
+			synchronized (permissions) {
+				cached = permissions.get(nodeId);
+			}
+
+			if (cached != null) {
+				return cached;
+			}
+
+			final boolean value = checkReadPermission(node);
+
+			synchronized (permissions) {
+				permissions.put(nodeId, value);
+			}
+
+			return value;
+		}
+
+		private boolean checkReadPermission(final Node node) {
+
+			// user has full control over his/her own user node
+			if (node.getId() == userId) {
+				return true;
+			}
+
+			// only the first OWNS relationship counts, see AbstractEndpoint#getSingle
+			for (final Relationship owns : node.getRelationships(RelType.OWNS, Direction.INCOMING)) {
+
+				if (ownerIds.contains(owns.getStartNode().getId())) {
+
+					return true;
+				}
+
+				break;
+			}
+
+			for (final Relationship security : node.getRelationships(RelType.SECURITY, Direction.INCOMING)) {
+
+				if (principalIds.contains(security.getStartNode().getId())) {
+
+					final Object allowed = security.getProperty(Security.allowed.dbName(), null);
+					if (allowed != null && allowed instanceof String[]) {
+
+						for (final String permission : (String[])allowed) {
+
+							if (Permission.read.name().equals(permission)) {
+								return true;
+							}
+						}
+					}
+				}
+			}
+
+			return false;
+		}
+
+		private void collectPrincipalIds(final Principal principal) {
+
+			if (principalIds.add(principal.getId())) {
+
+				for (final Principal parent : principal.getParents()) {
+					collectPrincipalIds(parent);
+				}
+			}
+		}
+	}
+
+	private static class LruMap extends LinkedHashMap<Long, Boolean> {
+
+		private int maxSize = 0;
+
+		public LruMap(final int maxSize) {
+
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
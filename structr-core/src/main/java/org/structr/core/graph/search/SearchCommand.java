@@ -28,8 +28,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
@@ -41,7 +43,8 @@ import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.helpers.Predicate;
 import org.neo4j.index.lucene.QueryContext;
-import org.structr.common.GraphObjectComparator;
+import org.structr.common.KeyExtractingSort;
+import org.structr.common.PagingCursor;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -57,6 +60,7 @@ import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.SchemaIndexHelper;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.schema.ConfigurationProvider;
@@ -74,6 +78,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 	private static final Set<Character> specialCharsExact = new LinkedHashSet<>();
 	private static final Set<Character> specialChars      = new LinkedHashSet<>();
+	private static final AtomicLong labelQueryCount       = new AtomicLong(0);
 
 	public static final String LOCATION_SEARCH_KEYWORD    = "location";
 	public static final String STATE_SEARCH_KEYWORD       = "state";
@@ -111,12 +116,15 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 	private SearchAttributeGroup rootGroup     = new SearchAttributeGroup(BooleanClause.Occur.MUST);
 	private SearchAttributeGroup currentGroup  = rootGroup;
+	private SearchAttributeGroup typeGroup     = null;
+	private Class labelType                    = null;
 	private PropertyKey sortKey                = null;
 	private boolean publicOnly                 = false;
 	private boolean includeDeletedAndHidden    = false;
 	private boolean sortDescending             = false;
 	private boolean exactSearch                = true;
 	private String offsetId                    = null;
+	private String cursor                      = null;
 	private int pageSize                       = Integer.MAX_VALUE;
 	private int page                           = 1;
 
@@ -130,6 +138,52 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	public abstract Index<S> getKeywordIndex();
 	public abstract LayerNodeIndex getSpatialIndex();
 
+	/**
+	 * Returns the number of queries that were answered by a label scan or
+	 * a schema index instead of the Lucene indexes.
+	 *
+	 * @return the number of label queries since startup
+	 */
+	public static long getLabelQueryCount() {
+		return labelQueryCount.get();
+	}
+
+	/**
+	 * Indicates whether this command can query the database by label, see
+	 * {@link #getLabelHits(String, String, Object)}.
+	 *
+	 * @return whether label queries are supported
+	 */
+	public boolean supportsLabelQueries() {
+		return false;
+	}
+
+	/**
+	 * Returns the database entities with the given label, or, if a key is
+	 * given, the entities with the given label and property value from the
+	 * schema index for that label and key.
+	 *
+	 * @param label
+	 * @param key the database name of the property, or null
+	 * @param value
+	 * @return the entities
+	 */
+	public Iterable<S> getLabelHits(final String label, final String key, final Object value) {
+		return null;
+	}
+
+	/**
+	 * Indicates whether there is an online schema index for the given
+	 * label and key.
+	 *
+	 * @param label
+	 * @param key the database name of the property
+	 * @return whether the schema index can be used
+	 */
+	public boolean hasSchemaIndex(final String label, final String key) {
+		return false;
+	}
+
 	private Result<T> doSearch() throws FrameworkException {
 
 		if (page == 0 || pageSize <= 0) {
@@ -138,11 +192,26 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 
 		Factory<S, T> factory        = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page, offsetId);
+		PagingCursor pagingCursor    = null;
 		boolean filterResults        = true;
+		boolean filterAttributes     = true;
 		boolean hasGraphSources      = false;
 		boolean hasSpatialSource     = false;
 		final Index<S> index;
 
+		if (cursor != null) {
+
+			if (sortKey == null) {
+				throw new FrameworkException(400, "Keyset pagination needs a sort key");
+			}
+
+			pagingCursor = PagingCursor.fromString(cursor);
+
+			if (!pagingCursor.isStart() && !pagingCursor.isValidFor(sortKey)) {
+				throw new FrameworkException(400, "Page cursor does not match sort key " + sortKey.jsonName());
+			}
+		}
+
 		if (securityContext.getUser(false) == null) {
 
 			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, BooleanClause.Occur.MUST, true));
@@ -215,6 +284,11 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 
 		Result intermediateResult;
+		LabelQuery labelQuery = null;
+
+		if (distanceSearch == null && sources.isEmpty() && !hasEmptySearchFields) {
+			labelQuery = planLabelQuery(pagingCursor);
+		}
 
 		// only do "normal" query if no other sources are present
 		// use filters to filter sources otherwise
@@ -222,6 +296,13 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 			intermediateResult = new Result(new ArrayList<AbstractNode>(), null, false, false);
 
+		} else if (labelQuery != null) {
+
+			// exact type and property query: use labels and schema indexes, the
+			// results are checked, sorted and paged by the filter code below
+			intermediateResult = factory.instantiateAll(getLabelHits(labelQuery.label, labelQuery.key, labelQuery.value));
+			labelQueryCount.incrementAndGet();
+
 		} else {
 
 			BooleanQuery query    = new BooleanQuery();
@@ -245,7 +326,17 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			if (sortKey != null) {
 
 				Integer sortType = sortKey.getSortType();
-				if (sortType != null) {
+
+				if (pagingCursor != null) {
+
+					// keyset pagination needs the index order of the range query,
+					// objects with the same sort key value are ordered by uuid
+					queryContext.sort(new Sort(
+						new SortField(sortKey.dbName(), sortType != null ? sortType : SortField.STRING, sortDescending),
+						new SortField(GraphObject.id.dbName(), SortField.STRING, sortDescending)
+					));
+
+				} else if (sortType != null) {
 
 					queryContext.sort(new Sort(new SortField(sortKey.dbName(), sortType, sortDescending)));
 
@@ -279,6 +370,12 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				// as the results must be filtered by type anyway
 				intermediateResult = new NodeFactory(securityContext).instantiate(hits);
 
+			} else if (allExactMatch && pagingCursor != null && !hasEmptySearchFields && sortKey.isIndexed()) {
+
+				// keyset pagination: range queries start at the position of the cursor
+				intermediateResult = getCursorPage(getKeywordIndex(), query, factory, pagingCursor);
+				filterResults      = false;
+
 			} else if (allExactMatch) {
 
 				index = getKeywordIndex();
@@ -299,9 +396,20 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 					}
 				}
 
-				// all luecene query, do not filter results
-				filterResults = hasEmptySearchFields;
-				intermediateResult = factory.instantiate(hits);
+				if (pagingCursor != null) {
+
+					// keyset pagination on an unindexed sort key or with empty fields:
+					// the index order does not match the raw values the cursor
+					// compares, so all hits are sorted and paged in memory below
+					intermediateResult = factory.instantiateAll(hits);
+					filterAttributes   = hasEmptySearchFields;
+
+				} else {
+
+					// all luecene query, do not filter results
+					filterResults      = hasEmptySearchFields;
+					intermediateResult = factory.instantiate(hits);
+				}
 
 			} else {
 
@@ -324,9 +432,19 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 					}
 				}
 
-				// all luecene query, do not filter results
-				filterResults = hasEmptySearchFields;
-				intermediateResult = factory.instantiate(hits);
+				if (pagingCursor != null) {
+
+					// keyset pagination on tokenized fulltext values: sort and
+					// page all hits in memory below, as in the keyword case
+					intermediateResult = factory.instantiateAll(hits);
+					filterAttributes   = hasEmptySearchFields;
+
+				} else {
+
+					// all luecene query, do not filter results
+					filterResults      = hasEmptySearchFields;
+					intermediateResult = factory.instantiate(hits);
+				}
 			}
 
 			if (hits != null) {
@@ -380,11 +498,15 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 				boolean addToResult = true;
 
-				// check all attributes before adding a node
-				for (SearchAttribute attr : rootGroup.getSearchAttributes()) {
+				// hits of a complete index query need no further checks
+				if (filterAttributes) {
+
+					// check all attributes before adding a node
+					for (SearchAttribute attr : rootGroup.getSearchAttributes()) {
 
-					// check all search attributes
-					addToResult &= attr.includeInResult(obj);
+						// check all search attributes
+						addToResult &= attr.includeInResult(obj);
+					}
 				}
 
 				if (addToResult) {
@@ -394,11 +516,28 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				}
 			}
 
-			// sort list
-			Collections.sort(finalResult, new GraphObjectComparator(sortKey, sortDescending));
+			if (pagingCursor != null) {
+
+				// sort list, objects with the same sort key value are ordered by uuid
+				Collections.sort(finalResult, PagingCursor.getComparator(sortKey, sortDescending));
 
-			// return paged final result
-			return new Result(PagingHelper.subList(finalResult, pageSize, page, offsetId), resultCount, true, false);
+				// return the page after the cursor
+				return withNextCursor(new Result(cursorSubList(finalResult, pagingCursor), resultCount, true, false));
+			}
+
+			if (StringUtils.isBlank(offsetId)) {
+
+				// sort list, keeping only the requested page
+				return new Result(KeyExtractingSort.page(finalResult, sortKey, sortDescending, pageSize, page), resultCount, true, false);
+			}
+
+			// sort list, return paged final result
+			return new Result(PagingHelper.subList(KeyExtractingSort.sort(finalResult, sortKey, sortDescending), pageSize, page, offsetId), resultCount, true, false);
+
+		} else if (pagingCursor != null) {
+
+			// no filtering
+			return withNextCursor(intermediateResult);
 
 		} else {
 
@@ -407,6 +546,219 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 	}
 
+	/**
+	 * Decides whether this query can be run as a label query instead of a
+	 * Lucene query. This is the case if the query consists of a single type
+	 * group and exact property values only. If one of the properties has an
+	 * online schema index, the index is queried. All nodes with the label of
+	 * the type are scanned only for unpaged queries without property values,
+	 * all other queries are left to Lucene, as it returns sorted pages
+	 * without instantiating all results and matches all value types.
+	 *
+	 * @param pagingCursor
+	 * @return the label query, or null if Lucene should be used
+	 */
+	private LabelQuery planLabelQuery(final PagingCursor pagingCursor) {
+
+		if (typeGroup == null || labelType.isInterface() || !supportsLabelQueries() || !SchemaIndexHelper.isEnabled()) {
+			return null;
+		}
+
+		final List<PropertySearchAttribute> properties = new LinkedList<>();
+
+		for (final SearchAttribute attr : rootGroup.getSearchAttributes()) {
+
+			if (attr == typeGroup) {
+
+				if (!BooleanClause.Occur.MUST.equals(attr.getOccur()) || !attr.isExactMatch()) {
+					return null;
+				}
+
+			} else if (PropertySearchAttribute.class.equals(attr.getClass()) && BooleanClause.Occur.MUST.equals(attr.getOccur()) && attr.isExactMatch()) {
+
+				properties.add((PropertySearchAttribute)attr);
+
+			} else {
+
+				// fulltext, range, spatial and grouped queries are left to Lucene
+				return null;
+			}
+		}
+
+		// look for a schema index on the label of the type or one of its supertypes
+		for (final PropertySearchAttribute attr : properties) {
+
+			final Object value = attr.getValue();
+			final String key   = attr.getKey().dbName();
+
+			if (isSchemaIndexValue(value)) {
+
+				for (final Class supertype : typeAndAllSupertypes(labelType)) {
+
+					if (!supertype.isInterface() && hasSchemaIndex(supertype.getSimpleName(), key)) {
+
+						return new LabelQuery(supertype.getSimpleName(), key, value);
+					}
+				}
+			}
+		}
+
+		if (properties.isEmpty() && pageSize == Integer.MAX_VALUE && pagingCursor == null && offsetId == null) {
+
+			return new LabelQuery(labelType.getSimpleName(), null, null);
+		}
+
+		return null;
+	}
+
+	private boolean isSchemaIndexValue(final Object value) {
+
+		if (value instanceof String) {
+			return !((String)value).isEmpty();
+		}
+
+		return value instanceof Boolean || value instanceof Integer || value instanceof Long || value instanceof Double;
+	}
+
+	/**
+	 * Returns the page after the given cursor. The objects that have a
+	 * value for the sort key and those that do not are queried separately,
+	 * as the latter are not part of the range query. Objects without a value
+	 * rank higher than any other value, so they follow the other objects in
+	 * ascending order and precede them in descending order.
+	 */
+	private Result getCursorPage(final Index<S> index, final BooleanQuery query, final Factory<S, T> factory, final PagingCursor pagingCursor) throws FrameworkException {
+
+		final boolean nullsFirst        = sortDescending;
+		final boolean startInNulls      = pagingCursor.isStart() ? nullsFirst : pagingCursor.isNullValue();
+		final List<GraphObject> results = new LinkedList<>();
+		int resultCount                 = 0;
+
+		final Result first = getCursorSegment(index, query, factory, pagingCursor, startInNulls, true);
+
+		results.addAll(first.getResults());
+		resultCount += first.getRawResultCount();
+
+		// continue with the second segment if the cursor is in the first one
+		if (startInNulls == nullsFirst) {
+
+			final Result second = getCursorSegment(index, query, factory, PagingCursor.fromString(null), !startInNulls, results.size() < pageSize);
+
+			for (final Object obj : second.getResults()) {
+
+				if (results.size() >= pageSize) {
+					break;
+				}
+
+				results.add((GraphObject)obj);
+			}
+
+			resultCount += second.getRawResultCount();
+		}
+
+		return new Result(results, resultCount, true, false);
+	}
+
+	private Result getCursorSegment(final Index<S> index, final BooleanQuery baseQuery, final Factory<S, T> factory, final PagingCursor pagingCursor, final boolean nullSegment, final boolean instantiate) throws FrameworkException {
+
+		final BooleanQuery query = new BooleanQuery();
+		final Sort sort;
+
+		if (!baseQuery.clauses().isEmpty()) {
+			query.add(baseQuery, BooleanClause.Occur.MUST);
+		}
+
+		if (nullSegment) {
+
+			query.add(PagingCursor.getValueQuery(sortKey), BooleanClause.Occur.MUST_NOT);
+
+			if (!pagingCursor.isStart()) {
+				query.add(pagingCursor.getUuidRangeQuery(sortDescending), BooleanClause.Occur.MUST);
+			}
+
+			sort = new Sort(new SortField(GraphObject.id.dbName(), SortField.STRING, sortDescending));
+
+		} else {
+
+			final Integer sortType = sortKey.getSortType();
+
+			query.add(pagingCursor.isStart() ? PagingCursor.getValueQuery(sortKey) : pagingCursor.getRangeQuery(sortKey, sortDescending), BooleanClause.Occur.MUST);
+
+			// objects with the same sort key value are ordered by uuid
+			sort = new Sort(
+				new SortField(sortKey.dbName(), sortType != null ? sortType : SortField.STRING, sortDescending),
+				new SortField(GraphObject.id.dbName(), SortField.STRING, sortDescending)
+			);
+		}
+
+		final QueryContext queryContext = new QueryContext(query).sort(sort);
+		IndexHits hits                  = null;
+
+		synchronized (index) {
+
+			try {
+				hits = index.query(queryContext);
+
+			} catch (NumberFormatException nfe) {
+
+				logger.log(Level.SEVERE, "Could not sort results", nfe);
+
+				// retry without sorting
+				queryContext.sort(null);
+				hits = index.query(queryContext);
+			}
+		}
+
+		try {
+
+			if (instantiate) {
+
+				factory.setCursor(pagingCursor, sortDescending);
+				return factory.instantiate(hits);
+			}
+
+			return new Result(Collections.EMPTY_LIST, hits.size(), true, false);
+
+		} finally {
+
+			hits.close();
+		}
+	}
+
+	private List<GraphObject> cursorSubList(final List<GraphObject> list, final PagingCursor pagingCursor) {
+
+		final List<GraphObject> page = new LinkedList<>();
+
+		for (final GraphObject obj : list) {
+
+			if (page.size() >= pageSize) {
+				break;
+			}
+
+			if (!pagingCursor.isBeforeOrAt(obj.getPropertyContainer(), sortDescending)) {
+				page.add(obj);
+			}
+		}
+
+		return page;
+	}
+
+	private Result withNextCursor(final Result result) {
+
+		// a full page means there may be more results
+		if (pageSize < Integer.MAX_VALUE && result.size() >= pageSize) {
+
+			final List<GraphObject> results = result.getResults();
+			final PagingCursor next         = PagingCursor.forObject(sortKey, results.get(results.size() - 1));
+
+			if (next != null) {
+				result.setNextCursor(next.toString());
+			}
+		}
+
+		return result;
+	}
+
 	private Set<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 
 		Set<GraphObject> mergedResult = new LinkedHashSet<>();
@@ -562,6 +914,12 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return this;
 	}
 
+	@Override
+	public org.structr.core.app.Query<T> cursor(final String cursor) {
+		this.cursor = cursor;
+		return this;
+	}
+
 	@Override
 	public org.structr.core.app.Query<T> uuid(final String uuid) {
 		return and(GraphObject.id, uuid);
@@ -582,9 +940,18 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	@Override
 	public org.structr.core.app.Query<T> andTypes(final Class type) {
 
+		// the first type group of the query can be run as a label query
+		final boolean isLabelType = typeGroup == null && currentGroup == rootGroup && NodeInterface.class.isAssignableFrom(type);
+
 		// create a new search group
 		and();
 
+		if (isLabelType) {
+
+			typeGroup = currentGroup;
+			labelType = type;
+		}
+
 		for (final Class subtype : allSubtypes(type)) {
 			orType(subtype);
 		}
@@ -926,6 +1293,20 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	}
 
 	// ----- nested classes -----
+	private static class LabelQuery {
+
+		private String label = null;
+		private String key   = null;
+		private Object value = null;
+
+		public LabelQuery(final String label, final String key, final Object value) {
+
+			this.label = label;
+			this.key   = key;
+			this.value = value;
+		}
+	}
+
 	private class AndPredicate implements Predicate<GraphObject> {
 
 		final List<Predicate<GraphObject>> predicates = new LinkedList<>();
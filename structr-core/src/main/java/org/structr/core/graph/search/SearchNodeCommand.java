@@ -23,13 +23,20 @@ import org.structr.core.graph.NodeFactory;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.ArrayList;
+import java.util.List;
 import org.neo4j.gis.spatial.indexprovider.LayerNodeIndex;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.index.Index;
+import org.neo4j.tooling.GlobalGraphOperations;
 import org.structr.common.SecurityContext;
 import org.structr.core.graph.Factory;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeService;
+import org.structr.core.graph.SchemaIndexHelper;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -72,4 +79,45 @@ public class SearchNodeCommand<T extends NodeInterface> extends SearchCommand<No
 	public LayerNodeIndex getSpatialIndex() {
 		 return (LayerNodeIndex) arguments.get(NodeService.NodeIndex.layer.name());
 	}
+
+	@Override
+	public boolean supportsLabelQueries() {
+		return true;
+	}
+
+	@Override
+	public Iterable<Node> getLabelHits(final String label, final String key, final Object value) {
+
+		final GraphDatabaseService graphDb = (GraphDatabaseService) arguments.get("graphDb");
+		final List<Node> nodes             = new ArrayList<>();
+		final ResourceIterator<Node> it;
+
+		if (key != null) {
+
+			it = graphDb.findNodesByLabelAndProperty(DynamicLabel.label(label), key, value).iterator();
+
+		} else {
+
+			it = GlobalGraphOperations.at(graphDb).getAllNodesWithLabel(DynamicLabel.label(label)).iterator();
+		}
+
+		// collect nodes and release the index readers
+		try {
+
+			while (it.hasNext()) {
+				nodes.add(it.next());
+			}
+
+		} finally {
+
+			it.close();
+		}
+
+		return nodes;
+	}
+
+	@Override
+	public boolean hasSchemaIndex(final String label, final String key) {
+		return SchemaIndexHelper.hasIndex((GraphDatabaseService) arguments.get("graphDb"), label, key);
+	}
 }
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.notion;
+
+import java.util.List;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.NodeInterface;
+
+/**
+ * A {@link DeserializationStrategy} that can deserialize a collection of
+ * input objects at once, e.g. to look up all of them with a single query.
+ *
+ * @param <S>
+ * @param <T>
+ */
+public interface BatchDeserializationStrategy<S, T extends NodeInterface> extends DeserializationStrategy<S, T> {
+	public List<T> deserializeAll(final SecurityContext securityContext, Class<T> type, List<S> sources) throws FrameworkException;
+}
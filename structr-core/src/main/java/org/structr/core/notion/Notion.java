@@ -131,6 +131,10 @@ public abstract class Notion<S extends NodeInterface, T> {
 					return Collections.EMPTY_LIST;
 				}
 
+				if (deserializationStrategy instanceof BatchDeserializationStrategy) {
+					return ((BatchDeserializationStrategy<T, S>)deserializationStrategy).deserializeAll(securityContext, type, s);
+				}
+
 				List<S> list = new LinkedList<>();
 				for (T t : s) {
 
@@ -33,21 +33,28 @@ import org.structr.common.error.FrameworkException;
 import org.structr.common.error.PropertiesNotFoundToken;
 import org.structr.common.error.TypeToken;
 import org.structr.core.JsonInput;
-import org.structr.core.Result;
 import org.structr.core.app.App;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.TransactionCommand;
 
 //~--- classes ----------------------------------------------------------------
 
 /**
  * Deserializes a {@link GraphObject} using a type and a set of property values.
  *
+ * Collections of input objects that consist of exactly the property set of
+ * this strategy are looked up with one query per type. The nodes found or
+ * created are cached for the rest of the transaction.
+ *
  * @author Christian Morgner
  */
-public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterface> implements DeserializationStrategy<S, T> {
+public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterface> implements BatchDeserializationStrategy<S, T> {
 
-	private static final Logger logger = Logger.getLogger(TypeAndPropertySetDeserializationStrategy.class.getName());
+	private static final Logger logger                                                             = Logger.getLogger(TypeAndPropertySetDeserializationStrategy.class.getName());
+	private static final ThreadLocal<Map<SecurityContext, Map<String, List<NodeInterface>>>> cache = new ThreadLocal<>();
+	private static final int MAX_TERMS                                                             = 512;
 	
 	protected PropertyKey[] propertyKeys  = null;
 	protected boolean createIfNotExisting = false;
@@ -68,34 +75,91 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 	@Override
 	public T deserialize(SecurityContext securityContext, Class<T> type, S source) throws FrameworkException {
 
+		final PropertyMap attributes = getAttributes(securityContext, type, source);
+		if (attributes != null) {
+
+			return deserialize(securityContext, type, attributes, null);
+		}
+
+		return null;
+	}
+
+	@Override
+	public List<T> deserializeAll(SecurityContext securityContext, Class<T> type, List<S> sources) throws FrameworkException {
+
+		final List<PropertyMap> attributeList = new LinkedList<>();
+		final List<T> list                    = new LinkedList<>();
+
+		for (final S source : sources) {
+			attributeList.add(getAttributes(securityContext, type, source));
+		}
+
+		final Map<String, List<T>> found = lookup(securityContext, type, attributeList);
+
+		for (final PropertyMap attributes : attributeList) {
+
+			list.add(attributes != null ? deserialize(securityContext, type, attributes, found) : null);
+		}
+
+		return list;
+	}
+
+	/**
+	 * Discards the nodes cached by the current thread. Called when the
+	 * current transaction deletes a node, and when it is finished.
+	 */
+	public static void invalidate() {
+		cache.remove();
+	}
+
+	// ----- private methods -----
+	private PropertyMap getAttributes(final SecurityContext securityContext, final Class<T> type, final S source) throws FrameworkException {
+
 		if (source instanceof JsonInput) {
 			
-			PropertyMap attributes = PropertyMap.inputTypeToJavaType(securityContext, type, ((JsonInput)source).getAttributes());
-			return deserialize(securityContext, type, attributes);
+			return PropertyMap.inputTypeToJavaType(securityContext, type, ((JsonInput)source).getAttributes());
 		}
 		
 		if (source instanceof Map) {
 			
-			PropertyMap attributes = PropertyMap.inputTypeToJavaType(securityContext, type, (Map)source);
-			return deserialize(securityContext, type, attributes);
+			return PropertyMap.inputTypeToJavaType(securityContext, type, (Map)source);
 		}
 		
 		return null;
 	}
 
-	private T deserialize(SecurityContext securityContext, Class<T> type, PropertyMap attributes) throws FrameworkException {
+	private T deserialize(SecurityContext securityContext, Class<T> type, PropertyMap attributes, Map<String, List<T>> found) throws FrameworkException {
 
 		final App app = StructrApp.getInstance(securityContext);
 		
 		if (attributes != null) {
 			
-			Result<T> result = Result.EMPTY_RESULT;
+			final String cacheKey = getCacheKey(type, attributes);
+			final List<T> cached  = found == null && cacheKey != null ? getCached(securityContext, cacheKey, attributes) : null;
+			List<T> result        = Collections.emptyList();
 			
 			// Check if properties contain the UUID attribute
 			if (attributes.containsKey(GraphObject.id)) {
 
-				result = new Result(app.get(attributes.get(GraphObject.id)), false);
+				final T node = (T)app.get(attributes.get(GraphObject.id));
+				if (node != null) {
+
+					result = Collections.singletonList(node);
+				}
 				
+			} else if (found != null && cacheKey != null) {
+
+				// property set was looked up in advance
+				if (found.containsKey(cacheKey)) {
+
+					result = found.get(cacheKey);
+				}
+
+			} else if (cached != null) {
+
+				// node was found or created earlier in this transaction
+				result = cached;
+
 			} else {
 
 				
@@ -108,8 +172,14 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 				
 				if (attributesComplete) {
 					
-					result = app.nodeQuery(type).and(attributes).getResult();
-					
+					result = app.nodeQuery(type).and(attributes).getAsList();
+
+					if (cacheKey != null) {
+
+						for (final T node : result) {
+							cache(securityContext, cacheKey, node);
+						}
+					}
 				}
 			}
 
@@ -125,6 +195,15 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 						T newNode = app.create(type, attributes);
 						if (newNode != null) {
 
+							if (cacheKey != null) {
+
+								if (found != null) {
+									found.put(cacheKey, Collections.singletonList(newNode));
+								}
+
+								cache(securityContext, cacheKey, newNode);
+							}
+
 							return newNode;
 						}						
 					}
@@ -148,7 +227,7 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 		return null;
 	}
 	
-	private T getTypedResult(Result<T> result, Class<T> type) throws FrameworkException {
+	private T getTypedResult(List<T> result, Class<T> type) throws FrameworkException {
 		
 		GraphObject obj = result.get(0);
 
@@ -158,6 +237,171 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 
 		return result.get(0);
 	}
-	
-	
+
+	/**
+	 * Looks up the nodes for all property sets in the given list, using
+	 * the transaction cache first and one query for the rest. The query
+	 * matches any of the property sets, each with all of its values.
+	 */
+	private Map<String, List<T>> lookup(final SecurityContext securityContext, final Class<T> type, final List<PropertyMap> attributeList) throws FrameworkException {
+
+		final Map<String, List<T>> found       = new LinkedHashMap<>();
+		final Map<String, PropertyMap> pending = new LinkedHashMap<>();
+
+		for (final PropertyMap attributes : attributeList) {
+
+			final String cacheKey = attributes != null && !attributes.containsKey(GraphObject.id) ? getCacheKey(type, attributes) : null;
+			if (cacheKey != null && !found.containsKey(cacheKey) && !pending.containsKey(cacheKey)) {
+
+				final List<T> cached = getCached(securityContext, cacheKey, attributes);
+				if (cached != null) {
+
+					found.put(cacheKey, cached);
+
+				} else {
+
+					pending.put(cacheKey, attributes);
+				}
+			}
+		}
+
+		if (!pending.isEmpty()) {
+
+			final App app                = StructrApp.getInstance(securityContext);
+			final List<PropertyMap> sets = new LinkedList<>(pending.values());
+			final int setsPerQuery       = Math.max(1, MAX_TERMS / propertyKeys.length);
+
+			for (final String cacheKey : pending.keySet()) {
+				found.put(cacheKey, new LinkedList<T>());
+			}
+
+			for (int i=0; i<sets.size(); i+=setsPerQuery) {
+
+				final Query<T> query = app.nodeQuery(type).and();
+
+				for (final PropertyMap attributes : sets.subList(i, Math.min(i + setsPerQuery, sets.size()))) {
+
+					query.or();
+
+					for (final PropertyKey key : propertyKeys) {
+						query.and(key, attributes.get(key));
+					}
+
+					query.parent();
+				}
+
+				for (final T node : query.getAsList()) {
+
+					final PropertyMap nodeAttributes = new PropertyMap();
+
+					for (final PropertyKey key : propertyKeys) {
+						nodeAttributes.put(key, node.getProperty(key));
+					}
+
+					// the index may contain outdated values
+					final String cacheKey = getCacheKey(type, nodeAttributes);
+					if (pending.containsKey(cacheKey)) {
+
+						found.get(cacheKey).add(node);
+					}
+				}
+			}
+
+			for (final String cacheKey : pending.keySet()) {
+
+				for (final T node : found.get(cacheKey)) {
+					cache(securityContext, cacheKey, node);
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Returns the cache key for the given attributes, or null if the
+	 * attributes are not exactly the property set of this strategy.
+	 */
+	private String getCacheKey(final Class<T> type, final PropertyMap attributes) {
+
+		if (propertyKeys.length == 0 || attributes.size() != propertyKeys.length) {
+			return null;
+		}
+
+		final StringBuilder buf = new StringBuilder(type.getName());
+
+		for (final PropertyKey key : propertyKeys) {
+
+			final Object value = attributes.get(key);
+			if (value == null || value instanceof Collection || value instanceof GraphObject || value.getClass().isArray()) {
+				return null;
+			}
+
+			buf.append("\n").append(key.dbName()).append("=").append(value);
+		}
+
+		return buf.toString();
+	}
+
+	private List<T> getCached(final SecurityContext securityContext, final String cacheKey, final PropertyMap attributes) {
+
+		final Map<SecurityContext, Map<String, List<NodeInterface>>> contexts = cache.get();
+		if (contexts != null) {
+
+			final Map<String, List<NodeInterface>> nodes = contexts.get(securityContext);
+			if (nodes != null) {
+
+				final List<NodeInterface> cached = nodes.get(cacheKey);
+				if (cached != null) {
+
+					for (final NodeInterface node : cached) {
+
+						// nodes may have been modified since
+						for (final PropertyKey key : propertyKeys) {
+
+							if (!attributes.get(key).equals(node.getProperty(key))) {
+
+								nodes.remove(cacheKey);
+								return null;
+							}
+						}
+					}
+
+					return (List<T>)cached;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private void cache(final SecurityContext securityContext, final String cacheKey, final T node) {
+
+		if (!TransactionCommand.inTransaction()) {
+			return;
+		}
+
+		Map<SecurityContext, Map<String, List<NodeInterface>>> contexts = cache.get();
+		if (contexts == null) {
+
+			contexts = new IdentityHashMap<>();
+			cache.set(contexts);
+		}
+
+		Map<String, List<NodeInterface>> nodes = contexts.get(securityContext);
+		if (nodes == null) {
+
+			nodes = new HashMap<>();
+			contexts.put(securityContext, nodes);
+		}
+
+		List<NodeInterface> cached = nodes.get(cacheKey);
+		if (cached == null) {
+
+			cached = new LinkedList<>();
+			nodes.put(cacheKey, cached);
+		}
+
+		cached.add(node);
+	}
 }
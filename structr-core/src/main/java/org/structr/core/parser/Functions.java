@@ -195,6 +195,19 @@ public class Functions {
 	}
 
 	public static Object evaluate(final SecurityContext securityContext, final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException {
+		return parse(expression).evaluate(securityContext, actionContext, entity);
+	}
+
+	/**
+	 * Parses the given expression into an expression tree that can be
+	 * evaluated repeatedly. Expression trees hold no evaluation state, so
+	 * they can be shared between threads.
+	 *
+	 * @param expression
+	 * @return the root of the expression tree
+	 * @throws FrameworkException
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
 
 		final String expressionWithoutNewlines = expression.replace('\n', ' ');
 		final StreamTokenizer tokenizer        = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
@@ -289,7 +302,7 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(securityContext, actionContext, entity);
+		return root;
 	}
 
 	private static Expression checkReservedWords(final String word) throws FrameworkException {
@@ -68,10 +68,7 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 		if (propertyContainer != null) {
 			
 			// this may throw a java.lang.IllegalStateException: Relationship[<id>] has been deleted in this tx
-			if (propertyContainer.hasProperty(dbName())) {
-
-				value = propertyContainer.getProperty(dbName());
-			}
+			value = PropertySnapshot.getProperty(propertyContainer, dbName());
 		}
 
 		if (applyConverter) {
@@ -138,7 +135,7 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 					TransactionCommand.nodeModified(
 						(AbstractNode)obj,
 						AbstractPrimitiveProperty.this,
-						propertyContainer.hasProperty(dbName()) ? propertyContainer.getProperty(dbName()) : null,
+						propertyContainer.getProperty(dbName(), null),
 						value
 					);
 
@@ -147,12 +144,15 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 					TransactionCommand.relationshipModified(
 						(AbstractRelationship)obj,
 						AbstractPrimitiveProperty.this,
-						propertyContainer.hasProperty(dbName()) ? propertyContainer.getProperty(dbName()) : null,
+						propertyContainer.getProperty(dbName(), null),
 						value
 					);
 				}
 			}
 
+			// cached values of this entity are stale now
+			PropertySnapshot.invalidate(propertyContainer);
+
 			// catch all sorts of errors and wrap them in a FrameworkException
 			try {
 				
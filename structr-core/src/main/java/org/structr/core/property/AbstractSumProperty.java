@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.helpers.Predicate;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.entity.Relation;
+import org.structr.core.graph.ModificationQueue;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+
+/**
+ * Abstract base class for properties that sum up a value of the nodes of
+ * a collection. The sum is memoized for the duration of a transaction, and
+ * it can be materialized, i.e. stored in the database and updated whenever
+ * a transaction changes the collection or the values of its elements.
+ */
+public abstract class AbstractSumProperty<S extends Number> extends AbstractReadOnlyProperty<S> implements MaterializedProperty {
+
+	protected Property collectionKey = null;
+	protected Property valueKey      = null;
+	private boolean materialized     = false;
+
+	public AbstractSumProperty(final String name, final Property collectionKey, final Property valueKey, final S defaultValue) {
+
+		super(name, defaultValue);
+
+		this.collectionKey = collectionKey;
+		this.valueKey      = valueKey;
+	}
+
+	/**
+	 * Computes the sum for the given object.
+	 *
+	 * @param securityContext
+	 * @param obj
+	 * @return the sum
+	 */
+	protected abstract S computeSum(final SecurityContext securityContext, final GraphObject obj);
+
+	/**
+	 * Stores the value of this property in the database and keeps it up to
+	 * date from the relationship and property changes of each transaction.
+	 * The collection must be a relationship property.
+	 *
+	 * The stored value is computed in superuser context over all elements
+	 * of the collection, so it is served to superuser and admin contexts
+	 * only. All other contexts get the sum of the elements they can see.
+	 *
+	 * @return this property
+	 */
+	public AbstractSumProperty<S> materialized() {
+
+		if (!(collectionKey instanceof EndNodes || collectionKey instanceof StartNodes)) {
+			throw new IllegalStateException("Unable to materialize " + jsonName() + ", collection is not a relationship property.");
+		}
+
+		materialized = true;
+		ModificationQueue.registerMaterializedProperty(this);
+
+		return this;
+	}
+
+	public boolean isMaterialized() {
+		return materialized;
+	}
+
+	@Override
+	public S getProperty(final SecurityContext securityContext, final GraphObject obj, final boolean applyConverter) {
+		return getProperty(securityContext, obj, applyConverter, null);
+	}
+
+	@Override
+	public S getProperty(final SecurityContext securityContext, final GraphObject obj, final boolean applyConverter, final Predicate<GraphObject> predicate) {
+
+		// the stored value includes elements that may not be visible
+		if (materialized && securityContext != null && securityContext.isSuperUser()) {
+
+			final PropertyContainer propertyContainer = obj.getPropertyContainer();
+			if (propertyContainer.hasProperty(dbName())) {
+
+				return (S)propertyContainer.getProperty(dbName());
+			}
+		}
+
+		return ComputedPropertyCache.get(securityContext, obj, this, new ComputedPropertyCache.Value<S>() {
+
+			@Override
+			public S compute() {
+				return computeSum(securityContext, obj);
+			}
+		});
+	}
+
+	@Override
+	public boolean isCollection() {
+		return false;
+	}
+
+	// ----- interface MaterializedProperty -----
+	@Override
+	public boolean isOwner(final NodeInterface node) {
+		return declaringClass != null && declaringClass.isInstance(node);
+	}
+
+	@Override
+	public Collection<NodeInterface> getOwners(final NodeInterface node, final PropertyMap modifiedProperties) throws FrameworkException {
+
+		if (!modifiedProperties.containsKey(valueKey)) {
+			return Collections.emptyList();
+		}
+
+		final Relation relation                  = ((RelationProperty)collectionKey).getRelation();
+		final Direction direction                = collectionKey instanceof StartNodes ? Direction.OUTGOING : Direction.INCOMING;
+		final NodeFactory<NodeInterface> factory = new NodeFactory<>(SecurityContext.getSuperUserInstance());
+		final Map<Long, NodeInterface> owners    = new LinkedHashMap<>();
+		final Node dbNode                        = node.getNode();
+
+		for (final Relationship rel : dbNode.getRelationships(direction, relation)) {
+
+			final Node otherNode = rel.getOtherNode(dbNode);
+			if (!owners.containsKey(otherNode.getId())) {
+
+				final NodeInterface owner = factory.instantiate(otherNode);
+				if (owner != null && isOwner(owner)) {
+
+					owners.put(otherNode.getId(), owner);
+				}
+			}
+		}
+
+		return owners.values();
+	}
+
+	@Override
+	public void update(final NodeInterface node) throws FrameworkException {
+
+		final S value     = computeSum(SecurityContext.getSuperUserInstance(), node);
+		final Node dbNode = node.getNode();
+
+		if (value != null) {
+
+			dbNode.setProperty(dbName(), value);
+
+		} else {
+
+			dbNode.removeProperty(dbName());
+		}
+	}
+}
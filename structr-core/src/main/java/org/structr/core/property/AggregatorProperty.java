@@ -51,51 +51,17 @@ public class AggregatorProperty<T> extends AbstractReadOnlyCollectionProperty<T>
 	}
 
 	@Override
-	public List<T> getProperty(SecurityContext securityContext, GraphObject currentObject, boolean applyConverter, final org.neo4j.helpers.Predicate<GraphObject> predicate) {
+	public List<T> getProperty(final SecurityContext securityContext, final GraphObject currentObject, boolean applyConverter, final org.neo4j.helpers.Predicate<GraphObject> predicate) {
 		
 		if(currentObject != null && currentObject instanceof AbstractNode) {
-			
-			NodeInterface sourceNode  = (NodeInterface)currentObject;
-			List<NodeInterface> nodes = new LinkedList<>();
-
-			// 1. step: add all nodes
-			for(Property property : aggregation.getAggregationProperties()) {
-				
-				Object obj = sourceNode.getProperty(property);
-				if (obj != null && obj instanceof Collection) {
-				
-					nodes.addAll((Collection)obj);
-				}
-			}
-
-			// 2. step: sort nodes according to comparator
-			Comparator<NodeInterface> comparator = aggregation.getComparator();
-			if(nodes.isEmpty() && comparator != null) {
-				Collections.sort(nodes, comparator);
-			}
-
-			// 3. step: apply notions depending on type
-			List results = new LinkedList();
-
-			try {
-				for(NodeInterface node : nodes) {
-
-					Notion notion = aggregation.getNotionForType(node.getClass());
-					if(notion != null) {
-
-						results.add(notion.getAdapterForGetter(securityContext).adapt(node));
 
-					} else {
+			return ComputedPropertyCache.get(securityContext, currentObject, this, new ComputedPropertyCache.Value<List<T>>() {
 
-						results.add(node);
-					}
+				@Override
+				public List<T> compute() {
+					return aggregate(securityContext, currentObject);
 				}
-
-			} catch(Throwable t) {
-				t.printStackTrace();
-			}
-
-			return results;
+			});
 		}
 		
 		return Collections.emptyList();
@@ -115,4 +81,50 @@ public class AggregatorProperty<T> extends AbstractReadOnlyCollectionProperty<T>
 	public Integer getSortType() {
 		return null;
 	}
+
+	// ----- private methods -----
+	private List<T> aggregate(final SecurityContext securityContext, final GraphObject currentObject) {
+		
+		NodeInterface sourceNode  = (NodeInterface)currentObject;
+		List<NodeInterface> nodes = new LinkedList<>();
+
+		// 1. step: add all nodes
+		for(Property property : aggregation.getAggregationProperties()) {
+			
+			Object obj = sourceNode.getProperty(property);
+			if (obj != null && obj instanceof Collection) {
+			
+				nodes.addAll((Collection)obj);
+			}
+		}
+
+		// 2. step: sort nodes according to comparator
+		Comparator<NodeInterface> comparator = aggregation.getComparator();
+		if(nodes.isEmpty() && comparator != null) {
+			Collections.sort(nodes, comparator);
+		}
+
+		// 3. step: apply notions depending on type
+		List results = new LinkedList();
+
+		try {
+			for(NodeInterface node : nodes) {
+
+				Notion notion = aggregation.getNotionForType(node.getClass());
+				if(notion != null) {
+
+					results.add(notion.getAdapterForGetter(securityContext).adapt(node));
+
+				} else {
+
+					results.add(node);
+				}
+			}
+
+		} catch(Throwable t) {
+			t.printStackTrace();
+		}
+
+		return results;
+	}
 }
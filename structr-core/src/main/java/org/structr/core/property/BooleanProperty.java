@@ -39,6 +39,10 @@ public class BooleanProperty extends AbstractPrimitiveProperty<Boolean> {
 	private static final Logger logger = Logger.getLogger(BooleanProperty.class.getName());
 	private static final Set<String> TRUE_VALUES = new LinkedHashSet<>(Arrays.asList(new String[] { "true", "1", "on" }));
 
+	// converters are stateless and can be shared
+	private final DatabaseConverter databaseConverter = new DatabaseConverter(null);
+	private final InputConverter inputConverter       = new InputConverter(null);
+
 	public BooleanProperty(String name) {
 		this(name, name, null);
 	}
@@ -89,12 +93,12 @@ public class BooleanProperty extends AbstractPrimitiveProperty<Boolean> {
 
 	@Override
 	public PropertyConverter<Boolean, ?> databaseConverter(SecurityContext securityContext, GraphObject entity) {
-		return new DatabaseConverter(securityContext);
+		return databaseConverter;
 	}
 
 	@Override
 	public PropertyConverter<?, Boolean> inputConverter(SecurityContext securityContext) {
-		return new InputConverter(securityContext);
+		return inputConverter;
 	}
 
 	@Override
@@ -20,7 +20,6 @@ package org.structr.core.property;
 
 import java.util.List;
 import org.apache.lucene.search.SortField;
-import org.neo4j.graphdb.Node;
 import org.neo4j.helpers.Predicate;
 import org.structr.common.SecurityContext;
 import org.structr.core.GraphObject;
@@ -30,17 +29,12 @@ import org.structr.core.graph.NodeInterface;
  *
  * @author Axel Morgner
  */
-public class CollectionSumProperty<T extends NodeInterface, S extends Number> extends AbstractReadOnlyProperty<S> {
+public class CollectionSumProperty<T extends NodeInterface, S extends Number> extends AbstractSumProperty<S> {
 
-	private Property<List<T>> collectionKey = null;
-	private Property<S> valueKey            = null;
-	private Predicate<T> predicate          = null;
+	private Predicate<T> predicate = null;
 	
 	public CollectionSumProperty(String name, Property<List<T>> collectionKey, Property<S> valueKey) {
-		super(name);
-		
-		this.collectionKey = collectionKey;
-		this.valueKey = valueKey;
+		super(name, collectionKey, valueKey, null);
 	}
 	
 	public CollectionSumProperty(String name, Property<List<T>> collectionKey, Property<S> valueKey, Predicate<T> predicate) {
@@ -60,12 +54,7 @@ public class CollectionSumProperty<T extends NodeInterface, S extends Number> ex
 	}
 
 	@Override
-	public S getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter) {
-		return getProperty(securityContext, obj, applyConverter, null);
-	}
-
-	@Override
-	public S getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, final Predicate<GraphObject> pred) {
+	protected S computeSum(SecurityContext securityContext, GraphObject obj) {
 		
 		Integer intSum    = 0;
 		Long    longSum   = 0L;
@@ -74,13 +63,13 @@ public class CollectionSumProperty<T extends NodeInterface, S extends Number> ex
 		
 		Class cls = Integer.class;
 		
-		for (T collectionObj : obj.getProperty(collectionKey)) {
+		for (T collectionObj : (List<T>)obj.getProperty(collectionKey)) {
 			
 			if (predicate != null && !predicate.accept(collectionObj)) {
 				continue;
 			}
 			
-			S value = collectionObj.getProperty(valueKey);
+			S value = (S)collectionObj.getProperty(valueKey);
 						
 			if (value instanceof Integer) {
 				intSum += (Integer) value;
@@ -105,9 +94,4 @@ public class CollectionSumProperty<T extends NodeInterface, S extends Number> ex
 		
 		return (S) intSum;
 	}
-
-	@Override
-	public boolean isCollection() {
-		return false;
-	}
 }
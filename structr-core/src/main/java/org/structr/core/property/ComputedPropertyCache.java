@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.structr.common.SecurityContext;
+import org.structr.core.GraphObject;
+import org.structr.core.graph.TransactionCommand;
+
+/**
+ * Memoizes the values of computed properties for the duration of a
+ * transaction, so that a function or aggregate is evaluated only once per
+ * object, property and security context.
+ *
+ * A computed value can depend on any object in the database, so all values
+ * of a transaction are discarded whenever the transaction creates, modifies
+ * or deletes a node or relationship. Values are not memoized outside of a
+ * transaction.
+ */
+public class ComputedPropertyCache {
+
+	private static final ThreadLocal<Map<SecurityContext, Map<String, Object>>> values = new ThreadLocal<>();
+	private static final Object NULL_VALUE                                            = new Object();
+
+	/**
+	 * Returns the memoized value of the given property of the given object,
+	 * computing and memoizing it if necessary.
+	 *
+	 * @param <T>
+	 * @param securityContext
+	 * @param obj
+	 * @param key
+	 * @param value the computation of the value
+	 * @return the value
+	 */
+	public static <T> T get(final SecurityContext securityContext, final GraphObject obj, final PropertyKey<T> key, final Value<T> value) {
+
+		final String uuid = obj.getUuid();
+
+		if (uuid == null || !TransactionCommand.inTransaction()) {
+			return value.compute();
+		}
+
+		Map<SecurityContext, Map<String, Object>> contexts = values.get();
+		if (contexts == null) {
+
+			contexts = new IdentityHashMap<>();
+			values.set(contexts);
+		}
+
+		Map<String, Object> objects = contexts.get(securityContext);
+		if (objects == null) {
+
+			objects = new HashMap<>();
+			contexts.put(securityContext, objects);
+		}
+
+		final String cacheKey = uuid.concat(key.dbName());
+		final Object cached   = objects.get(cacheKey);
+
+		if (cached != null) {
+			return cached == NULL_VALUE ? null : (T)cached;
+		}
+
+		final T result = value.compute();
+
+		// the computation may have modified the database
+		if (values.get() == contexts) {
+			objects.put(cacheKey, result != null ? result : NULL_VALUE);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Discards all values memoized by the current thread. Called when the
+	 * current transaction modifies the database, and when it is finished.
+	 */
+	public static void invalidate() {
+		values.remove();
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The computation of a property value.
+	 *
+	 * @param <T>
+	 */
+	public interface Value<T> {
+
+		public T compute();
+	}
+}
@@ -20,6 +20,8 @@ package org.structr.core.property;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.SortField;
@@ -45,6 +47,18 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 
 	public static final String DATE_EMPTY_FIELD_VALUE = NumericUtils.longToPrefixCoded(Long.MIN_VALUE);
 
+	private static final ThreadLocal<Map<String, SimpleDateFormat>> dateFormats = new ThreadLocal<Map<String, SimpleDateFormat>>() {
+
+		@Override
+		protected Map<String, SimpleDateFormat> initialValue() {
+			return new HashMap<>();
+		}
+	};
+
+	// converters are stateless and can be shared
+	private final DatabaseConverter databaseConverter = new DatabaseConverter(null, null);
+	private final InputConverter inputConverter       = new InputConverter(null);
+
 	public DateProperty(String name, String pattern) {
 		super(name);
 
@@ -80,12 +94,12 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 
 	@Override
 	public PropertyConverter<Date, Long> databaseConverter(SecurityContext securityContext, GraphObject entity) {
-		return new DatabaseConverter(securityContext, entity);
+		return databaseConverter;
 	}
 
 	@Override
 	public PropertyConverter<String, Date> inputConverter(SecurityContext securityContext) {
-		return new InputConverter(securityContext);
+		return inputConverter;
 	}
 
 	@Override
@@ -110,7 +124,7 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 
 			try {
 
-				return new SimpleDateFormat(format).parse(value.toString()).getTime();
+				return getDateFormat(format).parse(value.toString()).getTime();
 
 			} catch (Throwable t) {
 			}
@@ -119,6 +133,27 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 		return null;
 	}
 
+	/**
+	 * Returns a date format for the given pattern. SimpleDateFormat is not
+	 * thread-safe, so instances are cached per thread.
+	 *
+	 * @param pattern
+	 * @return a date format for the current thread
+	 */
+	public static SimpleDateFormat getDateFormat(final String pattern) {
+
+		final Map<String, SimpleDateFormat> formats = dateFormats.get();
+
+		SimpleDateFormat dateFormat = formats.get(pattern);
+		if (dateFormat == null) {
+
+			dateFormat = new SimpleDateFormat(pattern);
+			formats.put(pattern, dateFormat);
+		}
+
+		return dateFormat;
+	}
+
 	private class DatabaseConverter extends PropertyConverter<Date, Long> {
 
 		public DatabaseConverter(SecurityContext securityContext, GraphObject entity) {
@@ -168,7 +203,7 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 						source = StringUtils.replace(source, "Z", "+0000");
 					}
 
-					return new SimpleDateFormat(format).parse(source);
+					return getDateFormat(format).parse(source);
 
 				} catch (Throwable t) {
 
@@ -186,7 +221,7 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 		public String revert(Date source) throws FrameworkException {
 
 			if (source != null) {
-				return new SimpleDateFormat(format).format(source);
+				return getDateFormat(format).format(source);
 			}
 
 			return null;
@@ -45,6 +45,9 @@ public class DoubleProperty extends AbstractPrimitiveProperty<Double> {
 
 	private static final Logger logger = Logger.getLogger(DoubleProperty.class.getName());
 
+	// the input converter is stateless and can be shared
+	private final InputConverter inputConverter = new InputConverter(null);
+
 	public DoubleProperty(final String name) {
 		this(name, name, null);
 	}
@@ -102,7 +105,7 @@ public class DoubleProperty extends AbstractPrimitiveProperty<Double> {
 
 	@Override
 	public PropertyConverter<?, Double> inputConverter(SecurityContext securityContext) {
-		return new InputConverter(securityContext);
+		return inputConverter;
 	}
 
 	protected class InputConverter extends PropertyConverter<Object, Double> {
@@ -213,6 +213,16 @@ public class EndNode<S extends NodeInterface, T extends NodeInterface> extends P
 		setProperty(securityContext, obj, t);
 	}
 
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException {
+
+		final T current = getProperty(securityContext, obj, false);
+		if (current != null && current.equals(t)) {
+
+			setProperty(securityContext, obj, null);
+		}
+	}
+
 	@Override
 	public Class<T> getTargetType() {
 		return destType;
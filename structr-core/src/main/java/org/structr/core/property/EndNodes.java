@@ -219,10 +219,17 @@ public class EndNodes<S extends NodeInterface, T extends NodeInterface> extends
 	@Override
 	public void addSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException {
 
-		List<T> list = getProperty(securityContext, obj, false);
-		list.add(t);
+		ManyEndpoint<T> endpoint = relation.getTarget();
+
+		endpoint.add(securityContext, (NodeInterface)obj, t);
+	}
+
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException {
+
+		ManyEndpoint<T> endpoint = relation.getTarget();
 
-		setProperty(securityContext, obj, list);
+		endpoint.remove(securityContext, (NodeInterface)obj, t);
 	}
 
 	@Override
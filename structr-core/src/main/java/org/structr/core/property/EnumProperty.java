@@ -34,6 +34,10 @@ public class EnumProperty<T extends Enum> extends AbstractPrimitiveProperty<T> {
 
 	private Class<T> enumType = null;
 
+	// converters are stateless and can be shared
+	private final DatabaseConverter databaseConverter = new DatabaseConverter(null, null);
+	private final InputConverter inputConverter       = new InputConverter(null);
+
 	public EnumProperty(String name, Class<T> enumType, final PropertyValidator<T>... validators) {
 		this(name, enumType, null, validators);
 	}
@@ -71,12 +75,12 @@ public class EnumProperty<T extends Enum> extends AbstractPrimitiveProperty<T> {
 
 	@Override
 	public PropertyConverter<T, String> databaseConverter(SecurityContext securityContext, GraphObject entity) {
-		return new DatabaseConverter(securityContext, entity);
+		return databaseConverter;
 	}
 
 	@Override
 	public PropertyConverter<String, T> inputConverter(SecurityContext securityContext) {
-		return new InputConverter(securityContext);
+		return inputConverter;
 	}
 
 	@Override
@@ -21,8 +21,10 @@ package org.structr.core.property;
 import org.apache.lucene.search.SortField;
 import org.neo4j.helpers.Predicate;
 import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.parser.Expression;
 import org.structr.core.parser.Functions;
 import org.structr.schema.action.ActionContext;
 
@@ -32,6 +34,8 @@ import org.structr.schema.action.ActionContext;
  */
 public class FunctionProperty<T> extends AbstractReadOnlyProperty<T> {
 
+	private volatile Expression compiledExpression = null;
+
 	public FunctionProperty(final String name, final String expression) {
 
 		super(name);
@@ -49,17 +53,26 @@ public class FunctionProperty<T> extends AbstractReadOnlyProperty<T> {
 	}
 
 	@Override
-	public T getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, Predicate<GraphObject> predicate) {
+	public T getProperty(final SecurityContext securityContext, final GraphObject obj, boolean applyConverter, Predicate<GraphObject> predicate) {
 
 		if (obj instanceof AbstractNode) {
 
-			try {
+			return ComputedPropertyCache.get(securityContext, obj, this, new ComputedPropertyCache.Value<T>() {
+
+				@Override
+				public T compute() {
+
+					try {
 
-				return (T)Functions.evaluate(securityContext, new ActionContext(), obj, format);
+						return (T)getExpression().evaluate(securityContext, new ActionContext(), obj);
 
-			} catch (Throwable t) {
-				t.printStackTrace();
-			}
+					} catch (Throwable t) {
+						t.printStackTrace();
+					}
+
+					return null;
+				}
+			});
 		}
 
 		return null;
@@ -74,4 +87,15 @@ public class FunctionProperty<T> extends AbstractReadOnlyProperty<T> {
 	public Integer getSortType() {
 		return SortField.INT;
 	}
+
+	// ----- private methods -----
+	private Expression getExpression() throws FrameworkException {
+
+		// parse the expression only once
+		if (compiledExpression == null) {
+			compiledExpression = Functions.parse(format);
+		}
+
+		return compiledExpression;
+	}
 }
@@ -46,6 +46,9 @@ public class IntProperty extends AbstractPrimitiveProperty<Integer> {
 
 	public static final String INT_EMPTY_FIELD_VALUE = NumericUtils.intToPrefixCoded(Integer.MIN_VALUE);
 
+	// the input converter is stateless and can be shared
+	private final InputConverter inputConverter = new InputConverter(null);
+
 	public IntProperty(String name) {
 		this(name, name, null);
 	}
@@ -92,7 +95,7 @@ public class IntProperty extends AbstractPrimitiveProperty<Integer> {
 
 	@Override
 	public PropertyConverter<?, Integer> inputConverter(SecurityContext securityContext) {
-		return new InputConverter(securityContext);
+		return inputConverter;
 	}
 
 	protected class InputConverter extends PropertyConverter<Object, Integer> {
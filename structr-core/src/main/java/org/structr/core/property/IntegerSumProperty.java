@@ -58,21 +58,28 @@ public class IntegerSumProperty extends AbstractReadOnlyProperty<Integer> {
 	}
 
 	@Override
-	public Integer getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, final org.neo4j.helpers.Predicate<GraphObject> predicate) {
+	public Integer getProperty(SecurityContext securityContext, final GraphObject obj, boolean applyConverter, final org.neo4j.helpers.Predicate<GraphObject> predicate) {
 		
-		int sum = 0;
-		
-		for (Property<Integer> prop : sumProperties) {
-			
-			Integer value = obj.getProperty(prop);
-			
-			if (value != null) {
+		return ComputedPropertyCache.get(securityContext, obj, this, new ComputedPropertyCache.Value<Integer>() {
+
+			@Override
+			public Integer compute() {
+
+				int sum = 0;
+
+				for (Property<Integer> prop : sumProperties) {
 
-				sum = sum + value.intValue();
+					Integer value = obj.getProperty(prop);
+
+					if (value != null) {
+
+						sum = sum + value.intValue();
+					}
+				}
+
+				return sum;
 			}
-		}
-		
-		return sum;
+		});
 	}
 
 	@Override
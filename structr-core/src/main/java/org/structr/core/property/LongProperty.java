@@ -46,6 +46,9 @@ public class LongProperty extends AbstractPrimitiveProperty<Long> {
 
 	public static final String LONG_EMPTY_FIELD_VALUE = NumericUtils.longToPrefixCoded(Long.MIN_VALUE);
 
+	// the input converter is stateless and can be shared
+	private final InputConverter inputConverter = new InputConverter(null);
+
 	public LongProperty(String name) {
 		this(name, name, null);
 	}
@@ -92,7 +95,7 @@ public class LongProperty extends AbstractPrimitiveProperty<Long> {
 
 	@Override
 	public PropertyConverter<?, Long> inputConverter(SecurityContext securityContext) {
-		return new InputConverter(securityContext);
+		return inputConverter;
 	}
 
 	protected class InputConverter extends PropertyConverter<Object, Long> {
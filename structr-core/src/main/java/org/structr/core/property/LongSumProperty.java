@@ -20,7 +20,6 @@ package org.structr.core.property;
 
 import java.util.List;
 import org.apache.lucene.search.SortField;
-import org.neo4j.graphdb.Node;
 import org.structr.common.SecurityContext;
 import org.structr.core.GraphObject;
 
@@ -28,18 +27,10 @@ import org.structr.core.GraphObject;
  *
  * @author Christian Morgner
  */
-public class LongSumProperty extends AbstractReadOnlyProperty<Long> {
+public class LongSumProperty extends AbstractSumProperty<Long> {
 
-	private EndNodes<?, ?> collectionProperty = null;
-	private Property<Long> valueProperty                = null;
-	
 	public LongSumProperty(String name, EndNodes<?, ?> collectionProperty, Property<Long> valueProperty, Long defaultValue) {
-		
-		super(name, defaultValue);
-		
-		this.collectionProperty = collectionProperty;
-		this.valueProperty = valueProperty;
-		this.defaultValue = defaultValue;
+		super(name, collectionProperty, valueProperty, defaultValue);
 	}
 	
 	@Override
@@ -48,21 +39,16 @@ public class LongSumProperty extends AbstractReadOnlyProperty<Long> {
 	}
 
 	@Override
-	public Long getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter) {
-		return getProperty(securityContext, obj, applyConverter, null);
-	}
-
-	@Override
-	public Long getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, final org.neo4j.helpers.Predicate<GraphObject> predicate) {
+	protected Long computeSum(final SecurityContext securityContext, final GraphObject obj) {
 		
-		List<? extends GraphObject> collection = obj.getProperty(collectionProperty);
+		List<? extends GraphObject> collection = (List<? extends GraphObject>)obj.getProperty(collectionKey);
 		if (collection != null) {
 			
 			long sum = 0L;
 			
 			for (GraphObject element : collection) {
 				
-				Long value = element.getProperty(valueProperty);
+				Long value = (Long)element.getProperty(valueKey);
 				if (value != null) {
 				
 					sum += value.longValue();
@@ -76,11 +62,6 @@ public class LongSumProperty extends AbstractReadOnlyProperty<Long> {
 		return defaultValue();
 	}
 
-	@Override
-	public boolean isCollection() {
-		return false;
-	}
-
 	@Override
 	public Integer getSortType() {
 		
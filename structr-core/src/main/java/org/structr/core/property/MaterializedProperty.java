@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.Collection;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.ModificationQueue;
+import org.structr.core.graph.NodeInterface;
+
+/**
+ * A computed property whose value is stored in the database. The values
+ * of all materialized properties are updated by the {@link ModificationQueue}
+ * for the nodes that are affected by the changes of a transaction, after the
+ * inner callbacks, the uniqueness check and the post-processing of the
+ * transaction, right before the modified types are locked and the
+ * transaction is committed.
+ */
+public interface MaterializedProperty {
+
+	/**
+	 * @param node a node that was created or modified in a transaction
+	 * @return whether the given node has a value of this property
+	 */
+	public boolean isOwner(final NodeInterface node);
+
+	/**
+	 * Returns the nodes whose value of this property depends on the given
+	 * properties of the given node.
+	 *
+	 * @param node a node that was modified in a transaction
+	 * @param modifiedProperties the modified properties of the node
+	 * @return the dependent nodes
+	 * @throws FrameworkException
+	 */
+	public Collection<NodeInterface> getOwners(final NodeInterface node, final PropertyMap modifiedProperties) throws FrameworkException;
+
+	/**
+	 * Computes the value of this property for the given node and stores it
+	 * in the database.
+	 *
+	 * @param node
+	 * @throws FrameworkException
+	 */
+	public void update(final NodeInterface node) throws FrameworkException;
+}
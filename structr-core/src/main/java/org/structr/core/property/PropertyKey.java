@@ -247,6 +247,14 @@ public interface PropertyKey<T> {
 	 */
 	public boolean isIndexedWhenEmpty();
 
+	/**
+	 * Returns the special value that is stored in the index for empty
+	 * fields if this property is indexed when empty.
+	 *
+	 * @return the index value for empty fields, or null
+	 */
+	public Object getValueForEmptyFields();
+
 	/**
 	 * Indicates whether this property represents a collection or a single
 	 * value in the JSON output.
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.neo4j.graphdb.PropertyContainer;
+
+/**
+ * Thread-local snapshot of the raw database properties of nodes and
+ * relationships.
+ *
+ * While a snapshot scope is open, the first read of a property of an entity
+ * loads all of its properties at once, and all subsequent reads of that
+ * entity are served from the snapshot. This is meant for read-mostly
+ * operations like serialization and rendering, where all keys of a view
+ * are read for every object. Writes through {@link AbstractPrimitiveProperty}
+ * invalidate the snapshot of the modified entity.
+ *
+ * Scopes can be nested, the snapshot is released when the outermost scope
+ * is closed.
+ */
+public class PropertySnapshot {
+
+	private static final ThreadLocal<PropertySnapshot> snapshots = new ThreadLocal<>();
+	private static final int MAX_ENTITIES                        = 10000;
+
+	private final Map<PropertyContainer, Map<String, Object>> entities = new HashMap<>();
+	private int depth                                                  = 0;
+
+	private PropertySnapshot() {}
+
+	/**
+	 * Opens a snapshot scope for the current thread. Each call must be
+	 * followed by a call to {@link #close()} in a finally block.
+	 */
+	public static void open() {
+
+		PropertySnapshot snapshot = snapshots.get();
+		if (snapshot == null) {
+
+			snapshot = new PropertySnapshot();
+			snapshots.set(snapshot);
+		}
+
+		snapshot.depth++;
+	}
+
+	/**
+	 * Closes the current snapshot scope, releasing the snapshot if this
+	 * was the outermost scope.
+	 */
+	public static void close() {
+
+		final PropertySnapshot snapshot = snapshots.get();
+		if (snapshot != null && --snapshot.depth <= 0) {
+
+			snapshots.remove();
+		}
+	}
+
+	/**
+	 * Returns the value of the given property, or null if the property
+	 * does not exist.
+	 *
+	 * @param propertyContainer
+	 * @param key the database name of the property
+	 * @return the value or null
+	 */
+	public static Object getProperty(final PropertyContainer propertyContainer, final String key) {
+
+		final PropertySnapshot snapshot = snapshots.get();
+		if (snapshot != null) {
+
+			return snapshot.getProperties(propertyContainer).get(key);
+		}
+
+		// a single lookup instead of hasProperty() followed by getProperty()
+		return propertyContainer.getProperty(key, null);
+	}
+
+	/**
+	 * Removes the snapshot of the given entity, if any, so that the next
+	 * read loads its properties from the database again.
+	 *
+	 * @param propertyContainer
+	 */
+	public static void invalidate(final PropertyContainer propertyContainer) {
+
+		final PropertySnapshot snapshot = snapshots.get();
+		if (snapshot != null) {
+
+			snapshot.entities.remove(propertyContainer);
+		}
+	}
+
+	// ----- private methods -----
+	private Map<String, Object> getProperties(final PropertyContainer propertyContainer) {
+
+		Map<String, Object> properties = entities.get(propertyContainer);
+		if (properties == null) {
+
+			// keep memory usage bounded for very large results
+			if (entities.size() >= MAX_ENTITIES) {
+				entities.clear();
+			}
+
+			properties = new HashMap<>();
+
+			// Neo4j loads the property chain of an entity as a whole, so
+			// reading all values at once is cheaper than repeated lookups
+			for (final String key : propertyContainer.getPropertyKeys()) {
+				properties.put(key, propertyContainer.getProperty(key));
+			}
+
+			entities.put(propertyContainer, properties);
+		}
+
+		return properties;
+	}
+}
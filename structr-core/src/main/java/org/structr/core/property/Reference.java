@@ -178,6 +178,11 @@ public class Reference<T> implements PropertyKey<T> {
 		return propertyKey.isIndexedWhenEmpty();
 	}
 
+	@Override
+	public Object getValueForEmptyFields() {
+		return propertyKey.getValueForEmptyFields();
+	}
+
 	@Override
 	public boolean isCollection() {
 		return propertyKey.isCollection();
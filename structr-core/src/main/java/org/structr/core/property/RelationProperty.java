@@ -39,4 +39,6 @@ public interface RelationProperty<T> {
 	public Relation getRelation();
 	
 	public void addSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException;
+
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final T t) throws FrameworkException;
 }
@@ -218,6 +218,16 @@ public class StartNode<S extends NodeInterface, T extends NodeInterface> extends
 		setProperty(securityContext, obj, s);
 	}
 
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final S s) throws FrameworkException {
+
+		final S current = getProperty(securityContext, obj, false);
+		if (current != null && current.equals(s)) {
+
+			setProperty(securityContext, obj, null);
+		}
+	}
+
 	@Override
 	public Class<? extends S> getTargetType() {
 		return destType;
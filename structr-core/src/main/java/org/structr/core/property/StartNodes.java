@@ -219,10 +219,17 @@ public class StartNodes<S extends NodeInterface, T extends NodeInterface> extend
 	@Override
 	public void addSingleElement(final SecurityContext securityContext, final GraphObject obj, final S s) throws FrameworkException {
 
-		List<S> list = getProperty(securityContext, obj, false);
-		list.add(s);
+		ManyStartpoint<S> startpoint = relation.getSource();
+
+		startpoint.add(securityContext, (NodeInterface)obj, s);
+	}
+
+	@Override
+	public void removeSingleElement(final SecurityContext securityContext, final GraphObject obj, final S s) throws FrameworkException {
+
+		ManyStartpoint<S> startpoint = relation.getSource();
 
-		setProperty(securityContext, obj, list);
+		startpoint.remove(securityContext, (NodeInterface)obj, s);
 	}
 
 	@Override
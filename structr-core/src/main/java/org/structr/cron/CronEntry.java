@@ -291,7 +291,29 @@ public class CronEntry implements Delayed {
 
 	public long getDelayToNextExecutionInMillis() {
 
-		Calendar now       = GregorianCalendar.getInstance();
+		return getNextExecutionTime(GregorianCalendar.getInstance()) - System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the next execution time strictly after the given time,
+	 * in full seconds.
+	 *
+	 * @param time the time in milliseconds
+	 * @return the next execution time in milliseconds
+	 */
+	public long getNextExecutionTimeAfter(final long time) {
+
+		final Calendar calendar = GregorianCalendar.getInstance();
+
+		calendar.setTimeInMillis(time);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.SECOND, 1);
+
+		return getNextExecutionTime(calendar);
+	}
+
+	private long getNextExecutionTime(final Calendar now) {
+
 		int nowSeconds     = now.get(Calendar.SECOND);
 		int nowMinutes     = now.get(Calendar.MINUTE);
 		int nowHours       = now.get(Calendar.HOUR_OF_DAY);
@@ -361,7 +383,7 @@ public class CronEntry implements Delayed {
 			throw new IllegalArgumentException("Unable to determine next cron date for task " + name + ", aborting.");
 		}
 		
-		return now.getTimeInMillis() - System.currentTimeMillis();
+		return now.getTimeInMillis();
 	}
 
 	public CronField getSeconds() {
@@ -18,24 +18,38 @@
  */
 package org.structr.cron;
 
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.structr.agent.AgentService;
+import org.structr.agent.ReturnValue;
+import org.structr.agent.Task;
+import org.structr.agent.TaskListener;
+import org.structr.common.StructrConf;
 import org.structr.core.Command;
 import org.structr.core.RunnableService;
 import org.structr.core.Services;
-import org.structr.agent.Task;
-import org.structr.common.StructrConf;
 import org.structr.core.app.StructrApp;
 
 /**
  * A service that keeps track of registered tasks and runs
  * them at their scheduled time.
  *
+ * Scheduled tasks are kept in a priority queue ordered by their next
+ * execution time, and the service thread sleeps until the first of them
+ * is due. A task is not started again while its previous run is still
+ * being processed. Tasks can be scheduled and removed at runtime.
+ *
  * @author Christian Morgner
  */
-public class CronService extends Thread implements RunnableService {
+public class CronService extends Thread implements RunnableService, TaskListener {
 
 	private static final Logger logger           = Logger.getLogger(CronService.class.getName());
 
@@ -45,7 +59,9 @@ public class CronService extends Thread implements RunnableService {
 	public static final long     GRANULARITY       = 1;
 	public static final int      NUM_FIELDS        = 6;
 
-	private LinkedList<CronEntry> cronEntries = new LinkedList<>();
+	private final Map<String, CronJob> jobs        = new LinkedHashMap<>();
+	private final PriorityQueue<CronJob> schedule  = new PriorityQueue<>();
+	private final Map<Task, CronJob> runningTasks  = Collections.synchronizedMap(new IdentityHashMap<Task, CronJob>());
 	private boolean doRun = false;
 
 	public CronService() {
@@ -65,29 +81,276 @@ public class CronService extends Thread implements RunnableService {
 		// sleep 5 seconds more
 		try { Thread.sleep(5000); } catch(InterruptedException iex) { }
 
+		final AgentService agentService = StructrApp.getInstance().getService(AgentService.class);
+		if (agentService != null) {
+
+			agentService.addTaskListener(this);
+
+		} else {
+
+			logger.log(Level.WARNING, "AgentService is not running, scheduled tasks will not be executed.");
+		}
+
 		while(doRun) {
 
-			// sleep for some time
-			try { Thread.sleep(GRANULARITY_UNIT.toMillis(GRANULARITY)); } catch(InterruptedException iex) { }
+			synchronized (schedule) {
+
+				final CronJob job = schedule.peek();
+
+				final long delay = job != null ? job.nextExecution - System.currentTimeMillis() : Long.MAX_VALUE;
+				if (delay > 0) {
+
+					// wait until the next task is due or the schedule changes
+					try { schedule.wait(job != null ? delay : 0); } catch(InterruptedException iex) { }
+
+					continue;
+				}
+			}
+
+			runDueTasks(agentService, System.currentTimeMillis());
+		}
+
+		if (agentService != null) {
+			agentService.removeTaskListener(this);
+		}
+	}
 
-			for(CronEntry entry : cronEntries) {
+	/**
+	 * Schedules the given task class with the given cron expression,
+	 * replacing an existing schedule of that task.
+	 *
+	 * @param task the fully qualified name of the task class
+	 * @param expression the cron expression
+	 * @return whether the expression was valid
+	 */
+	public boolean scheduleTask(final String task, final String expression) {
 
-				if(entry.getDelayToNextExecutionInMillis() < GRANULARITY_UNIT.toMillis(GRANULARITY)) {
+		final CronEntry entry = CronEntry.parse(task, expression);
+		if (entry != null) {
 
-					String taskClassName = entry.getName();
+			logger.log(Level.INFO, "Adding cron entry {0} for {1}", new Object[]{ entry, task });
 
-					try {
-						Class taskClass = Class.forName(taskClassName);
-						Task task = (Task)taskClass.newInstance();
+			final CronJob job = new CronJob(entry);
 
-						logger.log(Level.FINE, "Starting task {0}", taskClassName);
-						StructrApp.getInstance().processTasks(task);
+			job.scheduleNext(System.currentTimeMillis());
 
-					} catch(Throwable t) {
-						logger.log(Level.WARNING, "Could not start task {0}: {1}", new Object[] { taskClassName, t.getMessage() } );
-					}
+			synchronized (schedule) {
+
+				final CronJob existing = jobs.put(task, job);
+				if (existing != null) {
+
+					schedule.remove(existing);
 				}
+
+				schedule.add(job);
+				schedule.notifyAll();
 			}
+
+			return true;
+		}
+
+		logger.log(Level.WARNING, "Unable to parse cron expression for taks {0}, ignoring.", task);
+
+		return false;
+	}
+
+	/**
+	 * Removes the schedule of the given task class.
+	 *
+	 * @param task the fully qualified name of the task class
+	 */
+	public void unscheduleTask(final String task) {
+
+		synchronized (schedule) {
+
+			final CronJob existing = jobs.remove(task);
+			if (existing != null) {
+
+				schedule.remove(existing);
+				schedule.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns execution statistics for all scheduled tasks. Times are
+	 * given in milliseconds.
+	 *
+	 * @return a map of statistics per task name
+	 */
+	public Map<String, Map<String, Object>> getStatistics() {
+
+		final Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+
+		synchronized (schedule) {
+
+			for (final CronJob job : jobs.values()) {
+
+				final Map<String, Object> stats = new LinkedHashMap<>();
+				final long runs                  = job.runs.get();
+				final long finished              = job.finished.get();
+
+				stats.put("expression", job.entry.toString().trim());
+				stats.put("next_execution", job.nextExecution);
+				stats.put("running", job.running.get());
+				stats.put("runs", runs);
+				stats.put("skipped", job.skipped.get());
+				stats.put("average_lateness", runs > 0 ? job.lateness.get() / runs : 0L);
+				stats.put("max_lateness", job.maxLateness.get());
+				stats.put("average_duration", finished > 0 ? TimeUnit.NANOSECONDS.toMillis(job.duration.get() / finished) : 0L);
+				stats.put("max_duration", TimeUnit.NANOSECONDS.toMillis(job.maxDuration.get()));
+
+				statistics.put(job.name, stats);
+			}
+		}
+
+		return statistics;
+	}
+
+	// ----- interface TaskListener -----
+	/**
+	 * Called when a task was processed, or discarded because no agent
+	 * supports it. In both cases the job may run again.
+	 */
+	@Override
+	public void taskFinished(final Task task, final ReturnValue returnValue, final long executionTime) {
+
+		final CronJob job = runningTasks.remove(task);
+		if (job != null) {
+
+			job.finished.incrementAndGet();
+			job.duration.addAndGet(executionTime);
+			updateMax(job.maxDuration, executionTime);
+
+			job.running.set(false);
+		}
+	}
+
+	// ----- package-private methods -----
+	/**
+	 * Starts all tasks that are due at the given time and schedules their
+	 * next execution.
+	 *
+	 * @param agentService the agent service that processes the tasks
+	 * @param now the current time
+	 */
+	void runDueTasks(final AgentService agentService, final long now) {
+
+		while (true) {
+
+			CronJob job = null;
+
+			synchronized (schedule) {
+
+				job = schedule.peek();
+				if (job == null || job.nextExecution > now) {
+					return;
+				}
+
+				schedule.poll();
+			}
+
+			execute(job, agentService, now);
+
+			synchronized (schedule) {
+
+				// job may have been removed or replaced in the meantime
+				if (jobs.get(job.name) == job) {
+
+					// runs missed while the service was busy are skipped
+					job.scheduleNext(Math.max(job.nextExecution, now));
+					schedule.add(job);
+				}
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private void execute(final CronJob job, final AgentService agentService, final long now) {
+
+		final long lateness = now - job.nextExecution;
+
+		if (agentService == null) {
+			return;
+		}
+
+		// do not start a task while its previous run is still being processed
+		if (!job.running.compareAndSet(false, true)) {
+
+			logger.log(Level.WARNING, "Task {0} is still running, skipping execution.", job.name);
+			job.skipped.incrementAndGet();
+
+			return;
+		}
+
+		try {
+
+			final Task task = (Task)job.getTaskClass().newInstance();
+
+			job.runs.incrementAndGet();
+			job.lateness.addAndGet(lateness);
+			updateMax(job.maxLateness, lateness);
+
+			runningTasks.put(task, job);
+
+			logger.log(Level.FINE, "Starting task {0}", job.name);
+			agentService.processTask(task);
+
+		} catch(Throwable t) {
+
+			job.running.set(false);
+
+			logger.log(Level.WARNING, "Could not start task {0}: {1}", new Object[] { job.name, t.getMessage() } );
+		}
+	}
+
+	private static void updateMax(final AtomicLong max, final long value) {
+
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	// ----- nested classes -----
+	private static class CronJob implements Comparable<CronJob> {
+
+		private final AtomicBoolean running  = new AtomicBoolean(false);
+		private final AtomicLong runs        = new AtomicLong(0);
+		private final AtomicLong finished    = new AtomicLong(0);
+		private final AtomicLong skipped     = new AtomicLong(0);
+		private final AtomicLong lateness    = new AtomicLong(0);
+		private final AtomicLong maxLateness = new AtomicLong(0);
+		private final AtomicLong duration    = new AtomicLong(0);
+		private final AtomicLong maxDuration = new AtomicLong(0);
+		private CronEntry entry               = null;
+		private Class taskClass              = null;
+		private String name                  = null;
+		private long nextExecution           = 0L;
+
+		public CronJob(final CronEntry entry) {
+
+			this.entry = entry;
+			this.name  = entry.getName();
+		}
+
+		public void scheduleNext(final long after) {
+			this.nextExecution = entry.getNextExecutionTimeAfter(after);
+		}
+
+		public Class getTaskClass() throws ClassNotFoundException {
+
+			// resolve once, retry on failure
+			if (taskClass == null) {
+				taskClass = Class.forName(name);
+			}
+
+			return taskClass;
+		}
+
+		@Override
+		public int compareTo(final CronJob other) {
+			return Long.compare(nextExecution, other.nextExecution);
 		}
 	}
 
@@ -101,6 +364,7 @@ public class CronService extends Thread implements RunnableService {
 	@Override
 	public void stopService() {
 		this.doRun = false;
+		this.interrupt();
 	}
 
 	@Override
@@ -125,20 +389,14 @@ public class CronService extends Thread implements RunnableService {
 
 			for(String task : taskList.split("[ \\t]+")) {
 
+				if (task.isEmpty()) {
+					continue;
+				}
+
 				String expression = config.getProperty(task.concat(EXPRESSION_SUFFIX));
 				if(expression != null) {
 
-					CronEntry entry = CronEntry.parse(task, expression);
-					if(entry != null) {
-
-						logger.log(Level.INFO, "Adding cron entry {0} for {1}", new Object[]{ entry, task });
-
-						cronEntries.add(entry);
-
-					} else {
-
-						logger.log(Level.WARNING, "Unable to parse cron expression for taks {0}, ignoring.", task);
-					}
+					scheduleTask(task, expression);
 
 				} else {
 
@@ -154,6 +412,7 @@ public class CronService extends Thread implements RunnableService {
 	@Override
 	public void shutdown() {
 		this.doRun = false;
+		this.interrupt();
 	}
 
 	@Override
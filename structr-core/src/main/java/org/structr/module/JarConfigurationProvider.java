@@ -21,6 +21,7 @@ package org.structr.module;
 import org.structr.agent.Agent;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.entity.AssignabilityMatrix;
 import org.structr.core.entity.GenericNode;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -35,6 +36,7 @@ import java.util.Arrays;
 import java.util.Collections;
 
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -104,6 +106,13 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	private final Set<PropertyKey> globalKnownPropertyKeys = new LinkedHashSet<>();
 	private final Set<String> dynamicViews = new LinkedHashSet<>();
 
+	// immutable per-type snapshot of views and property keys, replaced as a whole on every change
+	private volatile Map<Class, TypeRegistration> registrySnapshot = Collections.emptyMap();
+
+	// entity type names that could not be resolved, to avoid repeated class loading attempts
+	private final Set<String> unknownNodeEntityTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> unknownRelationshipEntityTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	private FactoryDefinition factoryDefinition = new DefaultFactoryDefinition();
 
 	// ----- interface Configuration -----
@@ -152,7 +161,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 			nodeEntityClass = nodeEntityClassCache.get(name);
 
-			if (nodeEntityClass == null) {
+			if (nodeEntityClass == null && !unknownNodeEntityTypes.contains(name)) {
 
 				for (String possiblePath : nodeEntityPackages) {
 
@@ -167,7 +176,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 								nodeEntityClassCache.put(name, nodeClass);
 
 								// first match wins
-								break;
+								return nodeClass;
 
 							}
 
@@ -180,6 +189,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 				}
 
+				unknownNodeEntityTypes.add(name);
 			}
 
 		}
@@ -197,7 +207,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 			relationClass = relationshipEntityClassCache.get(name);
 
-			if (relationClass == null) {
+			if (relationClass == null && !unknownRelationshipEntityTypes.contains(name)) {
 
 				for (String possiblePath : relationshipPackages) {
 
@@ -225,6 +235,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 				}
 
+				unknownRelationshipEntityTypes.add(name);
 			}
 
 		}
@@ -494,7 +505,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	}
 
 	@Override
-	public void unregisterEntityType(final String typeName) {
+	public synchronized void unregisterEntityType(final String typeName) {
 
 		nodeEntityClassCache.remove(typeName);
 		nodeEntityPackages.remove(JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE + typeName);
@@ -502,16 +513,19 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 		relationshipEntityClassCache.remove(typeName);
 		relationshipPackages.remove(JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE + typeName);
 
+		invalidateRegistry();
 	}
 
 	@Override
-	public void registerEntityType(final Class type) {
+	public synchronized void registerEntityType(final Class type) {
 
 		// moved here from scanEntity, no reason to have this in a separate
 		// method requiring two different calls instead of one
 		String simpleName = type.getSimpleName();
 		String fullName = type.getName();
 
+		invalidateRegistry();
+
 		if (AbstractNode.class.isAssignableFrom(type)) {
 			nodeEntityClassCache.put(simpleName, type);
 			nodeEntityPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
@@ -738,7 +752,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	}
 
 	@Override
-	public Set<String> getPropertyViews() {
+	public synchronized Set<String> getPropertyViews() {
 
 		Set<String> views = new LinkedHashSet<>();
 
@@ -762,15 +776,14 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	@Override
 	public Set<PropertyKey> getPropertySet(Class type, String propertyView) {
 
-		Map<String, Set<PropertyKey>> propertyViewMap = getPropertyViewMapForType(type);
-		Set<PropertyKey> properties = propertyViewMap.get(propertyView);
+		// read-only, precomputed
+		final Set<PropertyKey> properties = getTypeRegistration(type).views.get(propertyView);
+		if (properties != null) {
 
-		if (properties == null) {
-			properties = new LinkedHashSet<>();
+			return properties;
 		}
 
-		// read-only
-		return Collections.unmodifiableSet(properties);
+		return Collections.emptySet();
 	}
 
 	/**
@@ -786,7 +799,9 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	 * view
 	 */
 	@Override
-	public void registerPropertySet(Class type, String propertyView, PropertyKey... propertySet) {
+	public synchronized void registerPropertySet(Class type, String propertyView, PropertyKey... propertySet) {
+
+		invalidateRegistry();
 
 		Map<String, Set<PropertyKey>> propertyViewMap = getPropertyViewMapForType(type);
 		Set<PropertyKey> properties = propertyViewMap.get(propertyView);
@@ -808,8 +823,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	@Override
 	public PropertyKey getPropertyKeyForDatabaseName(Class type, String dbName, boolean createGeneric) {
 
-		Map<String, PropertyKey> classDBNamePropertyMap = getClassDBNamePropertyMapForType(type);
-		PropertyKey key = classDBNamePropertyMap.get(dbName);
+		PropertyKey key = getTypeRegistration(type).dbNameKeys.get(dbName);
 
 		if (key == null) {
 
@@ -838,8 +852,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 			return null;
 		}
 
-		Map<String, PropertyKey> classJSNamePropertyMap = getClassJSNamePropertyMapForType(type);
-		PropertyKey key = classJSNamePropertyMap.get(jsonName);
+		PropertyKey key = getTypeRegistration(type).jsonNameKeys.get(jsonName);
 
 		if (key == null) {
 
@@ -893,7 +906,9 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	}
 
 	@Override
-	public void registerProperty(Class type, PropertyKey propertyKey) {
+	public synchronized void registerProperty(Class type, PropertyKey propertyKey) {
+
+		invalidateRegistry();
 
 		getClassDBNamePropertyMapForType(type).put(propertyKey.dbName(), propertyKey);
 		getClassJSNamePropertyMapForType(type).put(propertyKey.jsonName(), propertyKey);
@@ -905,7 +920,7 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	}
 
 	@Override
-	public void registerDynamicProperty(Class type, PropertyKey propertyKey) {
+	public synchronized void registerDynamicProperty(Class type, PropertyKey propertyKey) {
 
 		final String typeName = type.getName();
 
@@ -1251,6 +1266,69 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 		}
 	}
 
+	/**
+	 * Returns the registration snapshot for the given type. Lookups of
+	 * registered types neither lock nor allocate, a missing type is built
+	 * once from the registration maps and added to a copy of the snapshot,
+	 * which then replaces the current one.
+	 *
+	 * @param type
+	 * @return the registration snapshot
+	 */
+	private TypeRegistration getTypeRegistration(final Class type) {
+
+		final TypeRegistration registration = registrySnapshot.get(type);
+		if (registration != null) {
+
+			return registration;
+		}
+
+		return registerTypeSnapshot(type);
+	}
+
+	private synchronized TypeRegistration registerTypeSnapshot(final Class type) {
+
+		final Map<Class, TypeRegistration> snapshot = registrySnapshot;
+
+		// another thread might have been faster
+		TypeRegistration registration = snapshot.get(type);
+		if (registration == null) {
+
+			final Map<Class, TypeRegistration> newSnapshot = new HashMap<>(snapshot);
+			final Map<String, Set<PropertyKey>> views      = new HashMap<>();
+
+			for (final Entry<String, Set<PropertyKey>> entry : getPropertyViewMapForType(type).entrySet()) {
+				views.put(entry.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(entry.getValue())));
+			}
+
+			registration = new TypeRegistration(
+				Collections.unmodifiableMap(views),
+				Collections.unmodifiableMap(new HashMap<>(getClassDBNamePropertyMapForType(type))),
+				Collections.unmodifiableMap(new HashMap<>(getClassJSNamePropertyMapForType(type)))
+			);
+
+			newSnapshot.put(type, registration);
+
+			registrySnapshot = newSnapshot;
+		}
+
+		return registration;
+	}
+
+	/**
+	 * Discards the registration snapshot and the negative lookup caches,
+	 * must be called on every change of the registration maps.
+	 */
+	private void invalidateRegistry() {
+
+		registrySnapshot = Collections.emptyMap();
+
+		unknownNodeEntityTypes.clear();
+		unknownRelationshipEntityTypes.clear();
+
+		AssignabilityMatrix.clear();
+	}
+
 	private Map<String, Set<PropertyKey>> getPropertyViewMapForType(Class type) {
 
 		Map<String, Set<PropertyKey>> propertyViewMap = globalPropertyViewMap.get(type.getName());
@@ -1366,4 +1444,22 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		return viewTransformationMap;
 	}
+
+	// ----- nested classes -----
+	/**
+	 * Immutable snapshot of the views and property keys of a single type.
+	 */
+	private static class TypeRegistration {
+
+		private final Map<String, Set<PropertyKey>> views;
+		private final Map<String, PropertyKey> dbNameKeys;
+		private final Map<String, PropertyKey> jsonNameKeys;
+
+		public TypeRegistration(final Map<String, Set<PropertyKey>> views, final Map<String, PropertyKey> dbNameKeys, final Map<String, PropertyKey> jsonNameKeys) {
+
+			this.views        = views;
+			this.dbNameKeys   = dbNameKeys;
+			this.jsonNameKeys = jsonNameKeys;
+		}
+	}
 }
@@ -36,10 +36,13 @@ import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Command;
 import org.structr.core.Service;
+import org.structr.core.Services;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.SchemaNode;
 import org.structr.core.entity.relationship.SchemaRelationship;
+import org.structr.core.graph.NodeService;
+import org.structr.core.graph.SchemaIndexHelper;
 import org.structr.core.graph.Tx;
 import org.structr.schema.compiler.NodeExtender;
 
@@ -141,6 +144,11 @@ public class SchemaService implements Service {
 				}
 			}
 
+			// create schema indexes for the indexed properties of the new types
+			if (success) {
+				SchemaIndexHelper.createSchemaIndexes(Services.getInstance().getService(NodeService.class).getGraphDb());
+			}
+
 			// compiling done
 			compiling.set(false);
 		}
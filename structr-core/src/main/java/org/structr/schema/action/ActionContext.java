@@ -43,9 +43,10 @@ import org.structr.core.property.PropertyKey;
  */
 public class ActionContext {
 
-	protected Map<String, Object> tmpStore   = new LinkedHashMap<>();
-	protected Map<Integer, Integer> counters = new LinkedHashMap<>();
-	protected ErrorBuffer errorBuffer        = new ErrorBuffer();
+	// shared with copies, so they are created in the constructors only
+	protected Map<String, Object> tmpStore   = null;
+	protected Map<Integer, Integer> counters = null;
+	protected ErrorBuffer errorBuffer        = null;
 	protected GraphObject parent             = null;
 	protected Object data                    = null;
 
@@ -71,8 +72,11 @@ public class ActionContext {
 	}
 
 	public ActionContext(final GraphObject parent, final Object data) {
-		this.parent = parent;
-		this.data   = data;
+		this.tmpStore    = new LinkedHashMap<>();
+		this.counters    = new LinkedHashMap<>();
+		this.errorBuffer = new ErrorBuffer();
+		this.parent      = parent;
+		this.data        = data;
 	}
 
 	public boolean returnRawValue(final SecurityContext securityContext) {
@@ -19,6 +19,7 @@
 
 package org.structr.common;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -401,6 +402,80 @@ public class AccessControlTest extends StructrTest {
 
 	}
 
+	public void test08ResultCountWithPagingForRestrictedUser() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		try {
+
+			final List<TestUser> users = createTestNodes(TestUser.class, 2);
+			final TestUser user1       = (TestUser) users.get(0);
+			final TestUser user2       = (TestUser) users.get(1);
+			final Class type           = TestOne.class;
+			final List<TestOne> nodes  = new LinkedList<>();
+
+			// let user 1 create nodes, user 2 creates one node of its own
+			for (int i=0; i<8; i++) {
+
+				final PropertyMap props = new PropertyMap();
+				props.put(AbstractNode.name, "node0" + i);
+
+				nodes.add(createTestNode(TestOne.class, props, user1));
+			}
+
+			final PropertyMap ownProps = new PropertyMap();
+			ownProps.put(AbstractNode.name, "node10");
+
+			final TestOne ownNode = createTestNode(TestOne.class, ownProps, user2);
+
+			try (final Tx tx = app.tx()) {
+
+				user2.grant(Permission.read, nodes.get(1));
+				user2.grant(Permission.read, nodes.get(4));
+				user2.grant(Permission.read, nodes.get(6));
+				tx.success();
+			}
+
+			final SecurityContext user2Context = SecurityContext.getInstance(user2, AccessMode.Backend);
+
+			// two granted nodes and the node owned by user 2
+			assertPagedResultCount(user2Context, type, 4, nodes.get(1), nodes.get(4));
+
+			try (final Tx tx = app.tx()) {
+
+				user2.grant(Permission.read, nodes.get(0));
+				tx.success();
+			}
+
+			assertPagedResultCount(user2Context, type, 5, nodes.get(0), nodes.get(1));
+
+			try (final Tx tx = app.tx()) {
+
+				user2.revoke(Permission.read, nodes.get(1));
+				user2.revoke(Permission.read, nodes.get(4));
+				tx.success();
+			}
+
+			assertPagedResultCount(user2Context, type, 3, nodes.get(0), nodes.get(6));
+
+			try (final Tx tx = app.tx()) {
+
+				app.delete(ownNode);
+				tx.success();
+			}
+
+			assertPagedResultCount(user2Context, type, 2, nodes.get(0), nodes.get(6));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 	protected <T extends AbstractNode> T createTestNode(final Class<T> type, final Principal user) throws FrameworkException {
 		return (T)createTestNode(type, new PropertyMap(), user);
 	}
@@ -418,6 +493,25 @@ public class AccessControlTest extends StructrTest {
 		}
 	}
 
+	private void assertPagedResultCount(final SecurityContext securityContext, final Class type, final int count, final NodeInterface first, final NodeInterface second) throws FrameworkException {
+
+		for (final CountMode countMode : new CountMode[] { CountMode.Default, CountMode.Exact }) {
+
+			securityContext.setCountMode(countMode);
+
+			try (final Tx tx = app.tx()) {
+
+				final Result result = StructrApp.getInstance(securityContext).nodeQuery(type).sort(AbstractNode.name).page(1).pageSize(2).getResult();
+
+				assertEquals(2, result.size());
+				assertEquals(count, (int) result.getRawResultCount());
+
+				assertEquals(first.getUuid(), result.get(0).getUuid());
+				assertEquals(second.getUuid(), result.get(1).getUuid());
+			}
+		}
+	}
+
 	public static void clearResourceAccess() {
 
 		final App app = StructrApp.getInstance();
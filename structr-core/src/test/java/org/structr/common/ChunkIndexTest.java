@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests chunk hashing, whole-file lookup and chunk copies of {@link ChunkIndex}.
+ */
+public class ChunkIndexTest extends TestCase {
+
+	public void testChunkCopy() throws IOException {
+
+		final File source = File.createTempFile("structr-test", ".bin");
+		final File target = File.createTempFile("structr-test", ".bin");
+		final byte[] data = new byte[250];
+
+		try {
+
+			for (int i=0; i<data.length; i++) {
+				data[i] = (byte)(i / 100);
+			}
+
+			FileUtils.writeByteArrayToFile(source, data);
+
+			final ChunkIndex index  = new ChunkIndex(100);
+			final String[] hashes   = index.add(source);
+
+			assertEquals(3, hashes.length);
+			assertFalse(hashes[0].equals(hashes[1]));
+
+			// rebuild the file in reverse chunk order
+			try (final RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+
+				assertTrue(index.copy(hashes[1], file, 0));
+				assertTrue(index.copy(hashes[0], file, 100));
+				assertFalse(index.copy("unknown", file, 200));
+			}
+
+			final byte[] copied = FileUtils.readFileToByteArray(target);
+
+			assertEquals(200, copied.length);
+			assertEquals(1, copied[0]);
+			assertEquals(0, copied[100]);
+
+		} finally {
+
+			source.delete();
+			target.delete();
+		}
+	}
+
+	public void testFind() throws IOException {
+
+		final File first  = File.createTempFile("structr-test", ".bin");
+		final File second = File.createTempFile("structr-test", ".bin");
+		final File third  = File.createTempFile("structr-test", ".bin");
+		final byte[] data = new byte[1000];
+
+		try {
+
+			Arrays.fill(data, (byte)1);
+			FileUtils.writeByteArrayToFile(first, data);
+			FileUtils.writeByteArrayToFile(second, data);
+
+			data[500] = 2;
+			FileUtils.writeByteArrayToFile(third, data);
+
+			final ChunkIndex index = new ChunkIndex(100);
+
+			index.add(first, FileUtils.checksumCRC32(first));
+
+			assertEquals(first, index.find(second, FileUtils.checksumCRC32(second)));
+			assertNull(index.find(third, FileUtils.checksumCRC32(third)));
+
+			// same checksum and size, different content
+			assertNull(index.find(third, FileUtils.checksumCRC32(first)));
+
+		} finally {
+
+			first.delete();
+			second.delete();
+			third.delete();
+		}
+	}
+}
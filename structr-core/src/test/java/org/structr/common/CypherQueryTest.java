@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.cypher.CypherQueryStatistics;
+import org.structr.core.cypher.NormalizedCypherQuery;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.CypherQueryCommand;
+import org.structr.core.graph.Tx;
+
+/**
+ * Tests the normalization and the paged execution of Cypher queries.
+ */
+public class CypherQueryTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(CypherQueryTest.class.getName());
+
+	public void test01Normalization() {
+
+		final NormalizedCypherQuery query1 = NormalizedCypherQuery.normalize("MATCH (n:TestOne) WHERE n.name = 'abc' AND n.anInt > 5 RETURN n SKIP 10 LIMIT 20");
+		final NormalizedCypherQuery query2 = NormalizedCypherQuery.normalize("MATCH (n:TestOne) WHERE n.name = \"def\" AND n.anInt > 17 RETURN n SKIP 0 LIMIT 5");
+
+		assertTrue(query1.isParameterized());
+		assertEquals("Queries with different literals should share the normalized form", query1.getQuery(), query2.getQuery());
+
+		final Map<String, Object> parameters = query1.getParameters(null);
+
+		assertEquals(4, parameters.size());
+		assertTrue(parameters.containsValue("abc"));
+		assertTrue(parameters.containsValue(5L));
+
+		// existing parameters, identifiers, variable length patterns and return values are not changed
+		final NormalizedCypherQuery query3 = NormalizedCypherQuery.normalize("MATCH (n1)-[:REL*1..3]->(m) WHERE n1.id = {id} RETURN m, 'x'");
+
+		assertFalse(query3.isParameterized());
+		assertEquals("MATCH (n1)-[:REL*1..3]->(m) WHERE n1.id = {id} RETURN m, 'x'", query3.getQuery());
+	}
+
+	public void test02PagedExecution() {
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, 10);
+
+			assertEquals(10, nodes.size());
+
+			try (final Tx tx = app.tx()) {
+
+				final CypherQueryCommand command = app.command(CypherQueryCommand.class);
+				final List<GraphObject> all      = command.execute("START n=node(*) WHERE n.type = 'TestOne' RETURN n");
+				final List<GraphObject> page     = command.executePaged("START n=node(*) WHERE n.type = 'TestOne' RETURN n", null, false, false, 3, 4).toList();
+
+				assertEquals(10, all.size());
+				assertEquals(1, page.size());
+			}
+
+			final CypherQueryStatistics stats = CypherQueryCommand.getStatistics().get(NormalizedCypherQuery.normalize("START n=node(*) WHERE n.type = 'TestOne' RETURN n").getQuery());
+
+			assertNotNull(stats);
+			assertEquals(2, stats.getExecutionCount());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+}
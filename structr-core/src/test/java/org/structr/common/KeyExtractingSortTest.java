@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Tests that {@link KeyExtractingSort} returns the same order and pages as
+ * {@link GraphObjectComparator} and {@link PagingHelper}.
+ */
+public class KeyExtractingSortTest extends StructrTest {
+
+	private static final int[] pageSizes = { 1, 7, 10, 100, 150 };
+	private static final int[] pages     = { 1, 2, 3, 12, 15, -1, -2, -5, -15 };
+
+	public void test01SortIntegers() {
+		assertSameOrder(TestOne.anInt);
+	}
+
+	public void test02SortDoubles() {
+		assertSameOrder(TestOne.aDouble);
+	}
+
+	public void test03SortDates() {
+		assertSameOrder(TestOne.aDate);
+	}
+
+	public void test04SortBooleans() {
+		assertSameOrder(TestOne.aBoolean);
+	}
+
+	public void test05SortStrings() {
+		assertSameOrder(TestOne.aString);
+	}
+
+	public void test06SortLinkedList() {
+
+		try {
+
+			final List<TestOne> testOnes = createSortTestNodes();
+
+			try (final Tx tx = app.tx()) {
+
+				for (final boolean sortDescending : new boolean[] { false, true }) {
+
+					final List<TestOne> sorted = comparatorSort(testOnes, TestOne.aDouble, sortDescending);
+
+					assertEquals(sorted, KeyExtractingSort.sort(new LinkedList<>(testOnes), TestOne.aDouble, sortDescending));
+					assertEquals(PagingHelper.subList(sorted, 10, -2, null), KeyExtractingSort.page(new LinkedList<>(testOnes), TestOne.aDouble, sortDescending, 10, -2));
+				}
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private void assertSameOrder(final PropertyKey sortKey) {
+
+		try {
+
+			final List<TestOne> testOnes = createSortTestNodes();
+
+			try (final Tx tx = app.tx()) {
+
+				for (final boolean sortDescending : new boolean[] { false, true }) {
+
+					final List<TestOne> sorted = comparatorSort(testOnes, sortKey, sortDescending);
+
+					assertEquals(sortKey.jsonName() + (sortDescending ? " desc" : " asc"), sorted, KeyExtractingSort.sort(testOnes, sortKey, sortDescending));
+
+					for (final int pageSize : pageSizes) {
+
+						for (final int page : pages) {
+
+							final String message = sortKey.jsonName() + (sortDescending ? " desc" : " asc") + ", pageSize " + pageSize + ", page " + page;
+
+							assertEquals(message, PagingHelper.subList(sorted, pageSize, page, null), KeyExtractingSort.page(testOnes, sortKey, sortDescending, pageSize, page));
+						}
+					}
+				}
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	private List<TestOne> comparatorSort(final List<TestOne> list, final PropertyKey sortKey, final boolean sortDescending) {
+
+		final List<TestOne> sorted = new ArrayList<>(list);
+
+		Collections.sort(sorted, new GraphObjectComparator(sortKey, sortDescending));
+
+		return sorted;
+	}
+
+	/**
+	 * Creates nodes with negative values, ties and null values for all
+	 * sort keys. The nodes are shuffled so that ties are not in creation
+	 * order.
+	 */
+	private List<TestOne> createSortTestNodes() throws FrameworkException {
+
+		final List<TestOne> testOnes = new ArrayList<>(createTestNodes(TestOne.class, 120));
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<testOnes.size(); i++) {
+
+				final TestOne testOne = testOnes.get(i);
+
+				testOne.setProperty(TestOne.anInt,    i % 10 == 0 ? null : (i * 7) % 13 - 6);
+				testOne.setProperty(TestOne.aDouble,  i % 9  == 0 ? null : ((i * 31) % 17 - 8) * 0.75);
+				testOne.setProperty(TestOne.aDate,    i % 8  == 0 ? null : new Date(1000L * ((i * 11) % 23) - 5000L));
+				testOne.setProperty(TestOne.aBoolean, i % 11 == 0 ? null : i % 3 == 0);
+				testOne.setProperty(TestOne.aString,  i % 7  == 0 ? null : "string" + (i * 3) % 19);
+			}
+
+			tx.success();
+		}
+
+		Collections.shuffle(testOnes, new Random(42L));
+
+		return testOnes;
+	}
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.core.Services;
+import org.structr.core.entity.QueuedMail;
+import org.structr.core.graph.Tx;
+
+/**
+ * Tests the transactional mail outbox against a minimal local SMTP server.
+ */
+public class MailOutboxTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(MailOutboxTest.class.getName());
+
+	public void test01DeliveryAfterCommitOnly() {
+
+		try (final SmtpStandIn smtp = new SmtpStandIn()) {
+
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_HOST, "127.0.0.1");
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_PORT, Integer.toString(smtp.getPort()));
+
+			// mail of a rolled back transaction must not be sent
+			try (final Tx tx = app.tx()) {
+
+				MailHelper.sendSimpleMail("sender@example.com", "Sender", "rcpt@example.com", "Recipient", null, null, null, "Rolled back", "Text");
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				MailHelper.sendSimpleMail("sender@example.com", "Sender", "rcpt@example.com", "Recipient", null, null, null, "Committed", "Text");
+				tx.success();
+			}
+
+			// wait for the background sender
+			for (int i=0; i<100 && (smtp.getMessages().isEmpty() || outboxSize() > 0); i++) {
+				Thread.sleep(100);
+			}
+
+			final List<String> messages = smtp.getMessages();
+
+			assertEquals(1, messages.size());
+			assertTrue(messages.get(0).contains("Subject: Committed"));
+			assertEquals("Delivered mails should be removed from the outbox", 0, outboxSize());
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "", t);
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02DeliveryAfterRestart() {
+
+		try (final SmtpStandIn smtp = new SmtpStandIn()) {
+
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_HOST, "127.0.0.1");
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_PORT, Integer.toString(smtp.getPort()));
+
+			// mails queued while the sender is not running stay in the outbox
+			MailOutbox.stop();
+
+			try (final Tx tx = app.tx()) {
+
+				MailHelper.sendSimpleMail("sender@example.com", "Sender", "rcpt@example.com", "Recipient", null, null, null, "Queued", "Text");
+				tx.success();
+			}
+
+			Thread.sleep(1000);
+
+			assertTrue(smtp.getMessages().isEmpty());
+			assertEquals(1, outboxSize());
+
+			// and are delivered when the sender is started again
+			MailOutbox.start();
+
+			for (int i=0; i<100 && (smtp.getMessages().isEmpty() || outboxSize() > 0); i++) {
+				Thread.sleep(100);
+			}
+
+			final List<String> messages = smtp.getMessages();
+
+			assertEquals(1, messages.size());
+			assertTrue(messages.get(0).contains("Subject: Queued"));
+			assertEquals(0, outboxSize());
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "", t);
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test03RetryWithBackoff() {
+
+		try (final SmtpStandIn smtp = new SmtpStandIn(true)) {
+
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_HOST, "127.0.0.1");
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_PORT, Integer.toString(smtp.getPort()));
+			Services.getInstance().getCurrentConfig().setProperty(MailOutbox.RETRY_DELAY_KEY, "60000");
+
+			final long retried = (Long)MailOutbox.getStatistics().get("retried");
+
+			try (final Tx tx = app.tx()) {
+
+				MailHelper.sendSimpleMail("sender@example.com", "Sender", "rcpt@example.com", "Recipient", null, null, null, "Rejected", "Text");
+				tx.success();
+			}
+
+			// first attempt fails, the next one is scheduled after the retry delay
+			final long t0         = System.currentTimeMillis();
+			final QueuedMail mail = waitForAttempts(1);
+			final long t1         = System.currentTimeMillis();
+
+			try (final Tx tx = app.tx()) {
+
+				final long nextAttempt = mail.getProperty(QueuedMail.nextAttempt);
+
+				assertFalse(mail.getProperty(QueuedMail.failed));
+				assertNotNull(mail.getProperty(QueuedMail.lastError));
+				assertTrue("Retry should be delayed", nextAttempt >= t0 + 60000 && nextAttempt <= t1 + 60000);
+				assertEquals(1, smtp.getRejectedCount());
+
+				// make the mail due again
+				mail.setProperty(QueuedMail.nextAttempt, System.currentTimeMillis());
+				tx.success();
+			}
+
+			// the delay of the second retry is doubled
+			final long t2 = System.currentTimeMillis();
+
+			waitForAttempts(2);
+
+			final long t3 = System.currentTimeMillis();
+
+			try (final Tx tx = app.tx()) {
+
+				final long nextAttempt = mail.getProperty(QueuedMail.nextAttempt);
+
+				assertFalse(mail.getProperty(QueuedMail.failed));
+				assertTrue("Retry delay should be doubled", nextAttempt >= t2 + 120000 && nextAttempt <= t3 + 120000);
+				assertEquals(2, smtp.getRejectedCount());
+			}
+
+			assertEquals(retried + 2, MailOutbox.getStatistics().get("retried"));
+
+			assertTrue(smtp.getMessages().isEmpty());
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "", t);
+			fail("Unexpected exception");
+
+		} finally {
+
+			Services.getInstance().getCurrentConfig().remove(MailOutbox.RETRY_DELAY_KEY);
+		}
+	}
+
+	public void test04GiveUpAfterMaxAttempts() {
+
+		try (final SmtpStandIn smtp = new SmtpStandIn(true)) {
+
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_HOST, "127.0.0.1");
+			Services.getInstance().getCurrentConfig().setProperty(Services.SMTP_PORT, Integer.toString(smtp.getPort()));
+			Services.getInstance().getCurrentConfig().setProperty(MailOutbox.MAX_ATTEMPTS_KEY, "3");
+			Services.getInstance().getCurrentConfig().setProperty(MailOutbox.RETRY_DELAY_KEY, "0");
+
+			final long failed = (Long)MailOutbox.getStatistics().get("failed");
+
+			try (final Tx tx = app.tx()) {
+
+				MailHelper.sendSimpleMail("sender@example.com", "Sender", "rcpt@example.com", "Recipient", null, null, null, "Rejected", "Text");
+				tx.success();
+			}
+
+			final QueuedMail mail = waitForAttempts(3);
+
+			// failed mails are kept in the outbox without a next attempt
+			try (final Tx tx = app.tx()) {
+
+				assertTrue(mail.getProperty(QueuedMail.failed));
+				assertNull(mail.getProperty(QueuedMail.nextAttempt));
+				assertNotNull(mail.getProperty(QueuedMail.lastError));
+			}
+
+			assertEquals(1, outboxSize());
+			assertEquals(failed + 1, MailOutbox.getStatistics().get("failed"));
+
+			// and are not delivered again
+			MailOutbox.wakeUp();
+			Thread.sleep(1000);
+
+			assertEquals(3, smtp.getRejectedCount());
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(Integer.valueOf(3), mail.getProperty(QueuedMail.attempts));
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "", t);
+			fail("Unexpected exception");
+
+		} finally {
+
+			Services.getInstance().getCurrentConfig().remove(MailOutbox.MAX_ATTEMPTS_KEY);
+			Services.getInstance().getCurrentConfig().remove(MailOutbox.RETRY_DELAY_KEY);
+		}
+	}
+
+	/**
+	 * Waits for the single mail in the outbox to reach the given number of
+	 * delivery attempts, triggering the sender for retries that are due.
+	 */
+	private QueuedMail waitForAttempts(final int attempts) throws Exception {
+
+		for (int i=0; i<100; i++) {
+
+			try (final Tx tx = app.tx()) {
+
+				final List<QueuedMail> mails = app.nodeQuery(QueuedMail.class).getAsList();
+				if (mails.size() == 1) {
+
+					final QueuedMail mail = mails.get(0);
+					final Integer count   = mail.getProperty(QueuedMail.attempts);
+
+					if (count != null && count >= attempts) {
+						return mail;
+					}
+				}
+			}
+
+			MailOutbox.wakeUp();
+			Thread.sleep(100);
+		}
+
+		fail("Mail did not reach " + attempts + " delivery attempts");
+
+		return null;
+	}
+
+	private int outboxSize() throws Exception {
+
+		try (final Tx tx = app.tx()) {
+
+			return app.nodeQuery(QueuedMail.class).getAsList().size();
+		}
+	}
+
+	/**
+	 * Accepts SMTP connections and records the data of each message, or
+	 * rejects each message with a temporary error.
+	 */
+	private static class SmtpStandIn extends Thread implements AutoCloseable {
+
+		private final List<String> messages = new CopyOnWriteArrayList<>();
+		private final AtomicInteger rejected = new AtomicInteger(0);
+		private ServerSocket serverSocket    = null;
+		private boolean reject               = false;
+
+		public SmtpStandIn() throws IOException {
+			this(false);
+		}
+
+		public SmtpStandIn(final boolean reject) throws IOException {
+
+			super("SmtpStandIn");
+
+			this.serverSocket = new ServerSocket(0);
+			this.reject       = reject;
+
+			setDaemon(true);
+			start();
+		}
+
+		public int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		public List<String> getMessages() {
+			return messages;
+		}
+
+		public int getRejectedCount() {
+			return rejected.get();
+		}
+
+		@Override
+		public void run() {
+
+			while (!serverSocket.isClosed()) {
+
+				try (final Socket socket = serverSocket.accept()) {
+
+					final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+					final Writer writer         = new OutputStreamWriter(socket.getOutputStream(), "US-ASCII");
+
+					reply(writer, "220 localhost ESMTP");
+
+					String line = null;
+
+					while ((line = reader.readLine()) != null) {
+
+						final String command = line.toUpperCase();
+
+						if (reject && command.startsWith("RCPT")) {
+
+							rejected.incrementAndGet();
+							reply(writer, "451 Try again later");
+
+						} else if (command.startsWith("DATA")) {
+
+							final StringBuilder data = new StringBuilder();
+
+							reply(writer, "354 End data with <CR><LF>.<CR><LF>");
+
+							while ((line = reader.readLine()) != null && !".".equals(line)) {
+								data.append(line).append("\n");
+							}
+
+							messages.add(data.toString());
+							reply(writer, "250 OK");
+
+						} else if (command.startsWith("QUIT")) {
+
+							reply(writer, "221 Bye");
+							break;
+
+						} else {
+
+							reply(writer, "250 OK");
+						}
+					}
+
+				} catch (IOException ioex) {
+					// server socket closed
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			serverSocket.close();
+		}
+
+		private void reply(final Writer writer, final String message) throws IOException {
+
+			writer.write(message);
+			writer.write("\r\n");
+			writer.flush();
+		}
+	}
+}
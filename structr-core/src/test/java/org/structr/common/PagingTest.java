@@ -41,6 +41,7 @@ package org.structr.common;
 
 import org.structr.core.property.PropertyKey;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.app.Query;
 import org.structr.core.Result;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.TestOne;
@@ -48,6 +49,7 @@ import org.structr.core.entity.TestOne;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.logging.Level;
@@ -183,6 +185,70 @@ public class PagingTest extends StructrTest {
 
 	}
 
+	/**
+	 * Test keyset pagination with objects that have no value or an empty
+	 * value for a key that is indexed when empty
+	 */
+	public void test02PageCursorWithEmptyValues() {
+
+		try {
+
+			final List<TestOne> testOnes = createPageCursorTestNodes();
+
+			try (final Tx tx = app.tx()) {
+
+				for (final boolean sortDescending : new boolean[] { false, true }) {
+
+					assertCursorPages(testOnes, TestOne.anInt, sortDescending, null);
+					assertCursorPages(testOnes, TestOne.aString, sortDescending, null);
+				}
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	/**
+	 * Test keyset pagination on an unindexed sort key and with a fulltext
+	 * query, both of which are sorted in memory
+	 */
+	public void test03PageCursorWithoutIndexOrder() {
+
+		try {
+
+			final List<TestOne> testOnes = createPageCursorTestNodes();
+			final List<TestOne> matches  = new LinkedList<>();
+
+			try (final Tx tx = app.tx()) {
+
+				for (final TestOne testOne : testOnes) {
+
+					final String value = testOne.getProperty(TestOne.aString);
+					if (value != null && value.startsWith("match")) {
+
+						matches.add(testOne);
+					}
+				}
+
+				for (final boolean sortDescending : new boolean[] { false, true }) {
+
+					assertCursorPages(testOnes, TestOne.anotherString, sortDescending, null);
+					assertCursorPages(matches, TestOne.anInt, sortDescending, "match");
+				}
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
 	protected void testPaging(final Class type, final int pageSize, final int page, final int number, final int offset, final boolean includeDeletedAndHidden, final boolean publicOnly, final PropertyKey sortKey, final boolean sortDesc) throws FrameworkException {
 
 		Result result = app.nodeQuery(type).sort(sortKey).order(sortDesc).page(page).pageSize(pageSize).getResult();
@@ -210,4 +276,69 @@ public class PagingTest extends StructrTest {
 
 		}
 	}
+
+	private List<TestOne> createPageCursorTestNodes() throws FrameworkException {
+
+		final List<TestOne> testOnes = createTestNodes(TestOne.class, 20);
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<testOnes.size(); i++) {
+
+				final TestOne testOne = testOnes.get(i);
+
+				// values with ties, every third object has no value
+				if (i % 3 != 0) {
+
+					testOne.setProperty(TestOne.anInt, (i % 5) - 2);
+					testOne.setProperty(TestOne.aString, (i % 2 == 0 ? "match" : "other") + (i % 4));
+					testOne.setProperty(TestOne.anotherString, "value" + (i % 6));
+				}
+			}
+
+			// blank values are indexed as empty fields
+			testOnes.get(4).setProperty(TestOne.aString, "");
+
+			tx.success();
+		}
+
+		return testOnes;
+	}
+
+	private void assertCursorPages(final List<TestOne> expected, final PropertyKey sortKey, final boolean sortDescending, final String inexactValue) throws FrameworkException {
+
+		final List<TestOne> sorted = new LinkedList<>(expected);
+		final List<String> uuids   = new LinkedList<>();
+		final List<String> pages   = new LinkedList<>();
+		String cursor              = "";
+		int count                  = 0;
+
+		Collections.sort(sorted, PagingCursor.getComparator(sortKey, sortDescending));
+
+		for (final TestOne testOne : sorted) {
+			uuids.add(testOne.getUuid());
+		}
+
+		do {
+
+			final Query<TestOne> query = app.nodeQuery(TestOne.class).sort(sortKey).order(sortDescending).pageSize(4).cursor(cursor);
+			if (inexactValue != null) {
+
+				query.and(TestOne.aString, inexactValue, false);
+			}
+
+			final Result<TestOne> result = query.getResult();
+
+			for (final TestOne testOne : result.getResults()) {
+				pages.add(testOne.getUuid());
+			}
+
+			cursor = result.getNextCursor();
+
+			assertTrue("Too many pages", ++count < 100);
+
+		} while (cursor != null);
+
+		assertEquals(sortKey.jsonName() + (sortDescending ? " desc" : " asc"), uuids, pages);
+	}
 }
@@ -25,13 +25,24 @@ import org.structr.common.error.FrameworkException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.structr.core.Services;
 import org.structr.core.entity.GenericNode;
+import org.structr.core.entity.SixOneManyToMany;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
 import org.structr.core.entity.relationship.NodeHasLocation;
+import org.structr.core.graph.CreateNodeCommand;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeService;
+import org.structr.core.graph.SchemaIndexHelper;
+import org.structr.core.graph.Tx;
+import org.structr.core.graph.search.SearchCommand;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -129,4 +140,218 @@ public class PerformanceTest extends StructrTest {
 
 	}
 
+	/**
+	 * Compares the overhead of obtaining a command from the service layer
+	 * with the former reflective instantiation and per-command argument
+	 * injection.
+	 *
+	 * Note that this is just a very rough test as performance is heavily
+	 * depending on hardware and setup, the assumed rate is low.
+	 */
+	public void test03PerformanceOfCommandCreation() {
+
+		try {
+
+			final Services services       = Services.getInstance();
+			final NodeService nodeService = services.getService(NodeService.class);
+			final DecimalFormat format    = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			final int number              = 100000;
+
+			// warm-up
+			for (int i=0; i<number; i++) {
+
+				services.command(securityContext, CreateNodeCommand.class);
+				createCommandReflectively(nodeService);
+			}
+
+			long t0 = System.nanoTime();
+
+			for (int i=0; i<number; i++) {
+				createCommandReflectively(nodeService);
+			}
+
+			long t1 = System.nanoTime();
+
+			final Double reflectiveRate = number / ((t1 - t0) / 1000000000.0);
+
+			t0 = System.nanoTime();
+
+			for (int i=0; i<number; i++) {
+				assertNotNull(services.command(securityContext, CreateNodeCommand.class).getArgument("graphDb"));
+			}
+
+			t1 = System.nanoTime();
+
+			final Double rate = number / ((t1 - t0) / 1000000000.0);
+
+			logger.log(Level.INFO, "Created {0} commands: reflective injection {1} per s, service layer {2} per s", new Object[] { number, format.format(reflectiveRate), format.format(rate) });
+			assertTrue(rate > 10000);
+
+		} catch (Throwable t) {
+
+			logger.log(Level.SEVERE, t.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	/**
+	 * Compares exact type and property queries on the legacy Lucene
+	 * keyword index with label queries on the Neo4j schema indexes.
+	 *
+	 * Note that this is just a very rough test as performance is heavily
+	 * depending on hardware and setup, the assumed rate is low.
+	 */
+	public void test04PerformanceOfLabelQueries() {
+
+		try {
+
+			final DecimalFormat format = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			final List<TestOne> nodes  = createTestNodes(TestOne.class, 1000);
+			final int number           = nodes.size();
+			final Date date            = new Date();
+
+			try (final Tx tx = app.tx()) {
+
+				for (int i=0; i<number; i++) {
+					nodes.get(i).setProperty(TestOne.aString, "string" + i);
+				}
+
+				nodes.get(0).setProperty(TestOne.aDate, date);
+
+				tx.success();
+			}
+
+			// schema indexes are opt-in
+			setSchemaIndexesEnabled(true);
+			SchemaIndexHelper.createSchemaIndexes(graphDbCommand.execute());
+			SchemaIndexHelper.awaitIndexesOnline(graphDbCommand.execute(), 1, TimeUnit.MINUTES);
+
+			setSchemaIndexesEnabled(false);
+			long count              = SearchCommand.getLabelQueryCount();
+			final Double luceneRate = runExactQueries(number);
+
+			assertEquals("Queries should be answered by Lucene", count, SearchCommand.getLabelQueryCount());
+
+			setSchemaIndexesEnabled(true);
+			count                   = SearchCommand.getLabelQueryCount();
+			final Double labelRate  = runExactQueries(number);
+
+			// one label scan and one schema index query per value
+			assertEquals("Queries should be answered by label scan and schema index", count + number + 1, SearchCommand.getLabelQueryCount());
+
+			// queries that the schema index can not answer are left to Lucene
+			try (final Tx tx = app.tx()) {
+
+				count = SearchCommand.getLabelQueryCount();
+
+				assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aDate, date).getAsList().size());
+				assertEquals(count, SearchCommand.getLabelQueryCount());
+			}
+
+			logger.log(Level.INFO, "Ran {0} exact queries: Lucene {1} per s, schema index {2} per s", new Object[] { number, format.format(luceneRate), format.format(labelRate) });
+			assertTrue(labelRate > 100);
+
+		} catch (Throwable t) {
+
+			logger.log(Level.SEVERE, t.toString());
+			fail("Unexpected exception");
+
+		} finally {
+
+			setSchemaIndexesEnabled(false);
+		}
+	}
+
+	/**
+	 * Tests the throughput of reading a collection property of a node
+	 * with many relationships.
+	 *
+	 * Note that this is just a very rough test as performance is heavily
+	 * depending on hardware and setup, the assumed rate is low.
+	 */
+	public void test05PerformanceOfCollectionProperty() {
+
+		try {
+
+			final DecimalFormat format = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			final List<TestOne> nodes  = createTestNodes(TestOne.class, 10000);
+			final TestSix testSix      = createTestNode(TestSix.class);
+			final int number           = nodes.size();
+			final int iterations       = 10;
+
+			try (final Tx tx = app.tx()) {
+
+				for (final TestOne node : nodes) {
+					app.create(testSix, node, SixOneManyToMany.class);
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// warm-up
+				assertEquals(number, testSix.getProperty(TestSix.manyToManyTestOnes).size());
+
+				final long t0 = System.nanoTime();
+
+				for (int i=0; i<iterations; i++) {
+					assertEquals(number, testSix.getProperty(TestSix.manyToManyTestOnes).size());
+				}
+
+				final long t1 = System.nanoTime();
+
+				final Double time = (t1 - t0) / 1000000000.0;
+				final Double rate = (number * iterations) / time;
+
+				logger.log(Level.INFO, "Read {0} related nodes in {1} seconds ({2} per s)", new Object[] { number * iterations, format.format(time), format.format(rate) });
+				assertTrue(rate > 1000);
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.SEVERE, t.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	private Double runExactQueries(final int number) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			// type only, label scan
+			assertEquals(number, app.nodeQuery(TestOne.class).getAsList().size());
+
+			final long t0 = System.nanoTime();
+
+			for (int i=0; i<number; i++) {
+
+				final TestOne result = app.nodeQuery(TestOne.class).and(TestOne.aString, "string" + i).getFirst();
+
+				assertNotNull(result);
+				assertEquals("string" + i, result.getProperty(TestOne.aString));
+			}
+
+			final long t1 = System.nanoTime();
+
+			return number / ((t1 - t0) / 1000000000.0);
+		}
+	}
+
+	private void setSchemaIndexesEnabled(final boolean enabled) {
+		Services.getInstance().getCurrentConfig().setProperty(Services.SEARCH_SCHEMA_INDEXES, Boolean.toString(enabled));
+	}
+
+	private CreateNodeCommand createCommandReflectively(final NodeService nodeService) throws ReflectiveOperationException {
+
+		final CreateNodeCommand command = CreateNodeCommand.class.newInstance();
+
+		command.setSecurityContext(securityContext);
+
+		if (command.getServiceClass() != null) {
+			nodeService.injectArguments(command);
+		}
+
+		return command;
+	}
 }
@@ -19,6 +19,7 @@
 package org.structr.core.entity;
 
 import java.util.List;
+import org.structr.core.property.CollectionSumProperty;
 import org.structr.core.property.EndNodes;
 import org.structr.core.property.Property;
 import org.structr.core.property.EndNode;
@@ -43,4 +44,7 @@ public class TestSix extends AbstractNode {
 	public static final Property<List<TestNine>>  oneToManyTestNinesCascadeConstraint  = new EndNodes<>("oneToManyTestNinesCascadeConstraint", SixNineOneToManyCascadeConstraint.class);
 
 	public static final Property<Integer>         index                                = new IntProperty("index");
+
+	public static final Property<Long>            sumOfLongs                           = new CollectionSumProperty<>("sumOfLongs", manyToManyTestOnes, TestOne.aLong);
+	public static final Property<Long>            materializedSumOfLongs               = new CollectionSumProperty<>("materializedSumOfLongs", manyToManyTestOnes, TestOne.aLong).materialized();
 }
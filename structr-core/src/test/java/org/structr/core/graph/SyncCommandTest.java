@@ -20,11 +20,17 @@ package org.structr.core.graph;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.io.FileUtils;
 import org.structr.common.StructrTest;
 import org.structr.core.entity.TestOne;
 
@@ -165,6 +171,143 @@ public class SyncCommandTest extends StructrTest {
 		}
 	}
 
+	public void testExportImportFiles() {
+
+		final File dir = new File("files/synctest");
+
+		try {
+
+			final File file1 = new File(dir, "file1.txt");
+			final File file2 = new File(dir, "file2.txt");
+			final File file3 = new File(dir, "file3.txt");
+
+			FileUtils.writeStringToFile(file1, "content");
+			FileUtils.writeStringToFile(file2, "content");
+			FileUtils.writeStringToFile(file3, "other content");
+
+			// 1. export, one of file1 and file2 is exported as a link
+			final byte[] data         = exportFiles(file1, file2, file3);
+			final Set<String> entries = getFileEntries(data);
+
+			assertEquals("Duplicate file should be exported as a link", 3, entries.size());
+			assertTrue("Duplicate file should be exported as a link", entries.contains("links"));
+			assertTrue("Duplicate file should be exported as a link", entries.contains("files/synctest/file3.txt"));
+
+			// 2. remove files and import again
+			FileUtils.deleteDirectory(dir);
+
+			importFiles(data);
+
+			// 3. check result
+			assertEquals("Files from exported and re-imported data should be equal", "content", FileUtils.readFileToString(file1));
+			assertEquals("Files from exported and re-imported data should be equal", "content", FileUtils.readFileToString(file2));
+			assertEquals("Files from exported and re-imported data should be equal", "other content", FileUtils.readFileToString(file3));
+
+		} catch (Throwable t) {
+
+			t.printStackTrace();
+
+			fail("Unexpected exception.");
+
+		} finally {
+
+			FileUtils.deleteQuietly(dir);
+		}
+	}
+
+	public void testImportLinksWithNewerOriginal() {
+
+		final File dir = new File("files/synctest");
+
+		try {
+
+			final File file1 = new File(dir, "file1.txt");
+			final File file2 = new File(dir, "file2.txt");
+
+			FileUtils.writeStringToFile(file1, "content");
+			FileUtils.writeStringToFile(file2, "content");
+
+			final byte[] data = exportFiles(file1, file2);
+
+			// the file that is not exported as a link is the original
+			final boolean firstIsOriginal = getFileEntries(data).contains("files/synctest/file1.txt");
+			final File original           = firstIsOriginal ? file1 : file2;
+			final File linked             = firstIsOriginal ? file2 : file1;
+			final long lastModified       = linked.lastModified();
+
+			// 1. modify the original after the export, make the linked file older
+			FileUtils.writeStringToFile(original, "modified content");
+			FileUtils.writeStringToFile(linked, "old content");
+
+			original.setLastModified(System.currentTimeMillis() + 3600000);
+			linked.setLastModified(lastModified - 3600000);
+
+			importFiles(data);
+
+			// 2. the modified original must not be copied into the linked file
+			assertEquals("Newer file should not be overwritten", "modified content", FileUtils.readFileToString(original));
+			assertEquals("Linked file should not be copied from a newer original", "old content", FileUtils.readFileToString(linked));
+
+		} catch (Throwable t) {
+
+			t.printStackTrace();
+
+			fail("Unexpected exception.");
+
+		} finally {
+
+			FileUtils.deleteQuietly(dir);
+		}
+	}
+
+	public void testExportWithStoredChecksum() {
+
+		final File dir = new File("files/synctest");
+
+		try {
+
+			final File file1 = new File(dir, "file1.txt");
+			final File file2 = new File(dir, "file2.txt");
+
+			FileUtils.writeStringToFile(file1, "content");
+			FileUtils.writeStringToFile(file2, "content");
+
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+
+			try (final Tx tx = app.tx()) {
+
+				// a file node with a checksum that does not match the content of file1
+				final TestOne test = createTestNode(TestOne.class);
+
+				test.getNode().setProperty("relativeFilePath", "synctest/file2.txt");
+				test.getNode().setProperty("checksum", 0L);
+				test.getNode().setProperty("size", file2.length());
+
+				SyncCommand.exportToStream(
+					outputStream,
+					app.nodeQuery(TestOne.class).getAsList(),
+					app.relationshipQuery(RelationshipInterface.class).getAsList(),
+					Arrays.asList("files/synctest/file1.txt", "files/synctest/file2.txt"),
+					true
+				);
+
+				tx.success();
+			}
+
+			assertEquals("Stored checksum should be used in export", new LinkedHashSet<>(Arrays.asList("files/synctest/file1.txt", "files/synctest/file2.txt")), getFileEntries(outputStream.toByteArray()));
+
+		} catch (Throwable t) {
+
+			t.printStackTrace();
+
+			fail("Unexpected exception.");
+
+		} finally {
+
+			FileUtils.deleteQuietly(dir);
+		}
+	}
+
 	public void testSerializer() {
 
 		// 00, 01: byte[], byte
@@ -226,6 +369,69 @@ public class SyncCommandTest extends StructrTest {
 
 	}
 
+	private byte[] exportFiles(final File... files) throws Throwable {
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+		final Set<String> filePaths              = new LinkedHashSet<>();
+
+		for (final File file : files) {
+			filePaths.add(file.getPath().replace(File.separatorChar, '/'));
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			SyncCommand.exportToStream(
+				outputStream,
+				app.nodeQuery(TestOne.class).getAsList(),
+				app.relationshipQuery(RelationshipInterface.class).getAsList(),
+				filePaths,
+				true
+			);
+
+			tx.success();
+		}
+
+		return outputStream.toByteArray();
+	}
+
+	private void importFiles(final byte[] data) throws Throwable {
+
+		try (final Tx tx = app.tx()) {
+
+			SyncCommand.importFromStream(
+				app.getGraphDatabaseService(),
+				securityContext,
+				new ByteArrayInputStream(data),
+				true
+			);
+
+			tx.success();
+		}
+	}
+
+	/**
+	 * Returns the names of the file and links entries of the given export.
+	 */
+	private Set<String> getFileEntries(final byte[] data) throws IOException {
+
+		final Set<String> names = new LinkedHashSet<>();
+
+		try (final ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(data))) {
+
+			ZipEntry entry = zis.getNextEntry();
+			while (entry != null) {
+
+				if (!entry.isDirectory() && !"db".equals(entry.getName())) {
+					names.add(entry.getName());
+				}
+
+				entry = zis.getNextEntry();
+			}
+		}
+
+		return names;
+	}
+
 	private boolean equal(Object[] source, Object[] target) {
 		return Arrays.equals(source, target);
 	}
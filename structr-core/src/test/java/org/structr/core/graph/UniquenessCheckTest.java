@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.TestEleven;
+import org.structr.core.entity.TestTen;
+
+/**
+ * Tests the uniqueness check of property values at commit time.
+ */
+public class UniquenessCheckTest extends StructrTest {
+
+	public void test01DuplicateInTransaction() {
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestTen.class, new NodeAttribute(TestTen.uniqueValue, "value"));
+			app.create(TestTen.class, new NodeAttribute(TestTen.uniqueValue, "other"));
+			app.create(TestTen.class, new NodeAttribute(TestTen.uniqueValue, "value"));
+
+			tx.success();
+
+			fail("Duplicate values in one transaction should not be committed");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals(422, fex.getStatus());
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(0, app.nodeQuery(TestTen.class).getAsList().size());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// the values of the failed transaction are released
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestTen.class, new NodeAttribute(TestTen.uniqueValue, "value"));
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02DuplicateOfCommittedValue() {
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestTen.class, new NodeAttribute(TestTen.uniqueValue, "value"));
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestTen.class, new NodeAttribute(TestTen.uniqueValue, "value"));
+			tx.success();
+
+			fail("Duplicate of a committed value should not be committed");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals(422, fex.getStatus());
+		}
+
+		// modifying the existing object does not conflict with its own value
+		try (final Tx tx = app.tx()) {
+
+			final TestTen existing = app.nodeQuery(TestTen.class).getFirst();
+
+			existing.setProperty(TestTen.name, "modified");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test03ConcurrentDuplicates() {
+
+		final int number             = 4;
+		final CyclicBarrier barrier  = new CyclicBarrier(number);
+		final AtomicInteger success  = new AtomicInteger(0);
+		final AtomicInteger failures = new AtomicInteger(0);
+		final Thread[] threads       = new Thread[number];
+
+		for (int i=0; i<number; i++) {
+
+			threads[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+
+					try (final Tx tx = app.tx()) {
+
+						app.create(TestTen.class, new NodeAttribute(TestTen.uniqueValue, "concurrent"));
+
+						// commit at the same time
+						barrier.await(10, TimeUnit.SECONDS);
+
+						tx.success();
+
+					} catch (FrameworkException fex) {
+
+						failures.incrementAndGet();
+						return;
+
+					} catch (Throwable t) {
+
+						t.printStackTrace();
+						return;
+					}
+
+					success.incrementAndGet();
+				}
+			});
+
+			threads[i].start();
+		}
+
+		try {
+
+			for (final Thread thread : threads) {
+				thread.join(TimeUnit.SECONDS.toMillis(30));
+			}
+
+		} catch (InterruptedException iex) {
+
+			fail("Unexpected exception");
+		}
+
+		assertEquals("Exactly one transaction should commit the value", 1, success.get());
+		assertEquals(number - 1, failures.get());
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(1, app.nodeQuery(TestTen.class).and(TestTen.uniqueValue, "concurrent").getAsList().size());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test04ConcurrentDuplicatesOfSubtype() {
+
+		final Class[] types          = new Class[] { TestTen.class, TestEleven.class };
+		final CyclicBarrier barrier  = new CyclicBarrier(types.length);
+		final AtomicInteger success  = new AtomicInteger(0);
+		final AtomicInteger failures = new AtomicInteger(0);
+		final Thread[] threads       = new Thread[types.length];
+
+		for (int i=0; i<types.length; i++) {
+
+			final Class type = types[i];
+
+			threads[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+
+					try (final Tx tx = app.tx()) {
+
+						app.create(type, new NodeAttribute(TestTen.uniqueValue, "concurrent"));
+
+						// commit at the same time
+						barrier.await(10, TimeUnit.SECONDS);
+
+						tx.success();
+
+					} catch (FrameworkException fex) {
+
+						failures.incrementAndGet();
+						return;
+
+					} catch (Throwable t) {
+
+						t.printStackTrace();
+						return;
+					}
+
+					success.incrementAndGet();
+				}
+			});
+
+			threads[i].start();
+		}
+
+		try {
+
+			for (final Thread thread : threads) {
+				thread.join(TimeUnit.SECONDS.toMillis(30));
+			}
+
+		} catch (InterruptedException iex) {
+
+			fail("Unexpected exception");
+		}
+
+		assertEquals("Values of subtypes should be reserved for the declaring type", 1, success.get());
+		assertEquals(1, failures.get());
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(1, app.nodeQuery(TestTen.class).and(TestTen.uniqueValue, "concurrent").getAsList().size());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+}
@@ -18,11 +18,17 @@
  */
 package org.structr.core.maintenance;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.fail;
 import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -32,6 +38,7 @@ import org.neo4j.graphdb.Transaction;
 import org.neo4j.helpers.collection.Iterables;
 import org.structr.common.StructrTest;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
 import org.structr.core.entity.Group;
 import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestTwo;
@@ -159,6 +166,84 @@ public class TestBulkCommands extends StructrTest {
 		}
 	}
 
+	public void testBulkRebuildIndexCommandInParallel() {
+
+		try {
+
+			final GraphDatabaseService graphDb = app.getGraphDatabaseService();
+
+			createRawNodes(graphDb, "TestOne", 250);
+			createRawNodes(graphDb, "TestTwo", 50);
+
+			// rebuild only one type with several threads and small batches
+			app.command(BulkRebuildIndexCommand.class).execute(toMap("type", "TestOne", "threads", 4, "batchSize", 7));
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(250, app.nodeQuery(TestOne.class).getResult().size());
+				assertEquals(  0, app.nodeQuery(TestTwo.class).getResult().size());
+			}
+
+			app.command(BulkRebuildIndexCommand.class).execute(toMap("mode", "nodesOnly", "threads", 3));
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(250, app.nodeQuery(TestOne.class).getResult().size());
+				assertEquals( 50, app.nodeQuery(TestTwo.class).getResult().size());
+			}
+
+			// no checkpoint is left after a complete rebuild
+			assertFalse(getCheckpointFile().exists());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	public void testBulkRebuildIndexCommandResume() {
+
+		try {
+
+			final GraphDatabaseService graphDb = app.getGraphDatabaseService();
+			final File checkpointFile          = getCheckpointFile();
+
+			createRawNodes(graphDb, "TestOne", 100);
+
+			// simulate an interrupted rebuild that has finished the only partition
+			writeCheckpoint(checkpointFile, "nodes.all", "0");
+
+			app.command(BulkRebuildIndexCommand.class).execute(toMap("mode", "nodesOnly"));
+
+			try (final Tx tx = app.tx()) {
+
+				// nothing left to do, nodes were not indexed
+				assertEquals(0, app.nodeQuery(TestOne.class).getResult().size());
+			}
+
+			// all partitions are done, the checkpoint is removed
+			assertFalse(checkpointFile.exists());
+
+			writeCheckpoint(checkpointFile, "nodes.all", "0");
+
+			// ignore the checkpoint
+			app.command(BulkRebuildIndexCommand.class).execute(toMap("mode", "nodesOnly", "resume", "false"));
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(100, app.nodeQuery(TestOne.class).getResult().size());
+			}
+
+			assertFalse(checkpointFile.exists());
+
+		} catch (IOException | FrameworkException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
 	public void testBulkSetNodePropertiesCommand() {
 
 		final Integer one = 1;
@@ -227,4 +312,37 @@ public class TestBulkCommands extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	// ----- private methods -----
+	private void createRawNodes(final GraphDatabaseService graphDb, final String type, final int count) {
+
+		// intentionally create raw Neo4j transaction and create nodes in there
+		try (Transaction tx = graphDb.beginTx()) {
+
+			for (int i=0; i<count; i++) {
+
+				final Node test = graphDb.createNode();
+
+				// set ID and type so that the rebuild index command identifies it as a Structr node.
+				test.setProperty("type", type);
+				test.setProperty("id", UUID.randomUUID().toString().replace("-", ""));
+			}
+
+			tx.success();
+		}
+	}
+
+	private File getCheckpointFile() {
+		return new File(Services.getInstance().getConfigurationValue(Services.DATABASE_PATH), "rebuildIndex.checkpoint");
+	}
+
+	private void writeCheckpoint(final File file, final String key, final String partitions) throws IOException {
+
+		final Properties properties = new Properties();
+		properties.setProperty(key, partitions);
+
+		try (final OutputStream os = new FileOutputStream(file)) {
+			properties.store(os, null);
+		}
+	}
 }
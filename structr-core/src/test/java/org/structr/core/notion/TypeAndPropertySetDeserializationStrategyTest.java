@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.notion;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+
+/**
+ * Tests the lookup of nodes by a set of property values.
+ */
+public class TypeAndPropertySetDeserializationStrategyTest extends StructrTest {
+
+	public void test01BatchLookup() {
+
+		final TypeAndPropertySetDeserializationStrategy<Map<String, Object>, TestOne> strategy = new TypeAndPropertySetDeserializationStrategy<>(true, TestOne.name, TestOne.anInt);
+
+		TestOne a1 = null;
+		TestOne a2 = null;
+		TestOne b1 = null;
+
+		try (final Tx tx = app.tx()) {
+
+			a1 = app.create(TestOne.class, new NodeAttribute(TestOne.name, "a"), new NodeAttribute(TestOne.anInt, 1));
+			a2 = app.create(TestOne.class, new NodeAttribute(TestOne.name, "a"), new NodeAttribute(TestOne.anInt, 2));
+			b1 = app.create(TestOne.class, new NodeAttribute(TestOne.name, "b"), new NodeAttribute(TestOne.anInt, 1));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			// all values of a set must match
+			final List<TestOne> result = strategy.deserializeAll(securityContext, TestOne.class, toList(source("a", 2), source("b", 1), source("a", 1), source("b", 2), source("a", 2)));
+
+			assertEquals(5, result.size());
+			assertEquals(a2, result.get(0));
+			assertEquals(b1, result.get(1));
+			assertEquals(a1, result.get(2));
+			assertEquals(a2, result.get(4));
+
+			// the set without a node was created once
+			final TestOne b2 = result.get(3);
+
+			assertNotNull(b2);
+			assertEquals("b", b2.getProperty(TestOne.name));
+			assertEquals(Integer.valueOf(2), b2.getProperty(TestOne.anInt));
+			assertEquals(4, app.nodeQuery(TestOne.class).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// more sets than fit into one query
+		try (final Tx tx = app.tx()) {
+
+			final List<Map<String, Object>> sources = new LinkedList<>();
+
+			for (int i=0; i<600; i++) {
+				sources.add(source("c", i));
+			}
+
+			final List<TestOne> created = strategy.deserializeAll(securityContext, TestOne.class, sources);
+
+			tx.success();
+
+			assertEquals(600, created.size());
+			assertEquals(604, app.nodeQuery(TestOne.class).getAsList().size());
+
+			// single lookup of a set
+			assertEquals(created.get(123), strategy.deserialize(securityContext, TestOne.class, source("c", 123)));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<Map<String, Object>> sources = new LinkedList<>();
+
+			for (int i=0; i<600; i++) {
+				sources.add(source("c", i));
+			}
+
+			final List<TestOne> found = strategy.deserializeAll(securityContext, TestOne.class, sources);
+
+			for (int i=0; i<600; i++) {
+				assertEquals(Integer.valueOf(i), found.get(i).getProperty(TestOne.anInt));
+			}
+
+			// nothing was created
+			assertEquals(604, app.nodeQuery(TestOne.class).getAsList().size());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02TransactionCache() {
+
+		final TypeAndPropertySetDeserializationStrategy<Map<String, Object>, TestOne> strategy = new TypeAndPropertySetDeserializationStrategy<>(true, TestOne.name, TestOne.anInt);
+
+		try (final Tx tx = app.tx()) {
+
+			final TestOne created = strategy.deserializeAll(securityContext, TestOne.class, toList(source("d", 1))).get(0);
+
+			// found again in the same transaction, by batch and by single lookup
+			assertEquals(created, strategy.deserializeAll(securityContext, TestOne.class, toList(source("d", 1))).get(0));
+			assertEquals(created, strategy.deserialize(securityContext, TestOne.class, source("d", 1)));
+			assertEquals(1, app.nodeQuery(TestOne.class).getAsList().size());
+
+			// cached nodes whose values were modified do not match anymore
+			created.setProperty(TestOne.anInt, 2);
+
+			final TestOne other = strategy.deserializeAll(securityContext, TestOne.class, toList(source("d", 1))).get(0);
+
+			assertFalse(created.equals(other));
+			assertEquals(created, strategy.deserializeAll(securityContext, TestOne.class, toList(source("d", 2))).get(0));
+			assertEquals(2, app.nodeQuery(TestOne.class).getAsList().size());
+
+			// deleted nodes are removed from the cache
+			app.delete(other);
+
+			final TestOne recreated = strategy.deserialize(securityContext, TestOne.class, source("d", 1));
+
+			assertNotNull(recreated);
+			assertFalse(other.getUuid().equals(recreated.getUuid()));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	private Map<String, Object> source(final String name, final int anInt) {
+
+		final Map<String, Object> source = new LinkedHashMap<>();
+
+		source.put(TestOne.name.jsonName(), name);
+		source.put(TestOne.anInt.jsonName(), anInt);
+
+		return source;
+	}
+}
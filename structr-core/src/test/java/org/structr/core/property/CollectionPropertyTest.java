@@ -22,9 +22,11 @@ import java.util.LinkedList;
 import java.util.List;
 
 
+import org.neo4j.helpers.collection.Iterables;
 import org.structr.common.StructrTest;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.entity.SixOneManyToMany;
 import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestSix;
 import org.structr.core.graph.Tx;
@@ -109,6 +111,67 @@ public class CollectionPropertyTest extends StructrTest {
 		
 	}
 	
+	public void testAddAndRemoveSingleElement() {
+
+		try {
+
+			final EndNodes<TestSix, TestOne> instance = (EndNodes<TestSix, TestOne>)TestSix.manyToManyTestOnes;
+			final TestSix testSix                     = createTestNode(TestSix.class);
+			final List<TestOne> testOnes              = createTestNodes(TestOne.class, 3);
+
+			try (final Tx tx = app.tx()) {
+
+				instance.setProperty(securityContext, testSix, testOnes.subList(0, 2));
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// adding an existing element must not create a second relationship
+				instance.addSingleElement(securityContext, testSix, testOnes.get(1));
+				instance.addSingleElement(securityContext, testSix, testOnes.get(2));
+				instance.removeSingleElement(securityContext, testSix, testOnes.get(0));
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final List<TestOne> result = instance.getProperty(securityContext, testSix, true);
+
+				assertEquals(2, result.size());
+				assertTrue(result.contains(testOnes.get(1)));
+				assertTrue(result.contains(testOnes.get(2)));
+				assertEquals(2, Iterables.count(testSix.getOutgoingRelationships(SixOneManyToMany.class)));
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				// overlapping collection: keeps index 2, removes index 1, adds index 0
+				final List<TestOne> newList = new LinkedList<>();
+
+				newList.add(testOnes.get(2));
+				newList.add(testOnes.get(0));
+
+				instance.setProperty(securityContext, testSix, newList);
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final List<TestOne> result = instance.getProperty(securityContext, testSix, true);
+
+				assertEquals(2, result.size());
+				assertTrue(result.contains(testOnes.get(0)));
+				assertTrue(result.contains(testOnes.get(2)));
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
 	public void testCascadingDelete() {
 		
 		
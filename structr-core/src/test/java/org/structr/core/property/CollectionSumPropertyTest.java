@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.List;
+import org.structr.common.AccessMode;
+import org.structr.common.SecurityContext;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.SixOneManyToMany;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
+import org.structr.core.graph.Tx;
+
+/**
+ * Tests the memoization and materialization of sum properties.
+ */
+public class CollectionSumPropertyTest extends StructrTest {
+
+	public void test01MemoizedValueInvalidatedByModification() {
+
+		try {
+
+			final List<TestOne> testOnes = createTestNodes(TestOne.class, 3);
+			final TestSix testSix        = createTestNode(TestSix.class);
+
+			try (final Tx tx = app.tx()) {
+
+				testOnes.get(0).setProperty(TestOne.aLong, 1L);
+				testOnes.get(1).setProperty(TestOne.aLong, 2L);
+				testOnes.get(2).setProperty(TestOne.aLong, 4L);
+
+				app.create(testSix, testOnes.get(0), SixOneManyToMany.class);
+				app.create(testSix, testOnes.get(1), SixOneManyToMany.class);
+
+				assertEquals(Long.valueOf(3L), testSix.getProperty(TestSix.sumOfLongs));
+
+				// modified value of an element
+				testOnes.get(1).setProperty(TestOne.aLong, 10L);
+				assertEquals(Long.valueOf(11L), testSix.getProperty(TestSix.sumOfLongs));
+
+				// new element
+				app.create(testSix, testOnes.get(2), SixOneManyToMany.class);
+				assertEquals(Long.valueOf(15L), testSix.getProperty(TestSix.sumOfLongs));
+
+				// deleted element
+				app.delete(testOnes.get(0));
+				assertEquals(Long.valueOf(14L), testSix.getProperty(TestSix.sumOfLongs));
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(Long.valueOf(14L), testSix.getProperty(TestSix.sumOfLongs));
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02MaterializedValueUpdatedOnCommit() {
+
+		try {
+
+			final List<TestOne> testOnes = createTestNodes(TestOne.class, 3);
+			final TestSix testSix        = createTestNode(TestSix.class);
+
+			try (final Tx tx = app.tx()) {
+
+				testOnes.get(0).setProperty(TestOne.aLong, 1L);
+				testOnes.get(1).setProperty(TestOne.aLong, 2L);
+				testOnes.get(2).setProperty(TestOne.aLong, 4L);
+
+				app.create(testSix, testOnes.get(0), SixOneManyToMany.class);
+				app.create(testSix, testOnes.get(1), SixOneManyToMany.class);
+
+				tx.success();
+			}
+
+			assertStoredSum(testSix, 3L);
+
+			// modified value of an element
+			try (final Tx tx = app.tx()) {
+
+				testOnes.get(1).setProperty(TestOne.aLong, 10L);
+				tx.success();
+			}
+
+			assertStoredSum(testSix, 11L);
+
+			// new element
+			try (final Tx tx = app.tx()) {
+
+				app.create(testSix, testOnes.get(2), SixOneManyToMany.class);
+				tx.success();
+			}
+
+			assertStoredSum(testSix, 15L);
+
+			// deleted element
+			try (final Tx tx = app.tx()) {
+
+				app.delete(testOnes.get(0));
+				tx.success();
+			}
+
+			assertStoredSum(testSix, 14L);
+
+			// rolled back modification
+			try (final Tx tx = app.tx()) {
+
+				testOnes.get(2).setProperty(TestOne.aLong, 100L);
+			}
+
+			assertStoredSum(testSix, 14L);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test03MaterializedValueNotServedToOtherContexts() {
+
+		try {
+
+			final List<TestOne> testOnes = createTestNodes(TestOne.class, 2);
+			final TestSix testSix        = createTestNode(TestSix.class);
+
+			try (final Tx tx = app.tx()) {
+
+				testSix.setProperty(AbstractNode.visibleToPublicUsers, true);
+
+				testOnes.get(0).setProperty(TestOne.aLong, 1L);
+				testOnes.get(0).setProperty(AbstractNode.visibleToPublicUsers, true);
+				testOnes.get(1).setProperty(TestOne.aLong, 2L);
+
+				app.create(testSix, testOnes.get(0), SixOneManyToMany.class);
+				app.create(testSix, testOnes.get(1), SixOneManyToMany.class);
+
+				tx.success();
+			}
+
+			assertStoredSum(testSix, 3L);
+
+			final App publicApp = StructrApp.getInstance(SecurityContext.getInstance(null, AccessMode.Frontend));
+
+			try (final Tx tx = publicApp.tx()) {
+
+				final TestSix publicSix = publicApp.get(TestSix.class, testSix.getUuid());
+
+				assertNotNull(publicSix);
+
+				// only the visible element is part of the sum
+				assertEquals(Long.valueOf(1L), publicSix.getProperty(TestSix.materializedSumOfLongs));
+				assertEquals(Long.valueOf(1L), publicSix.getProperty(TestSix.sumOfLongs));
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	private void assertStoredSum(final TestSix testSix, final long expected) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			final String dbName = TestSix.materializedSumOfLongs.dbName();
+
+			assertEquals(expected, ((Number)testSix.getNode().getProperty(dbName)).longValue());
+			assertEquals(Long.valueOf(expected), testSix.getProperty(TestSix.materializedSumOfLongs));
+		}
+	}
+}
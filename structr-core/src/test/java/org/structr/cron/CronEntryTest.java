@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cron;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import junit.framework.TestCase;
+
+/**
+ * Tests the computation of the next execution time of cron entries.
+ */
+public class CronEntryTest extends TestCase {
+
+	public void testNextExecutionTime() {
+
+		final Calendar calendar = GregorianCalendar.getInstance();
+
+		calendar.set(2014, Calendar.JUNE, 2, 10, 15, 30);
+		calendar.set(Calendar.MILLISECOND, 500);
+
+		final long start = calendar.getTimeInMillis();
+
+		// every second: the next full second, never the current one
+		final CronEntry everySecond = CronEntry.parse("task", "* * * * * *");
+		assertEquals(start + 500, everySecond.getNextExecutionTimeAfter(start));
+
+		// every 10 seconds
+		final CronEntry everyTenSeconds = CronEntry.parse("task", "*/10 * * * * *");
+		assertEquals(start + 9500, everyTenSeconds.getNextExecutionTimeAfter(start));
+
+		// at the full minute
+		final CronEntry everyMinute = CronEntry.parse("task", "0 * * * * *");
+		assertEquals(start + 29500, everyMinute.getNextExecutionTimeAfter(start));
+
+		// consecutive executions are scheduled one after another
+		final long next = everyMinute.getNextExecutionTimeAfter(start);
+		assertEquals(next + 60000, everyMinute.getNextExecutionTimeAfter(next));
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cron;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.structr.agent.AgentService;
+import org.structr.agent.Task;
+
+/**
+ * Tests the overlap guard and the execution statistics of the cron service,
+ * without starting the service thread.
+ */
+public class CronServiceTest extends TestCase {
+
+	private static final String TASK = CronTestTask.class.getName();
+
+	public void testOverlapGuardAndStatistics() {
+
+		final CronService cronService   = new CronService();
+		final AgentService agentService = new AgentService();
+
+		assertTrue(cronService.scheduleTask(TASK, "* * * * * *"));
+
+		// first run, 300 ms late
+		final long first = (Long)getStatistics(cronService).get("next_execution");
+		cronService.runDueTasks(agentService, first + 300);
+
+		assertEquals(1, agentService.getTaskQueue().size());
+		assertEquals(1L, getStatistics(cronService).get("runs"));
+		assertEquals(0L, getStatistics(cronService).get("skipped"));
+
+		// the next execution is after the current time
+		final long second = (Long)getStatistics(cronService).get("next_execution");
+		assertTrue(second > first + 300);
+
+		// nothing is due before the next execution
+		cronService.runDueTasks(agentService, second - 1);
+		assertEquals(1L, getStatistics(cronService).get("runs"));
+
+		// the previous run was not processed yet, so this run is skipped
+		cronService.runDueTasks(agentService, second + 100);
+
+		assertEquals(1, agentService.getTaskQueue().size());
+		assertEquals(1L, getStatistics(cronService).get("runs"));
+		assertEquals(1L, getStatistics(cronService).get("skipped"));
+
+		// the agent reports the first run as finished after 40 ms
+		final Iterator<Task> queue = agentService.getTaskQueue().iterator();
+		final Task task            = queue.next();
+
+		queue.remove();
+		cronService.taskFinished(task, null, TimeUnit.MILLISECONDS.toNanos(40));
+
+		assertEquals(Boolean.FALSE, getStatistics(cronService).get("running"));
+
+		// and the task runs again, 200 ms late
+		final long third = (Long)getStatistics(cronService).get("next_execution");
+		cronService.runDueTasks(agentService, third + 200);
+
+		final Map<String, Object> statistics = getStatistics(cronService);
+
+		assertEquals(1, agentService.getTaskQueue().size());
+		assertEquals(Boolean.TRUE, statistics.get("running"));
+		assertEquals(2L, statistics.get("runs"));
+		assertEquals(1L, statistics.get("skipped"));
+		assertEquals(250L, statistics.get("average_lateness"));
+		assertEquals(300L, statistics.get("max_lateness"));
+		assertEquals(40L, statistics.get("average_duration"));
+		assertEquals(40L, statistics.get("max_duration"));
+	}
+
+	public void testUnscheduleTask() {
+
+		final CronService cronService   = new CronService();
+		final AgentService agentService = new AgentService();
+
+		assertTrue(cronService.scheduleTask(TASK, "* * * * * *"));
+		assertFalse(cronService.scheduleTask("invalid", "* * *"));
+
+		final long first = (Long)getStatistics(cronService).get("next_execution");
+
+		cronService.unscheduleTask(TASK);
+		cronService.runDueTasks(agentService, first + 1000);
+
+		assertTrue(cronService.getStatistics().isEmpty());
+		assertTrue(agentService.getTaskQueue().isEmpty());
+	}
+
+	private Map<String, Object> getStatistics(final CronService cronService) {
+		return cronService.getStatistics().get(TASK);
+	}
+}
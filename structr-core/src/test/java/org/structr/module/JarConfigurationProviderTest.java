@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.Node;
+import org.structr.common.PropertyView;
+import org.structr.common.StructrTest;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AssignabilityMatrix;
+import org.structr.core.entity.GenericNode;
+import org.structr.core.entity.OneThreeOneToOne;
+import org.structr.core.entity.OneTwoOneToOne;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestTwo;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.StringProperty;
+
+/**
+ * Tests that the registration snapshot and the type caches of the
+ * configuration provider are rebuilt after a schema change.
+ */
+public class JarConfigurationProviderTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(JarConfigurationProviderTest.class.getName());
+
+	public void test01RegistrySnapshotIsRebuilt() {
+
+		final JarConfigurationProvider config = new JarConfigurationProvider();
+		final PropertyKey<String> extraKey    = new StringProperty("extraKey");
+
+		config.registerEntityType(TestOne.class);
+
+		final Set<PropertyKey> before = config.getPropertySet(TestOne.class, PropertyView.Public);
+
+		assertFalse(before.contains(extraKey));
+		assertNull(config.getPropertyKeyForJSONName(TestOne.class, "extraKey", false));
+		assertNull(config.getPropertyKeyForDatabaseName(TestOne.class, "extraKey", false));
+
+		config.registerProperty(TestOne.class, extraKey);
+		config.registerPropertySet(TestOne.class, PropertyView.Public, extraKey);
+
+		final Set<PropertyKey> after = config.getPropertySet(TestOne.class, PropertyView.Public);
+
+		assertTrue(after.contains(extraKey));
+		assertEquals(extraKey, config.getPropertyKeyForJSONName(TestOne.class, "extraKey", false));
+		assertEquals(extraKey, config.getPropertyKeyForDatabaseName(TestOne.class, "extraKey", false));
+
+		// a snapshot that was handed out before the change is not modified
+		assertFalse(before.contains(extraKey));
+		assertEquals(before.size() + 1, after.size());
+	}
+
+	public void test02UnknownEntityTypesAreResolvedAfterRegistration() {
+
+		final JarConfigurationProvider config = new JarConfigurationProvider();
+
+		// the package of the test entities is not known yet
+		assertNull(config.getNodeEntityClass(TestTwo.class.getSimpleName()));
+		assertNull(config.getRelationshipEntityClass(OneThreeOneToOne.class.getSimpleName()));
+
+		// registering a type from that package makes the other types resolvable
+		config.registerEntityType(TestOne.class);
+		config.registerEntityType(OneTwoOneToOne.class);
+
+		assertEquals(TestTwo.class, config.getNodeEntityClass(TestTwo.class.getSimpleName()));
+		assertEquals(OneThreeOneToOne.class, config.getRelationshipEntityClass(OneThreeOneToOne.class.getSimpleName()));
+	}
+
+	public void test03AssignabilityMatrixIsRebuilt() {
+
+		final String typeName = ReplacedType.class.getSimpleName();
+		Node node             = null;
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				node = app.create(GenericNode.class).getNode();
+				node.setProperty(GraphObject.type.dbName(), typeName);
+
+				tx.success();
+			}
+
+			// the type name of the node is not a registered type yet
+			try (final Tx tx = app.tx()) {
+
+				assertFalse(AssignabilityMatrix.isAssignable(ReplacedType.class, node));
+				assertFalse(AssignabilityMatrix.isRelated(ReplacedType.class, node));
+			}
+
+			StructrApp.getConfiguration().registerEntityType(ReplacedType.class);
+
+			// the cached results for the type name are discarded
+			try (final Tx tx = app.tx()) {
+
+				assertTrue(AssignabilityMatrix.isAssignable(ReplacedType.class, node));
+				assertTrue(AssignabilityMatrix.isRelated(ReplacedType.class, node));
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.WARNING, "", fex);
+			fail("Unexpected exception");
+
+		} finally {
+
+			StructrApp.getConfiguration().unregisterEntityType(typeName);
+		}
+	}
+
+	/**
+	 * An entity type that is registered while the test is running.
+	 */
+	public static class ReplacedType extends AbstractNode {
+	}
+}
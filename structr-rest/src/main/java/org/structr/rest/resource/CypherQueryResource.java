@@ -29,7 +29,6 @@ import org.structr.rest.exception.NotFoundException;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -82,9 +81,9 @@ public class CypherQueryResource extends Resource {
 			if (queryObject != null) {
 
 				String query                 = queryObject.toString();
-				List<GraphObject> resultList = StructrApp.getInstance(securityContext).command(CypherQueryCommand.class).execute(query, propertySet);
+				Iterable<GraphObject> rows   = StructrApp.getInstance(securityContext).command(CypherQueryCommand.class).executePaged(query, propertySet, true, false, Integer.MAX_VALUE, 1);
 
-				for (GraphObject obj : resultList) {
+				for (GraphObject obj : rows) {
 
 					result.addContent(obj);
 				}
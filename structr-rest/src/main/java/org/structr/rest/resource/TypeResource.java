@@ -75,6 +75,9 @@ public class TypeResource extends SortableResource {
 	protected HttpServletRequest request                       = null;
 	protected Query query                                      = null;
 	protected boolean isNode                                   = true;
+	private String pageCursor                                  = null;
+	private boolean inexactSearch                              = false;
+	private boolean queryExecuted                              = false;
 
 	//~--- methods --------------------------------------------------------
 
@@ -88,8 +91,7 @@ public class TypeResource extends SortableResource {
 
 		if (rawType != null) {
 
-			final boolean inexactSearch = parseInteger(request.getParameter(JsonRestServlet.REQUEST_PARAMETER_LOOSE_SEARCH)) == 1;
-			final App app               = StructrApp.getInstance(securityContext);
+			inexactSearch = parseInteger(request.getParameter(JsonRestServlet.REQUEST_PARAMETER_LOOSE_SEARCH)) == 1;
 
 			// test if resource class exists
 			entityClass = SchemaHelper.getEntityClassForRawType(rawType);
@@ -98,18 +100,17 @@ public class TypeResource extends SortableResource {
 				if (AbstractRelationship.class.isAssignableFrom(entityClass)) {
 
 					searchCommandType = SearchRelationshipCommand.class;
-					query             = app.relationshipQuery(entityClass, !inexactSearch);
 					isNode            = false;
-					return true;
 
 				} else {
 
 					// include interfaces here
 					searchCommandType = SearchNodeCommand.class;
-					query             = app.nodeQuery(entityClass, !inexactSearch);
 					isNode            = true;
-					return true;
 				}
+
+				query = createQuery();
+				return true;
 			}
 		}
 
@@ -131,7 +132,14 @@ public class TypeResource extends SortableResource {
 				throw new NotFoundException();
 			}
 
+			// executing a query consumes some of its search attributes,
+			// so each page of a resource read page by page needs a new one
+			if (queryExecuted) {
+				query = createQuery();
+			}
+
 			collectSearchAttributes(query);
+			queryExecuted = true;
 
 			// default sort key & order
 			if (actualSortKey == null) {
@@ -168,6 +176,7 @@ public class TypeResource extends SortableResource {
 				.pageSize(pageSize)
 				.page(page)
 				.offsetId(offsetId)
+				.cursor(pageCursor != null ? pageCursor : request.getParameter(JsonRestServlet.REQUEST_PARAMETER_PAGE_CURSOR))
 				.getResult();
 
 		} else {
@@ -179,6 +188,16 @@ public class TypeResource extends SortableResource {
 		return new Result(emptyList, null, isCollectionResource(), isPrimitiveArray());
 	}
 
+	/**
+	 * Sets the page cursor for the next call to doGet, overriding the
+	 * cursor request parameter. An empty cursor starts at the first page.
+	 *
+	 * @param pageCursor the cursor returned with the previous page
+	 */
+	public void setPageCursor(final String pageCursor) {
+		this.pageCursor = pageCursor;
+	}
+
 	@Override
 	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
 
@@ -319,6 +338,17 @@ public class TypeResource extends SortableResource {
 	}
 
 	// ----- private methods -----
+	private Query createQuery() {
+
+		final App app = StructrApp.getInstance(securityContext);
+
+		if (isNode) {
+			return app.nodeQuery(entityClass, !inexactSearch);
+		}
+
+		return app.relationshipQuery(entityClass, !inexactSearch);
+	}
+
 	private Relation getRelationshipTemplate() {
 
 		try {
@@ -74,6 +74,10 @@ public abstract class WrappingResource extends Resource {
 
 	//~--- get methods ----------------------------------------------------
 
+	public Resource getWrappedResource() {
+		return wrappedResource;
+	}
+
 	@Override
 	public Class getEntityClass() {
 
@@ -43,6 +43,7 @@ import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.core.property.PropertySnapshot;
 
 /**
  *
@@ -115,14 +116,39 @@ public abstract class StreamingWriter {
 			writer.setIndent("   ");
 		}
 
-		writer.beginDocument(null, view);
-		root.serialize(writer, obj, view, 0);
-		writer.endDocument();
+		// serve repeated property reads from a snapshot of each object
+		PropertySnapshot.open();
+
+		try {
+
+			writer.beginDocument(null, view);
+			root.serialize(writer, obj, view, 0);
+			writer.endDocument();
+
+		} finally {
+
+			PropertySnapshot.close();
+		}
 
 	}
 
 	public void stream(final SecurityContext securityContext, final Writer output, final Result result, final String baseUrl) throws IOException {
 
+		// serve repeated property reads from a snapshot of each object
+		PropertySnapshot.open();
+
+		try {
+
+			streamResult(securityContext, output, result, baseUrl);
+
+		} finally {
+
+			PropertySnapshot.close();
+		}
+	}
+
+	private void streamResult(final SecurityContext securityContext, final Writer output, final Result result, final String baseUrl) throws IOException {
+
 		long t0 = System.nanoTime();
 
 		RestWriter writer = getRestWriter(securityContext, output);
@@ -142,12 +168,17 @@ public abstract class StreamingWriter {
 		String sortKey = result.getSortKey();
 		String sortOrder = result.getSortOrder();
 		GraphObject metaData = result.getMetaData();
+		String nextCursor = result.getNextCursor();
 
 		writer.beginDocument(baseUrl, propertyView.get(securityContext));
 
 		// open result set
 		writer.beginObject();
 
+		if (nextCursor != null) {
+			writer.name("next_cursor").value(nextCursor);
+		}
+
 		if (page != null) {
 			writer.name("page").value(page);
 		}
@@ -18,17 +18,30 @@
  */
 package org.structr.rest.servlet;
 
+import au.com.bytecode.opencsv.CSVReader;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSyntaxException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -36,6 +49,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
+import org.structr.common.CountMode;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -45,11 +59,17 @@ import org.structr.core.Value;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.auth.Authenticator;
+import org.structr.core.graph.BulkGraphOperation;
 import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
 import org.structr.rest.resource.Resource;
+import org.structr.rest.resource.TypeResource;
+import org.structr.rest.resource.ViewFilterResource;
 import org.structr.rest.service.HttpService;
 import org.structr.rest.service.HttpServiceServlet;
 import org.structr.rest.service.StructrHttpServiceConfig;
@@ -57,7 +77,7 @@ import org.structr.rest.service.StructrHttpServiceConfig;
 //~--- classes ----------------------------------------------------------------
 /**
  * This servlet produces CSV (comma separated value) lists out of a search
- * result
+ * result, and creates objects from CSV documents that are POSTed to it.
  *
  * @author Axel Morgner
  */
@@ -68,6 +88,12 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 	private static final String DELIMITER = ";";
 	private static final String REMOVE_LINE_BREAK_PARAM = "nolinebreaks";
 	private static final String WRITE_BOM = "bom";
+	private static final String DELIMITER_PARAM = "delimiter";
+	private static final String THREADS_PARAM = "threads";
+	private static final int EXPORT_PAGE_SIZE = 1000;
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final int ROWS_PER_TASK = 100;
+	private static final int MAX_ERRORS = 1000;
 
 	//~--- fields ---------------------------------------------------------
 	private Map<Pattern, Class<? extends Resource>> resourceMap = new LinkedHashMap<>();
@@ -171,6 +197,29 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 				// Should a leading BOM be written?
 				writeBom = StringUtils.equals(request.getParameter(WRITE_BOM), "1");
 
+				// export everything page by page if no explicit page size is given
+				final boolean streaming         = pageSizeParameter == null && offsetId == null && resource.isCollectionResource();
+				final TypeResource typeResource = streaming ? getTypeResource(resource) : null;
+				if (streaming) {
+
+					if (typeResource != null) {
+
+						// keyset pagination, each page starts where the previous one ended
+						typeResource.setPageCursor("");
+						pageSize = EXPORT_PAGE_SIZE;
+
+					} else {
+
+						// no cursor available, export everything in a single result
+						pageSize = Integer.MAX_VALUE;
+					}
+
+					page = 1;
+
+					// the result count is not part of the CSV output
+					securityContext.setCountMode(CountMode.None);
+				}
+
 				// do action
 				result = resource.doGet(sortKey, sortDescending, pageSize, page, offsetId);
 
@@ -204,7 +253,24 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 					}
 
 					// gson.toJson(result, writer);
-					writeCsv(result, writer, propertyView.get(securityContext));
+					final String view = propertyView.get(securityContext);
+					boolean writeHeader = true;
+					Result current = result;
+
+					// write rows page by page, only one page is held in memory at a time
+					while (current.getResults() != null && !current.getResults().isEmpty()) {
+
+						writeCsv(current.getResults(), writer, view, writeHeader);
+						writeHeader = false;
+
+						if (typeResource == null || current.getNextCursor() == null) {
+							break;
+						}
+
+						typeResource.setPageCursor(current.getNextCursor());
+						current = resource.doGet(sortKey, sortDescending, pageSize, page, offsetId);
+					}
+
 					response.setStatus(HttpServletResponse.SC_OK);
 					writer.flush();
 					writer.close();
@@ -265,6 +331,188 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 	}
 
+	/**
+	 * Imports the rows of a CSV document as new objects of the type of the
+	 * requested resource. The first row contains the column names, which
+	 * are mapped to the property keys of the current view. Rows are read
+	 * one by one, converted by a number of worker threads and committed
+	 * in batches.
+	 */
+	@Override
+	protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws UnsupportedEncodingException {
+
+		SecurityContext securityContext = null;
+		Authenticator authenticator     = null;
+		Resource resource               = null;
+
+		try {
+
+			request.setCharacterEncoding("UTF-8");
+			response.setCharacterEncoding("UTF-8");
+			response.setContentType("application/json; charset=utf-8");
+
+			// isolate request authentication in a transaction
+			try (final Tx tx = StructrApp.getInstance().tx()) {
+				authenticator = config.getAuthenticator();
+				securityContext = authenticator.initializeAndExamineRequest(request, response);
+				tx.success();
+			}
+
+			final App app = StructrApp.getInstance(securityContext);
+
+			// set default value for property view
+			propertyView.set(securityContext, defaultPropertyView);
+
+			// isolate resource authentication
+			try (final Tx tx = app.tx()) {
+
+				resource = ResourceHelper.optimizeNestedResourceChain(ResourceHelper.parsePath(securityContext, request, resourceMap, propertyView, defaultIdProperty), defaultIdProperty);
+				authenticator.checkResourceAccess(request, resource.getResourceSignature(), propertyView.get(securityContext));
+
+				tx.success();
+			}
+
+			final Class type = resource.getEntityClass();
+			if (type == null || !NodeInterface.class.isAssignableFrom(type)) {
+
+				throw new FrameworkException(HttpServletResponse.SC_BAD_REQUEST, "CSV import is only supported for node types");
+			}
+
+			final String delimiterParameter = request.getParameter(DELIMITER_PARAM);
+			final char delimiter            = StringUtils.isNotEmpty(delimiterParameter) ? delimiterParameter.charAt(0) : DELIMITER.charAt(0);
+			final int batchSize             = Math.max(1, HttpService.parseInt(request.getParameter(JsonRestServlet.REQUEST_PARAMETER_BATCH_SIZE), DEFAULT_BATCH_SIZE));
+			final int threadCount           = Math.max(1, HttpService.parseInt(request.getParameter(THREADS_PARAM), Runtime.getRuntime().availableProcessors()));
+			final CSVReader reader          = new CSVReader(request.getReader(), delimiter, '"');
+			final List<String> errors       = new LinkedList<>();
+			final long[] counts             = new long[] { 0L, 0L };	// created, failed
+			final long t0                   = System.currentTimeMillis();
+			final ExecutorService executor  = Executors.newFixedThreadPool(threadCount);
+			final CsvRowIterable rows;
+
+			try (final Tx tx = app.tx()) {
+
+				rows = new CsvRowIterable(securityContext, executor, reader, type, propertyView.get(securityContext), threadCount);
+				tx.success();
+			}
+
+			for (final String column : rows.getIgnoredColumns()) {
+				addError(errors, "Column " + column + " does not exist in view " + propertyView.get(securityContext) + ", ignored");
+			}
+
+			long count = 0L;
+
+			try {
+
+				count = NodeServiceCommand.bulkGraphOperation(securityContext, rows, batchSize, "CsvImport", new BulkGraphOperation<CsvRow>() {
+
+					private long createdInBatch = 0L;
+					private long batchStart     = 0L;
+
+					@Override
+					public void handleGraphObject(final SecurityContext securityContext, final CsvRow row) throws FrameworkException {
+
+						if (row.getIndex() % batchSize == 0) {
+
+							batchStart     = row.getIndex();
+							createdInBatch = 0L;
+						}
+
+						// conversion errors are reported as failed rows
+						if (row.getError() != null) {
+							throw row.getError();
+						}
+
+						app.create(type, row.getProperties());
+
+						createdInBatch++;
+						counts[0]++;
+					}
+
+					@Override
+					public void handleThrowable(final SecurityContext securityContext, final Throwable t, final CsvRow row) {
+
+						counts[1]++;
+
+						addError(errors, "Row " + row.getLine() + ": " + getErrorMessage(t));
+					}
+
+					@Override
+					public void handleTransactionFailure(final SecurityContext securityContext, final Throwable t) {
+
+						// all objects of the current batch are rolled back
+						counts[0] -= createdInBatch;
+						counts[1] += createdInBatch;
+
+						addError(errors, "Rows of batch starting at record " + batchStart + ": " + getErrorMessage(t));
+					}
+				});
+
+			} finally {
+
+				executor.shutdownNow();
+			}
+
+			if (rows.getReadError() != null) {
+				addError(errors, "Unable to read CSV input: " + rows.getReadError());
+			}
+
+			final long duration     = Math.max(1L, System.currentTimeMillis() - t0);
+			final long throughput   = (count * 1000L) / duration;
+			final JsonObject status = new JsonObject();
+			final JsonArray errorList = new JsonArray();
+
+			for (final String error : errors) {
+				errorList.add(new JsonPrimitive(error));
+			}
+
+			status.add("processed", new JsonPrimitive(count));
+			status.add("created", new JsonPrimitive(counts[0]));
+			status.add("failed", new JsonPrimitive(counts[1]));
+			status.add("duration", new JsonPrimitive(duration));
+			status.add("rows_per_second", new JsonPrimitive(throughput));
+			status.add("errors", errorList);
+
+			logger.log(Level.INFO, "CSV import: {0} rows processed in {1} ms, {2} failed, {3} rows/s", new Object[] { count, duration, counts[1], throughput } );
+
+			response.setStatus(counts[1] == 0 ? HttpServletResponse.SC_CREATED : (counts[0] > 0 ? HttpServletResponse.SC_OK : HttpServletResponse.SC_BAD_REQUEST));
+
+			final Writer writer = response.getWriter();
+
+			writer.append(status.toString());
+			writer.flush();
+			writer.close();
+
+		} catch (FrameworkException frameworkException) {
+
+			// set status
+			response.setStatus(frameworkException.getStatus());
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Exception in POST", t);
+
+			int code = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+
+			response.setStatus(code);
+		}
+	}
+
+	private static void addError(final List<String> errors, final String message) {
+
+		if (errors.size() < MAX_ERRORS) {
+			errors.add(message);
+		}
+	}
+
+	private static String getErrorMessage(final Throwable t) {
+
+		if (t instanceof FrameworkException) {
+			return ((FrameworkException)t).toJSON().toString();
+		}
+
+		return t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
+	}
+
 	private static String escapeForCsv(final Object value) {
 
 		String result = StringUtils.replace(value.toString(), "\"", "\\\"");
@@ -277,6 +525,26 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 	}
 
+	/**
+	 * Returns the type resource that answers a GET request on the given
+	 * resource, or null if the resource is not a (view-filtered) type
+	 * resource and can not be read with a page cursor.
+	 */
+	private static TypeResource getTypeResource(final Resource resource) {
+
+		Resource current = resource;
+
+		while (current instanceof ViewFilterResource) {
+			current = ((ViewFilterResource)current).getWrappedResource();
+		}
+
+		if (current instanceof TypeResource) {
+			return (TypeResource)current;
+		}
+
+		return null;
+	}
+
 	private void writeUtf8Bom(Writer out) {
 		try {
 			out.write("\ufeff");
@@ -294,59 +562,68 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 	 * @throws IOException
 	 */
 	public static void writeCsv(final Result result, final Writer out, final String propertyView) throws IOException {
+		writeCsv(result.getResults(), out, propertyView, true);
+	}
+
+	/**
+	 * Write list of objects to output, row by row.
+	 *
+	 * @param list
+	 * @param out
+	 * @param propertyView
+	 * @param writeHeader whether to write the column headers before the first row
+	 * @throws IOException
+	 */
+	public static void writeCsv(final List<GraphObject> list, final Writer out, final String propertyView, final boolean writeHeader) throws IOException {
 
-		List<GraphObject> list = result.getResults();
-		boolean headerWritten = false;
+		boolean headerWritten = !writeHeader;
 
 		for (GraphObject obj : list) {
 
 			// Write column headers
 			if (!headerWritten) {
 
-				StringBuilder row = new StringBuilder();
+				boolean first = true;
 
 				for (PropertyKey key : obj.getPropertyKeys(propertyView)) {
 
-					row.append("\"").append(key.dbName()).append("\"").append(DELIMITER);
-				}
-
-				// remove last ,
-				int pos = row.lastIndexOf(DELIMITER);
-				if (pos >= 0) {
+					if (!first) {
+						out.append(DELIMITER);
+					}
 
-					row.deleteCharAt(pos);
+					out.append("\"").append(key.dbName()).append("\"");
+					first = false;
 				}
 
 				// append DOS-style line feed as defined in RFC 4180
-				out.append(row).append("\r\n");
-
-				// flush each line
-				out.flush();
+				out.append("\r\n");
 
 				headerWritten = true;
 
 			}
 
-			StringBuilder row = new StringBuilder();
+			boolean first = true;
 
 			for (PropertyKey key : obj.getPropertyKeys(propertyView)) {
 
 				Object value = obj.getProperty(key);
 
-				row.append("\"").append((value != null
+				if (!first) {
+					out.append(DELIMITER);
+				}
+
+				out.append("\"").append((value != null
 					? escapeForCsv(value)
-					: "")).append("\"").append(DELIMITER);
+					: "")).append("\"");
 
+				first = false;
 			}
 
-			// remove last ,
-			row.deleteCharAt(row.lastIndexOf(DELIMITER));
-			out.append(row).append("\r\n");
-
-			// flush each line
-			out.flush();
+			out.append("\r\n");
 		}
 
+		// flush each page
+		out.flush();
 	}
 
 	// <editor-fold defaultstate="collapsed" desc="nested classes">
@@ -377,4 +654,249 @@ public class CsvServlet extends HttpServlet implements HttpServiceServlet {
 
 	}
 
+	/**
+	 * A single row of a CSV import.
+	 */
+	private static class CsvRow {
+
+		private FrameworkException error = null;
+		private PropertyMap properties   = null;
+		private long index               = 0L;
+		private long line                = 0L;
+
+		public CsvRow(final long line) {
+			this.line = line;
+		}
+
+		public PropertyMap getProperties() {
+			return properties;
+		}
+
+		public FrameworkException getError() {
+			return error;
+		}
+
+		public long getIndex() {
+			return index;
+		}
+
+		public long getLine() {
+			return line;
+		}
+	}
+
+	/**
+	 * Reads the rows of a CSV document and converts them into property
+	 * maps. Rows are read by the consuming thread, conversion is done in
+	 * chunks by the given executor. Only a limited number of chunks is
+	 * read ahead, so the input is never held in memory as a whole.
+	 */
+	private static class CsvRowIterable implements Iterable<CsvRow> {
+
+		private final LinkedList<Future<List<CsvRow>>> chunks = new LinkedList<>();
+		private final LinkedList<CsvRow> current              = new LinkedList<>();
+		private final List<String> ignoredColumns             = new LinkedList<>();
+		private SecurityContext securityContext               = null;
+		private ExecutorService executor                      = null;
+		private CSVReader reader                              = null;
+		private PropertyKey[] keys                            = null;
+		private String readError                              = null;
+		private Class type                                    = null;
+		private boolean finished                              = false;
+		private int maxChunks                                 = 0;
+		private long line                                     = 1L;
+		private long index                                    = 0L;
+
+		public CsvRowIterable(final SecurityContext securityContext, final ExecutorService executor, final CSVReader reader, final Class type, final String propertyView, final int threadCount) throws IOException {
+
+			this.securityContext = securityContext;
+			this.executor        = executor;
+			this.reader          = reader;
+			this.type            = type;
+			this.maxChunks       = threadCount * 2;
+
+			final String[] header = reader.readNext();
+			if (header == null) {
+
+				finished = true;
+				keys     = new PropertyKey[0];
+
+			} else {
+
+				final Set<PropertyKey> viewKeys = StructrApp.getConfiguration().getPropertySet(type, propertyView);
+
+				keys = new PropertyKey[header.length];
+
+				// map column names to the property keys of the view
+				for (int i=0; i<header.length; i++) {
+
+					final String column = header[i].trim();
+
+					for (final PropertyKey key : viewKeys) {
+
+						if (column.equals(key.dbName()) || column.equals(key.jsonName())) {
+
+							keys[i] = key;
+							break;
+						}
+					}
+
+					if (keys[i] == null || keys[i].isReadOnly() || GraphObject.id.equals(keys[i]) || GraphObject.type.equals(keys[i])) {
+
+						if (keys[i] == null) {
+							ignoredColumns.add(column);
+						}
+
+						keys[i] = null;
+					}
+				}
+			}
+		}
+
+		public List<String> getIgnoredColumns() {
+			return ignoredColumns;
+		}
+
+		public String getReadError() {
+			return readError;
+		}
+
+		@Override
+		public Iterator<CsvRow> iterator() {
+
+			return new Iterator<CsvRow>() {
+
+				@Override
+				public boolean hasNext() {
+
+					while (current.isEmpty()) {
+
+						fill();
+
+						if (chunks.isEmpty()) {
+							return false;
+						}
+
+						try {
+							current.addAll(chunks.removeFirst().get());
+
+						} catch (InterruptedException | ExecutionException ex) {
+
+							readError = ex.getMessage();
+							finished  = true;
+
+							for (final Future future : chunks) {
+								future.cancel(true);
+							}
+
+							chunks.clear();
+
+							return false;
+						}
+					}
+
+					return true;
+				}
+
+				@Override
+				public CsvRow next() {
+
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					final CsvRow row = current.removeFirst();
+					row.index = index++;
+
+					return row;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException("Removal not supported.");
+				}
+			};
+		}
+
+		// ----- private methods -----
+		private void fill() {
+
+			while (!finished && chunks.size() < maxChunks) {
+
+				final List<String[]> lines = new LinkedList<>();
+				final long firstLine       = line + 1;
+
+				try {
+
+					String[] values = null;
+
+					while (lines.size() < ROWS_PER_TASK && (values = reader.readNext()) != null) {
+						lines.add(values);
+					}
+
+					if (values == null) {
+						finished = true;
+					}
+
+				} catch (IOException ioex) {
+
+					readError = ioex.getMessage();
+					finished  = true;
+				}
+
+				line += lines.size();
+
+				if (!lines.isEmpty()) {
+
+					chunks.add(executor.submit(new Callable<List<CsvRow>>() {
+
+						@Override
+						public List<CsvRow> call() throws Exception {
+							return convert(lines, firstLine);
+						}
+					}));
+				}
+			}
+		}
+
+		private List<CsvRow> convert(final List<String[]> lines, final long firstLine) throws FrameworkException {
+
+			final List<CsvRow> rows = new LinkedList<>();
+			long lineNumber         = firstLine;
+
+			// converters may need to read from the database
+			try (final Tx tx = StructrApp.getInstance(securityContext).tx()) {
+
+				for (final String[] values : lines) {
+
+					final Map<String, Object> source = new LinkedHashMap<>();
+					final CsvRow row                 = new CsvRow(lineNumber++);
+					final int length                 = Math.min(values.length, keys.length);
+
+					for (int i=0; i<length; i++) {
+
+						if (keys[i] != null && StringUtils.isNotEmpty(values[i])) {
+							source.put(keys[i].jsonName(), values[i]);
+						}
+					}
+
+					try {
+
+						row.properties = PropertyMap.inputTypeToJavaType(securityContext, type, source);
+
+					} catch (FrameworkException fex) {
+
+						row.error = fex;
+					}
+
+					rows.add(row);
+				}
+
+				tx.success();
+			}
+
+			return rows;
+		}
+	}
+
 }
@@ -22,16 +22,21 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,6 +47,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.io.IOUtils;
 import org.neo4j.kernel.DeadlockDetectedException;
+import org.structr.common.CountMode;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -50,7 +56,9 @@ import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.auth.Authenticator;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.BulkGraphOperation;
 import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchCommand;
 import org.structr.core.property.PropertyKey;
@@ -82,8 +90,15 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
 	public static final String REQUEST_PARAMETER_OFFSET_ID              = "pageStartId";
+	public static final String REQUEST_PARAMETER_PAGE_CURSOR            = "pageCursor";
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
+	public static final String REQUEST_PARAMETER_COUNT_MODE             = "pageCountMode";
+	public static final String REQUEST_PARAMETER_BULK                   = "bulk";
+	public static final String REQUEST_PARAMETER_BATCH_SIZE             = "batchSize";
+	public static final String CONTENT_TYPE_NDJSON                      = "application/x-ndjson";
+	public static final int DEFAULT_VALUE_BATCH_SIZE                    = 1000;
+	public static final int MAX_BULK_ERRORS                             = 1000;
 	public static final Set<String> commonRequestParameters             = new LinkedHashSet<>();
 	private static final Logger logger                                  = Logger.getLogger(JsonRestServlet.class.getName());
 
@@ -93,8 +108,12 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_NUMBER);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
 		commonRequestParameters.add(REQUEST_PARAMETER_OFFSET_ID);
+		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_CURSOR);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_KEY);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_ORDER);
+		commonRequestParameters.add(REQUEST_PARAMETER_COUNT_MODE);
+		commonRequestParameters.add(REQUEST_PARAMETER_BULK);
+		commonRequestParameters.add(REQUEST_PARAMETER_BATCH_SIZE);
 
 		// cross reference here, but these need to be added as well..
 		commonRequestParameters.add(SearchCommand.DISTANCE_SEARCH_KEYWORD);
@@ -313,12 +332,16 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			String offsetId          = request.getParameter(REQUEST_PARAMETER_OFFSET_ID);
 			String sortOrder         = request.getParameter(REQUEST_PARAMETER_SORT_ORDER);
 			String sortKeyName       = request.getParameter(REQUEST_PARAMETER_SORT_KEY);
+			String countModeName     = request.getParameter(REQUEST_PARAMETER_COUNT_MODE);
 			boolean sortDescending   = (sortOrder != null && "desc".equals(sortOrder.toLowerCase()));
 			int pageSize		 = HttpService.parseInt(pageSizeParameter, NodeFactory.DEFAULT_PAGE_SIZE);
 			int page                 = HttpService.parseInt(pageParameter, NodeFactory.DEFAULT_PAGE);
 			String baseUrl           = request.getRequestURI();
 			PropertyKey sortKey      = null;
 
+			// set count mode (exact, estimate or none)
+			securityContext.setCountMode(CountMode.fromString(countModeName));
+
 			// set sort key
 			if (sortKeyName != null) {
 
@@ -498,11 +521,15 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			String offsetId          = request.getParameter(REQUEST_PARAMETER_OFFSET_ID);
 			String sortOrder         = request.getParameter(REQUEST_PARAMETER_SORT_ORDER);
 			String sortKeyName       = request.getParameter(REQUEST_PARAMETER_SORT_KEY);
+			String countModeName     = request.getParameter(REQUEST_PARAMETER_COUNT_MODE);
 			boolean sortDescending   = (sortOrder != null && "desc".equals(sortOrder.toLowerCase()));
 			int pageSize		 = HttpService.parseInt(pageSizeParameter, NodeFactory.DEFAULT_PAGE_SIZE);
 			int page                 = HttpService.parseInt(pageParameter, NodeFactory.DEFAULT_PAGE);
 			PropertyKey sortKey      = null;
 
+			// set count mode (exact, estimate or none)
+			securityContext.setCountMode(CountMode.fromString(countModeName));
+
 			// set sort key
 			if (sortKeyName != null) {
 
@@ -715,6 +742,13 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 			final App app = StructrApp.getInstance(securityContext);
 
+			// streaming bulk mode, objects are read and committed in batches
+			if (securityContext != null && isBulkRequest(request)) {
+
+				doBulkPost(request, response, securityContext, authenticator);
+				return;
+			}
+
 			String input = IOUtils.toString(request.getReader());
 			if (StringUtils.isBlank(input)) {
 				input = "{}";
@@ -877,6 +911,132 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+
+	/**
+	 * Creates objects from a JSON array or a stream of JSON objects (one
+	 * object per line, "application/x-ndjson") without reading the whole
+	 * request body into memory. Objects are deserialized one by one and
+	 * committed every "batchSize" objects. The response contains the
+	 * number of processed objects, an error message for every failed
+	 * object and the throughput.
+	 */
+	private void doBulkPost(final HttpServletRequest request, final HttpServletResponse response, final SecurityContext securityContext, final Authenticator authenticator) throws FrameworkException, IOException {
+
+		final int batchSize       = Math.max(1, HttpService.parseInt(request.getParameter(REQUEST_PARAMETER_BATCH_SIZE), DEFAULT_VALUE_BATCH_SIZE));
+		final App app             = StructrApp.getInstance(securityContext);
+		final List<String> errors = new LinkedList<>();
+		final long t0             = System.currentTimeMillis();
+		final Resource resource;
+
+		// isolate resource authentication
+		try (final Tx tx = app.tx()) {
+
+			resource = ResourceHelper.applyViewTransformation(request, securityContext,
+					ResourceHelper.optimizeNestedResourceChain(ResourceHelper.parsePath(securityContext, request, resourceMap, propertyView,
+					config.getDefaultIdProperty()), config.getDefaultIdProperty()), propertyView);
+			authenticator.checkResourceAccess(request, resource.getResourceSignature(), propertyView.get(securityContext));
+			tx.success();
+		}
+
+		final BulkJsonInputIterable records = new BulkJsonInputIterable(gson.get(), request.getReader());
+		final long[] counts                 = new long[] { 0L, 0L };	// created, failed
+
+		final long count = NodeServiceCommand.bulkGraphOperation(securityContext, records, batchSize, "BulkPost", new BulkGraphOperation<BulkJsonInput>() {
+
+			private long createdInBatch = 0L;
+			private long batchStart     = 0L;
+
+			@Override
+			public void handleGraphObject(final SecurityContext securityContext, final BulkJsonInput record) throws FrameworkException {
+
+				if (record.getIndex() % batchSize == 0) {
+
+					batchStart     = record.getIndex();
+					createdInBatch = 0L;
+				}
+
+				resource.doPost(convertPropertySetToMap(record.getInput()));
+
+				createdInBatch++;
+				counts[0]++;
+			}
+
+			@Override
+			public void handleThrowable(final SecurityContext securityContext, final Throwable t, final BulkJsonInput record) {
+
+				counts[1]++;
+
+				addError(errors, "Record " + record.getIndex() + ": " + getErrorMessage(t));
+			}
+
+			@Override
+			public void handleTransactionFailure(final SecurityContext securityContext, final Throwable t) {
+
+				// all objects of the current batch are rolled back
+				counts[0] -= createdInBatch;
+				counts[1] += createdInBatch;
+
+				addError(errors, "Records " + batchStart + " to " + (records.getCount() - 1) + ": " + getErrorMessage(t));
+			}
+		});
+
+		final String parseError = records.getError();
+		if (parseError != null) {
+
+			addError(errors, "Record " + records.getCount() + ": " + parseError);
+		}
+
+		final long duration         = Math.max(1L, System.currentTimeMillis() - t0);
+		final long throughput       = (count * 1000L) / duration;
+		final GraphObjectMap status = new GraphObjectMap();
+
+		status.put(new StringProperty("processed"), count);
+		status.put(new StringProperty("created"), counts[0]);
+		status.put(new StringProperty("failed"), counts[1]);
+		status.put(new StringProperty("duration"), duration);
+		status.put(new StringProperty("objects_per_second"), throughput);
+		status.put(new StringProperty("errors"), errors);
+
+		logger.log(Level.INFO, "Bulk POST: {0} objects processed in {1} ms, {2} failed, {3} objects/s", new Object[] { count, duration, counts[1], throughput } );
+
+		// set default value for property view
+		propertyView.set(securityContext, config.getDefaultPropertyView());
+
+		// isolate write output
+		try (final Tx tx = app.tx()) {
+
+			final int code                = errors.isEmpty() ? HttpServletResponse.SC_CREATED : (counts[0] > 0 ? HttpServletResponse.SC_OK : HttpServletResponse.SC_BAD_REQUEST);
+			final RestMethodResult result = new RestMethodResult(code);
+
+			result.addContent(status);
+			result.commitResponse(gson.get(), response);
+
+			tx.success();
+		}
+	}
+
+	private boolean isBulkRequest(final HttpServletRequest request) {
+
+		final String contentType = request.getContentType();
+
+		return Boolean.parseBoolean(request.getParameter(REQUEST_PARAMETER_BULK)) || (contentType != null && contentType.startsWith(CONTENT_TYPE_NDJSON));
+	}
+
+	private void addError(final List<String> errors, final String message) {
+
+		if (errors.size() < MAX_BULK_ERRORS) {
+			errors.add(message);
+		}
+	}
+
+	private String getErrorMessage(final Throwable t) {
+
+		if (t instanceof FrameworkException) {
+			return ((FrameworkException)t).toJSON().toString();
+		}
+
+		return t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
+	}
 	// </editor-fold>
 
 	// <editor-fold defaultstate="collapsed" desc="PUT">
@@ -1122,5 +1282,130 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 			return gsonBuilder.create();
 		}
 	}
+
+	/**
+	 * A single object of a bulk POST request.
+	 */
+	private static class BulkJsonInput {
+
+		private JsonInput input = null;
+		private long index      = 0L;
+
+		public BulkJsonInput(final JsonInput input, final long index) {
+
+			this.input = input;
+			this.index = index;
+		}
+
+		public JsonInput getInput() {
+			return input;
+		}
+
+		public long getIndex() {
+			return index;
+		}
+	}
+
+	/**
+	 * Reads the objects of a bulk POST request one by one, either from a
+	 * JSON array or from a sequence of top-level JSON objects. Reading
+	 * stops at the first syntax error, see {@link #getError()}.
+	 */
+	private static class BulkJsonInputIterable implements Iterable<BulkJsonInput> {
+
+		private final LinkedList<JsonInput> pending = new LinkedList<>();
+		private JsonReader reader                   = null;
+		private Gson gson                           = null;
+		private String error                        = null;
+		private boolean array                       = false;
+		private boolean started                     = false;
+		private boolean finished                    = false;
+		private long count                          = 0L;
+
+		public BulkJsonInputIterable(final Gson gson, final Reader source) {
+
+			this.reader = new JsonReader(source);
+			this.gson   = gson;
+
+			// allow multiple top-level values
+			reader.setLenient(true);
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		@Override
+		public Iterator<BulkJsonInput> iterator() {
+
+			return new Iterator<BulkJsonInput>() {
+
+				@Override
+				public boolean hasNext() {
+
+					if (pending.isEmpty() && !finished) {
+						readNext();
+					}
+
+					return !pending.isEmpty();
+				}
+
+				@Override
+				public BulkJsonInput next() {
+
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					return new BulkJsonInput(pending.removeFirst(), count++);
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException("Removal not supported.");
+				}
+			};
+		}
+
+		private void readNext() {
+
+			try {
+
+				if (!started) {
+
+					started = true;
+
+					if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+
+						reader.beginArray();
+						array = true;
+					}
+				}
+
+				final boolean hasMore = array ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT;
+				if (hasMore) {
+
+					final IJsonInput input = gson.fromJson(reader, IJsonInput.class);
+					if (input != null) {
+
+						pending.addAll(input.getJsonInputs());
+					}
+
+				} else {
+
+					finished = true;
+				}
+
+			} catch (Throwable t) {
+
+				error    = t.getMessage();
+				finished = true;
+			}
+		}
+	}
 	// </editor-fold>
 }
@@ -21,7 +21,15 @@ package org.structr.csv.test;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
 import com.jayway.restassured.internal.RestAssuredResponseImpl;
+import java.util.List;
 import org.apache.commons.lang3.StringEscapeUtils;
+import static org.hamcrest.Matchers.equalTo;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.rest.entity.TestOne;
+import org.structr.rest.entity.TestSeven;
+import org.structr.rest.entity.TestSix;
 import org.structr.rest.service.HttpServiceServlet;
 import org.structr.rest.servlet.CsvServlet;
 
@@ -176,5 +184,190 @@ public class CsvTest extends StructrCsvTest {
 		
 		assertEquals(expected, resultString);
 	}
-		
+
+	/**
+	 * Test CSV export of more than one export page
+	 */
+	public void test03CsvOutputAllPages() {
+
+		final int count = 2500;
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<count; i++) {
+				app.create(TestOne.class, new NodeAttribute(TestOne.name, String.format("TestOne-%04d", i)), new NodeAttribute(TestOne.anInt, i));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final String resultString = RestAssured
+
+			.given()
+				.contentType("application/csv; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("http://" + host + ":" + httpPort + csvUrl + "/test_one?sort=name")
+				.asString();
+
+		final String[] lines = resultString.split("\r\n");
+
+		// header and one line per object, each object exactly once and in order
+		assertEquals(count + 1, lines.length);
+		assertEquals("\"name\";\"anInt\";\"aLong\";\"aDate\";\"id\";\"type\"", lines[0]);
+
+		for (int i=0; i<count; i++) {
+			assertTrue(lines[i+1].startsWith(String.format("\"TestOne-%04d\";\"%d\";", i, i)));
+		}
+	}
+
+	/**
+	 * Test CSV export of more than one export page with a filter on a
+	 * related node, which must be applied to every page
+	 */
+	public void test04CsvOutputAllPagesWithRelatedNodeFilter() {
+
+		final int count = 2600;
+
+		try (final Tx tx = app.tx()) {
+
+			final TestSeven even = app.create(TestSeven.class, "even");
+			final TestSeven odd  = app.create(TestSeven.class, "odd");
+
+			for (int i=0; i<count; i++) {
+
+				final TestSix testSix = app.create(TestSix.class, new NodeAttribute(TestSix.name, String.format("TestSix-%04d", i)), new NodeAttribute(TestSix.anInt, i));
+				testSix.setProperty(TestSix.testSeven, i % 2 == 0 ? even : odd);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final String resultString = RestAssured
+
+			.given()
+				.contentType("application/csv; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("http://" + host + ":" + httpPort + csvUrl + "/test_six?testSevenName=even&sort=name")
+				.asString();
+
+		final String[] lines = resultString.split("\r\n");
+
+		// header and one line per matching object, also on the pages after the first one
+		assertEquals(count / 2 + 1, lines.length);
+
+		for (int i=0; i<count / 2; i++) {
+			assertTrue(lines[i+1].startsWith(String.format("\"TestSix-%04d\";", i * 2)));
+		}
+	}
+
+	/**
+	 * Test CSV import
+	 */
+	public void test05CsvImport() {
+
+		final int count           = 1500;
+		final StringBuilder input = new StringBuilder("\"name\";\"anInt\";\"aLong\"\r\n");
+
+		for (int i=0; i<count; i++) {
+			input.append("\"Imported-").append(i).append("\";\"").append(i).append("\";\"").append(i * 10L).append("\"\r\n");
+		}
+
+		RestAssured
+
+			.given()
+				.contentType("text/csv; charset=UTF-8")
+				.body(input.toString())
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(201)
+				.body("processed", equalTo(count))
+				.body("created", equalTo(count))
+				.body("failed", equalTo(0))
+			.when()
+				.post("http://" + host + ":" + httpPort + csvUrl + "/test_one?batchSize=400");
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> result = app.nodeQuery(TestOne.class).sort(TestOne.anInt).getAsList();
+
+			assertEquals(count, result.size());
+
+			for (int i=0; i<count; i++) {
+
+				final TestOne obj = result.get(i);
+
+				assertEquals("Imported-" + i, obj.getProperty(TestOne.name));
+				assertEquals(Integer.valueOf(i), obj.getProperty(TestOne.anInt));
+				assertEquals(Long.valueOf(i * 10L), obj.getProperty(TestOne.aLong));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	/**
+	 * Test CSV import with rows that can not be converted
+	 */
+	public void test06CsvImportWithErrors() {
+
+		final String input = "\"name\";\"anInt\";\"unknown\"\r\n"
+			+ "\"Valid-0\";\"0\";\"x\"\r\n"
+			+ "\"Invalid\";\"abc\";\"x\"\r\n"
+			+ "\"Valid-1\";\"1\";\"x\"\r\n";
+
+		RestAssured
+
+			.given()
+				.contentType("text/csv; charset=UTF-8")
+				.body(input)
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+				.body("processed", equalTo(3))
+				.body("created", equalTo(2))
+				.body("failed", equalTo(1))
+				.body("errors.size()", equalTo(2))
+			.when()
+				.post("http://" + host + ":" + httpPort + csvUrl + "/test_one");
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> result = app.nodeQuery(TestOne.class).sort(TestOne.name).getAsList();
+
+			assertEquals(2, result.size());
+			assertEquals("Valid-0", result.get(0).getProperty(TestOne.name));
+			assertEquals("Valid-1", result.get(1).getProperty(TestOne.name));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
 }
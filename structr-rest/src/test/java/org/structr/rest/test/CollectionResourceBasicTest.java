@@ -150,4 +150,40 @@ public class CollectionResourceBasicTest extends StructrRestTest {
 		    
 	}
 
+	/**
+	 * Test the creation of multiple entities with a streaming bulk
+	 * request, committed in batches of three objects.
+	 */
+	public void test030BulkCreateTestObjects() {
+
+		final StringBuilder body = new StringBuilder();
+
+		for (int i=0; i<10; i++) {
+			body.append("{ \"name\" : \"test").append(i).append("\" }\n");
+		}
+
+		RestAssured
+
+			.given()
+				.contentType("application/x-ndjson; charset=UTF-8")
+				.body(body.toString())
+			.expect()
+				.statusCode(201)
+				.body("result.processed",   equalTo(10))
+				.body("result.failed",      equalTo(0))
+			.when()
+				.post("/test_objects?batchSize=3");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result_count",       equalTo(10))
+			.when()
+				.get("/test_objects");
+
+	}
+
 }
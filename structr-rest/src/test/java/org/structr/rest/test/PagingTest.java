@@ -224,5 +224,251 @@ public class PagingTest extends StructrRestTest {
 				.get(resource + "?sort=name&pageSize=2&page=-1&pageStartId=" + offsetId);
 	
 	}
-		
+
+	/**
+	 * Test the different count modes
+	 */
+	public void test02CountModes() {
+
+		String resource = "/test_one";
+
+		for (int i=0; i<8; i++) {
+
+			RestAssured.given().contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+				.body(" { 'name' : 'TestOne-" + i + "', 'anInt' : " + i + " } ")
+				.expect().statusCode(201).when().post(resource);
+		}
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(2))
+				.body("result_count",		equalTo(8))
+				.body("result[0].name ",	equalTo("TestOne-2"))
+				.body("result[1].name ",	equalTo("TestOne-3"))
+
+			.when()
+				.get(resource + "?sort=name&pageSize=2&page=2&pageCountMode=exact");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(2))
+				.body("result_count",		equalTo(8))
+
+			.when()
+				.get(resource + "?sort=name&pageSize=2&page=2&pageCountMode=estimate");
+
+		// no count: one more than the objects seen so far
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(2))
+				.body("result_count",		equalTo(5))
+				.body("result[0].name ",	equalTo("TestOne-2"))
+				.body("result[1].name ",	equalTo("TestOne-3"))
+
+			.when()
+				.get(resource + "?sort=name&pageSize=2&page=2&pageCountMode=none");
+
+		// last page: no more results, count is accurate
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(2))
+				.body("result_count",		equalTo(8))
+
+			.when()
+				.get(resource + "?sort=name&pageSize=2&page=4&pageCountMode=none");
+	}
+
+	/**
+	 * Test keyset pagination with page cursors
+	 */
+	public void test03PageCursor() {
+
+		String resource = "/test_one";
+
+		for (int i=0; i<7; i++) {
+
+			RestAssured.given().contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+				.body(" { 'name' : 'TestOne-" + i + "', 'anInt' : " + (i / 2) + " } ")
+				.expect().statusCode(201).when().post(resource);
+		}
+
+		// sort by a key with duplicate values, pages must not overlap
+		String cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("next_cursor",		notNullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&pageSize=3&pageCursor=")
+				.body().path("next_cursor");
+
+		cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("result[0].anInt",	equalTo(1))
+				.body("result[2].anInt",	equalTo(2))
+				.body("next_cursor",		notNullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&pageSize=3&pageCursor=" + cursor)
+				.body().path("next_cursor");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(1))
+				.body("result[0].anInt",	equalTo(3))
+				.body("next_cursor",		nullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&pageSize=3&pageCursor=" + cursor);
+
+		// invalid cursor
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(400)
+
+			.when()
+				.get(resource + "?sort=anInt&pageSize=3&pageCursor=invalid");
+	}
+
+	/**
+	 * Test keyset pagination over objects without a value for the sort key
+	 */
+	public void test04PageCursorWithNullValues() {
+
+		String resource = "/test_one";
+
+		for (int i=0; i<7; i++) {
+
+			final String anInt = i < 4 ? ", 'anInt' : " + i : "";
+
+			RestAssured.given().contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+				.body(" { 'name' : 'TestOne-" + i + "'" + anInt + " } ")
+				.expect().statusCode(201).when().post(resource);
+		}
+
+		// ascending: null values follow the other values
+		String cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("result[0].anInt",	equalTo(0))
+				.body("result[2].anInt",	equalTo(2))
+				.body("next_cursor",		notNullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&pageSize=3&pageCursor=")
+				.body().path("next_cursor");
+
+		cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("result[0].anInt",	equalTo(3))
+				.body("result[1].anInt",	nullValue())
+				.body("result[2].anInt",	nullValue())
+				.body("next_cursor",		notNullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&pageSize=3&pageCursor=" + cursor)
+				.body().path("next_cursor");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(1))
+				.body("result[0].anInt",	nullValue())
+				.body("next_cursor",		nullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&pageSize=3&pageCursor=" + cursor);
+
+		// descending: null values precede the other values
+		cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("result[0].anInt",	nullValue())
+				.body("result[2].anInt",	nullValue())
+				.body("next_cursor",		notNullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&order=desc&pageSize=3&pageCursor=")
+				.body().path("next_cursor");
+
+		cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("result[0].anInt",	equalTo(3))
+				.body("result[2].anInt",	equalTo(1))
+				.body("next_cursor",		notNullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&order=desc&pageSize=3&pageCursor=" + cursor)
+				.body().path("next_cursor");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(1))
+				.body("result[0].anInt",	equalTo(0))
+				.body("next_cursor",		nullValue())
+
+			.when()
+				.get(resource + "?sort=anInt&order=desc&pageSize=3&pageCursor=" + cursor);
+	}
+
 }
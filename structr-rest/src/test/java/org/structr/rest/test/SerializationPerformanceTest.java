@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import java.io.StringWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.PropertyView;
+import org.structr.core.Result;
+import org.structr.core.StaticValue;
+import org.structr.core.graph.Tx;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.entity.TestOne;
+import org.structr.rest.serialization.StreamingJsonWriter;
+
+/**
+ * Measures the throughput of the root serializer of the streaming JSON
+ * writer.
+ *
+ * Note that this is just a very rough test as performance is heavily
+ * depending on hardware and setup, the assumed rate is low.
+ */
+public class SerializationPerformanceTest extends StructrRestTest {
+
+	private static final Logger logger = Logger.getLogger(SerializationPerformanceTest.class.getName());
+
+	public void test01RootSerializerThroughput() {
+
+		final int number     = 1000;
+		final int iterations = 10;
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, number);
+
+			try (final Tx tx = app.tx()) {
+
+				int i = 0;
+
+				for (final TestOne node : nodes) {
+
+					node.setProperty(TestOne.name, "TestOne-" + i);
+					node.setProperty(TestOne.anInt, i);
+					node.setProperty(TestOne.aLong, (long)i);
+					node.setProperty(TestOne.aDate, new Date());
+
+					i++;
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final StreamingJsonWriter jsonWriter = new StreamingJsonWriter(new StaticValue<>(PropertyView.Public), false, 1);
+				final Result result                  = new Result(nodes, number, true, false);
+				String output                        = null;
+
+				// warm-up
+				jsonWriter.stream(securityContext, new StringWriter(), result, null);
+
+				final long t0 = System.nanoTime();
+
+				for (int j=0; j<iterations; j++) {
+
+					final StringWriter writer = new StringWriter();
+
+					jsonWriter.stream(securityContext, writer, result, null);
+					output = writer.toString();
+				}
+
+				final long t1 = System.nanoTime();
+
+				assertTrue(output.contains("\"name\":\"TestOne-999\""));
+
+				final DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+				final Double time                 = (t1 - t0) / 1000000000.0;
+				final Double rate                 = (number * iterations) / time;
+
+				logger.log(Level.INFO, "Serialized {0} objects in {1} seconds ({2} per s)", new Object[] { number * iterations, decimalFormat.format(time), decimalFormat.format(rate) });
+				assertTrue(rate > 100);
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.SEVERE, t.toString());
+			fail("Unexpected exception");
+		}
+	}
+}
@@ -21,23 +21,22 @@ package org.structr.cloud;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.net.Socket;
 import java.security.InvalidKeyException;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.structr.cloud.message.DataContainer;
@@ -49,7 +48,9 @@ import org.structr.cloud.message.NodeDataContainer;
 import org.structr.cloud.message.RelationshipDataContainer;
 import org.structr.cloud.message.SyncableInfo;
 import org.structr.common.AccessMode;
+import org.structr.common.ChunkIndex;
 import org.structr.common.SecurityContext;
+import org.structr.common.SyncState;
 import org.structr.common.Syncable;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
@@ -64,6 +65,8 @@ import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyMap;
 import org.structr.dynamic.File;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.FileBase;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.User;
 import org.structr.web.entity.dom.Page;
@@ -81,16 +84,19 @@ public class CloudConnection<T> extends Thread {
 	private final Map<String, FileNodeDataContainer> fileMap = new LinkedHashMap<>();
 	private final Map<String, String> idMap = new LinkedHashMap<>();
 	private final Map<String, Object> data = new LinkedHashMap<>();
+	private final Map<String, Map<Integer, String>> pendingCopies = new LinkedHashMap<>();
+	private final ChunkIndex transmittedChunks = new ChunkIndex(CloudService.CHUNK_SIZE);
+	private final Set<String> chunkSources = new LinkedHashSet<>();
 
 	// private fields
-	private final Set<String> localMessageIds = new LinkedHashSet<>();
+	private final Set<String> localMessageIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	private final Set<String> remoteMessageIds = new LinkedHashSet<>();
 	private App app = StructrApp.getInstance();
-	private long transmissionAbortTime = 0L;
+	private volatile long transmissionAbortTime = 0L;
 	private ExportContext context = null;
-	private boolean authenticated = false;
-	private String errorMessage = null;
-	private int errorCode = 0;
+	private volatile boolean authenticated = false;
+	private volatile String errorMessage = null;
+	private volatile int errorCode = 0;
 	private String password = null;
 	private Cipher encrypter = null;
 	private Cipher decrypter = null;
@@ -128,8 +134,8 @@ public class CloudConnection<T> extends Thread {
 				// password hash afterwards.
 				setEncryptionKey("StructrInitialEncryptionKey", 128);
 
-				sender = new Sender(this, new ObjectOutputStream(new GZIPOutputStream(new CipherOutputStream(new BufferedOutputStream(socket.getOutputStream()), encrypter), true)));
-				receiver = new Receiver(this, new ObjectInputStream(new GZIPInputStream(new CipherInputStream(new BufferedInputStream(socket.getInputStream()), decrypter))));
+				sender = new Sender(this, new FrameWriter(new BufferedOutputStream(socket.getOutputStream(), CloudService.BUFFER_SIZE), encrypter));
+				receiver = new Receiver(this, new FrameReader(new BufferedInputStream(socket.getInputStream(), CloudService.BUFFER_SIZE), decrypter));
 
 				receiver.start();
 				sender.start();
@@ -150,7 +156,7 @@ public class CloudConnection<T> extends Thread {
 
 			try {
 
-				final Message request = receiver.receive();
+				final Message request = receiver.receive(CloudService.POLL_INTERVAL);
 				if (request != null) {
 
 					// inform sender that a message has arrived
@@ -176,8 +182,6 @@ public class CloudConnection<T> extends Thread {
 					}
 				}
 
-				Thread.yield();
-
 			} catch (Throwable t) {
 				t.printStackTrace();
 			}
@@ -189,19 +193,41 @@ public class CloudConnection<T> extends Thread {
 
 	}
 
+	/**
+	 * Waits for a signal of the export context, must be called while holding
+	 * the monitor of the context.
+	 */
+	private void await(final long abortTime) throws FrameworkException {
+
+		final long remaining = abortTime - System.currentTimeMillis();
+		if (remaining > 0) {
+
+			try {
+
+				context.wait(remaining);
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+				throw new FrameworkException(504, "Interrupted while waiting for response.");
+			}
+		}
+	}
+
 	private boolean wasSentFromHere(final Message message) {
 		return localMessageIds.contains(message.getId());
 	}
 
 	public void send(final Message message) throws IOException, FrameworkException {
 
+		// register id before sending, the response can arrive before send() returns
+		localMessageIds.add(message.getId());
+
 		sender.send(message);
 
 		if (CloudService.DEBUG) {
 			System.out.println(message);
 		}
-
-		localMessageIds.add(message.getId());
 	}
 
 	/**
@@ -222,26 +248,28 @@ public class CloudConnection<T> extends Thread {
 		} catch (Throwable t) {
 			t.printStackTrace();
 		}
+
+		context.signal();
 	}
 
 	public void waitForAuthentication() throws FrameworkException {
 
 		final long abortTime = System.currentTimeMillis() + CloudService.DEFAULT_TIMEOUT;
 
-		while (!authenticated) {
+		synchronized (context) {
 
-			if (errorMessage != null) {
-				throw new FrameworkException(errorCode, errorMessage);
-			}
+			while (!authenticated) {
 
-			if (System.currentTimeMillis() > abortTime) {
+				if (errorMessage != null) {
+					throw new FrameworkException(errorCode, errorMessage);
+				}
 
-				throw new FrameworkException(504, "Authentication failed.");
-			}
+				if (System.currentTimeMillis() > abortTime) {
 
-			try {
-				Thread.sleep(10);
-			} catch (Throwable t) {
+					throw new FrameworkException(504, "Authentication failed.");
+				}
+
+				await(abortTime);
 			}
 		}
 	}
@@ -254,20 +282,20 @@ public class CloudConnection<T> extends Thread {
 
 		transmissionAbortTime = System.currentTimeMillis() + CloudService.DEFAULT_TIMEOUT;
 
-		while (context.getCurrentProgress() < context.getTotalSize()) {
+		synchronized (context) {
 
-			if (errorMessage != null) {
-				throw new FrameworkException(errorCode, errorMessage);
-			}
+			while (context.getCurrentProgress() < context.getTotalSize()) {
 
-			if (System.currentTimeMillis() > transmissionAbortTime) {
+				if (errorMessage != null) {
+					throw new FrameworkException(errorCode, errorMessage);
+				}
 
-				throw new FrameworkException(504, "Timeout while waiting for response.");
-			}
+				if (System.currentTimeMillis() > transmissionAbortTime) {
 
-			try {
-				Thread.sleep(10);
-			} catch (Throwable t) {
+					throw new FrameworkException(504, "Timeout while waiting for response.");
+				}
+
+				await(transmissionAbortTime);
 			}
 		}
 	}
@@ -276,16 +304,13 @@ public class CloudConnection<T> extends Thread {
 
 		final long abortTime = System.currentTimeMillis() + CloudService.DEFAULT_TIMEOUT;
 
-		while (isConnected() && System.currentTimeMillis() < abortTime) {
+		synchronized (context) {
 
-			try {
+			while (isConnected() && System.currentTimeMillis() < abortTime) {
 
-				Thread.sleep(10);
-
-			} catch (Throwable t) {
+				await(abortTime);
 			}
 		}
-
 	}
 
 	public void setEncryptionKey(final String key, final int keyLength) throws InvalidKeyException {
@@ -294,8 +319,14 @@ public class CloudConnection<T> extends Thread {
 
 			SecretKeySpec skeySpec = new SecretKeySpec(CloudService.trimToSize(DigestUtils.sha256(key), keyLength), CloudService.STREAM_CIPHER);
 
-			decrypter.init(Cipher.DECRYPT_MODE, skeySpec);
-			encrypter.init(Cipher.ENCRYPT_MODE, skeySpec);
+			// the ciphers are used by the sender and receiver threads
+			synchronized (decrypter) {
+				decrypter.init(Cipher.DECRYPT_MODE, skeySpec);
+			}
+
+			synchronized (encrypter) {
+				encrypter.init(Cipher.ENCRYPT_MODE, skeySpec);
+			}
 
 		} catch (Throwable t) {
 			t.printStackTrace();
@@ -307,7 +338,9 @@ public class CloudConnection<T> extends Thread {
 	}
 
 	public void setAuthenticated() {
+
 		authenticated = true;
+		context.signal();
 	}
 
 	public void setPassword(final String password) {
@@ -491,6 +524,20 @@ public class CloudConnection<T> extends Thread {
 
 			container.flushAndCloseTemporaryFile();
 
+			final String id = container.getSourceNodeId();
+
+			try {
+				copyPendingChunks(id);
+
+			} catch (IOException ioex) {
+
+				// the staging file is kept, so the next synchronization
+				// requests only the chunks that are still missing
+				logger.log(Level.WARNING, "Not storing incomplete file {0}: {1}", new Object[] { id, ioex.getMessage() });
+
+				return;
+			}
+
 			final NodeInterface newNode = storeNode(container);
 			final String filesPath = StructrApp.getConfigurationValue(Services.FILES_PATH);
 			final String relativePath = newNode.getProperty(File.relativeFilePath);
@@ -508,6 +555,11 @@ public class CloudConnection<T> extends Thread {
 			try {
 				container.persistTemporaryFile(newPath);
 
+				// keep received content for other files that contain the same chunks
+				if (chunkSources.contains(id)) {
+					transmittedChunks.add(new java.io.File(newPath));
+				}
+
 			} catch (Throwable t) {
 
 				// do not catch specific exception only, we need to be able to shut
@@ -532,6 +584,111 @@ public class CloudConnection<T> extends Thread {
 		}
 	}
 
+	/**
+	 * Compares the given sync state with the local database and returns
+	 * the ids of the objects that are missing or differ locally. Changed
+	 * files are mapped to the sequence numbers of the chunks that need to
+	 * be transmitted, and their staging files are prepared.
+	 *
+	 * Chunks are identified by their content hash. Chunks that exist in the
+	 * local version of a file or in a local file with the same checksum are
+	 * copied into the staging file, and chunks that occur more than once in
+	 * the sync state are only requested once and copied when the file that
+	 * contains them has been received.
+	 *
+	 * @param syncState the sync state of the remote end
+	 * @return the changed objects
+	 * @throws FrameworkException
+	 * @throws IOException
+	 */
+	public Map<String, Set<Integer>> getChanges(final SyncState syncState) throws FrameworkException, IOException {
+
+		final Map<String, Set<Integer>> changes = new LinkedHashMap<>();
+		final Map<String, String> wantedChunks  = new LinkedHashMap<>();
+		final ChunkIndex localChunks            = new ChunkIndex(CloudService.CHUNK_SIZE);
+
+		for (final SyncState.Entry entry : syncState.getEntries()) {
+
+			final String id         = entry.getId();
+			final GraphObject local = app.get(id);
+			final boolean changed   = local == null || !entry.getHash().equals(SyncState.getHash(local.getPropertyContainer()));
+
+			if (entry.hasChunks()) {
+
+				final java.io.File staging = FileNodeDataContainer.getStagingFile(id);
+
+				// unchanged file properties include size and checksum of the content
+				if (changed || staging.exists()) {
+
+					final java.io.File localFile      = getLocalFile(local);
+					final String[] stagedHashes       = ChunkIndex.getChunkHashes(staging.exists() ? staging : localFile, CloudService.CHUNK_SIZE);
+					final String[] remoteHashes       = entry.getChunkHashes();
+					final Map<Integer, String> copies = new TreeMap<>();
+					final Set<Integer> chunks         = new TreeSet<>();
+					boolean indexed                   = false;
+
+					for (int i=0; i<remoteHashes.length; i++) {
+
+						final String hash = remoteHashes[i];
+
+						if (i < stagedHashes.length && hash.equals(stagedHashes[i])) {
+							continue;
+						}
+
+						if (!indexed) {
+
+							indexLocalContent(localChunks, localFile, entry);
+							indexed = true;
+						}
+
+						if (localChunks.contains(hash)) {
+
+							copies.put(i, hash);
+
+						} else if (wantedChunks.containsKey(hash)) {
+
+							// requested for a different position, copy when received
+							getPendingCopies(id).put(i, hash);
+							chunkSources.add(wantedChunks.get(hash));
+
+						} else {
+
+							wantedChunks.put(hash, id);
+							chunks.add(i);
+						}
+					}
+
+					if (changed || !chunks.isEmpty() || !copies.isEmpty() || pendingCopies.containsKey(id)) {
+
+						FileNodeDataContainer.prepareStagingFile(id, localFile);
+						changes.put(id, chunks);
+
+						if (!copies.isEmpty()) {
+
+							try (final RandomAccessFile target = new RandomAccessFile(staging, "rw")) {
+
+								for (final Map.Entry<Integer, String> copy : copies.entrySet()) {
+									localChunks.copy(copy.getValue(), target, (long)copy.getKey() * CloudService.CHUNK_SIZE);
+								}
+							}
+						}
+
+					} else if (staging.exists()) {
+
+						// the local file is up to date, the staging file of an earlier transmission is obsolete
+						staging.delete();
+					}
+				}
+
+			} else if (changed) {
+
+				changes.put(id, null);
+			}
+		}
+
+		return changes;
+	}
+
 	public List<SyncableInfo> listSyncables(final Set<Class<Syncable>> types) throws FrameworkException {
 
 		final List<SyncableInfo> syncables = new LinkedList<>();
@@ -589,6 +746,91 @@ public class CloudConnection<T> extends Thread {
 		return syncables;
 	}
 
+	private void indexLocalContent(final ChunkIndex index, final java.io.File localFile, final SyncState.Entry entry) throws FrameworkException, IOException {
+
+		if (localFile != null && localFile.exists()) {
+			index.add(localFile);
+		}
+
+		// a local file with the same content, identified by the checksum stored by FileHelper
+		final Long checksum = entry.getChecksum();
+		if (checksum != null) {
+
+			for (final File file : app.nodeQuery(File.class).and(File.checksum, checksum).getAsList()) {
+
+				final java.io.File candidate = getLocalFile(file);
+				if (candidate != null && candidate.exists() && candidate.length() == entry.getSize()) {
+
+					index.add(candidate);
+					break;
+				}
+			}
+		}
+	}
+
+	private Map<Integer, String> getPendingCopies(final String id) {
+
+		Map<Integer, String> copies = pendingCopies.get(id);
+		if (copies == null) {
+
+			copies = new TreeMap<>();
+			pendingCopies.put(id, copies);
+		}
+
+		return copies;
+	}
+
+	/**
+	 * Copies the chunks of the given file that were received as part of
+	 * other files into its staging file.
+	 *
+	 * @param id
+	 * @throws IOException if one of the chunks was not received
+	 */
+	private void copyPendingChunks(final String id) throws IOException {
+
+		final Map<Integer, String> copies = pendingCopies.remove(id);
+		if (copies != null) {
+
+			final Set<Integer> missing = new TreeSet<>();
+
+			final java.io.File staging = FileNodeDataContainer.getStagingFile(id);
+
+			// the chunks can be contained in the same file
+			if (chunkSources.contains(id)) {
+				transmittedChunks.add(staging);
+			}
+
+			try (final RandomAccessFile target = new RandomAccessFile(staging, "rw")) {
+
+				for (final Map.Entry<Integer, String> copy : copies.entrySet()) {
+
+					if (!transmittedChunks.copy(copy.getValue(), target, (long)copy.getKey() * CloudService.CHUNK_SIZE)) {
+						missing.add(copy.getKey());
+					}
+				}
+			}
+
+			if (!missing.isEmpty()) {
+				throw new IOException("Chunks " + missing + " of file " + id + " were not received");
+			}
+		}
+	}
+
+	private java.io.File getLocalFile(final GraphObject local) {
+
+		if (local instanceof FileBase) {
+
+			final String relativePath = ((FileBase)local).getRelativeFilePath();
+			if (relativePath != null) {
+
+				return new java.io.File(FileHelper.getFilePath(relativePath));
+			}
+		}
+
+		return null;
+	}
+
 	public void storeValue(final String key, final Object value) {
 		data.put(key, value);
 	}
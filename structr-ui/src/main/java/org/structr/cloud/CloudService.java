@@ -48,6 +48,7 @@ public class CloudService extends Thread implements RunnableService {
 	public static final int BUFFER_SIZE       = CHUNK_SIZE * 4;
 	public static final int LIVE_PACKET_COUNT = 200;
 	public static final long DEFAULT_TIMEOUT  = 2000;
+	public static final long POLL_INTERVAL    = 100;
 
 	public static final boolean DEBUG         = false;
 	public static final String STREAM_CIPHER  = "RC4";
@@ -24,9 +24,9 @@ package org.structr.cloud;
  */
 public class ExportContext {
 
-	private CloudListener listener = null;
-	private int currentProgress    = 0;
-	private int totalSize          = 0;
+	private CloudListener listener       = null;
+	private volatile int currentProgress = 0;
+	private volatile int totalSize       = 0;
 
 	public ExportContext(final CloudListener listener, final int totalSize) {
 		this.listener  = listener;
@@ -46,15 +46,32 @@ public class ExportContext {
 	}
 
 	public void progress() {
-		currentProgress++;
+
+		final int progress;
+
+		synchronized (this) {
+
+			progress = ++currentProgress;
+			notifyAll();
+		}
 
 		if (listener != null) {
-			listener.transmissionProgress(currentProgress, totalSize);
+			listener.transmissionProgress(progress, totalSize);
 		}
 	}
 
-	public void increaseTotal(final int addTotal) {
+	public synchronized void increaseTotal(final int addTotal) {
+
 		totalSize += addTotal;
+		notifyAll();
+	}
+
+	/**
+	 * Wakes up the threads that wait for a change of the state of this
+	 * transmission.
+	 */
+	public synchronized void signal() {
+		notifyAll();
 	}
 
 	public void transmissionStarted() {
@@ -18,12 +18,16 @@
  */
 package org.structr.cloud;
 
+import java.io.IOException;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import org.structr.common.ChunkIndex;
+import org.structr.common.SyncState;
 import org.structr.common.Syncable;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.dynamic.File;
+import org.structr.web.common.FileHelper;
 
 /**
  *
@@ -81,6 +85,40 @@ public class ExportSet {
 		return size;
 	}
 
+	/**
+	 * Returns the sync state of the nodes and relationships in this export
+	 * set, nodes first. The entries of files contain the checksum of the
+	 * file and the hashes of its chunks.
+	 *
+	 * @return the sync state
+	 * @throws IOException
+	 */
+	public SyncState getSyncState() throws IOException {
+
+		final SyncState syncState = new SyncState();
+
+		for (final NodeInterface node : nodes) {
+
+			final SyncState.Entry entry = syncState.add(new SyncState.Entry(node.getUuid(), SyncState.getHash(node.getNode())));
+
+			if (node instanceof File) {
+
+				final File file           = (File)node;
+				final String relativePath = file.getRelativeFilePath();
+				final java.io.File data   = relativePath != null ? new java.io.File(FileHelper.getFilePath(relativePath)) : null;
+
+				entry.setChunks(file.getSize(), ChunkIndex.getChunkHashes(data, CloudService.CHUNK_SIZE));
+				entry.setChecksum(file.getChecksum());
+			}
+		}
+
+		for (final RelationshipInterface relationship : relationships) {
+			syncState.add(new SyncState.Entry(relationship.getUuid(), SyncState.getHash(relationship.getRelationship())));
+		}
+
+		return syncState;
+	}
+
 	// ----- public static methods -----
 	public static ExportSet getInstance() {
 		return new ExportSet();
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import org.structr.cloud.message.Message;
+
+/**
+ * Reads the frames written by a {@link FrameWriter} and decodes the
+ * messages of each block.
+ */
+public class FrameReader {
+
+	private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+	private final Inflater inflater       = new Inflater();
+	private final byte[] header           = new byte[FrameWriter.HEADER_SIZE];
+	private DataInputStream inputStream   = null;
+	private Cipher cipher                 = null;
+	private byte[] payload                = new byte[CloudService.BUFFER_SIZE];
+	private byte[] decrypted              = new byte[CloudService.BUFFER_SIZE];
+	private byte[] inflated               = new byte[CloudService.BUFFER_SIZE];
+
+	public FrameReader(final InputStream inputStream, final Cipher cipher) {
+
+		this.inputStream = new DataInputStream(inputStream);
+		this.cipher      = cipher;
+	}
+
+	/**
+	 * Reads the next frame and returns the messages of its block. Blocks
+	 * until a frame is available.
+	 *
+	 * @return the messages of the next block
+	 * @throws IOException
+	 */
+	public List<Message> read() throws IOException {
+
+		inputStream.readFully(header);
+		decrypt(header, header.length);
+
+		final int payloadLength = readInt(decrypted, 0);
+		final byte flags        = decrypted[4];
+		final int rawLength     = readInt(decrypted, 5);
+
+		if (payloadLength < 0 || payloadLength > MAX_FRAME_SIZE || rawLength < 0 || rawLength > MAX_FRAME_SIZE) {
+			throw new IOException("Invalid frame size " + payloadLength + "/" + rawLength);
+		}
+
+		if (payload.length < payloadLength) {
+			payload = new byte[payloadLength];
+		}
+
+		inputStream.readFully(payload, 0, payloadLength);
+		decrypt(payload, payloadLength);
+
+		byte[] block = decrypted;
+
+		if ((flags & FrameWriter.FLAG_COMPRESSED) != 0) {
+
+			if (inflated.length < rawLength) {
+				inflated = new byte[rawLength];
+			}
+
+			block = inflated;
+
+			try {
+
+				inflater.reset();
+				inflater.setInput(decrypted, 0, payloadLength);
+
+				if (inflater.inflate(block, 0, rawLength) != rawLength) {
+					throw new IOException("Invalid compressed frame");
+				}
+
+			} catch (DataFormatException dfex) {
+				throw new IOException(dfex);
+			}
+		}
+
+		final DataInputStream blockStream = new DataInputStream(new ByteArrayInputStream(block, 0, rawLength));
+		final List<Message> messages      = new LinkedList<>();
+
+		while (blockStream.available() > 0) {
+			messages.add(Protocol.readMessage(blockStream));
+		}
+
+		return messages;
+	}
+
+	public void close() {
+		inflater.end();
+	}
+
+	// ----- private methods -----
+	private void decrypt(final byte[] data, final int length) throws IOException {
+
+		if (decrypted.length < length) {
+			decrypted = new byte[length];
+		}
+
+		try {
+
+			synchronized (cipher) {
+				cipher.update(data, 0, length, decrypted, 0);
+			}
+
+		} catch (ShortBufferException sbex) {
+			throw new IOException(sbex);
+		}
+	}
+
+	private static int readInt(final byte[] buffer, final int offset) {
+
+		return ((buffer[offset] & 0xff) << 24)
+			| ((buffer[offset + 1] & 0xff) << 16)
+			| ((buffer[offset + 2] & 0xff) <<  8)
+			|  (buffer[offset + 3] & 0xff);
+	}
+}
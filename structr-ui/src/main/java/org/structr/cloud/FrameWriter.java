@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import org.structr.cloud.message.Message;
+
+/**
+ * Collects messages in a block and writes the block as a single frame.
+ *
+ * A frame consists of a header with the length of the payload, a flags byte
+ * and the uncompressed length of the block, followed by the payload. Blocks
+ * above a minimum size are compressed if that makes them smaller. Header
+ * and payload are encrypted with the stream cipher of the connection, so a
+ * new key takes effect with the next frame.
+ */
+public class FrameWriter {
+
+	public static final int HEADER_SIZE       = 9;
+	public static final byte FLAG_COMPRESSED  = 1;
+
+	private static final int MIN_COMPRESS_SIZE = 512;
+
+	private final Block block                  = new Block();
+	private final DataOutputStream blockStream = new DataOutputStream(block);
+	private final Deflater deflater            = new Deflater(Deflater.BEST_SPEED);
+	private final byte[] header                = new byte[HEADER_SIZE];
+	private OutputStream outputStream          = null;
+	private Cipher cipher                      = null;
+	private byte[] compressed                  = new byte[CloudService.BUFFER_SIZE];
+	private byte[] encrypted                   = new byte[CloudService.BUFFER_SIZE];
+	private int messageCount                   = 0;
+
+	public FrameWriter(final OutputStream outputStream, final Cipher cipher) {
+
+		this.outputStream = outputStream;
+		this.cipher       = cipher;
+	}
+
+	/**
+	 * Appends the given message to the current block.
+	 *
+	 * @param message
+	 * @throws IOException
+	 */
+	public void write(final Message message) throws IOException {
+
+		Protocol.writeMessage(blockStream, message);
+		messageCount++;
+	}
+
+	/**
+	 * @return the number of bytes in the current block
+	 */
+	public int size() {
+		return block.size();
+	}
+
+	/**
+	 * @return the number of messages in the current block
+	 */
+	public int getMessageCount() {
+		return messageCount;
+	}
+
+	/**
+	 * Writes the current block as a frame and flushes the underlying
+	 * stream. Does nothing if the block is empty.
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+
+		if (messageCount == 0) {
+			return;
+		}
+
+		final int rawLength = block.size();
+		byte[] payload      = block.getBuffer();
+		int payloadLength   = rawLength;
+		byte flags          = 0;
+
+		if (rawLength >= MIN_COMPRESS_SIZE) {
+
+			deflater.reset();
+			deflater.setInput(block.getBuffer(), 0, rawLength);
+			deflater.finish();
+
+			if (compressed.length < rawLength) {
+				compressed = new byte[rawLength];
+			}
+
+			// only use the compressed block if it is smaller than the raw block
+			final int compressedLength = deflater.deflate(compressed, 0, rawLength);
+			if (deflater.finished() && compressedLength < rawLength) {
+
+				payload       = compressed;
+				payloadLength = compressedLength;
+				flags         = FLAG_COMPRESSED;
+			}
+		}
+
+		writeInt(header, 0, payloadLength);
+		header[4] = flags;
+		writeInt(header, 5, rawLength);
+
+		synchronized (cipher) {
+
+			encrypt(header, HEADER_SIZE);
+			encrypt(payload, payloadLength);
+		}
+
+		outputStream.flush();
+
+		block.reset();
+		messageCount = 0;
+	}
+
+	public void close() {
+		deflater.end();
+	}
+
+	// ----- private methods -----
+	private void encrypt(final byte[] data, final int length) throws IOException {
+
+		if (encrypted.length < length) {
+			encrypted = new byte[length];
+		}
+
+		try {
+
+			final int encryptedLength = cipher.update(data, 0, length, encrypted, 0);
+			outputStream.write(encrypted, 0, encryptedLength);
+
+		} catch (ShortBufferException sbex) {
+			throw new IOException(sbex);
+		}
+	}
+
+	private static void writeInt(final byte[] buffer, final int offset, final int value) {
+
+		buffer[offset]     = (byte)(value >>> 24);
+		buffer[offset + 1] = (byte)(value >>> 16);
+		buffer[offset + 2] = (byte)(value >>>  8);
+		buffer[offset + 3] = (byte)(value);
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A byte array output stream that exposes its buffer.
+	 */
+	private static class Block extends ByteArrayOutputStream {
+
+		public Block() {
+			super(CloudService.BUFFER_SIZE);
+		}
+
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
+}
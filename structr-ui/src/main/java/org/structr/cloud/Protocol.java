@@ -0,0 +1,738 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.structr.cloud.message.Ack;
+import org.structr.cloud.message.AuthenticationRequest;
+import org.structr.cloud.message.AuthenticationResponse;
+import org.structr.cloud.message.Begin;
+import org.structr.cloud.message.End;
+import org.structr.cloud.message.Error;
+import org.structr.cloud.message.FileNodeChunk;
+import org.structr.cloud.message.FileNodeDataContainer;
+import org.structr.cloud.message.FileNodeEndChunk;
+import org.structr.cloud.message.Finish;
+import org.structr.cloud.message.ListSyncables;
+import org.structr.cloud.message.Message;
+import org.structr.cloud.message.NodeDataContainer;
+import org.structr.cloud.message.PullChunk;
+import org.structr.cloud.message.PullFile;
+import org.structr.cloud.message.PullNode;
+import org.structr.cloud.message.PullNodeRequestContainer;
+import org.structr.cloud.message.PullRelationship;
+import org.structr.cloud.message.PushNodeRequestContainer;
+import org.structr.cloud.message.RelationshipDataContainer;
+import org.structr.cloud.message.SyncManifest;
+import org.structr.common.SyncState;
+import org.structr.schema.SchemaHelper;
+
+/**
+ * Binary encoding of the messages that are exchanged between structr
+ * instances. Each message is written as a one-byte type id, followed by the
+ * fields written by {@link Message#serialize}. The type ids are the indexes
+ * of the message classes in the registry below, so new message types must
+ * be appended at the end of the list.
+ *
+ * Property values are written with a one-byte tag, followed by the value.
+ * Only the value types that can be stored in the database are supported.
+ *
+ * Messages are always decoded from a frame that was read into memory, and
+ * lengths and element counts larger than the rest of the frame are
+ * rejected before anything is allocated.
+ */
+public class Protocol {
+
+	/**
+	 * Version of the encoding. It is written right after the message id of
+	 * the authentication request and response, so instances that use
+	 * different versions can reject each other with a clear error. The
+	 * position of these fields and the type ids of the authentication and
+	 * error messages must never change.
+	 */
+	public static final int VERSION                                  = 1;
+
+	private static final Charset UTF8                                = Charset.forName("utf-8");
+	private static final List<Class<? extends Message>> messageTypes = new ArrayList<>();
+
+	// value tags
+	private static final byte NULL          = 0;
+	private static final byte STRING        = 1;
+	private static final byte BOOLEAN       = 2;
+	private static final byte BYTE          = 3;
+	private static final byte SHORT         = 4;
+	private static final byte INTEGER       = 5;
+	private static final byte LONG          = 6;
+	private static final byte FLOAT         = 7;
+	private static final byte DOUBLE        = 8;
+	private static final byte CHARACTER     = 9;
+	private static final byte DATE          = 10;
+	private static final byte STRING_ARRAY  = 20;
+	private static final byte BOOLEAN_ARRAY = 21;
+	private static final byte BYTE_ARRAY    = 22;
+	private static final byte SHORT_ARRAY   = 23;
+	private static final byte INT_ARRAY     = 24;
+	private static final byte LONG_ARRAY    = 25;
+	private static final byte FLOAT_ARRAY   = 26;
+	private static final byte DOUBLE_ARRAY  = 27;
+	private static final byte CHAR_ARRAY    = 28;
+
+	static {
+
+		messageTypes.add(Ack.class);
+		messageTypes.add(AuthenticationRequest.class);
+		messageTypes.add(AuthenticationResponse.class);
+		messageTypes.add(Begin.class);
+		messageTypes.add(End.class);
+		messageTypes.add(Error.class);
+		messageTypes.add(FileNodeChunk.class);
+		messageTypes.add(FileNodeDataContainer.class);
+		messageTypes.add(FileNodeEndChunk.class);
+		messageTypes.add(Finish.class);
+		messageTypes.add(ListSyncables.class);
+		messageTypes.add(NodeDataContainer.class);
+		messageTypes.add(PullChunk.class);
+		messageTypes.add(PullFile.class);
+		messageTypes.add(PullNode.class);
+		messageTypes.add(PullNodeRequestContainer.class);
+		messageTypes.add(PullRelationship.class);
+		messageTypes.add(PushNodeRequestContainer.class);
+		messageTypes.add(RelationshipDataContainer.class);
+		messageTypes.add(SyncManifest.class);
+	}
+
+	// ----- messages -----
+	public static void writeMessage(final DataOutputStream outputStream, final Message message) throws IOException {
+
+		final int typeId = messageTypes.indexOf(message.getClass());
+		if (typeId < 0) {
+
+			throw new IOException("Unknown message type " + message.getClass().getName());
+		}
+
+		outputStream.writeByte(typeId);
+		message.serialize(outputStream);
+	}
+
+	public static Message readMessage(final DataInputStream inputStream) throws IOException {
+
+		final int typeId = inputStream.readUnsignedByte();
+		if (typeId >= messageTypes.size()) {
+
+			throw new IOException("Unknown message type id " + typeId);
+		}
+
+		try {
+
+			final Message message = messageTypes.get(typeId).newInstance();
+			message.deserialize(inputStream);
+
+			return message;
+
+		} catch (InstantiationException | IllegalAccessException ex) {
+
+			throw new IOException("Unable to instantiate message of type " + messageTypes.get(typeId).getName(), ex);
+		}
+	}
+
+	// ----- fields -----
+	public static void writeVersion(final DataOutputStream outputStream) throws IOException {
+		outputStream.writeByte(VERSION);
+	}
+
+	/**
+	 * Reads the protocol version of the remote instance. If it differs from
+	 * the local version, the rest of the frame can not be decoded and is
+	 * skipped.
+	 *
+	 * @param inputStream
+	 * @return the remote version
+	 * @throws IOException
+	 */
+	public static int readVersion(final DataInputStream inputStream) throws IOException {
+
+		final int version = inputStream.readUnsignedByte();
+		if (version != VERSION) {
+
+			inputStream.skipBytes(inputStream.available());
+		}
+
+		return version;
+	}
+
+	public static String getVersionError(final int remoteVersion) {
+		return "Incompatible protocol version " + remoteVersion + ", this instance uses version " + VERSION + ".";
+	}
+
+	public static void writeString(final DataOutputStream outputStream, final String value) throws IOException {
+
+		if (value == null) {
+
+			outputStream.writeInt(-1);
+
+		} else {
+
+			final byte[] bytes = value.getBytes(UTF8);
+
+			outputStream.writeInt(bytes.length);
+			outputStream.write(bytes);
+		}
+	}
+
+	public static String readString(final DataInputStream inputStream) throws IOException {
+
+		final int length = readLength(inputStream, 1);
+		if (length < 0) {
+
+			return null;
+		}
+
+		final byte[] bytes = new byte[length];
+		inputStream.readFully(bytes);
+
+		return new String(bytes, UTF8);
+	}
+
+	public static void writeBytes(final DataOutputStream outputStream, final byte[] value) throws IOException {
+
+		if (value == null) {
+
+			outputStream.writeInt(-1);
+
+		} else {
+
+			outputStream.writeInt(value.length);
+			outputStream.write(value);
+		}
+	}
+
+	public static byte[] readBytes(final DataInputStream inputStream) throws IOException {
+
+		final int length = readLength(inputStream, 1);
+		if (length < 0) {
+
+			return null;
+		}
+
+		final byte[] bytes = new byte[length];
+		inputStream.readFully(bytes);
+
+		return bytes;
+	}
+
+	/**
+	 * Writes the name of an entity class. The class is resolved by its
+	 * simple name on the receiving side first, because dynamic types are
+	 * compiled at runtime and loaded by a different class loader on each
+	 * instance.
+	 */
+	public static void writeType(final DataOutputStream outputStream, final Class type) throws IOException {
+		writeString(outputStream, type != null ? type.getName() : null);
+	}
+
+	public static Class readType(final DataInputStream inputStream) throws IOException {
+
+		final String name = readString(inputStream);
+		if (name == null) {
+
+			return null;
+		}
+
+		final Class type = SchemaHelper.getEntityClassForRawType(name.substring(name.lastIndexOf(".") + 1));
+		if (type != null && type.getName().equals(name)) {
+
+			return type;
+		}
+
+		try {
+
+			return Class.forName(name);
+
+		} catch (ClassNotFoundException cnfex) {
+
+			if (type != null) {
+				return type;
+			}
+
+			throw new IOException("Unknown type " + name, cnfex);
+		}
+	}
+
+	public static void writeDate(final DataOutputStream outputStream, final Date value) throws IOException {
+
+		outputStream.writeBoolean(value != null);
+
+		if (value != null) {
+			outputStream.writeLong(value.getTime());
+		}
+	}
+
+	public static Date readDate(final DataInputStream inputStream) throws IOException {
+
+		if (inputStream.readBoolean()) {
+			return new Date(inputStream.readLong());
+		}
+
+		return null;
+	}
+
+	public static void writeProperties(final DataOutputStream outputStream, final Map<String, Object> properties) throws IOException {
+
+		outputStream.writeInt(properties.size());
+
+		for (final Map.Entry<String, Object> entry : properties.entrySet()) {
+
+			writeString(outputStream, entry.getKey());
+			writeValue(outputStream, entry.getValue());
+		}
+	}
+
+	public static Map<String, Object> readProperties(final DataInputStream inputStream) throws IOException {
+
+		final Map<String, Object> properties = new LinkedHashMap<>();
+		final int size                       = readArrayLength(inputStream, 5);
+
+		for (int i=0; i<size; i++) {
+
+			final String key = readString(inputStream);
+			properties.put(key, readValue(inputStream));
+		}
+
+		return properties;
+	}
+
+	public static void writeSyncState(final DataOutputStream outputStream, final SyncState syncState) throws IOException {
+
+		if (syncState == null) {
+
+			outputStream.writeInt(-1);
+			return;
+		}
+
+		outputStream.writeInt(syncState.size());
+
+		for (final SyncState.Entry entry : syncState.getEntries()) {
+
+			final String[] chunkHashes = entry.getChunkHashes();
+
+			writeString(outputStream, entry.getId());
+			writeString(outputStream, entry.getHash());
+			outputStream.writeLong(entry.getSize());
+			writeValue(outputStream, entry.getChecksum());
+			outputStream.writeInt(chunkHashes != null ? chunkHashes.length : -1);
+
+			if (chunkHashes != null) {
+
+				for (final String chunkHash : chunkHashes) {
+					writeString(outputStream, chunkHash);
+				}
+			}
+		}
+	}
+
+	public static SyncState readSyncState(final DataInputStream inputStream) throws IOException {
+
+		// id, hash, size, checksum and chunk count of each entry
+		final int size = readLength(inputStream, 21);
+		if (size < 0) {
+
+			return null;
+		}
+
+		final SyncState syncState = new SyncState();
+
+		for (int i=0; i<size; i++) {
+
+			final String id       = readString(inputStream);
+			final String hash     = readString(inputStream);
+			final long fileSize   = inputStream.readLong();
+			final Object checksum = readValue(inputStream);
+			final int chunkCount  = readLength(inputStream, 4);
+			String[] chunkHashes  = null;
+
+			if (chunkCount >= 0) {
+
+				chunkHashes = new String[chunkCount];
+
+				for (int j=0; j<chunkCount; j++) {
+					chunkHashes[j] = readString(inputStream);
+				}
+			}
+
+			syncState.add(new SyncState.Entry(id, hash, fileSize, chunkHashes)).setChecksum((Long)checksum);
+		}
+
+		return syncState;
+	}
+
+	public static void writeIntegers(final DataOutputStream outputStream, final Set<Integer> values) throws IOException {
+
+		if (values == null) {
+
+			outputStream.writeInt(-1);
+			return;
+		}
+
+		outputStream.writeInt(values.size());
+
+		for (final Integer value : values) {
+			outputStream.writeInt(value);
+		}
+	}
+
+	public static Set<Integer> readIntegers(final DataInputStream inputStream) throws IOException {
+
+		final int size = readLength(inputStream, 4);
+		if (size < 0) {
+
+			return null;
+		}
+
+		final Set<Integer> values = new TreeSet<>();
+
+		for (int i=0; i<size; i++) {
+			values.add(inputStream.readInt());
+		}
+
+		return values;
+	}
+
+	public static void writeValue(final DataOutputStream outputStream, final Object value) throws IOException {
+
+		if (value == null) {
+
+			outputStream.writeByte(NULL);
+
+		} else if (value instanceof String) {
+
+			outputStream.writeByte(STRING);
+			writeString(outputStream, (String)value);
+
+		} else if (value instanceof Boolean) {
+
+			outputStream.writeByte(BOOLEAN);
+			outputStream.writeBoolean((Boolean)value);
+
+		} else if (value instanceof Byte) {
+
+			outputStream.writeByte(BYTE);
+			outputStream.writeByte((Byte)value);
+
+		} else if (value instanceof Short) {
+
+			outputStream.writeByte(SHORT);
+			outputStream.writeShort((Short)value);
+
+		} else if (value instanceof Integer) {
+
+			outputStream.writeByte(INTEGER);
+			outputStream.writeInt((Integer)value);
+
+		} else if (value instanceof Long) {
+
+			outputStream.writeByte(LONG);
+			outputStream.writeLong((Long)value);
+
+		} else if (value instanceof Float) {
+
+			outputStream.writeByte(FLOAT);
+			outputStream.writeFloat((Float)value);
+
+		} else if (value instanceof Double) {
+
+			outputStream.writeByte(DOUBLE);
+			outputStream.writeDouble((Double)value);
+
+		} else if (value instanceof Character) {
+
+			outputStream.writeByte(CHARACTER);
+			outputStream.writeChar((Character)value);
+
+		} else if (value instanceof Date) {
+
+			outputStream.writeByte(DATE);
+			outputStream.writeLong(((Date)value).getTime());
+
+		} else if (value instanceof String[]) {
+
+			final String[] array = (String[])value;
+
+			outputStream.writeByte(STRING_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final String element : array) {
+				writeString(outputStream, element);
+			}
+
+		} else if (value instanceof boolean[]) {
+
+			final boolean[] array = (boolean[])value;
+
+			outputStream.writeByte(BOOLEAN_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final boolean element : array) {
+				outputStream.writeBoolean(element);
+			}
+
+		} else if (value instanceof byte[]) {
+
+			outputStream.writeByte(BYTE_ARRAY);
+			writeBytes(outputStream, (byte[])value);
+
+		} else if (value instanceof short[]) {
+
+			final short[] array = (short[])value;
+
+			outputStream.writeByte(SHORT_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final short element : array) {
+				outputStream.writeShort(element);
+			}
+
+		} else if (value instanceof int[]) {
+
+			final int[] array = (int[])value;
+
+			outputStream.writeByte(INT_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final int element : array) {
+				outputStream.writeInt(element);
+			}
+
+		} else if (value instanceof long[]) {
+
+			final long[] array = (long[])value;
+
+			outputStream.writeByte(LONG_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final long element : array) {
+				outputStream.writeLong(element);
+			}
+
+		} else if (value instanceof float[]) {
+
+			final float[] array = (float[])value;
+
+			outputStream.writeByte(FLOAT_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final float element : array) {
+				outputStream.writeFloat(element);
+			}
+
+		} else if (value instanceof double[]) {
+
+			final double[] array = (double[])value;
+
+			outputStream.writeByte(DOUBLE_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final double element : array) {
+				outputStream.writeDouble(element);
+			}
+
+		} else if (value instanceof char[]) {
+
+			final char[] array = (char[])value;
+
+			outputStream.writeByte(CHAR_ARRAY);
+			outputStream.writeInt(array.length);
+
+			for (final char element : array) {
+				outputStream.writeChar(element);
+			}
+
+		} else {
+
+			throw new IOException("Unsupported value type " + value.getClass().getName());
+		}
+	}
+
+	public static Object readValue(final DataInputStream inputStream) throws IOException {
+
+		final byte tag = inputStream.readByte();
+
+		switch (tag) {
+
+			case NULL:
+				return null;
+
+			case STRING:
+				return readString(inputStream);
+
+			case BOOLEAN:
+				return inputStream.readBoolean();
+
+			case BYTE:
+				return inputStream.readByte();
+
+			case SHORT:
+				return inputStream.readShort();
+
+			case INTEGER:
+				return inputStream.readInt();
+
+			case LONG:
+				return inputStream.readLong();
+
+			case FLOAT:
+				return inputStream.readFloat();
+
+			case DOUBLE:
+				return inputStream.readDouble();
+
+			case CHARACTER:
+				return inputStream.readChar();
+
+			case DATE:
+				return new Date(inputStream.readLong());
+
+			case STRING_ARRAY: {
+
+				final String[] array = new String[readArrayLength(inputStream, 4)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = readString(inputStream);
+				}
+
+				return array;
+			}
+
+			case BOOLEAN_ARRAY: {
+
+				final boolean[] array = new boolean[readArrayLength(inputStream, 1)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = inputStream.readBoolean();
+				}
+
+				return array;
+			}
+
+			case BYTE_ARRAY:
+				return readBytes(inputStream);
+
+			case SHORT_ARRAY: {
+
+				final short[] array = new short[readArrayLength(inputStream, 2)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = inputStream.readShort();
+				}
+
+				return array;
+			}
+
+			case INT_ARRAY: {
+
+				final int[] array = new int[readArrayLength(inputStream, 4)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = inputStream.readInt();
+				}
+
+				return array;
+			}
+
+			case LONG_ARRAY: {
+
+				final long[] array = new long[readArrayLength(inputStream, 8)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = inputStream.readLong();
+				}
+
+				return array;
+			}
+
+			case FLOAT_ARRAY: {
+
+				final float[] array = new float[readArrayLength(inputStream, 4)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = inputStream.readFloat();
+				}
+
+				return array;
+			}
+
+			case DOUBLE_ARRAY: {
+
+				final double[] array = new double[readArrayLength(inputStream, 8)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = inputStream.readDouble();
+				}
+
+				return array;
+			}
+
+			case CHAR_ARRAY: {
+
+				final char[] array = new char[readArrayLength(inputStream, 2)];
+				for (int i=0; i<array.length; i++) {
+					array[i] = inputStream.readChar();
+				}
+
+				return array;
+			}
+		}
+
+		throw new IOException("Unknown value tag " + tag);
+	}
+
+	// ----- private methods -----
+	/**
+	 * Reads a length or element count and checks that the elements fit in
+	 * the rest of the frame.
+	 *
+	 * @param inputStream
+	 * @param elementSize the minimum encoded size of one element
+	 * @return the length, or -1 for null
+	 * @throws IOException
+	 */
+	private static int readLength(final DataInputStream inputStream, final int elementSize) throws IOException {
+
+		final int length    = inputStream.readInt();
+		final int available = inputStream.available();
+
+		if (length < -1 || (long)length * elementSize > available) {
+			throw new IOException("Invalid length " + length + ", only " + available + " bytes left in frame");
+		}
+
+		return length;
+	}
+
+	private static int readArrayLength(final DataInputStream inputStream, final int elementSize) throws IOException {
+
+		final int length = readLength(inputStream, elementSize);
+		if (length < 0) {
+			throw new IOException("Invalid length " + length);
+		}
+
+		return length;
+	}
+}
@@ -18,51 +18,67 @@
  */
 package org.structr.cloud;
 
-import org.structr.cloud.message.Message;
-import java.io.ObjectInputStream;
-import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.structr.cloud.message.Message;
 
 /**
+ * Reads the incoming frames of a connection and queues their messages.
  *
  * @author Christian Morgner
  */
 public class Receiver extends Thread {
 
-	private final Queue<Message> inputQueue = new ArrayBlockingQueue<>(10000);
-	private ObjectInputStream inputStream   = null;
-	private CloudConnection connection      = null;
+	private final BlockingQueue<Message> inputQueue = new ArrayBlockingQueue<>(10000);
+	private FrameReader reader                      = null;
+	private CloudConnection connection              = null;
 
-	public Receiver(final CloudConnection connection, final ObjectInputStream inputStream) {
+	public Receiver(final CloudConnection connection, final FrameReader reader) {
 
 		super("Receiver of " + connection.getName());
 		this.setDaemon(true);
 
-		this.inputStream = inputStream;
-		this.connection  = connection;
+		this.reader     = reader;
+		this.connection = connection;
 	}
 
 	@Override
 	public void run() {
 
-		while (connection.isConnected()) {
+		try {
 
-			try {
+			while (connection.isConnected()) {
 
-				final Message message = (Message)inputStream.readObject();
-				if (message != null) {
+				for (final Message message : reader.read()) {
 
-					inputQueue.add(message);
+					// notify message before the next frame is read, a new
+					// encryption key must be used for the next block
+					message.afterReceive(connection);
+
+					inputQueue.put(message);
 				}
+			}
 
-			} catch (Throwable t) {
+		} catch (Throwable t) {
 
-				connection.close();
-			}
+			connection.close();
+
+		} finally {
+
+			reader.close();
 		}
 	}
 
-	public Message receive() {
-		return inputQueue.poll();
+	/**
+	 * Returns the next message, waiting up to the given time if no message
+	 * is available.
+	 *
+	 * @param timeout the timeout in milliseconds
+	 * @return the next message or null
+	 * @throws InterruptedException
+	 */
+	public Message receive(final long timeout) throws InterruptedException {
+		return inputQueue.poll(timeout, TimeUnit.MILLISECONDS);
 	}
 }
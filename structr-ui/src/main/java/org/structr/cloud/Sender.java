@@ -18,70 +18,89 @@
  */
 package org.structr.cloud;
 
-import org.structr.cloud.message.Message;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.structr.cloud.message.Message;
 
 /**
+ * Writes the outgoing messages of a connection. Messages are collected in
+ * blocks while there are more messages in the queue, and a block is written
+ * when the queue is drained, when the block is full or when the sender runs
+ * out of credit. The number of messages in flight is limited by a window of
+ * {@link CloudService#LIVE_PACKET_COUNT} credits, each received message
+ * returns a credit.
  *
  * @author Christian Morgner
  */
 public class Sender extends Thread {
 
-	private final Queue<Message> outputQueue = new ArrayBlockingQueue<>(10000);
-	private ObjectOutputStream outputStream  = null;
-	private CloudConnection connection       = null;
-	private int messagesInFlight             = 0;
+	private final BlockingQueue<Message> outputQueue = new LinkedBlockingQueue<>();
+	private final List<Message> sentMessages         = new LinkedList<>();
+	private final Semaphore window                   = new Semaphore(CloudService.LIVE_PACKET_COUNT);
+	private FrameWriter writer                       = null;
+	private CloudConnection connection               = null;
 
-	public Sender(final CloudConnection connection, final ObjectOutputStream outputStream) {
+	public Sender(final CloudConnection connection, final FrameWriter writer) {
 
 		super("Sender of " + connection.getName());
 		this.setDaemon(true);
 
-		this.outputStream = outputStream;
-		this.connection   = connection;
-
-		// flush stream to avoid ObjectInputStream to be waiting indefinitely
-		try {
-
-			outputStream.flush();
-
-		} catch (IOException ioex) {
-			ioex.printStackTrace();
-		}
+		this.writer     = writer;
+		this.connection = connection;
 	}
 
 	@Override
 	public void run() {
 
-		while (connection.isConnected()) {
+		try {
 
-			if (messagesInFlight < CloudService.LIVE_PACKET_COUNT) {
+			while (connection.isConnected()) {
 
-				try {
+				Message message = outputQueue.poll();
+				if (message == null) {
 
-					final Message message = outputQueue.poll();
-					if (message != null) {
+					// queue is drained, write pending block and wait
+					flush();
 
-						outputStream.writeObject(message);
-						outputStream.flush();
+					message = outputQueue.poll(CloudService.POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if (message == null) {
+						continue;
+					}
+				}
 
-						messagesInFlight++;
+				if (!window.tryAcquire()) {
 
-						message.afterSend(connection);
-					}
+					// write pending block so the remote end can respond, then wait for credit
+					flush();
 
-				} catch (Throwable t) {
+					while (!window.tryAcquire(CloudService.POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
 
-					connection.close();
+						if (!connection.isConnected()) {
+							return;
+						}
+					}
 				}
 
-			} else {
+				writer.write(message);
+				sentMessages.add(message);
 
-				Thread.yield();
+				if (writer.size() >= CloudService.CHUNK_SIZE) {
+					flush();
+				}
 			}
+
+		} catch (Throwable t) {
+
+			connection.close();
+
+		} finally {
+
+			writer.close();
 		}
 	}
 
@@ -90,6 +109,20 @@ public class Sender extends Thread {
 	}
 
 	public void messageReceived() {
-		messagesInFlight--;
+		window.release();
+	}
+
+	// ----- private methods -----
+	private void flush() throws IOException {
+
+		writer.flush();
+
+		// notify messages after the block was written, a new
+		// encryption key must only be used for the next block
+		for (final Message message : sentMessages) {
+			message.afterSend(connection);
+		}
+
+		sentMessages.clear();
 	}
 }
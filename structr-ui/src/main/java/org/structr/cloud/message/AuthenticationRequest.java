@@ -18,11 +18,16 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.crypto.Cipher;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.Principal;
 
@@ -34,9 +39,12 @@ import org.structr.core.entity.Principal;
 
 public class AuthenticationRequest extends Message {
 
+	private static final Logger logger = Logger.getLogger(AuthenticationRequest.class.getName());
+
 	private String userName = null;
 	private String salt     = null;
 	private int keyLength   = 128;
+	private int version     = Protocol.VERSION;
 
 	public AuthenticationRequest() {}
 
@@ -68,9 +76,43 @@ public class AuthenticationRequest extends Message {
 		return keyLength;
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeVersion(outputStream);
+		Protocol.writeString(outputStream, userName);
+		Protocol.writeString(outputStream, salt);
+		outputStream.writeInt(keyLength);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		version = Protocol.readVersion(inputStream);
+		if (version != Protocol.VERSION) {
+			return;
+		}
+
+		userName  = Protocol.readString(inputStream);
+		salt      = Protocol.readString(inputStream);
+		keyLength = inputStream.readInt();
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 
+		if (version != Protocol.VERSION) {
+
+			logger.log(Level.WARNING, "Rejecting connection with protocol version {0}, this instance uses version {1}.", new Object[] { version, Protocol.VERSION });
+
+			serverConnection.send(new Error(400, Protocol.getVersionError(version)));
+			return;
+		}
+
 		final Principal user = serverConnection.getUser(userName);
 		if (user != null) {
 
@@ -18,12 +18,15 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.security.InvalidKeyException;
 import javax.crypto.Cipher;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.auth.AuthHelper;
 
@@ -38,6 +41,7 @@ public class AuthenticationResponse extends Message {
 	private String userName = null;
 	private String salt     = null;
 	private int keyLength   = 128;
+	private int version     = Protocol.VERSION;
 
 	public AuthenticationResponse() {}
 
@@ -81,22 +85,66 @@ public class AuthenticationResponse extends Message {
 	}
 
 	@Override
-	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
+	public void serialize(final DataOutputStream outputStream) throws IOException {
 
-		try {
+		super.serialize(outputStream);
 
-			serverConnection.setEncryptionKey(getEncryptionKey(serverConnection.getPassword()), Math.min(keyLength, Cipher.getMaxAllowedKeyLength(CloudService.STREAM_CIPHER)));
-			serverConnection.setAuthenticated();
+		Protocol.writeVersion(outputStream);
+		Protocol.writeString(outputStream, userName);
+		Protocol.writeString(outputStream, salt);
+		outputStream.writeInt(keyLength);
+	}
 
-		} catch (Throwable t) {
-			t.printStackTrace();
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		version = Protocol.readVersion(inputStream);
+		if (version != Protocol.VERSION) {
+			return;
 		}
+
+		userName  = Protocol.readString(inputStream);
+		salt      = Protocol.readString(inputStream);
+		keyLength = inputStream.readInt();
+	}
+
+	@Override
+	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
+
+		if (version != Protocol.VERSION) {
+
+			// closes the connection
+			serverConnection.setError(400, Protocol.getVersionError(version));
+			return;
+		}
+
+		serverConnection.setAuthenticated();
 	}
 
 	@Override
 	public void onResponse(CloudConnection clientConnection, ExportContext context) throws IOException, FrameworkException {
 	}
 
+	@Override
+	public void afterReceive(CloudConnection connection) {
+
+		if (version != Protocol.VERSION) {
+			return;
+		}
+
+		// switch keys before the next frame is read, the remote end
+		// encrypts all frames after this message with the new key
+		try {
+
+			connection.setEncryptionKey(getEncryptionKey(connection.getPassword()), Math.min(keyLength, Cipher.getMaxAllowedKeyLength(CloudService.STREAM_CIPHER)));
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+		}
+	}
+
 	@Override
 	public void afterSend(CloudConnection client) {
 
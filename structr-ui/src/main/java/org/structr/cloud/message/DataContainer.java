@@ -18,9 +18,13 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import org.neo4j.graphdb.PropertyContainer;
+import org.structr.cloud.Protocol;
 
 /**
  * Abstract superclass of {@link NodeDataContainer} and {@link RelationshipDataContainer}
@@ -51,6 +55,24 @@ public abstract class DataContainer extends Message {
 		return sequenceNumber;
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeProperties(outputStream, properties);
+		outputStream.writeInt(sequenceNumber);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		properties     = Protocol.readProperties(inputStream);
+		sequenceNumber = inputStream.readInt();
+	}
+
 	@Override
 	public Object getPayload() {
 		return null;
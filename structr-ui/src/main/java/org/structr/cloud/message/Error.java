@@ -18,9 +18,12 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.error.FrameworkException;
 
 /**
@@ -44,6 +47,24 @@ public class Error extends Message {
 		return "Error(" + message + ")";
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeString(outputStream, message);
+		outputStream.writeInt(errorCode);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		message   = Protocol.readString(inputStream);
+		errorCode = inputStream.readInt();
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 		serverConnection.setError(errorCode, message);
@@ -18,9 +18,12 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.error.FrameworkException;
 
 /**
@@ -71,6 +74,28 @@ public class FileNodeChunk extends DataContainer {
 		return "FileNodeChunk()";
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeString(outputStream, containerId);
+		outputStream.writeInt(chunkSize);
+		outputStream.writeLong(fileSize);
+		Protocol.writeBytes(outputStream, binaryContent);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		containerId   = Protocol.readString(inputStream);
+		chunkSize     = inputStream.readInt();
+		fileSize      = inputStream.readLong();
+		binaryContent = Protocol.readBytes(inputStream);
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 
@@ -18,50 +18,97 @@
  */
 package org.structr.cloud.message;
 
-import java.io.FileOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
+import org.structr.common.ChunkIndex;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.app.StructrApp;
 import org.structr.dynamic.File;
 
 /**
  * Transport data container for file nodes
  *
+ * The chunks of a file are written to a staging file at the position given
+ * by their sequence number, so only the chunks that differ from the local
+ * copy need to be transmitted. The staging file is kept when a transmission
+ * is interrupted, so the next transmission can resume with the missing
+ * chunks.
+ *
  * @author axel
  */
 public class FileNodeDataContainer extends NodeDataContainer {
 
-	private static final Logger logger = Logger.getLogger(FileNodeDataContainer.class.getName());
+	private static final Logger logger            = Logger.getLogger(FileNodeDataContainer.class.getName());
+	private static final Pattern UUID_PATTERN     = Pattern.compile("[a-zA-Z0-9]{32}");
+	private static final String STAGING_DIRECTORY = ".sync";
 
-	private transient java.io.File temporaryFile = null;
-	private transient OutputStream outputStream  = null;
- 	private long fileSize                        = 0;
+	private transient RandomAccessFile stagingFile = null;
+	private long fileSize                          = 0;
+	private int chunkCount                         = 0;
 
 	public FileNodeDataContainer() throws FrameworkException {
 		super();
 	}
 
 	public FileNodeDataContainer(final File fileNode) throws FrameworkException {
+		this(fileNode, ChunkIndex.getChunkCount(fileNode.getSize(), CloudService.CHUNK_SIZE));
+	}
+
+	/**
+	 * Creates a container for the given file that announces the number of
+	 * chunks that will follow.
+	 *
+	 * @param fileNode
+	 * @param chunkCount
+	 * @throws FrameworkException
+	 */
+	public FileNodeDataContainer(final File fileNode, final int chunkCount) throws FrameworkException {
 
 		super(fileNode, 0);
 
-		this.fileSize = fileNode.getSize();
+		this.fileSize   = fileNode.getSize();
+		this.chunkCount = chunkCount;
+	}
+
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		outputStream.writeLong(fileSize);
+		outputStream.writeInt(chunkCount);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		fileSize   = inputStream.readLong();
+		chunkCount = inputStream.readInt();
 	}
 
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 
-		context.increaseTotal(Long.valueOf(fileSize / CloudService.CHUNK_SIZE).intValue() + 2);
+		context.increaseTotal(chunkCount + 1);
 
 		serverConnection.beginFile(this);
 		serverConnection.send(ack());
@@ -76,7 +123,8 @@ public class FileNodeDataContainer extends NodeDataContainer {
 	}
 
 	/**
-	 * Adds a chunk of data to this container's temporary file, creating the file if it does not exist yet.
+	 * Writes a chunk of data to this container's staging file, opening the
+	 * file if it is not open yet.
 	 *
 	 * @param chunk the chunk to add
 	 */
@@ -94,27 +142,12 @@ public class FileNodeDataContainer extends NodeDataContainer {
 			this.fileSize = chunk.getFileSize();
 		}
 
-		// check sequence number
-		if (chunk.getSequenceNumber() != this.sequenceNumber) {
-			throw new IllegalStateException("Sequence number mismatch while adding chunk. Expected " + sequenceNumber + ", received " + chunk.getSequenceNumber());
-
-		} else {
-
-			sequenceNumber++;
-		}
-
-		// TODO: check chunk checksum here?
 		try {
-			if (temporaryFile == null) {
 
-				temporaryFile = java.io.File.createTempFile("structr", "file");
-				outputStream = new FileOutputStream(temporaryFile);
-			}
-
-			if (outputStream != null) {
+			openStagingFile();
 
-				outputStream.write(chunk.getBinaryContent());
-			}
+			stagingFile.seek((long)chunk.getSequenceNumber() * CloudService.CHUNK_SIZE);
+			stagingFile.write(chunk.getBinaryContent());
 
 		} catch (Throwable t) {
 			t.printStackTrace();
@@ -122,52 +155,47 @@ public class FileNodeDataContainer extends NodeDataContainer {
 	}
 
 	/**
-	 * Flushes and closes the temporary file after receiving it from a remote structr instance. This method is called when the cloud service recevies a <code>FileNodeEndChunk</code>.
+	 * Truncates and closes the staging file after receiving it from a remote structr instance. This method is called when the cloud service recevies a <code>FileNodeEndChunk</code>.
 	 */
 	public void flushAndCloseTemporaryFile() {
 
-		// TODO: check file checksum here?!
-
-		if (outputStream != null) {
-
-			try {
-				outputStream.flush();
-				outputStream.close();
+		try {
 
-			} catch (Throwable t) {
-				t.printStackTrace();
-			}
+			// a file without changed chunks is not opened yet
+			openStagingFile();
 
-		} else {
+			stagingFile.setLength(fileSize);
+			stagingFile.close();
 
-			logger.log(Level.WARNING, "outputStream was null!");
+		} catch (Throwable t) {
+			t.printStackTrace();
 		}
 	}
 
 	/**
-	 * Renames / moves the temporary file to its final location. This method is called when the cloud service recevies a <code>FileNodeEndChunk</code>.
+	 * Renames / moves the staging file to its final location. This method is called when the cloud service recevies a <code>FileNodeEndChunk</code>.
 	 *
 	 * @param finalPath the final path of this file
 	 * @return whether the renaming/moving was successful
 	 */
 	public boolean persistTemporaryFile(String finalPath) throws IOException {
 
-		boolean ret = false;
+		final java.io.File staging = getStagingFile(sourceNodeId);
 
-		if (temporaryFile != null) {
+		if (staging.exists()) {
 
 			final java.io.File finalFile = new java.io.File(finalPath);
-			final Path source            = temporaryFile.toPath();
-			final Path dest              = finalFile.toPath();
 
 			// create parent directories
-			finalFile.mkdirs();
+			finalFile.getParentFile().mkdirs();
+
+			// move file from staging area to final destination
+			Files.move(staging.toPath(), finalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 
-			// move file from tmp to final destination
-			Files.move(source, dest, StandardCopyOption.REPLACE_EXISTING);
+			return true;
 		}
 
-		return (ret);
+		return false;
 	}
 
 	public long getFileSize() {
@@ -178,7 +206,59 @@ public class FileNodeDataContainer extends NodeDataContainer {
 		this.fileSize = fileSize;
 	}
 
+	// ----- private methods -----
+	private void openStagingFile() throws IOException {
+
+		if (stagingFile == null) {
+			stagingFile = new RandomAccessFile(getStagingFile(sourceNodeId), "rw");
+		}
+	}
+
 	// ----- public static methods -----
+	/**
+	 * Returns the staging file for the file with the given id. Staging
+	 * files are kept in a directory below the files path, on the same file
+	 * system as the final files and not accessible to other users of the
+	 * machine. The staging file of an interrupted transmission is kept
+	 * until the next transmission of the same file is finished.
+	 *
+	 * @param id the id of the file node
+	 * @return the staging file
+	 * @throws IOException if the id is not a valid uuid
+	 */
+	public static java.io.File getStagingFile(final String id) throws IOException {
+
+		// the id is sent by the remote instance
+		if (id == null || !UUID_PATTERN.matcher(id).matches()) {
+			throw new IOException("Invalid file id " + id);
+		}
+
+		final java.io.File directory = new java.io.File(StructrApp.getConfigurationValue(Services.FILES_PATH), STAGING_DIRECTORY);
+		directory.mkdirs();
+
+		return new java.io.File(directory, id);
+	}
+
+	/**
+	 * Prepares the staging file for the file with the given id, so that it
+	 * contains the chunks of the current local version.
+	 *
+	 * @param id the id of the file node
+	 * @param localFile the local version of the file, or null
+	 * @return the staging file
+	 * @throws IOException
+	 */
+	public static java.io.File prepareStagingFile(final String id, final java.io.File localFile) throws IOException {
+
+		final java.io.File staging = getStagingFile(id);
+
+		if (!staging.exists() && localFile != null && localFile.exists()) {
+			Files.copy(localFile.toPath(), staging.toPath());
+		}
+
+		return staging;
+	}
+
 	/**
 	 * Creates and returns an Iterable instance whose iterator creates <code<FileNodeChunk</code> instances of the given file.
 	 *
@@ -187,13 +267,25 @@ public class FileNodeDataContainer extends NodeDataContainer {
 	 * @return an Iterable that generates FileNodeChunks
 	 */
 	public static Iterable<FileNodeChunk> getChunks(final File fileNode, final int chunkSize) {
+		return getChunks(fileNode, chunkSize, null);
+	}
+
+	/**
+	 * Creates and returns an Iterable instance whose iterator creates <code<FileNodeChunk</code> instances of the given file.
+	 *
+	 * @param fileNode the node to read from
+	 * @param chunkSize the desired chunk size
+	 * @param wantedChunks the sequence numbers of the chunks to create, or null for all chunks
+	 * @return an Iterable that generates FileNodeChunks
+	 */
+	public static Iterable<FileNodeChunk> getChunks(final File fileNode, final int chunkSize, final Set<Integer> wantedChunks) {
 
 		return (new Iterable<FileNodeChunk>() {
 
 			@Override
 			public Iterator<FileNodeChunk> iterator() {
 
-				return (new ChunkIterator(fileNode, chunkSize));
+				return (new ChunkIterator(fileNode, chunkSize, wantedChunks));
 			}
 		});
 	}
@@ -204,63 +296,73 @@ public class FileNodeDataContainer extends NodeDataContainer {
 	 */
 	private static class ChunkIterator implements Iterator<FileNodeChunk> {
 
-		private InputStream inputStream = null;
-		private File fileNode = null;
-		private int sequenceNumber = 0;
-		private long fileSize = 0;
-		private int chunkSize = 0;
+		private Set<Integer> wantedChunks = null;
+		private InputStream inputStream   = null;
+		private File fileNode             = null;
+		private int sequenceNumber        = -1;
+		private int chunkCount            = 0;
+		private long position             = 0;
+		private long fileSize             = 0;
+		private int chunkSize             = 0;
 
-		public ChunkIterator(File fileNode, int chunkSize) {
+		public ChunkIterator(File fileNode, int chunkSize, Set<Integer> wantedChunks) {
 
-			this.fileNode = fileNode;
-			this.fileSize = fileNode.getSize();
-			this.chunkSize = chunkSize;
+			this.wantedChunks = wantedChunks;
+			this.fileNode     = fileNode;
+			this.fileSize     = fileNode.getSize();
+			this.chunkSize    = chunkSize;
+			this.chunkCount   = ChunkIndex.getChunkCount(fileSize, chunkSize);
 
-			this.inputStream = fileNode.getInputStream();
+			this.inputStream  = fileNode.getInputStream();
+
+			advance();
 		}
 
 		@Override
 		public boolean hasNext() {
-			boolean ret = false;
 
-			if (inputStream != null) {
+			final boolean ret = inputStream != null && sequenceNumber < chunkCount;
+
+			if (!ret && inputStream != null) {
+
 				try {
-					ret = inputStream.available() > 0;
-					if (!ret) {
-						inputStream.close();
-					}
+					inputStream.close();
 
 				} catch (Throwable t) {
 					logger.log(Level.WARNING, "Exception in ChunkIterator: {0}", t);
 				}
 			}
 
-			return (ret);
+			return ret;
 		}
 
 		@Override
 		public FileNodeChunk next() {
 
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
 			FileNodeChunk chunk = null;
 
-			if (inputStream != null) {
+			try {
 
-				try {
-					int available = inputStream.available();
-					int readSize = available < chunkSize ? available : chunkSize;
+				final long offset = (long)sequenceNumber * chunkSize;
+				final int readSize = Long.valueOf(Math.min(chunkSize, fileSize - offset)).intValue();
 
-					chunk = new FileNodeChunk(fileNode.getUuid(), fileSize, sequenceNumber, readSize);
-					inputStream.read(chunk.getBuffer(), 0, readSize);
+				// skip unwanted chunks
+				position += IOUtils.skip(inputStream, offset - position);
 
-					sequenceNumber++;
+				chunk = new FileNodeChunk(fileNode.getUuid(), fileSize, sequenceNumber, readSize);
+				position += IOUtils.read(inputStream, chunk.getBuffer(), 0, readSize);
 
-				} catch (Throwable t) {
-					logger.log(Level.WARNING, "Exception in ChunkIterator: {0}", t);
-				}
+			} catch (Throwable t) {
+				logger.log(Level.WARNING, "Exception in ChunkIterator: {0}", t);
 			}
 
-			return (chunk);
+			advance();
 
+			return (chunk);
 		}
 
 		@Override
@@ -268,5 +370,13 @@ public class FileNodeDataContainer extends NodeDataContainer {
 			throw new UnsupportedOperationException("Not supported.");
 		}
 
+		private void advance() {
+
+			do {
+
+				sequenceNumber++;
+
+			} while (wantedChunks != null && sequenceNumber < chunkCount && !wantedChunks.contains(sequenceNumber));
+		}
 	}
 }
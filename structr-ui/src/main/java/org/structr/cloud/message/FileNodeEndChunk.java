@@ -18,9 +18,12 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.error.FrameworkException;
 
 /**
@@ -53,6 +56,24 @@ public class FileNodeEndChunk extends DataContainer {
 		return (containerId);
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeString(outputStream, containerId);
+		outputStream.writeLong(fileSize);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		containerId = Protocol.readString(inputStream);
+		fileSize    = inputStream.readLong();
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 
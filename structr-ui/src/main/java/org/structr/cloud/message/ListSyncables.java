@@ -18,13 +18,17 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.Syncable;
 import org.structr.common.error.FrameworkException;
 import org.structr.schema.SchemaHelper;
@@ -38,10 +42,46 @@ public class ListSyncables extends Message<List<SyncableInfo>> {
 	private List<SyncableInfo> syncables = null;
 	private String type = null;
 
+	public ListSyncables() {}
+
 	public ListSyncables(final String type) {
 		this.type = type;
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeString(outputStream, type);
+		outputStream.writeInt(syncables != null ? syncables.size() : -1);
+
+		if (syncables != null) {
+
+			for (final SyncableInfo info : syncables) {
+				info.serialize(outputStream);
+			}
+		}
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		type = Protocol.readString(inputStream);
+
+		final int size = inputStream.readInt();
+		if (size >= 0) {
+
+			syncables = new LinkedList<>();
+
+			for (int i=0; i<size; i++) {
+				syncables.add(SyncableInfo.deserialize(inputStream));
+			}
+		}
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 
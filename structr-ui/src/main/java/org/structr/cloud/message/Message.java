@@ -18,18 +18,24 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.Serializable;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.NodeServiceCommand;
 
 /**
+ * Base class of all messages that are exchanged between structr instances.
+ * Messages are encoded by the {@link Protocol}, each message type needs a
+ * public no-argument constructor and must write and read its fields in
+ * {@link #serialize} and {@link #deserialize}.
  *
  * @author Christian Morgner
  */
-public abstract class Message<T> implements Serializable {
+public abstract class Message<T> {
 
 	private String id = NodeServiceCommand.getNextUuid();
 
@@ -39,6 +45,37 @@ public abstract class Message<T> implements Serializable {
 
 	public abstract T getPayload();
 
+	/**
+	 * Called by the receiver thread after this message was read, before
+	 * the next frame is read from the connection.
+	 *
+	 * @param connection
+	 */
+	public void afterReceive(final CloudConnection connection) {
+	}
+
+	/**
+	 * Writes the fields of this message. Subclasses with additional fields
+	 * must call this method first.
+	 *
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+		Protocol.writeString(outputStream, id);
+	}
+
+	/**
+	 * Reads the fields of this message in the order they were written by
+	 * {@link #serialize}.
+	 *
+	 * @param inputStream
+	 * @throws IOException
+	 */
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+		id = Protocol.readString(inputStream);
+	}
+
 	public String getId() {
 		return id;
 	}
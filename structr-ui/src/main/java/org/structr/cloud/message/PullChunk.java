@@ -21,7 +21,6 @@ package org.structr.cloud.message;
 import java.io.IOException;
 import java.util.Iterator;
 import org.structr.cloud.CloudConnection;
-import org.structr.cloud.CloudService;
 import org.structr.cloud.ExportContext;
 import org.structr.common.error.FrameworkException;
 
@@ -31,8 +30,12 @@ import org.structr.common.error.FrameworkException;
  */
 public class PullChunk extends FileNodeChunk {
 
+	public PullChunk() {}
+
 	public PullChunk(final String containerId, final int sequenceNumber, final long fileSize) {
-		super(containerId, fileSize, sequenceNumber, CloudService.CHUNK_SIZE);
+
+		// a pull request carries no content, the chunk is sent back in a FileNodeChunk
+		super(containerId, fileSize, sequenceNumber, 0);
 	}
 
 	@Override
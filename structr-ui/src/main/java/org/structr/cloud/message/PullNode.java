@@ -18,11 +18,15 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.cloud.transmission.PushTransmission;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.NodeInterface;
@@ -36,15 +40,50 @@ import org.structr.dynamic.File;
  */
 public class PullNode extends NodeDataContainer {
 
-	protected String key    = null;
-	protected int nodeIndex = 0;
+	protected Set<Integer> chunks = null;
+	protected String key          = null;
+	protected int nodeIndex       = 0;
 
 	public PullNode() {}
 
 	public PullNode(final String key, final int nodeIndex) {
+		this(key, nodeIndex, null);
+	}
+
+	/**
+	 * Creates a pull request for the node with the given index. If the
+	 * node is a file, only the chunks with the given sequence numbers
+	 * are requested.
+	 *
+	 * @param key
+	 * @param nodeIndex
+	 * @param chunks the wanted chunks, or null for all chunks
+	 */
+	public PullNode(final String key, final int nodeIndex, final Set<Integer> chunks) {
 
 		this.key       = key;
 		this.nodeIndex = nodeIndex;
+		this.chunks    = chunks;
+	}
+
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeString(outputStream, key);
+		outputStream.writeInt(nodeIndex);
+		Protocol.writeIntegers(outputStream, chunks);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		key       = Protocol.readString(inputStream);
+		nodeIndex = inputStream.readInt();
+		chunks    = Protocol.readIntegers(inputStream);
 	}
 
 	@Override
@@ -58,7 +97,7 @@ public class PullNode extends NodeDataContainer {
 
 			if (node instanceof File) {
 
-				PushTransmission.sendFile(serverConnection, (File)node, CloudService.CHUNK_SIZE);
+				PushTransmission.sendFile(serverConnection, (File)node, CloudService.CHUNK_SIZE, chunks);
 
 			} else {
 
@@ -18,12 +18,20 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.ExportContext;
 import org.structr.cloud.ExportSet;
+import org.structr.cloud.Protocol;
+import org.structr.common.SyncState;
 import org.structr.common.Syncable;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
@@ -37,6 +45,7 @@ import org.structr.core.app.App;
  */
 public class PullNodeRequestContainer extends Message {
 
+	private SyncState syncState           = null;
 	private boolean recursive             = false;
 	private String rootNodeId             = null;
 	private String key                    = null;
@@ -67,6 +76,32 @@ public class PullNodeRequestContainer extends Message {
 		this.recursive = recursive;
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		outputStream.writeBoolean(recursive);
+		Protocol.writeString(outputStream, rootNodeId);
+		Protocol.writeString(outputStream, key);
+		outputStream.writeInt(numNodes);
+		outputStream.writeInt(numRels);
+		Protocol.writeSyncState(outputStream, syncState);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		recursive  = inputStream.readBoolean();
+		rootNodeId = Protocol.readString(inputStream);
+		key        = Protocol.readString(inputStream);
+		numNodes   = inputStream.readInt();
+		numRels    = inputStream.readInt();
+		syncState  = Protocol.readSyncState(inputStream);
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 
@@ -88,6 +123,7 @@ public class PullNodeRequestContainer extends Message {
 				numNodes  = exportSet.getNodes().size();
 				numRels   = exportSet.getRelationships().size();
 				key       = UUID.randomUUID().toString();
+				syncState = exportSet.getSyncState();
 
 				serverConnection.storeValue(key + "Nodes", new ArrayList<>(exportSet.getNodes()));
 				serverConnection.storeValue(key + "Rels",  new ArrayList<>(exportSet.getRelationships()));
@@ -106,14 +142,34 @@ public class PullNodeRequestContainer extends Message {
 	@Override
 	public void onResponse(CloudConnection clientConnection, ExportContext context) throws IOException, FrameworkException {
 
-		clientConnection.increaseTotal(numNodes + numRels);
+		// only pull the objects that are missing or differ locally
+		final Map<String, Set<Integer>> changes = clientConnection.getChanges(syncState);
+		final List<Message> requests            = new LinkedList<>();
+		int index                               = 0;
 
-		for (int i=0; i<numNodes; i++) {
-			clientConnection.send(new PullNode(key, i));
+		for (final SyncState.Entry entry : syncState.getEntries()) {
+
+			final String id = entry.getId();
+
+			if (changes.containsKey(id)) {
+
+				if (index < numNodes) {
+
+					requests.add(new PullNode(key, index, changes.get(id)));
+
+				} else {
+
+					requests.add(new PullRelationship(key, index - numNodes));
+				}
+			}
+
+			index++;
 		}
 
-		for (int i=0; i<numRels; i++) {
-			clientConnection.send(new PullRelationship(key, i));
+		clientConnection.increaseTotal(requests.size());
+
+		for (final Message request : requests) {
+			clientConnection.send(request);
 		}
 
 		clientConnection.send(new Finish());
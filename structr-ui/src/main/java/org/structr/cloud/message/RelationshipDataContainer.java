@@ -18,9 +18,12 @@
  */
 package org.structr.cloud.message;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.graph.RelationshipInterface;
@@ -125,6 +128,28 @@ public class RelationshipDataContainer extends DataContainer implements Comparab
 		return hashCode;
 	}
 
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeString(outputStream, sourceStartNodeId);
+		Protocol.writeString(outputStream, sourceEndNodeId);
+		Protocol.writeString(outputStream, relationshipId);
+		Protocol.writeType(outputStream, relType);
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		sourceStartNodeId = Protocol.readString(inputStream);
+		sourceEndNodeId   = Protocol.readString(inputStream);
+		relationshipId    = Protocol.readString(inputStream);
+		relType           = Protocol.readType(inputStream);
+	}
+
 	@Override
 	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
 
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud.message;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.structr.cloud.CloudConnection;
+import org.structr.cloud.ExportContext;
+import org.structr.cloud.Protocol;
+import org.structr.common.SyncState;
+import org.structr.common.error.FrameworkException;
+
+/**
+ * Sends the sync state of the objects that are about to be pushed to the
+ * remote end, which answers with the ids of the objects it does not have
+ * in the same version, and the sequence numbers of the file chunks it
+ * needs.
+ */
+public class SyncManifest extends Message {
+
+	private Map<String, Set<Integer>> changes = null;
+	private SyncState syncState               = null;
+
+	public SyncManifest() {}
+
+	public SyncManifest(final SyncState syncState) {
+		this.syncState = syncState;
+	}
+
+	public SyncState getSyncState() {
+		return syncState;
+	}
+
+	/**
+	 * @return the changed objects, mapped to the wanted chunks of changed files
+	 */
+	public Map<String, Set<Integer>> getChanges() {
+		return changes;
+	}
+
+	@Override
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		super.serialize(outputStream);
+
+		Protocol.writeSyncState(outputStream, syncState);
+		outputStream.writeInt(changes != null ? changes.size() : -1);
+
+		if (changes != null) {
+
+			for (final Map.Entry<String, Set<Integer>> entry : changes.entrySet()) {
+
+				Protocol.writeString(outputStream, entry.getKey());
+				Protocol.writeIntegers(outputStream, entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public void deserialize(final DataInputStream inputStream) throws IOException {
+
+		super.deserialize(inputStream);
+
+		syncState = Protocol.readSyncState(inputStream);
+
+		final int size = inputStream.readInt();
+		if (size >= 0) {
+
+			changes = new LinkedHashMap<>();
+
+			for (int i=0; i<size; i++) {
+
+				final String id = Protocol.readString(inputStream);
+				changes.put(id, Protocol.readIntegers(inputStream));
+			}
+		}
+	}
+
+	@Override
+	public void onRequest(CloudConnection serverConnection, ExportContext context) throws IOException, FrameworkException {
+
+		this.changes   = serverConnection.getChanges(syncState);
+		this.syncState = null;
+
+		// send changes back
+		serverConnection.send(this);
+	}
+
+	@Override
+	public void onResponse(CloudConnection clientConnection, ExportContext context) throws IOException, FrameworkException {
+
+		clientConnection.storeValue(getId(), changes);
+		context.progress();
+	}
+
+	@Override
+	public void afterSend(CloudConnection connection) {
+	}
+
+	@Override
+	public Object getPayload() {
+		return null;
+	}
+}
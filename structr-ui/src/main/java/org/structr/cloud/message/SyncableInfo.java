@@ -18,8 +18,11 @@
  */
 package org.structr.cloud.message;
 
-import java.io.Serializable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Date;
+import org.structr.cloud.Protocol;
 import org.structr.common.Syncable;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
@@ -29,7 +32,7 @@ import org.structr.dynamic.File;
  *
  * @author Christian Morgner
  */
-public class SyncableInfo implements Serializable {
+public class SyncableInfo {
 
 	private boolean node      = false;
 	private String id         = null;
@@ -38,6 +41,8 @@ public class SyncableInfo implements Serializable {
 	private Long size         = null;
 	private Date lastModified = null;
 
+	private SyncableInfo() {}
+
 	public SyncableInfo(final Syncable syncable) {
 
 		if (syncable != null) {
@@ -93,4 +98,28 @@ public class SyncableInfo implements Serializable {
 	public Date getLastModified() {
 		return lastModified;
 	}
+
+	public void serialize(final DataOutputStream outputStream) throws IOException {
+
+		outputStream.writeBoolean(node);
+		Protocol.writeString(outputStream, id);
+		Protocol.writeString(outputStream, name);
+		Protocol.writeString(outputStream, type);
+		Protocol.writeValue(outputStream, size);
+		Protocol.writeDate(outputStream, lastModified);
+	}
+
+	public static SyncableInfo deserialize(final DataInputStream inputStream) throws IOException {
+
+		final SyncableInfo info = new SyncableInfo();
+
+		info.node         = inputStream.readBoolean();
+		info.id           = Protocol.readString(inputStream);
+		info.name         = Protocol.readString(inputStream);
+		info.type         = Protocol.readString(inputStream);
+		info.size         = (Long)Protocol.readValue(inputStream);
+		info.lastModified = Protocol.readDate(inputStream);
+
+		return info;
+	}
 }
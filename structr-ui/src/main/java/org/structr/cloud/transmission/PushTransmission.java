@@ -19,6 +19,7 @@
 package org.structr.cloud.transmission;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 import org.structr.cloud.CloudConnection;
 import org.structr.cloud.CloudService;
@@ -29,6 +30,8 @@ import org.structr.cloud.message.FileNodeEndChunk;
 import org.structr.cloud.message.NodeDataContainer;
 import org.structr.cloud.message.PushNodeRequestContainer;
 import org.structr.cloud.message.RelationshipDataContainer;
+import org.structr.cloud.message.SyncManifest;
+import org.structr.common.ChunkIndex;
 import org.structr.common.Syncable;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.NodeInterface;
@@ -66,7 +69,10 @@ public class PushTransmission extends AbstractTransmission<Boolean> {
 
 	@Override
 	public int getTotalSize() {
-		return exportSet.getTotalSize() + 1;
+
+		// request and manifest, the total is increased when
+		// the remote end has answered with the changed objects
+		return 2;
 	}
 
 	@Override
@@ -75,27 +81,46 @@ public class PushTransmission extends AbstractTransmission<Boolean> {
 		// send type of request
 		client.send(new PushNodeRequestContainer());
 
+		// exchange manifest
+		final SyncManifest manifest = new SyncManifest(exportSet.getSyncState());
+		client.send(manifest);
+
+		client.waitForTransmission();
+
+		final Map<String, Set<Integer>> changes = (Map<String, Set<Integer>>)client.getValue(manifest.getId());
+		if (changes == null) {
+
+			throw new FrameworkException(504, "No manifest received from remote end.");
+		}
+
 		// reset sequence number
 		sequenceNumber = 0;
 
-		// send child nodes when recursive sending is requested
+		// send changed nodes
 		final Set<NodeInterface> nodes = exportSet.getNodes();
 		for (final NodeInterface n : nodes) {
 
-			if (n instanceof File) {
-				sendFile(client, (File)n, CloudService.CHUNK_SIZE);
+			if (changes.containsKey(n.getUuid())) {
+
+				if (n instanceof File) {
+
+					client.increaseTotal(sendFile(client, (File)n, CloudService.CHUNK_SIZE, changes.get(n.getUuid())));
 
-			} else {
+				} else {
 
-				client.send(new NodeDataContainer(n, sequenceNumber++));
+					client.increaseTotal(1);
+					client.send(new NodeDataContainer(n, sequenceNumber++));
+				}
 			}
 		}
 
-		// send relationships
+		// send changed relationships
 		Set<RelationshipInterface> rels = exportSet.getRelationships();
 		for (RelationshipInterface r : rels) {
 
-			if (nodes.contains(r.getSourceNode()) && nodes.contains(r.getTargetNode())) {
+			if (changes.containsKey(r.getUuid()) && nodes.contains(r.getSourceNode()) && nodes.contains(r.getTargetNode())) {
+
+				client.increaseTotal(1);
 				client.send(new RelationshipDataContainer(r, sequenceNumber++));
 			}
 		}
@@ -108,27 +133,46 @@ public class PushTransmission extends AbstractTransmission<Boolean> {
 
 	/**
 	 * Splits the given file and sends it over the client connection. This method first creates a <code>FileNodeDataContainer</code> and sends it to the remote end. The file from disk is then
-	 * split into multiple instances of <code>FileChunkContainer</code> while being sent. To finalize the transfer, a <code>FileNodeEndChunk</code> is sent to notify the receiving end of the
+	 * split into multiple instances of <code>FileChunkContainer</code> while being sent, skipping the chunks the remote end already has. To finalize the transfer, a <code>FileNodeEndChunk</code> is sent to notify the receiving end of the
 	 * successful transfer.
 	 *
 	 * @param client the client to send over
 	 * @param file the file to split and send
 	 * @param chunkSize the chunk size for a single chunk
+	 * @param wantedChunks the sequence numbers of the chunks to send, or null for all chunks
+	 * @return the number of messages sent
 	 * @throws org.structr.common.error.FrameworkException
 	 * @throws java.io.IOException
 	 */
-	public static void sendFile(final CloudConnection client, final File file, final int chunkSize) throws FrameworkException, IOException {
+	public static int sendFile(final CloudConnection client, final File file, final int chunkSize, final Set<Integer> wantedChunks) throws FrameworkException, IOException {
+
+		final int chunkCount = ChunkIndex.getChunkCount(file.getSize(), chunkSize);
+		int wantedCount      = chunkCount;
+
+		if (wantedChunks != null) {
+
+			wantedCount = 0;
+
+			for (final Integer index : wantedChunks) {
+
+				if (index < chunkCount) {
+					wantedCount++;
+				}
+			}
+		}
 
 		// send file container first
-		FileNodeDataContainer container = new FileNodeDataContainer(file);
+		FileNodeDataContainer container = new FileNodeDataContainer(file, wantedCount);
 		client.send(container);
 
 		// send chunks
-		for (FileNodeChunk chunk : FileNodeDataContainer.getChunks(file, chunkSize)) {
+		for (FileNodeChunk chunk : FileNodeDataContainer.getChunks(file, chunkSize, wantedChunks)) {
 			client.send(chunk);
 		}
 
 		// mark end of file with special chunk
 		client.send(new FileNodeEndChunk(container.getSourceNodeId(), container.getFileSize()));
+
+		return wantedCount + 2;
 	}
 }
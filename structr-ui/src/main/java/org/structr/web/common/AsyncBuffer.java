@@ -18,7 +18,7 @@
  */
 package org.structr.web.common;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 import java.util.Queue;
 
 /**
@@ -28,10 +28,15 @@ import java.util.Queue;
  */
 public class AsyncBuffer {
 
-	private final Queue<String> queue = new LinkedList<>();
+	private final Queue<String> queue = new ArrayDeque<>();
 
 	public AsyncBuffer append(final String s) {
 
+		// null values have no output
+		if (s == null) {
+			return this;
+		}
+
 		try {
 			synchronized(queue) {
 				queue.add(s);
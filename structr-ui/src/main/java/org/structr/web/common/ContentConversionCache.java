@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Adapter;
+import org.structr.core.app.StructrApp;
+
+/**
+ * Cache for converted markup (markdown, textile, asciidoc etc.), keyed by
+ * content type and a hash of the content.
+ *
+ * The cache is bounded by the total number of characters of all cached
+ * conversion results ("content.cache.size", default 16M characters), the
+ * least recently used entries are evicted first. Concurrent requests for
+ * the same content wait for a single conversion.
+ */
+public class ContentConversionCache {
+
+	private static final Logger logger                        = Logger.getLogger(ContentConversionCache.class.getName());
+	private static final String CACHE_SIZE_KEY                = "content.cache.size";
+	private static final long DEFAULT_CACHE_SIZE              = 16L * 1024L * 1024L;
+
+	private static final Map<String, Conversion> cache        = new LinkedHashMap<>(16, 0.75f, true);
+	private static final ExecutorService executor             = Executors.newSingleThreadExecutor(new ConversionThreadFactory());
+	private static long maxSize                               = -1L;
+	private static long size                                  = 0L;
+
+	/**
+	 * Returns the converted content, converting it with the given
+	 * converter if it is not already cached.
+	 *
+	 * @param contentType
+	 * @param content
+	 * @param converter
+	 * @return the converted content
+	 * @throws FrameworkException
+	 */
+	public static String convert(final String contentType, final String content, final Adapter<String, String> converter) throws FrameworkException {
+
+		if (content == null) {
+			return converter.adapt(content);
+		}
+
+		final Conversion conversion = getConversion(contentType, content, converter);
+
+		// run conversion in this thread if nobody else did
+		conversion.run();
+
+		try {
+
+			return conversion.get();
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+
+		} catch (ExecutionException eex) {
+
+			final Throwable cause = eex.getCause();
+			if (cause instanceof FrameworkException) {
+
+				throw (FrameworkException)cause;
+			}
+
+			logger.log(Level.WARNING, "Unable to convert content", cause);
+		}
+
+		return converter.adapt(content);
+	}
+
+	/**
+	 * Converts the given content asynchronously, so that subsequent
+	 * calls to {@link #convert} find the result in the cache.
+	 *
+	 * @param contentType
+	 * @param content
+	 * @param converter
+	 */
+	public static void prewarm(final String contentType, final String content, final Adapter<String, String> converter) {
+
+		if (content != null) {
+
+			final Conversion conversion = getConversion(contentType, content, converter);
+			if (!conversion.isDone()) {
+
+				executor.submit(conversion);
+			}
+		}
+	}
+
+	public static void clear() {
+
+		synchronized (cache) {
+
+			cache.clear();
+			size = 0L;
+		}
+	}
+
+	// ----- private methods -----
+	private static Conversion getConversion(final String contentType, final String content, final Adapter<String, String> converter) {
+
+		final String key = contentType + ":" + content.length() + ":" + DigestUtils.sha1Hex(content);
+
+		synchronized (cache) {
+
+			Conversion conversion = cache.get(key);
+			if (conversion == null) {
+
+				conversion = new Conversion(key, content, converter);
+				cache.put(key, conversion);
+			}
+
+			return conversion;
+		}
+	}
+
+	private static void conversionDone(final Conversion conversion, final int resultSize) {
+
+		synchronized (cache) {
+
+			// entry may have been evicted or the cache cleared in the meantime
+			if (cache.get(conversion.key) != conversion) {
+				return;
+			}
+
+			conversion.size  = resultSize;
+			size            += resultSize;
+
+			final long max = getMaxSize();
+
+			final Iterator<Conversion> iterator = cache.values().iterator();
+			while (size > max && iterator.hasNext()) {
+
+				final Conversion eldest = iterator.next();
+				if (eldest != conversion && eldest.isDone()) {
+
+					size -= eldest.size;
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	private static void conversionFailed(final Conversion conversion) {
+
+		synchronized (cache) {
+
+			if (cache.get(conversion.key) == conversion) {
+				cache.remove(conversion.key);
+			}
+		}
+	}
+
+	private static long getMaxSize() {
+
+		if (maxSize < 0) {
+
+			try {
+				maxSize = Long.parseLong(StructrApp.getConfigurationValue(CACHE_SIZE_KEY, Long.toString(DEFAULT_CACHE_SIZE)));
+
+			} catch (Throwable t) {
+
+				maxSize = DEFAULT_CACHE_SIZE;
+			}
+		}
+
+		return maxSize;
+	}
+
+	// ----- nested classes -----
+	private static class Conversion extends FutureTask<String> {
+
+		private String key = null;
+		private int size   = 0;
+
+		public Conversion(final String key, final String content, final Adapter<String, String> converter) {
+
+			super(new Callable<String>() {
+
+				@Override
+				public String call() throws Exception {
+					return converter.adapt(content);
+				}
+			});
+
+			this.key = key;
+		}
+
+		@Override
+		protected void set(final String result) {
+
+			super.set(result);
+			conversionDone(this, result != null ? result.length() : 0);
+		}
+
+		@Override
+		protected void setException(final Throwable t) {
+
+			super.setException(t);
+			conversionFailed(this);
+		}
+	}
+
+	private static class ConversionThreadFactory implements ThreadFactory {
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+
+			final Thread thread = new Thread(runnable, "ContentConversion");
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
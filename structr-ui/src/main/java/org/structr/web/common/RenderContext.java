@@ -18,11 +18,10 @@
  */
 package org.structr.web.common;
 
+import java.util.Arrays;
 import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
@@ -58,11 +57,20 @@ public class RenderContext extends ActionContext {
 
 	private static final Logger logger = Logger.getLogger(RenderContext.class.getName());
 
-	private final Map<String, GraphObject> dataObjects = new LinkedHashMap<>();
+	// marks data keys that are not set or were cleared in this context
+	private static final Object NO_DATA = new Object();
+
+	// flat stack of data keys of this context, lookups fall through to
+	// the context this one was copied from
+	private RenderContext dataParent = null;
+	private String[] dataKeys = null;
+	private Object[] dataValues = null;
+	private int dataSize = 0;
+
 	private final long renderStartTime = System.currentTimeMillis();
 	private Locale locale = Locale.getDefault();
 	private EditMode editMode = EditMode.NONE;
-	private AsyncBuffer buffer = new AsyncBuffer();
+	private AsyncBuffer buffer = null;
 	private int depth = 0;
 	private boolean inBody = false;
 	private boolean appLibRendered = false;
@@ -85,10 +93,13 @@ public class RenderContext extends ActionContext {
 	}
 
 	public RenderContext() {
+		this.buffer = new AsyncBuffer();
 	}
 
 	/**
-	 * Create a copy of this render context with a clean buffer.
+	 * Create a copy of this render context with a clean buffer. Data
+	 * objects of the other context are visible in the copy, but data
+	 * objects set in the copy are not visible in the other context.
 	 *
 	 * @param other The render context to copy from
 	 */
@@ -96,7 +107,7 @@ public class RenderContext extends ActionContext {
 
 		super(other);
 		
-		this.dataObjects.putAll(other.dataObjects);
+		this.dataParent = other;
 		this.editMode = other.editMode;
 		this.inBody = other.inBody;
 		this.appLibRendered = other.appLibRendered;
@@ -118,6 +129,7 @@ public class RenderContext extends ActionContext {
 
 		this.request = request;
 		this.response = response;
+		this.buffer = new AsyncBuffer();
 
 		this.editMode = editMode;
 		this.locale = locale;
@@ -273,6 +285,12 @@ public class RenderContext extends ActionContext {
 	}
 
 	public AsyncBuffer getBuffer() {
+
+		// copies get their buffer on first use only
+		if (buffer == null) {
+			buffer = new AsyncBuffer();
+		}
+
 		return buffer;
 	}
 
@@ -293,22 +311,39 @@ public class RenderContext extends ActionContext {
 	}
 
 	public GraphObject getDataNode(String key) {
-		return dataObjects.get(key);
+
+		final Object value = lookupData(key);
+		if (value != NO_DATA) {
+
+			return (GraphObject)value;
+		}
+
+		return null;
 	}
 
 	public void putDataObject(String key, GraphObject currentDataObject) {
-		dataObjects.put(key, currentDataObject);
+		setData(key, currentDataObject);
 		setDataObject(currentDataObject);
 
 	}
 
 	public void clearDataObject(String key) {
-		dataObjects.remove(key);
+
+		if (dataParent == null) {
+
+			removeData(key);
+
+		} else {
+
+			// hide the data object of the parent context
+			setData(key, NO_DATA);
+		}
+
 		setDataObject(null);
 	}
 
 	public boolean hasDataForKey(String key) {
-		return dataObjects.containsKey(key);
+		return lookupData(key) != NO_DATA;
 	}
 
 	public void setPage(final Page page) {
@@ -335,6 +370,74 @@ public class RenderContext extends ActionContext {
 		return anyChildNodeCreatesNewLine;
 	}
 
+	// ----- private methods -----
+	private Object lookupData(final String key) {
+
+		// repeaters set the same keys again and again, so the
+		// stack is flat and entries are replaced in place
+		for (int i=dataSize-1; i>=0; i--) {
+
+			if (dataKeys[i].equals(key)) {
+				return dataValues[i];
+			}
+		}
+
+		if (dataParent != null) {
+			return dataParent.lookupData(key);
+		}
+
+		return NO_DATA;
+	}
+
+	private void setData(final String key, final Object value) {
+
+		for (int i=dataSize-1; i>=0; i--) {
+
+			if (dataKeys[i].equals(key)) {
+
+				dataValues[i] = value;
+				return;
+			}
+		}
+
+		if (dataKeys == null) {
+
+			dataKeys   = new String[4];
+			dataValues = new Object[4];
+
+		} else if (dataSize == dataKeys.length) {
+
+			dataKeys   = Arrays.copyOf(dataKeys, dataSize * 2);
+			dataValues = Arrays.copyOf(dataValues, dataSize * 2);
+		}
+
+		dataKeys[dataSize]   = key;
+		dataValues[dataSize] = value;
+		dataSize++;
+	}
+
+	private void removeData(final String key) {
+
+		for (int i=dataSize-1; i>=0; i--) {
+
+			if (dataKeys[i].equals(key)) {
+
+				final int tail = dataSize - i - 1;
+				if (tail > 0) {
+
+					System.arraycopy(dataKeys, i + 1, dataKeys, i, tail);
+					System.arraycopy(dataValues, i + 1, dataValues, i, tail);
+				}
+
+				dataSize--;
+				dataKeys[dataSize]   = null;
+				dataValues[dataSize] = null;
+
+				return;
+			}
+		}
+	}
+
 	// ----- interface ActionContext -----
 	@Override
 	public Object getReferencedProperty(final SecurityContext securityContext, final GraphObject entity, final String refKey) throws FrameworkException {
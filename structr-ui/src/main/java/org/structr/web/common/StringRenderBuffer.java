@@ -18,16 +18,71 @@
  */
 package org.structr.web.common;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * This class serves as a wrapper around the {@link AsyncBuffer} to be able to
  * get the output of the render method as a String.
  *
+ * Buffers can be taken from a per-thread pool with {@link #acquire()} and
+ * handed back with {@link #release(StringRenderBuffer)}, so that repeated
+ * and nested renderings reuse the memory of their buffers.
+ *
  * @author Christian Morgner
  */
 public class StringRenderBuffer extends AsyncBuffer {
 
+	private static final ThreadLocal<Deque<StringRenderBuffer>> pool = new ThreadLocal<>();
+	private static final int MAX_POOLED_BUFFERS                      = 8;
+	private static final int MAX_POOLED_CAPACITY                     = 1024 * 1024;
+
 	private StringBuilder buf = new StringBuilder();
 
+	/**
+	 * Returns an empty buffer from the pool of the current thread, or a
+	 * new buffer if the pool is empty.
+	 *
+	 * @return an empty buffer
+	 */
+	public static StringRenderBuffer acquire() {
+
+		final Deque<StringRenderBuffer> buffers = pool.get();
+		if (buffers != null && !buffers.isEmpty()) {
+
+			return buffers.pop();
+		}
+
+		return new StringRenderBuffer();
+	}
+
+	/**
+	 * Hands the given buffer back to the pool of the current thread. The
+	 * buffer must not be used after this call. Very large buffers are
+	 * not kept.
+	 *
+	 * @param buffer
+	 */
+	public static void release(final StringRenderBuffer buffer) {
+
+		if (buffer.buf.capacity() > MAX_POOLED_CAPACITY) {
+			return;
+		}
+
+		Deque<StringRenderBuffer> buffers = pool.get();
+		if (buffers == null) {
+
+			buffers = new ArrayDeque<>();
+			pool.set(buffers);
+		}
+
+		if (buffers.size() < MAX_POOLED_BUFFERS) {
+
+			buffer.buf.setLength(0);
+			buffers.push(buffer);
+		}
+	}
+
 	@Override
 	public AsyncBuffer append(final String s) {
 		buf.append(s);
@@ -45,6 +45,7 @@ import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 import org.structr.web.common.AsyncBuffer;
+import org.structr.web.common.ContentConversionCache;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import static org.structr.web.entity.dom.DOMNode.hideOnDetail;
@@ -233,6 +234,16 @@ public class Content extends DOMNode implements Text {
 
 	}
 
+	@Override
+	public void afterCreation(SecurityContext securityContext) {
+		prewarmConversionCache();
+	}
+
+	@Override
+	public void afterModification(SecurityContext securityContext) {
+		prewarmConversionCache();
+	}
+
 	@Override
 	public boolean contentEquals(DOMNode otherNode) {
 
@@ -377,8 +388,8 @@ public class Content extends DOMNode implements Text {
 
 					try {
 
-						// apply adapter
-						_content = converter.adapt(_content);
+						// apply adapter, conversion results are cached
+						_content = ContentConversionCache.convert(_contentType, _content, converter);
 					} catch (FrameworkException fex) {
 
 						logger.log(Level.WARNING, "Unable to convert content: {0}", fex.getMessage());
@@ -737,6 +748,24 @@ public class Content extends DOMNode implements Text {
 		return newPage.createTextNode(getData());
 	}
 
+	// ----- private methods -----
+	private void prewarmConversionCache() {
+
+		final String _contentType = getProperty(contentType);
+		if (_contentType != null) {
+
+			final Adapter<String, String> converter = contentConverters.get(_contentType);
+			final String _content                   = getProperty(content);
+
+			// content with template expressions is converted after variable replacement
+			if (converter != null && _content != null && !_content.contains("${")) {
+
+				// convert asynchronously so the next rendering finds the result in the cache
+				ContentConversionCache.prewarm(_contentType, _content, converter);
+			}
+		}
+	}
+
 	//~--- inner classes --------------------------------------------------
 
 	private static class ThreadLocalConfluenceProcessor extends ThreadLocal<MarkupParser> {
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -80,6 +81,7 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 
 	private static final Map<String, HtmlProperty> htmlProperties = new LRUMap(1000);	// use LURMap here to avoid infinite growing
 	private static final String lowercaseBodyName = Body.class.getSimpleName().toLowerCase();
+	private static final Map<String, String> attributePrefixes = new ConcurrentHashMap<>();	// " name=\"" for each HTML attribute key
 
  	public static final Property<String> tag              = new StringProperty("tag").indexed();
  	public static final Property<String> path             = new StringProperty("path").indexed();
@@ -308,9 +310,7 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 
 			if (value != null) {
 
-				String key = attribute.jsonName().substring(PropertyView.Html.length());
-
-				out.append(" ").append(key).append("=\"").append(value).append("\"");
+				out.append(getAttributePrefix(attribute)).append(value).append("\"");
 
 			}
 
@@ -403,7 +403,7 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 					//Sync syncRel = getIncomingRelationship(Sync.class);
 					DOMElement _syncedNode = (DOMElement) getProperty(sharedComponent);
 					if (_syncedNode != null) {
-						rels.addAll(_syncedNode.getChildRelationships());
+						rels = _syncedNode.getChildRelationships();
 					}
 				}
 
@@ -547,6 +547,19 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 	}
 
 	// ----- private methods -----
+	private String getAttributePrefix(final PropertyKey attribute) {
+
+		final String jsonName = attribute.jsonName();
+		String prefix         = attributePrefixes.get(jsonName);
+
+		if (prefix == null) {
+
+			prefix = " " + jsonName.substring(HtmlPrefixLength) + "=\"";
+			attributePrefixes.put(jsonName, prefix);
+		}
+
+		return prefix;
+	}
 
 	// ----- interface org.w3c.dom.Element -----
 	@Override
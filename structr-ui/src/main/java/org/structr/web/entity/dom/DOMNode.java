@@ -79,6 +79,7 @@ import org.structr.schema.action.Function;
 import org.structr.web.common.GraphDataSource;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.common.microformat.MicroformatParser;
 import org.structr.web.datasource.CypherGraphDataSource;
 import org.structr.web.datasource.FunctionDataSource;
@@ -128,6 +129,18 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 	private static final List<GraphDataSource<List<GraphObject>>> listSources = new LinkedList<>();
 
+	// line breaks with indentation for the most common depths
+	private static final String[] INDENTATION = new String[32];
+
+	static {
+
+		INDENTATION[0] = "\n";
+
+		for (int i=1; i<INDENTATION.length; i++) {
+			INDENTATION[i] = INDENTATION[i-1] + "  ";
+		}
+	}
+
 	static {
 
 		// register data sources
@@ -183,25 +196,35 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 				if (sources != null && sources.length == 1) {
 
-					RenderContext innerCtx = new RenderContext((RenderContext) ctx);
+					final RenderContext innerCtx    = new RenderContext((RenderContext) ctx);
+					final StringRenderBuffer buffer = StringRenderBuffer.acquire();
+
+					innerCtx.setBuffer(buffer);
+
+					try {
+
+						if (sources[0] instanceof DOMNode) {
 
-					if (sources[0] instanceof DOMNode) {
+							((DOMNode) sources[0]).render(entity.getSecurityContext(), innerCtx, 0);
 
-						((DOMNode) sources[0]).render(entity.getSecurityContext(), innerCtx, 0);
+						} else if (sources[0] instanceof Collection) {
 
-					} else if (sources[0] instanceof Collection) {
+							for (final Object obj : (Collection) sources[0]) {
 
-						for (final Object obj : (Collection) sources[0]) {
+								if (obj instanceof DOMNode) {
+									((DOMNode) obj).render(entity.getSecurityContext(), innerCtx, 0);
+								}
 
-							if (obj instanceof DOMNode) {
-								((DOMNode) obj).render(entity.getSecurityContext(), innerCtx, 0);
 							}
 
 						}
 
-					}
+						return buffer.getBuffer().toString();
 
-					return StringUtils.join(innerCtx.getBuffer().getQueue(), "");
+					} finally {
+
+						StringRenderBuffer.release(buffer);
+					}
 				}
 
 				return usage();
@@ -1093,6 +1116,10 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 	protected String indent(final int depth) {
 
+		if (depth < INDENTATION.length) {
+			return INDENTATION[depth];
+		}
+
 		StringBuilder indent = new StringBuilder("\n");
 
 		for (int d = 0; d < depth; d++) {
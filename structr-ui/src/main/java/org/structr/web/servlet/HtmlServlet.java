@@ -65,6 +65,7 @@ import org.structr.core.auth.Authenticator;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertySnapshot;
 import org.structr.dynamic.File;
 import org.structr.rest.ResourceProvider;
 import org.structr.rest.service.HttpService;
@@ -347,7 +348,15 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 										//final long start = System.currentTimeMillis();
 
 										// render
-										rootNode.render(securityContext, renderContext, 0);
+										PropertySnapshot.open();
+
+										try {
+											rootNode.render(securityContext, renderContext, 0);
+
+										} finally {
+											PropertySnapshot.close();
+										}
+
 										finished.set(true);
 
 										//final long end = System.currentTimeMillis();
@@ -419,13 +428,22 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 						} else {
 
-							final StringRenderBuffer buffer = new StringRenderBuffer();
+							final StringRenderBuffer buffer = StringRenderBuffer.acquire();
 							renderContext.setBuffer(buffer);
 
 							// render
-							rootElement.render(securityContext, renderContext, 0);
+							PropertySnapshot.open();
+
+							try {
+								rootElement.render(securityContext, renderContext, 0);
+
+								response.getOutputStream().write(buffer.getBuffer().toString().getBytes("utf-8"));
+
+							} finally {
+								PropertySnapshot.close();
+								StringRenderBuffer.release(buffer);
+							}
 
-							response.getOutputStream().write(buffer.getBuffer().toString().getBytes("utf-8"));
 							response.getOutputStream().flush();
 							response.getOutputStream().close();
 						}
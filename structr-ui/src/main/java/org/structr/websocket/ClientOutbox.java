@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+/**
+ * Bounded, non-blocking outgoing message queue for a single websocket
+ * client. Messages are written asynchronously one after another, so the
+ * caller never waits for the network. A client that does not keep up
+ * with its messages is disconnected when the queue is full.
+ */
+public class ClientOutbox implements WriteCallback {
+
+	private static final Logger logger = Logger.getLogger(ClientOutbox.class.getName());
+
+	private final AtomicBoolean writing       = new AtomicBoolean(false);
+	private final AtomicBoolean closed        = new AtomicBoolean(false);
+	private BlockingQueue<String> queue       = null;
+	private Session session                   = null;
+
+	public ClientOutbox(final Session session, final int capacity) {
+
+		this.queue   = new ArrayBlockingQueue<>(Math.max(1, capacity));
+		this.session = session;
+	}
+
+	/**
+	 * Queues the given message for sending.
+	 *
+	 * @param message
+	 * @return false if the message could not be queued and the client was evicted
+	 */
+	public boolean offer(final String message) {
+
+		if (closed.get()) {
+			return false;
+		}
+
+		if (!queue.offer(message)) {
+
+			logger.log(Level.WARNING, "Outgoing message queue full, disconnecting slow websocket client {0}", session.getRemoteAddress());
+
+			close(StatusCode.POLICY_VIOLATION, "Slow consumer");
+
+			return false;
+		}
+
+		flush();
+
+		return true;
+	}
+
+	public int size() {
+		return queue.size();
+	}
+
+	public boolean isClosed() {
+		return closed.get();
+	}
+
+	// ----- interface WriteCallback -----
+	@Override
+	public void writeSuccess() {
+
+		writing.set(false);
+		flush();
+	}
+
+	@Override
+	public void writeFailed(final Throwable t) {
+
+		logger.log(Level.FINE, "Error sending message to client.", t);
+
+		writing.set(false);
+		close(StatusCode.SERVER_ERROR, "Write failed");
+	}
+
+	// ----- private methods -----
+	private void flush() {
+
+		// only one write may be in flight at any time
+		while (!closed.get() && !queue.isEmpty() && writing.compareAndSet(false, true)) {
+
+			final String message = queue.poll();
+			if (message == null) {
+
+				// queue was drained by a concurrent flush
+				writing.set(false);
+				continue;
+			}
+
+			try {
+
+				session.getRemote().sendString(message, this);
+
+			} catch (Throwable t) {
+
+				writeFailed(t);
+			}
+
+			// writeSuccess() continues with the next message
+			return;
+		}
+	}
+
+	private void close(final int statusCode, final String reason) {
+
+		if (closed.compareAndSet(false, true)) {
+
+			queue.clear();
+
+			try {
+				session.close(statusCode, reason);
+
+			} catch (Throwable t) {
+
+				logger.log(Level.FINE, "Unable to close websocket session", t);
+			}
+		}
+	}
+}
@@ -70,6 +70,7 @@ public class StructrWebSocket implements WebSocketListener {
 	private Map<String, FileUploadHandler> uploads = null;
 	private Authenticator authenticator = null;
 	private String pagePath = null;
+	private ClientOutbox outbox = null;
 
 	//~--- constructors ---------------------------------------------------
 
@@ -96,6 +97,7 @@ public class StructrWebSocket implements WebSocketListener {
 		logger.log(Level.INFO, "New connection with protocol {0}", session.getProtocolVersion());
 
 		this.session = session;
+		this.outbox  = new ClientOutbox(session, syncController.getOutboxSize());
 
 		syncController.registerClient(this);
 
@@ -316,7 +318,8 @@ public class StructrWebSocket implements WebSocketListener {
                             securityContext.clearCustomView();
                         }
 
-			session.getRemote().sendString(msg);
+			// use the same queue as broadcast messages to preserve order
+			outbox.offer(msg);
 
 		} catch (Throwable t) {
 			logger.log(Level.WARNING, "Unable to send websocket message to remote client");
@@ -415,6 +418,12 @@ public class StructrWebSocket implements WebSocketListener {
 
 	}
 
+	public ClientOutbox getOutbox() {
+
+		return outbox;
+
+	}
+
 	public HttpServletRequest getRequest() {
 
 		return request;
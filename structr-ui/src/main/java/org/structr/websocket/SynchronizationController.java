@@ -19,17 +19,20 @@
 package org.structr.websocket;
 
 import com.google.gson.Gson;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.eclipse.jetty.util.URIUtil;
-import org.eclipse.jetty.websocket.api.Session;
-import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.neo4j.graphdb.RelationshipType;
 import org.structr.common.AccessMode;
 import org.structr.common.SecurityContext;
@@ -38,6 +41,7 @@ import org.structr.core.GraphObject;
 import org.structr.core.StructrTransactionListener;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
@@ -54,15 +58,44 @@ import org.structr.websocket.message.WebSocketMessage;
  */
 public class SynchronizationController implements StructrTransactionListener {
 
-	private static final Logger logger = Logger.getLogger(SynchronizationController.class.getName());
+	private static final Logger logger                  = Logger.getLogger(SynchronizationController.class.getName());
+	private static final String OUTBOX_SIZE_KEY         = "ws.outbox.size";
+	private static final int DEFAULT_OUTBOX_SIZE        = 1000;
 
-	private final Set<StructrWebSocket> clients = new ConcurrentHashSet<>();
-	private Gson gson = null;
+	private final BlockingQueue<List<WebSocketMessage>> pendingBroadcasts = new LinkedBlockingQueue<>();
+	private final Set<StructrWebSocket> clients                           = new ConcurrentHashSet<>();
+	private Thread broadcaster                                            = null;
+	private int outboxSize                                                = DEFAULT_OUTBOX_SIZE;
+	private Gson gson                                                     = null;
 
 	public SynchronizationController(final Gson gson) {
 
-		this.gson = gson;
+		this.gson       = gson;
+		this.outboxSize = parseInt(StructrApp.getConfigurationValue(OUTBOX_SIZE_KEY, Integer.toString(DEFAULT_OUTBOX_SIZE)), DEFAULT_OUTBOX_SIZE);
 
+		this.broadcaster = new Thread(new Broadcaster(), "WebSocketBroadcaster");
+
+		broadcaster.setDaemon(true);
+		broadcaster.start();
+	}
+
+	/**
+	 * Stops the broadcaster thread. Pending broadcasts are discarded.
+	 */
+	public void shutdown() {
+
+		broadcaster.interrupt();
+
+		try {
+			broadcaster.join(10000);
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+		}
+
+		pendingBroadcasts.clear();
+		clients.clear();
 	}
 
 	public void registerClient(final StructrWebSocket client) {
@@ -77,6 +110,10 @@ public class SynchronizationController implements StructrTransactionListener {
 
 	}
 
+	public int getOutboxSize() {
+		return outboxSize;
+	}
+
 	// ----- private methods -----
 	private void broadcast(final WebSocketMessage webSocketData) {
 
@@ -84,32 +121,40 @@ public class SynchronizationController implements StructrTransactionListener {
 		// session must be valid to be received by the client
 		webSocketData.setSessionValid(true);
 
-		String message;
-		String pagePath = (String) webSocketData.getNodeData().get("pagePath");
+		final Map<String, String> serializedVariants = new HashMap<>();
+		final List<StructrWebSocket> clientsToRemove = new LinkedList<>();
+		final String pagePath                        = (String) webSocketData.getNodeData().get("pagePath");
+		final String encodedPagePath                 = pagePath != null ? URIUtil.encodePath(pagePath) : null;
+		final List<? extends GraphObject> result     = webSocketData.getResult();
+		final String command                         = webSocketData.getCommand();
+		final boolean filterResult                   = (result != null) && (result.size() > 0) && ("UPDATE".equals(command) || "ADD".equals(command) || "CREATE".equals(command));
 
-		List<StructrWebSocket> clientsToRemove = new LinkedList<>();
-
-		// create message
 		for (StructrWebSocket socket : clients) {
 
 			String clientPagePath = socket.getPagePath();
-			if (clientPagePath != null && !clientPagePath.equals(URIUtil.encodePath(pagePath))) {
+			if (clientPagePath != null && !clientPagePath.equals(encodedPagePath)) {
 				continue;
 			}
 
-			Session session = socket.getSession();
+			final ClientOutbox outbox = socket.getOutbox();
+			if (socket.getSession() == null || outbox == null) {
+				continue;
+			}
 
-			webSocketData.setCallback(socket.getCallback());
+			SecurityContext securityContext = socket.getSecurityContext();
 
-			if ((session != null)) { //&& socket.isAuthenticated()) {
+			// clients that see the same objects and share a callback get the same message,
+			// so it is filtered and serialized only once per variant
+			final String variantKey = getVariantKey(securityContext, filterResult) + "/" + socket.getCallback();
+			String message          = serializedVariants.get(variantKey);
 
-				List<? extends GraphObject> result = webSocketData.getResult();
+			if (message == null) {
 
-				if ((result != null) && (result.size() > 0)
-					&& (webSocketData.getCommand().equals("UPDATE") || webSocketData.getCommand().equals("ADD") || webSocketData.getCommand().equals("CREATE"))) {
+				final WebSocketMessage clientData = webSocketData.copy();
 
-					WebSocketMessage clientData = webSocketData.copy();
-					SecurityContext securityContext = socket.getSecurityContext();
+				clientData.setCallback(socket.getCallback());
+
+				if (filterResult) {
 
 					// For non-authenticated clients, construct a security context without user
 					if (securityContext == null) {
@@ -125,44 +170,45 @@ public class SynchronizationController implements StructrTransactionListener {
 					}
 
 					clientData.setResult(filter(securityContext, result));
-
-					message = gson.toJson(clientData, WebSocketMessage.class);
-
-				} else {
-
-					message = gson.toJson(webSocketData, WebSocketMessage.class);
 				}
 
-				//logger.log(Level.INFO, "############################################################ SENDING \n{0}", message);
-				try {
+				message = gson.toJson(clientData, WebSocketMessage.class);
+				serializedVariants.put(variantKey, message);
+			}
 
-					session.getRemote().sendString(message);
+			//logger.log(Level.INFO, "############################################################ SENDING \n{0}", message);
+			if (!outbox.offer(message)) {
 
-				} catch (Throwable t) {
+				clientsToRemove.add(socket);
+			}
+		}
 
-					if (t instanceof WebSocketException) {
+		for (StructrWebSocket s : clientsToRemove) {
 
-						WebSocketException wse = (WebSocketException) t;
+			unregisterClient(s);
 
-						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
-							clientsToRemove.add(socket);
-						}
-					}
+			logger.log(Level.WARNING, "Client removed from broadcast list: {0}", s);
+		}
 
-					logger.log(Level.FINE, "Error sending message to client.", t);
-				}
+	}
 
-			}
+	private String getVariantKey(final SecurityContext securityContext, final boolean filterResult) {
 
+		if (!filterResult) {
+			return "all";
 		}
 
-		for (StructrWebSocket s : clientsToRemove) {
+		if (securityContext == null) {
+			return "anonymous";
+		}
 
-			unregisterClient(s);
+		final Principal user = securityContext.getUser(false);
+		if (user == null) {
 
-			logger.log(Level.WARNING, "Client removed from broadcast list: {0}", s);
+			return "anonymous/" + securityContext.getAccessMode();
 		}
 
+		return user.getUuid() + "/" + securityContext.getAccessMode();
 	}
 
 	private <T extends GraphObject> List<T> filter(final SecurityContext securityContext, final List<T> all) {
@@ -180,10 +226,51 @@ public class SynchronizationController implements StructrTransactionListener {
 
 	}
 
+	/**
+	 * Removes messages that are superseded by a later message for the
+	 * same object in the same transaction.
+	 */
+	private List<WebSocketMessage> coalesce(final List<WebSocketMessage> messages) {
+
+		final Map<String, WebSocketMessage> coalesced = new LinkedHashMap<>();
+		int count                                     = 0;
+
+		for (final WebSocketMessage message : messages) {
+
+			final String id = message.getId();
+			if (id != null && "UPDATE".equals(message.getCommand())) {
+
+				// a later update for the same object replaces the earlier one
+				final String key = "UPDATE/" + id;
+
+				coalesced.remove(key);
+				coalesced.put(key, message);
+
+			} else {
+
+				coalesced.put(Integer.toString(count++), message);
+			}
+		}
+
+		return new ArrayList<>(coalesced.values());
+	}
+
+	private static int parseInt(final String source, final int defaultValue) {
+
+		try {
+			return Integer.parseInt(source);
+
+		} catch (Throwable t) { }
+
+		return defaultValue;
+	}
+
 	// ----- interface StructrTransactionListener -----
 	@Override
 	public void transactionCommited(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
 
+		final List<WebSocketMessage> messages = new LinkedList<>();
+
 		try (final Tx tx = StructrApp.getInstance(securityContext).tx()) {
 
 			for (final ModificationEvent event : modificationEvents) {
@@ -192,7 +279,7 @@ public class SynchronizationController implements StructrTransactionListener {
 					final WebSocketMessage message = getMessageForEvent(securityContext, event);
 					if (message != null) {
 						logger.log(Level.FINE, "################### Broadcast message: {0}", message.getCommand());
-						broadcast(message);
+						messages.add(message);
 					}
 
 				} catch (FrameworkException ignore) {
@@ -202,6 +289,67 @@ public class SynchronizationController implements StructrTransactionListener {
 		} catch (FrameworkException ex) {
 			ex.printStackTrace();
 		}
+
+		// filtering, serialization and sending are done asynchronously,
+		// the committing thread does not wait for any client
+		if (!messages.isEmpty() && !clients.isEmpty()) {
+
+			broadcastLater(coalesce(messages));
+		}
+	}
+
+	/**
+	 * Hands the given messages to the broadcaster thread, which sends
+	 * them in the given order.
+	 *
+	 * @param messages
+	 */
+	void broadcastLater(final List<WebSocketMessage> messages) {
+
+		if (broadcaster.isAlive()) {
+			pendingBroadcasts.add(messages);
+		}
+	}
+
+	// ----- nested classes -----
+	private class Broadcaster implements Runnable {
+
+		@Override
+		public void run() {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				try {
+
+					final List<WebSocketMessage> messages = pendingBroadcasts.take();
+
+					try (final Tx tx = StructrApp.getInstance().tx()) {
+
+						for (final WebSocketMessage message : messages) {
+
+							// a failing message must not keep the others from being sent
+							try {
+								broadcast(message);
+
+							} catch (Throwable t) {
+
+								logger.log(Level.WARNING, "Unable to broadcast websocket message " + message.getCommand(), t);
+							}
+						}
+
+						tx.success();
+					}
+
+				} catch (InterruptedException iex) {
+
+					return;
+
+				} catch (Throwable t) {
+
+					logger.log(Level.WARNING, "Unable to broadcast websocket messages", t);
+				}
+			}
+		}
 	}
 
 	// ----- private methods -----
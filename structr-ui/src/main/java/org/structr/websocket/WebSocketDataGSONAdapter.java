@@ -136,6 +136,11 @@ public class WebSocketDataGSONAdapter implements JsonSerializer<WebSocketMessage
 			root.add("order", new JsonPrimitive(src.getSortOrder()));
 		}
 
+		if (src.getNextPageCursor() != null) {
+
+			root.add("nextPageCursor", new JsonPrimitive(src.getNextPageCursor()));
+		}
+
 		if (src.getPageSize() > 0) {
 
 			root.add("pageSize", new JsonPrimitive(src.getPageSize()));
@@ -358,6 +363,11 @@ public class WebSocketDataGSONAdapter implements JsonSerializer<WebSocketMessage
 				webSocketData.setSortOrder(root.getAsJsonPrimitive("order").getAsString());
 			}
 
+			if (root.has("pageCursor")) {
+
+				webSocketData.setPageCursor(root.getAsJsonPrimitive("pageCursor").getAsString());
+			}
+
 			if (root.has("pageSize")) {
 
 				webSocketData.setPageSize(root.getAsJsonPrimitive("pageSize").getAsInt());
@@ -79,8 +79,9 @@ public class ListCommand extends AbstractCommand {
 		final String sortKey           = webSocketData.getSortKey();
 		final int pageSize             = webSocketData.getPageSize();
 		final int page                 = webSocketData.getPage();
+		final String pageCursor        = webSocketData.getPageCursor();
 		final PropertyKey sortProperty = StructrApp.getConfiguration().getPropertyKeyForJSONName(type, sortKey);
-		final Query query              = StructrApp.getInstance(securityContext).nodeQuery(type).includeDeletedAndHidden().sort(sortProperty).order("desc".equals(sortOrder)).page(page).pageSize(pageSize);
+		final Query query              = StructrApp.getInstance(securityContext).nodeQuery(type).includeDeletedAndHidden().sort(sortProperty).order("desc".equals(sortOrder)).page(page).pageSize(pageSize).cursor(pageCursor);
 
 		// important
 		if (AbstractFile.class.isAssignableFrom(type) && rootOnly) {
@@ -105,6 +106,7 @@ public class ListCommand extends AbstractCommand {
 			// set full result list
 			webSocketData.setResult(result.getResults());
 			webSocketData.setRawResultCount(resultCountBeforePaging);
+			webSocketData.setNextPageCursor(result.getNextCursor());
 
 			// send only over local connection
 			getWebSocket().send(webSocketData, true);
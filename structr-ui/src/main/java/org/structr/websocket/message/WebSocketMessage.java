@@ -58,6 +58,8 @@ public class WebSocketMessage {
 	private boolean sessionValid                = false;
 	private String sortKey                      = null;
 	private String sortOrder                    = null;
+	private String pageCursor                   = null;
+	private String nextPageCursor               = null;
 	private String view                         = null;
 	private Set<String> nodesWithChildren       = null;
 	private JsonElement jsonErrorObject                   = null;
@@ -89,6 +91,8 @@ public class WebSocketMessage {
 		newCopy.sessionValid       = this.sessionValid;
 		newCopy.sortKey            = this.sortKey;
 		newCopy.sortOrder          = this.sortOrder;
+		newCopy.pageCursor         = this.pageCursor;
+		newCopy.nextPageCursor     = this.nextPageCursor;
 		newCopy.view               = this.view;
 		newCopy.chunkSize          = this.chunkSize;
 		newCopy.nodesWithChildren  = this.nodesWithChildren;
@@ -166,6 +170,14 @@ public class WebSocketMessage {
 		return sortOrder;
 	}
 
+	public String getPageCursor() {
+		return pageCursor;
+	}
+
+	public String getNextPageCursor() {
+		return nextPageCursor;
+	}
+
 	public String getMessage() {
 		return message;
 	}
@@ -276,6 +288,14 @@ public class WebSocketMessage {
 		this.sortOrder = sortOrder;
 	}
 
+	public void setPageCursor(final String pageCursor) {
+		this.pageCursor = pageCursor;
+	}
+
+	public void setNextPageCursor(final String nextPageCursor) {
+		this.nextPageCursor = nextPageCursor;
+	}
+
 	public void setSessionId(final String sessionId) {
 		this.sessionId = sessionId;
 	}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.structr.cloud.message.FileNodeChunk;
+import org.structr.cloud.message.FileNodeDataContainer;
+import org.structr.cloud.message.FileNodeEndChunk;
+import org.structr.common.ChunkIndex;
+import org.structr.common.SyncState;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.Tx;
+import org.structr.dynamic.File;
+import org.structr.web.common.FileHelper;
+import org.structr.web.common.StructrUiTest;
+
+/**
+ * Tests the transmission of file chunks that occur in more than one file.
+ */
+public class ChunkTransferTest extends StructrUiTest {
+
+	private final SyncState syncState                    = new SyncState();
+	private final List<FileNodeDataContainer> containers = new LinkedList<>();
+	private final List<List<FileNodeChunk>> chunks       = new LinkedList<>();
+	private final List<String> ids                       = new LinkedList<>();
+	private final List<java.io.File> files               = new LinkedList<>();
+
+	public void test01DeferredChunk() {
+
+		try {
+
+			// the second chunk of the first file is the first chunk of the second file
+			createRemoteFiles(chunks(1, 2), chunks(2, 3));
+
+			final CloudConnection connection = new CloudConnection(new Socket(), null);
+
+			try (final Tx tx = app.tx()) {
+
+				final Map<String, Set<Integer>> changes = connection.getChanges(syncState);
+
+				assertEquals(new LinkedHashSet<>(Arrays.asList(0, 1)), changes.get(ids.get(0)));
+				assertEquals("Chunk of the first file should not be requested again", new LinkedHashSet<>(Arrays.asList(1)), changes.get(ids.get(1)));
+
+				transmit(connection, 0, changes.get(ids.get(0)));
+				transmit(connection, 1, changes.get(ids.get(1)));
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertNotNull(app.get(ids.get(0)));
+				assertNotNull(app.get(ids.get(1)));
+
+				tx.success();
+			}
+
+			assertTrue(Arrays.equals(chunks(1, 2), FileUtils.readFileToByteArray(files.get(0))));
+			assertTrue("Deferred chunk should be copied from the first file", Arrays.equals(chunks(2, 3), FileUtils.readFileToByteArray(files.get(1))));
+
+		} catch (IOException | FrameworkException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02MissingDeferredChunk() {
+
+		try {
+
+			createRemoteFiles(chunks(1, 2), chunks(2, 3));
+
+			final CloudConnection connection = new CloudConnection(new Socket(), null);
+
+			try (final Tx tx = app.tx()) {
+
+				final Map<String, Set<Integer>> changes = connection.getChanges(syncState);
+
+				// the first file, which contains the deferred chunk, is not received
+				transmit(connection, 1, changes.get(ids.get(1)));
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertNull("File with a missing chunk should not be stored", app.get(ids.get(1)));
+
+				tx.success();
+			}
+
+			assertFalse("File with a missing chunk should not be stored", files.get(1).exists());
+			assertTrue("Staging file should be kept for the next synchronization", FileNodeDataContainer.getStagingFile(ids.get(1)).exists());
+
+		} catch (IOException | FrameworkException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	/**
+	 * Creates files with the given content, collects their sync state and
+	 * chunks and deletes them again, so that they only exist remotely.
+	 */
+	private void createRemoteFiles(final byte[]... contents) throws IOException, FrameworkException {
+
+		final List<File> fileNodes = new LinkedList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<contents.length; i++) {
+
+				final File file                      = FileHelper.createFile(securityContext, contents[i], "application/octet-stream", File.class, "file" + i + ".bin");
+				final java.io.File diskFile          = new java.io.File(FileHelper.getFilePath(file.getRelativeFilePath()));
+				final List<FileNodeChunk> fileChunks = new LinkedList<>();
+
+				for (final FileNodeChunk chunk : FileNodeDataContainer.getChunks(file, CloudService.CHUNK_SIZE)) {
+					fileChunks.add(chunk);
+				}
+
+				syncState.add(new SyncState.Entry(file.getUuid(), SyncState.getHash(file.getNode()), contents[i].length, ChunkIndex.getChunkHashes(diskFile, CloudService.CHUNK_SIZE)));
+				containers.add(new FileNodeDataContainer(file));
+				chunks.add(fileChunks);
+				ids.add(file.getUuid());
+				files.add(diskFile);
+				fileNodes.add(file);
+			}
+
+			tx.success();
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			for (final File file : fileNodes) {
+				app.delete(file);
+			}
+
+			tx.success();
+		}
+
+		for (final java.io.File file : files) {
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	private void transmit(final CloudConnection connection, final int index, final Set<Integer> wantedChunks) throws FrameworkException {
+
+		final FileNodeDataContainer container = containers.get(index);
+
+		connection.beginFile(container);
+
+		for (final FileNodeChunk chunk : chunks.get(index)) {
+
+			if (wantedChunks.contains(chunk.getSequenceNumber())) {
+				connection.fileChunk(chunk);
+			}
+		}
+
+		connection.finishFile(new FileNodeEndChunk(ids.get(index), container.getFileSize()));
+	}
+
+	/**
+	 * Returns content that consists of chunks filled with the given values.
+	 */
+	private byte[] chunks(final int... values) {
+
+		final byte[] data = new byte[values.length * CloudService.CHUNK_SIZE];
+
+		for (int i=0; i<values.length; i++) {
+			Arrays.fill(data, i * CloudService.CHUNK_SIZE, (i + 1) * CloudService.CHUNK_SIZE, (byte)values[i]);
+		}
+
+		return data;
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.cloud;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.structr.cloud.message.Message;
+import org.structr.cloud.message.PushNodeRequestContainer;
+import org.structr.cloud.message.SyncManifest;
+import org.structr.common.ChunkIndex;
+import org.structr.common.SyncState;
+
+/**
+ * Tests the binary framing of cloud messages, the sync manifest and the
+ * throughput of two connections over the loopback interface.
+ */
+public class CloudConnectionTest extends TestCase {
+
+	private static final Logger logger = Logger.getLogger(CloudConnectionTest.class.getName());
+
+	public void test01FrameRoundTrip() {
+
+		try {
+
+			final SecretKeySpec key                 = new SecretKeySpec(new byte[16], CloudService.STREAM_CIPHER);
+			final Cipher encrypter                  = Cipher.getInstance(CloudService.STREAM_CIPHER);
+			final Cipher decrypter                  = Cipher.getInstance(CloudService.STREAM_CIPHER);
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+			encrypter.init(Cipher.ENCRYPT_MODE, key);
+			decrypter.init(Cipher.DECRYPT_MODE, key);
+
+			final FrameWriter writer = new FrameWriter(outputStream, encrypter);
+
+			for (int i=0; i<100; i++) {
+
+				final PushNodeRequestContainer message = new PushNodeRequestContainer("target" + i);
+				final Map<String, Object> properties   = message.getProperties();
+
+				properties.put("name", "message" + i);
+				properties.put("index", i);
+				properties.put("size", 12345678901L);
+				properties.put("ratio", 0.5d);
+				properties.put("visible", true);
+				properties.put("date", new Date(1000L * i));
+				properties.put("tags", new String[] { "a", null, "c" });
+				properties.put("numbers", new int[] { 1, 2, 3 });
+				properties.put("nothing", null);
+
+				writer.write(message);
+			}
+
+			writer.flush();
+			writer.close();
+
+			final FrameReader reader     = new FrameReader(new ByteArrayInputStream(outputStream.toByteArray()), decrypter);
+			final List<Message> messages = reader.read();
+
+			reader.close();
+
+			assertEquals(100, messages.size());
+
+			for (int i=0; i<100; i++) {
+
+				final PushNodeRequestContainer message = (PushNodeRequestContainer)messages.get(i);
+				final Map<String, Object> properties   = message.getProperties();
+
+				assertEquals("target" + i, message.getTargetNodeId());
+				assertEquals("message" + i, properties.get("name"));
+				assertEquals(i, properties.get("index"));
+				assertEquals(12345678901L, properties.get("size"));
+				assertEquals(0.5d, properties.get("ratio"));
+				assertEquals(true, properties.get("visible"));
+				assertEquals(new Date(1000L * i), properties.get("date"));
+				assertEquals("c", ((String[])properties.get("tags"))[2]);
+				assertNull(((String[])properties.get("tags"))[1]);
+				assertEquals(3, ((int[])properties.get("numbers"))[2]);
+				assertTrue(properties.containsKey("nothing"));
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "", t);
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02LoopbackThroughput() {
+
+		try (final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+
+			final int number    = 20000;
+			final String filler = new String(new char[1000]).replace("\0", "x");
+
+			// accept one connection that answers each message with an ack
+			final Thread acceptor = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+
+					try {
+
+						new CloudConnection(serverSocket.accept(), new ExportContext(null, 0)).start();
+
+					} catch (IOException ioex) {
+						logger.log(Level.WARNING, "", ioex);
+					}
+				}
+			});
+
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			final CloudConnection client = new CloudConnection(new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort()), new ExportContext(null, number));
+			client.start();
+
+			final long t0 = System.nanoTime();
+
+			for (int i=0; i<number; i++) {
+
+				final PushNodeRequestContainer message = new PushNodeRequestContainer();
+
+				message.getProperties().put("name", "node" + i);
+				message.getProperties().put("content", filler);
+				message.getProperties().put("position", i);
+
+				client.send(message);
+			}
+
+			// wait for all acks
+			client.waitForTransmission();
+
+			final long t1 = System.nanoTime();
+
+			client.close();
+
+			final DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			final Double time                 = (t1 - t0) / 1000000000.0;
+			final Double rate                 = number / time;
+
+			// the rate depends on the machine, it is only logged
+			logger.log(Level.INFO, "Transmitted {0} messages in {1} seconds ({2} per s)", new Object[] { number, decimalFormat.format(time), decimalFormat.format(rate) });
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "", t);
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test03SyncManifest() {
+
+		try {
+
+			final File local  = File.createTempFile("structr-test", ".bin");
+			final File remote = File.createTempFile("structr-test", ".bin");
+			final byte[] data = new byte[CloudService.CHUNK_SIZE * 3 + 100];
+
+			FileUtils.writeByteArrayToFile(local, data);
+
+			// change the second chunk and append a chunk
+			data[CloudService.CHUNK_SIZE + 10] = 1;
+			FileUtils.writeByteArrayToFile(remote, data);
+			FileUtils.writeByteArrayToFile(remote, new byte[CloudService.CHUNK_SIZE], true);
+
+			final String[] localHashes  = ChunkIndex.getChunkHashes(local, CloudService.CHUNK_SIZE);
+			final String[] remoteHashes = ChunkIndex.getChunkHashes(remote, CloudService.CHUNK_SIZE);
+
+			assertEquals(4, localHashes.length);
+			assertEquals(5, remoteHashes.length);
+			assertEquals(localHashes[0], remoteHashes[0]);
+			assertFalse(localHashes[1].equals(remoteHashes[1]));
+			assertEquals(localHashes[2], remoteHashes[2]);
+			assertFalse(localHashes[3].equals(remoteHashes[3]));
+
+			final SyncState syncState = new SyncState();
+
+			syncState.add(new SyncState.Entry("node", "hash1"));
+			syncState.add(new SyncState.Entry("file", "hash2")).setChunks(remote.length(), remoteHashes);
+
+			local.delete();
+			remote.delete();
+
+			final SecretKeySpec key                 = new SecretKeySpec(new byte[16], CloudService.STREAM_CIPHER);
+			final Cipher encrypter                  = Cipher.getInstance(CloudService.STREAM_CIPHER);
+			final Cipher decrypter                  = Cipher.getInstance(CloudService.STREAM_CIPHER);
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+			encrypter.init(Cipher.ENCRYPT_MODE, key);
+			decrypter.init(Cipher.DECRYPT_MODE, key);
+
+			final FrameWriter writer = new FrameWriter(outputStream, encrypter);
+
+			writer.write(new SyncManifest(syncState));
+			writer.flush();
+			writer.close();
+
+			final FrameReader reader     = new FrameReader(new ByteArrayInputStream(outputStream.toByteArray()), decrypter);
+			final List<Message> messages = reader.read();
+
+			reader.close();
+
+			assertEquals(1, messages.size());
+
+			final SyncState received = ((SyncManifest)messages.get(0)).getSyncState();
+
+			assertEquals(2, received.size());
+			assertEquals("hash1", received.get("node").getHash());
+			assertFalse(received.get("node").hasChunks());
+			assertTrue(received.get("file").hasChunks());
+			assertEquals(remoteHashes[4], received.get("file").getChunkHashes()[4]);
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "", t);
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test04RejectInvalidLengths() {
+
+		// a string that claims to be longer than the rest of the frame
+		assertInvalid(new byte[] { 0x7f, -1, -1, -1, 'a', 'b' }, false);
+
+		// a negative length other than the null marker
+		assertInvalid(new byte[] { -1, -1, -1, -2 }, false);
+
+		// arrays and property maps with huge element counts
+		assertInvalid(new byte[] { 20, 0x7f, -1, -1, -1, 0, 0, 0, 0 }, true);
+		assertInvalid(new byte[] { 25, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 1 }, true);
+		assertInvalid(new byte[] { 27, -1, -1, -1, -1 }, true);
+
+		try {
+
+			// valid lengths are still accepted
+			assertEquals("ab", Protocol.readString(new DataInputStream(new ByteArrayInputStream(new byte[] { 0, 0, 0, 2, 'a', 'b' }))));
+			assertNull(Protocol.readString(new DataInputStream(new ByteArrayInputStream(new byte[] { -1, -1, -1, -1 }))));
+
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			Protocol.writeValue(new DataOutputStream(outputStream), new long[] { 1L, 2L });
+
+			final long[] values = (long[])Protocol.readValue(new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray())));
+
+			assertEquals(2, values.length);
+			assertEquals(2L, values[1]);
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "", ioex);
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test05ProtocolVersion() {
+
+		try {
+
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final DataOutputStream dataStream        = new DataOutputStream(outputStream);
+
+			Protocol.writeVersion(dataStream);
+			Protocol.writeString(dataStream, "user");
+
+			final DataInputStream matching = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+
+			assertEquals(Protocol.VERSION, Protocol.readVersion(matching));
+			assertEquals("user", Protocol.readString(matching));
+
+			// the fields after an unknown version can not be decoded and are skipped
+			final DataInputStream other = new DataInputStream(new ByteArrayInputStream(new byte[] { 99, 0, 0, 0, 4, 'u', 's', 'e', 'r' }));
+
+			assertEquals(99, Protocol.readVersion(other));
+			assertEquals(0, other.available());
+			assertTrue(Protocol.getVersionError(99).contains("version 99"));
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "", ioex);
+			fail("Unexpected exception");
+		}
+	}
+
+	private void assertInvalid(final byte[] data, final boolean value) {
+
+		try {
+
+			final DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(data));
+
+			if (value) {
+
+				Protocol.readValue(inputStream);
+
+			} else {
+
+				Protocol.readString(inputStream);
+			}
+
+			fail("Invalid length should be rejected");
+
+		} catch (IOException expected) {
+		}
+	}
+}
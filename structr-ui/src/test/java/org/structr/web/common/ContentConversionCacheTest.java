@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Adapter;
+
+/**
+ * Tests the cache for converted markup of Content nodes.
+ */
+public class ContentConversionCacheTest extends StructrUiTest {
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		ContentConversionCache.clear();
+	}
+
+	public void test01ConversionIsCached() {
+
+		try {
+
+			final CountingConverter converter = new CountingConverter(0);
+
+			assertEquals("<p>text</p>", ContentConversionCache.convert("text/markdown", "text", converter));
+			assertEquals("<p>text</p>", ContentConversionCache.convert("text/markdown", "text", converter));
+			assertEquals(1, converter.count.get());
+
+			// other content type and other content are converted again
+			assertEquals("<p>text</p>", ContentConversionCache.convert("text/textile", "text", converter));
+			assertEquals("<p>other</p>", ContentConversionCache.convert("text/markdown", "other", converter));
+			assertEquals(3, converter.count.get());
+
+			// cleared cache
+			ContentConversionCache.clear();
+
+			assertEquals("<p>text</p>", ContentConversionCache.convert("text/markdown", "text", converter));
+			assertEquals(4, converter.count.get());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02ConcurrentConversion() {
+
+		final CountingConverter converter = new CountingConverter(200);
+		final ExecutorService executor    = Executors.newFixedThreadPool(8);
+		final List<Future<String>> tasks  = new ArrayList<>();
+
+		try {
+
+			for (int i=0; i<8; i++) {
+
+				tasks.add(executor.submit(new Callable<String>() {
+
+					@Override
+					public String call() throws Exception {
+						return ContentConversionCache.convert("text/markdown", "concurrent", converter);
+					}
+				}));
+			}
+
+			for (final Future<String> task : tasks) {
+				assertEquals("<p>concurrent</p>", task.get());
+			}
+
+			// all threads waited for a single conversion
+			assertEquals(1, converter.count.get());
+
+		} catch (Exception ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception");
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+	}
+
+	public void test03FailedConversionIsNotCached() {
+
+		final CountingConverter converter = new CountingConverter(0);
+
+		converter.fail = true;
+
+		try {
+
+			ContentConversionCache.convert("text/markdown", "text", converter);
+			fail("Conversion error should be thrown");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals(422, fex.getStatus());
+		}
+
+		converter.fail = false;
+
+		try {
+
+			assertEquals("<p>text</p>", ContentConversionCache.convert("text/markdown", "text", converter));
+			assertEquals(2, converter.count.get());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test04Prewarm() {
+
+		try {
+
+			final CountingConverter converter = new CountingConverter(100);
+
+			ContentConversionCache.prewarm("text/markdown", "prewarmed", converter);
+
+			assertEquals("<p>prewarmed</p>", ContentConversionCache.convert("text/markdown", "prewarmed", converter));
+			assertEquals(1, converter.count.get());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- nested classes -----
+	private static class CountingConverter implements Adapter<String, String> {
+
+		private final AtomicInteger count = new AtomicInteger(0);
+		private volatile boolean fail     = false;
+		private long delay                = 0L;
+
+		public CountingConverter(final long delay) {
+			this.delay = delay;
+		}
+
+		@Override
+		public String adapt(final String source) throws FrameworkException {
+
+			count.incrementAndGet();
+
+			try {
+				Thread.sleep(delay);
+
+			} catch (InterruptedException iex) {}
+
+			if (fail) {
+				throw new FrameworkException(422, "Conversion failed");
+			}
+
+			return "<p>" + source + "</p>";
+		}
+	}
+}
@@ -24,6 +24,7 @@ import static junit.framework.TestCase.fail;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.TreeChildCache;
 import org.structr.core.entity.relationship.AbstractChildren;
 import org.structr.core.graph.Tx;
 import org.structr.web.common.DOMTest;
@@ -815,6 +816,124 @@ public class DOMNodeTest extends DOMTest {
 
 	}
 
+	public void testChildOrderAcrossTransactions() {
+
+		DOMElement div = null;
+		Content test1  = null;
+		Content test2  = null;
+		Content test3  = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Page document = (Page) getDocument();
+
+			div   = (DOMElement) document.createElement("div");
+			test1 = (Content) document.createTextNode("test1");
+			test2 = (Content) document.createTextNode("test2");
+			test3 = (Content) document.createTextNode("test3");
+
+			div.appendChild(test1);
+			div.appendChild(test2);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			// read children once so that their order is cached
+			assertEquals(2, div.getChildNodes().getLength());
+			assertEquals(test1, div.getChildNodes().item(0));
+
+			// modification that is rolled back
+			div.insertBefore(test3, test1);
+
+			assertEquals(3, div.getChildNodes().getLength());
+			assertEquals(test3, div.getChildNodes().item(0));
+
+		} catch (FrameworkException fex) {
+
+			fail("unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(2, div.getChildNodes().getLength());
+			assertEquals(test1, div.getChildNodes().item(0));
+			assertEquals(test2, div.getChildNodes().item(1));
+
+			// modification that is committed
+			div.insertBefore(test3, test2);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			assertEquals(3, div.getChildNodes().getLength());
+			assertEquals(test1, div.getChildNodes().item(0));
+			assertEquals(test3, div.getChildNodes().item(1));
+			assertEquals(test2, div.getChildNodes().item(2));
+
+		} catch (FrameworkException fex) {
+
+			fail("unexpected exception");
+		}
+	}
+
+	public void testChildOrderWithStaleCachedIds() {
+
+		DOMElement div1 = null;
+		DOMElement div2 = null;
+		Content test1   = null;
+		Content test2   = null;
+		Content test3   = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Page document = (Page) getDocument();
+
+			div1  = (DOMElement) document.createElement("div");
+			div2  = (DOMElement) document.createElement("div");
+			test1 = (Content) document.createTextNode("test1");
+			test2 = (Content) document.createTextNode("test2");
+			test3 = (Content) document.createTextNode("test3");
+
+			div1.appendChild(test1);
+			div1.appendChild(test2);
+			div2.appendChild(test3);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fail("unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			// simulate cached ids that now belong to the children of another node
+			final long foreignId = div2.treeGetChildRelationships().get(0).getRelationship().getId();
+
+			TreeChildCache.put(div1.getNode().getId(), new long[] { foreignId, foreignId }, TreeChildCache.getGeneration());
+
+			assertEquals(2, div1.getChildNodes().getLength());
+			assertEquals(test1, div1.getChildNodes().item(0));
+			assertEquals(test2, div1.getChildNodes().item(1));
+
+		} catch (FrameworkException fex) {
+
+			fail("unexpected exception");
+		}
+	}
+
 	private <T extends GraphObject> List<T> toList(final Iterable<T> it) {
 
 		List<T> list = new LinkedList();
@@ -18,14 +18,24 @@
  */
 package org.structr.web.test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Predicate;
+import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeServiceCommand;
 import org.structr.core.graph.StructrTransaction;
 import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 import org.structr.web.common.DOMTest;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.Folder;
+import org.structr.web.entity.dom.DOMElement;
+import org.structr.web.entity.dom.DOMNode;
+import org.structr.web.entity.dom.Page;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -36,6 +46,8 @@ import org.w3c.dom.Node;
  */
 public class PerformanceTest extends DOMTest {
 
+	private static final Logger logger = Logger.getLogger(PerformanceTest.class.getName());
+
 	public void testSiblingPerformance() {
 
 		try (final Tx tx = app.tx()) {
@@ -100,6 +112,97 @@ public class PerformanceTest extends DOMTest {
 
 	}
 
+	/**
+	 * Renders a page with a repeater over 10000 data objects and logs the
+	 * rendering time and, if supported by the JVM, the number of bytes
+	 * allocated while rendering.
+	 *
+	 * Note that this is just a very rough test as performance is heavily
+	 * depending on hardware and setup, the assumed rate is low.
+	 */
+	public void testRepeaterPerformance() {
+
+		final int number = 10000;
+		Page page        = null;
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<number; i++) {
+				app.create(Folder.class, new NodeAttribute<>(Folder.name, "folder" + i));
+			}
+
+			page = (Page) getDocument();
+
+			final Element html = page.createElement("html");
+			final Element body = page.createElement("body");
+			final Element ul   = page.createElement("ul");
+			final Element li   = page.createElement("li");
+
+			page.appendChild(html);
+			html.appendChild(body);
+			body.appendChild(ul);
+			ul.appendChild(li);
+			li.appendChild(page.createTextNode("${folder.name}"));
+
+			((DOMElement) li).setProperty(DOMNode.functionQuery, "find('Folder')");
+			((DOMElement) li).setProperty(DOMNode.dataKey, "folder");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+
+			fail("Unexpected exception");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			// warm-up
+			page.getContent(EditMode.NONE);
+
+			final long allocated0 = getAllocatedBytes();
+			final long t0         = System.currentTimeMillis();
+			final String content  = page.getContent(EditMode.NONE);
+			final long t1         = System.currentTimeMillis();
+			final long allocated1 = getAllocatedBytes();
+
+			assertTrue(content.contains("folder9999"));
+
+			final long duration = t1 - t0;
+
+			if (allocated0 >= 0 && allocated1 >= 0) {
+
+				logger.log(Level.INFO, "Rendered repeater with {0} elements in {1} ms, allocating {2} bytes ({3} bytes per element)", new Object[] { number, duration, allocated1 - allocated0, (allocated1 - allocated0) / number });
+
+			} else {
+
+				logger.log(Level.INFO, "Rendered repeater with {0} elements in {1} ms", new Object[] { number, duration });
+			}
+
+			assertTrue("Rendering a repeater with " + number + " elements should not take longer than 60s, took " + duration + " ms!", duration < 60000);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+
+			fail("Unexpected exception");
+		}
+	}
+
+	private long getAllocatedBytes() {
+
+		final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+		// allocation counters are only available in HotSpot JVMs
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+
+			return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		return -1;
+	}
+
 	/*
 	 public void testForcedVsUnforcedTransactions() {
 
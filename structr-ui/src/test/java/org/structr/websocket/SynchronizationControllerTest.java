@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.structr.web.common.StructrUiTest;
+import org.structr.websocket.message.WebSocketMessage;
+
+/**
+ * Tests the order and the error handling of websocket broadcasts.
+ */
+public class SynchronizationControllerTest extends StructrUiTest {
+
+	private SynchronizationController controller = null;
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		controller = new SynchronizationController(createGson());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		controller.shutdown();
+
+		super.tearDown();
+	}
+
+	public void test01BroadcastOrder() {
+
+		final TestClient client = connect(false);
+
+		controller.broadcastLater(createMessages("A", "B", "C"));
+		controller.broadcastLater(createMessages("D"));
+		controller.broadcastLater(createMessages("E", "F"));
+
+		assertEquals(Arrays.asList("A", "B", "C", "D", "E", "F"), client.waitFor(6));
+	}
+
+	public void test02FailingMessage() {
+
+		final TestClient client = connect(false);
+
+		// a message that cannot be serialized must not drop the rest of the batch
+		controller.broadcastLater(createMessages("A", "FAIL", "B"));
+		controller.broadcastLater(createMessages("C"));
+
+		assertEquals(Arrays.asList("A", "B", "C"), client.waitFor(3));
+	}
+
+	public void test03FailingClient() {
+
+		final TestClient failing = connect(true);
+		final TestClient client  = connect(false);
+
+		controller.broadcastLater(createMessages("A", "B"));
+
+		assertEquals(Arrays.asList("A", "B"), client.waitFor(2));
+
+		// the client whose write failed is disconnected, the other one keeps receiving
+		assertTrue(failing.closed);
+
+		controller.broadcastLater(createMessages("C"));
+
+		assertEquals(Arrays.asList("A", "B", "C"), client.waitFor(3));
+		assertTrue(failing.received.isEmpty());
+	}
+
+	public void test04Shutdown() throws InterruptedException {
+
+		final TestClient client = connect(false);
+
+		controller.broadcastLater(createMessages("A"));
+
+		assertEquals(Arrays.asList("A"), client.waitFor(1));
+
+		controller.shutdown();
+		controller.broadcastLater(createMessages("B"));
+
+		Thread.sleep(200);
+
+		assertEquals(Arrays.asList("A"), client.received);
+	}
+
+	// ----- private methods -----
+	private TestClient connect(final boolean failWrites) {
+
+		final TestClient client         = new TestClient(failWrites);
+		final StructrWebSocket socket   = new StructrWebSocket(controller, createGson(), null, null);
+
+		socket.setRequest(proxy(HttpServletRequest.class, null));
+		socket.onWebSocketConnect(client.getSession());
+
+		return client;
+	}
+
+	private List<WebSocketMessage> createMessages(final String... commands) {
+
+		final List<WebSocketMessage> messages = new LinkedList<>();
+
+		for (final String command : commands) {
+
+			final WebSocketMessage message = new WebSocketMessage();
+			message.setCommand(command);
+
+			messages.add(message);
+		}
+
+		return messages;
+	}
+
+	private Gson createGson() {
+
+		return new GsonBuilder().registerTypeAdapter(WebSocketMessage.class, new JsonSerializer<WebSocketMessage>() {
+
+			@Override
+			public JsonElement serialize(final WebSocketMessage src, final Type typeOfSrc, final JsonSerializationContext context) {
+
+				if ("FAIL".equals(src.getCommand())) {
+					throw new IllegalStateException("Serialization failed");
+				}
+
+				return new JsonPrimitive(src.getCommand());
+			}
+
+		}).create();
+	}
+
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+
+		return (T)Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, new InvocationHandler() {
+
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+				final Object result = handler != null ? handler.invoke(proxy, method, args) : null;
+				if (result == null && method.getReturnType().equals(Boolean.TYPE)) {
+					return false;
+				}
+
+				if (result == null && method.getReturnType().isPrimitive() && !method.getReturnType().equals(Void.TYPE)) {
+					return 0;
+				}
+
+				return result;
+			}
+		});
+	}
+
+	// ----- nested classes -----
+	private static class TestClient {
+
+		private final List<String> received = new LinkedList<>();
+		private boolean failWrites          = false;
+		private volatile boolean closed     = false;
+
+		public TestClient(final boolean failWrites) {
+			this.failWrites = failWrites;
+		}
+
+		public Session getSession() {
+
+			final RemoteEndpoint remote = proxy(RemoteEndpoint.class, new InvocationHandler() {
+
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+					if ("sendString".equals(method.getName()) && args.length == 2) {
+
+						final WriteCallback callback = (WriteCallback)args[1];
+
+						if (failWrites) {
+
+							callback.writeFailed(new IllegalStateException("Write failed"));
+
+						} else {
+
+							synchronized (received) {
+								received.add(new Gson().fromJson((String)args[0], String.class));
+								received.notifyAll();
+							}
+
+							callback.writeSuccess();
+						}
+					}
+
+					return null;
+				}
+			});
+
+			return proxy(Session.class, new InvocationHandler() {
+
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+
+					switch (method.getName()) {
+
+						case "getRemote":
+							return remote;
+
+						case "isOpen":
+							return !closed;
+
+						case "close":
+							closed = true;
+							break;
+					}
+
+					return null;
+				}
+			});
+		}
+
+		public List<String> waitFor(final int count) {
+
+			final long timeout = System.currentTimeMillis() + 10000;
+
+			synchronized (received) {
+
+				while (received.size() < count && System.currentTimeMillis() < timeout) {
+
+					try {
+						received.wait(100);
+
+					} catch (InterruptedException iex) {
+						break;
+					}
+				}
+
+				return new LinkedList<>(received);
+			}
+		}
+	}
+}